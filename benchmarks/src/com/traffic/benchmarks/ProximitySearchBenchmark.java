@@ -0,0 +1,90 @@
+package com.traffic.benchmarks;
+
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.data.InMemoryStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DISPATCH QUERY LATENCY (JMH)
+ *
+ * k nearest vehicles and vehicles within a radius on the InMemoryStore grid,
+ * with the fleet half packed into greater Tunis (~250k vehicles in 0.2 x 0.2 deg)
+ * and the query points drawn there, where the answers are largest.
+ * SampleTime mode: the report carries p50 / p99 / p99.9 per query.
+ * Correctness against brute force is in InMemoryStoreTest.
+ *
+ * Config: -p fleet=500000 -p cellDegrees=0.01 (the store's default cell)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class ProximitySearchBenchmark {
+
+    private static final int QUERY_POINTS = 4096; // Power of two: the index wraps with a mask
+
+    @Param("500000")
+    public int fleet;
+
+    @Param("0.01")
+    public double cellDegrees;
+
+    private InMemoryStore store;
+    private double[] lats;
+    private double[] lons;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        // Half in greater Tunis, half spread over the country
+        store = new InMemoryStore(fleet, cellDegrees);
+        Random rand = new Random(7);
+        for (int i = 0; i < fleet; i++) {
+            boolean city = i % 2 == 0;
+            double lat = city ? 36.7 + rand.nextDouble() * 0.2 : 33 + rand.nextDouble() * 4;
+            double lon = city ? 10.1 + rand.nextDouble() * 0.2 : 9 + rand.nextDouble() * 2.5;
+            store.update(new VehicleDetails("BOT-" + i, lat, lon, 40 + rand.nextInt(90)));
+        }
+        lats = new double[QUERY_POINTS];
+        lons = new double[QUERY_POINTS];
+        for (int i = 0; i < QUERY_POINTS; i++) {
+            lats[i] = 36.7 + rand.nextDouble() * 0.2;
+            lons[i] = 10.1 + rand.nextDouble() * 0.2;
+        }
+    }
+
+    @Benchmark
+    public List<VehicleDetails> nearest20() {
+        int i = next++ & (QUERY_POINTS - 1);
+        return store.queryNearest(lats[i], lons[i], 20);
+    }
+
+    @Benchmark
+    public List<VehicleDetails> within2Km() {
+        int i = next++ & (QUERY_POINTS - 1);
+        return store.queryRadius(lats[i], lons[i], 2.0);
+    }
+
+    @Benchmark
+    public List<VehicleDetails> within500m() {
+        int i = next++ & (QUERY_POINTS - 1);
+        return store.queryRadius(lats[i], lons[i], 0.5);
+    }
+}
@@ -16,6 +16,10 @@ L.tileLayer('https://{s}.basemaps.cartocdn.com/dark_all/{z}/{x}/{y}{r}.png', {
 }).addTo(map);
 
 const markers = {};
+const fleet = {};        // vehicleId -> latest vehicle in view (merged from deltas)
+let fleetVersion = 0;    // Version of the last applied delta (0 = need a full snapshot)
+let fleetBbox = null;    // Viewport the state belongs to
+let liveFeed = null;     // EventSource when streaming, null when polling
 let trafficChart;
 
 // Custom Icons
@@ -49,50 +53,83 @@ const lightIcon = L.divIcon({ className: 'light-icon', html: "<div class='text-2
         }
     });
 
-    // Start Polling
-    setInterval(updateTrafficData, 1000);
+    // Live feed when the browser supports it, polling otherwise
+    if (window.EventSource) startLiveFeed();
+    else setInterval(updateTrafficData, 1000);
     log("System Initialized and Monitoring...");
 })();
 
+// --- LIVE FEED (Server-Sent Events: whole fleet, filtered to the viewport here) ---
+function startLiveFeed() {
+    liveFeed = new EventSource(API_URL + '/stream'); // Redirected to the gateway's feed port
+    liveFeed.addEventListener('vehicles', e => { applyDelta(JSON.parse(e.data)); renderTraffic(); });
+    liveFeed.addEventListener('alerts', e => {
+        JSON.parse(e.data).forEach(a => log(`⚠️ ALERT: ${a.vehicleId} ${a.type.toLowerCase()} (${Math.floor(a.speed)} km/h)`, true));
+    });
+    liveFeed.onerror = () => log("Live feed interrupted, reconnecting...", true); // EventSource retries by itself
+}
+
 // --- DATA POLLING ---
 async function updateTrafficData() {
     try {
-        const res = await fetch(API_URL + '/dashboard');
-        const vehicles = await res.json();
-
-        let maxSpeed = 0;
-        const labels = [];
-        const dataPoints = [];
-        const backgroundColors = [];
-
-        vehicles.forEach(v => {
-            // Metrics and Map Logic
-            maxSpeed = Math.max(maxSpeed, v.speed);
-            if(markers[v.vehicleId]) { markers[v.vehicleId].setLatLng([v.latitude, v.longitude]); }
-            else { markers[v.vehicleId] = L.marker([v.latitude, v.longitude], {icon: carIcon}).addTo(map); }
-
-            // Chart Logic
-            labels.push(v.vehicleId);
-            dataPoints.push(v.speed);
-            backgroundColors.push(v.speed > 100 ? '#e74c3c' : '#3498db'); // Red if > 100 km/h
-
-            // Alert Logic (Visual Check)
-            if(v.speed > 100 && Math.random() > 0.95) {
-                log(`⚠️ ALERT: ${v.vehicleId} speeding (${Math.floor(v.speed)} km/h)`, true);
-            }
-        });
+        // Only ask for what the map is showing, and only what changed since the last poll
+        const b = map.getBounds();
+        const bbox = [b.getSouth(), b.getWest(), b.getNorth(), b.getEast()].map(x => x.toFixed(5)).join(',');
+        if (bbox !== fleetBbox) { fleetVersion = 0; fleetBbox = bbox; } // Viewport moved: start over
+        const res = await fetch(API_URL + '/dashboard?bbox=' + bbox + '&since=' + fleetVersion);
+        applyDelta(await res.json());
+        renderTraffic();
+    } catch(e) { /* Server might be down - silently ignore poll failure */ }
+}
 
-        // Update Dashboard Stats
-        document.getElementById('active-count').innerText = vehicles.length;
-        document.getElementById('max-speed').innerText = Math.floor(maxSpeed);
+function applyDelta(delta) {
+    if (delta.full) Object.keys(fleet).forEach(id => delete fleet[id]);
+    delta.evicted.forEach(id => delete fleet[id]); // Evictions first: a vehicle can be evicted and back again
+    delta.vehicles.forEach(v => fleet[v.vehicleId] = v);
+    fleetVersion = delta.version;
+}
 
-        // Update Chart Data
-        trafficChart.data.labels = labels;
-        trafficChart.data.datasets[0].data = dataPoints;
-        trafficChart.data.datasets[0].backgroundColor = backgroundColors;
-        trafficChart.update('none');
+function renderTraffic() {
+    const bounds = map.getBounds();
+    const vehicles = Object.values(fleet).filter(v => bounds.contains([v.latitude, v.longitude]));
+
+    let maxSpeed = 0;
+    const labels = [];
+    const dataPoints = [];
+    const backgroundColors = [];
+
+    vehicles.forEach(v => {
+        // Metrics and Map Logic
+        maxSpeed = Math.max(maxSpeed, v.speed);
+        if(markers[v.vehicleId]) { markers[v.vehicleId].setLatLng([v.latitude, v.longitude]); }
+        else { markers[v.vehicleId] = L.marker([v.latitude, v.longitude], {icon: carIcon}).addTo(map); }
+
+        // Chart Logic
+        labels.push(v.vehicleId);
+        dataPoints.push(v.speed);
+        backgroundColors.push(v.speed > 100 ? '#e74c3c' : '#3498db'); // Red if > 100 km/h
+
+        // Alert Logic (Visual Check; the live feed sends the server's real alerts)
+        if(!liveFeed && v.speed > 100 && Math.random() > 0.95) {
+            log(`⚠️ ALERT: ${v.vehicleId} speeding (${Math.floor(v.speed)} km/h)`, true);
+        }
+    });
 
-    } catch(e) { /* Server might be down - silently ignore poll failure */ }
+    // Drop markers of vehicles that left the viewport
+    const visible = new Set(vehicles.map(v => v.vehicleId));
+    Object.keys(markers).forEach(id => {
+        if (!visible.has(id)) { map.removeLayer(markers[id]); delete markers[id]; }
+    });
+
+    // Update Dashboard Stats
+    document.getElementById('active-count').innerText = vehicles.length;
+    document.getElementById('max-speed').innerText = Math.floor(maxSpeed);
+
+    // Update Chart Data
+    trafficChart.data.labels = labels;
+    trafficChart.data.datasets[0].data = dataPoints;
+    trafficChart.data.datasets[0].backgroundColor = backgroundColors;
+    trafficChart.update('none');
 }
 
 // --- CONTROL LOGIC (CORBA Bridge) ---
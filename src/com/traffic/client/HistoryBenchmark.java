@@ -0,0 +1,115 @@
+package com.traffic.client;
+
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.data.TimeSeriesHistory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * TimeSeriesHistory: bytes per point and query latency on simulated 1 Hz
+ * trajectories (timestamp jitter of +-10 ms, GPS noise of ~2 m, speed in
+ * 0.1 km/h steps, one vehicle in five parked). Checks that one vehicle's
+ * latest points decode back exactly (coordinates to 1e-7 degree); older ones
+ * may have been evicted to stay within traffic.history.maxMB.
+ *
+ * Usage: HistoryBenchmark [vehicles] [hours] [queries]
+ */
+public class HistoryBenchmark {
+
+    private static volatile Object sink; // Keeps results alive so the JIT cannot drop the work
+
+    public static void main(String[] args) throws Exception {
+        int vehicles = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int hours = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+        int seconds = hours * 3600;
+        long start = 1_700_000_000_000L;
+
+        // 1. Ingest, time-major like the pipeline sees it
+        TimeSeriesHistory history = new TimeSeriesHistory();
+        Random rand = new Random(5);
+        double[] lat = new double[vehicles], lon = new double[vehicles], heading = new double[vehicles], speed = new double[vehicles];
+        for (int v = 0; v < vehicles; v++) {
+            lat[v] = 36.7 + rand.nextDouble() * 0.2;
+            lon[v] = 10.1 + rand.nextDouble() * 0.2;
+            heading[v] = rand.nextDouble() * 2 * Math.PI;
+            speed[v] = v % 5 == 0 ? 0 : 30 + rand.nextInt(60);
+        }
+        String[] ids = new String[vehicles];
+        for (int v = 0; v < vehicles; v++) ids[v] = "BOT-" + v;
+        VehicleDetails[] probe = new VehicleDetails[Math.min(seconds, 5000)];
+
+        long t0 = System.nanoTime();
+        for (int s = 0; s < seconds; s++) {
+            for (int v = 0; v < vehicles; v++) {
+                if (speed[v] > 0) {
+                    heading[v] += rand.nextGaussian() * 0.05;
+                    speed[v] = Math.max(5, Math.min(130, speed[v] + rand.nextGaussian()));
+                    double km = speed[v] / 3600;
+                    lat[v] += km / 111.0 * Math.cos(heading[v]);
+                    lon[v] += km / 90.0 * Math.sin(heading[v]);
+                }
+                double noise = speed[v] > 0 ? 2e-5 : 0;
+                VehicleDetails report = new VehicleDetails(ids[v], lat[v] + rand.nextGaussian() * noise, lon[v] + rand.nextGaussian() * noise,
+                        Math.round(speed[v] * 10) / 10.0, start + s * 1000L + rand.nextInt(21) - 10);
+                history.saveTelemetry(report);
+                if (v == 1 && s >= seconds - probe.length) probe[s - seconds + probe.length] = report;
+            }
+        }
+        long nanos = System.nanoTime() - t0;
+        long points = (long) vehicles * seconds;
+        Map<String, Long> m = history.getMetrics();
+        double bytesPerPoint = m.get("history.sealedBytes") / (double) (m.get("history.chunks") * Integer.getInteger("traffic.history.chunkPoints", 512));
+        System.out.printf(">>> [BENCH] ingest   %,d points in %,.0f ms = %,.0f points/s%n", points, nanos / 1e6, points / (nanos / 1e9));
+        System.out.printf(">>> [BENCH] size     %.2f bytes/point sealed (raw VehicleDetails ~ 80+ bytes on the heap); %s%n", bytesPerPoint, m);
+        System.out.printf(">>> [BENCH] at this rate: 100k vehicles x 1 day at 1 Hz = %,.1f GB%n", bytesPerPoint * 100_000L * 86_400 / 1e9);
+        System.out.printf(">>> [BENCH] budget   %,d of %,d bytes held, %,d points evicted over budget%n",
+                m.get("history.bytes"), m.get("history.budgetBytes"), m.get("history.evictedOverBudget"));
+
+        // 2. Round trip for one moving vehicle
+        List<VehicleDetails> back = history.query("BOT-1", probe[0].getTimestampMillis(), probe[probe.length - 1].getTimestampMillis(), 0);
+        int kept = Math.min(back.size(), probe.length), skipped = probe.length - kept; // The oldest may be over budget
+        int mismatches = back.size() > probe.length ? back.size() - probe.length : 0;
+        for (int i = 0; i < kept; i++) {
+            VehicleDetails a = back.get(back.size() - kept + i), b = probe[skipped + i];
+            if (a.getTimestampMillis() != b.getTimestampMillis() || a.getSpeed() != b.getSpeed()
+                    || Math.round(a.getLatitude() * 1e7) != Math.round(b.getLatitude() * 1e7)
+                    || Math.round(a.getLongitude() * 1e7) != Math.round(b.getLongitude() * 1e7)) mismatches++;
+        }
+        if (kept == 0) mismatches = probe.length;
+        System.out.println(">>> [BENCH] decode   " + kept + " points checked (" + skipped + " evicted), " + mismatches
+                + " mismatches (" + (mismatches == 0 ? "OK" : "FAILED") + ")");
+
+        // 3. Query latency
+        Random pick = new Random(9);
+        time("latest 50", queries, () -> history.getHistory(ids[pick.nextInt(vehicles)]));
+        time("1 h raw", queries, () -> {
+            long from = start + pick.nextInt(Math.max(1, seconds - 3600)) * 1000L;
+            return history.query(ids[pick.nextInt(vehicles)], from, from + 3_600_000, 0);
+        });
+        time("all, 1 min step", Math.max(1, queries / 10), () -> history.query(ids[pick.nextInt(vehicles)], 0, Long.MAX_VALUE, 60_000));
+    }
+
+    private interface Query {
+        List<VehicleDetails> run();
+    }
+
+    private static void time(String name, int queries, Query query) {
+        for (int i = 0; i < queries; i++) sink = query.run(); // Warm-up
+        long[] samples = new long[queries];
+        int returned = 0;
+        for (int i = 0; i < queries; i++) {
+            long t = System.nanoTime();
+            List<VehicleDetails> result = query.run();
+            samples[i] = System.nanoTime() - t;
+            returned = result.size();
+            sink = result;
+        }
+        Arrays.sort(samples);
+        System.out.printf(">>> [BENCH] %-16s p50 %,8.1f us | p99 %,8.1f us | %,d points%n", name,
+                samples[queries / 2] / 1e3, samples[(int) (queries * 0.99)] / 1e3, returned);
+    }
+}
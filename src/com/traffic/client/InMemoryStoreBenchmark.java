@@ -0,0 +1,126 @@
+package com.traffic.client;
+
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.data.InMemoryStore;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compares the old real-time cache (ConcurrentHashMap of VehicleDetails) with the
+ * columnar InMemoryStore: retained heap, update throughput and GC activity.
+ * Every update hands over a freshly allocated VehicleDetails, as RMI deserialization does.
+ *
+ * Usage: InMemoryStoreBenchmark [rounds]   (run with e.g. -Xmx3g)
+ */
+public class InMemoryStoreBenchmark {
+
+    private static final int[] FLEET_SIZES = {100_000, 1_000_000};
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        for (int fleet : FLEET_SIZES) {
+            String[] ids = new String[fleet];
+            for (int i = 0; i < fleet; i++) ids[i] = "BOT-" + i;
+
+            System.out.println(">>> [BENCH] Fleet of " + String.format("%,d", fleet) + " vehicles, " + rounds + " update rounds");
+            runMap(ids, rounds);
+            runStore(ids, rounds);
+        }
+    }
+
+    private static void runMap(String[] ids, int rounds) {
+        Map<String, VehicleDetails> cache = new ConcurrentHashMap<>();
+        long baseline = usedHeapAfterGc();
+        GcSample gc = new GcSample();
+        long start = System.nanoTime();
+
+        Random rand = new Random(42);
+        for (int r = 0; r < rounds; r++) {
+            for (String id : ids) cache.put(id, randomReport(id, rand));
+        }
+        double seconds = gc.finish(start);
+        report("ConcurrentHashMap", ids.length * rounds / seconds, gc, usedHeapAfterGc() - baseline, cache.size());
+    }
+
+    private static void runStore(String[] ids, int rounds) {
+        InMemoryStore store = new InMemoryStore(ids.length);
+        long baseline = usedHeapAfterGc();
+        GcSample gc = new GcSample();
+        long start = System.nanoTime();
+
+        Random rand = new Random(42);
+        for (int r = 0; r < rounds; r++) {
+            for (String id : ids) store.update(randomReport(id, rand));
+        }
+        double seconds = gc.finish(start);
+        report("InMemoryStore", ids.length * rounds / seconds, gc, usedHeapAfterGc() - baseline, store.size());
+    }
+
+    private static VehicleDetails randomReport(String id, Random rand) {
+        return new VehicleDetails(id, 33 + rand.nextDouble() * 4, 9 + rand.nextDouble() * 2.5, 60 + rand.nextInt(90));
+    }
+
+    private static void report(String name, double updatesPerSecond, GcSample gc, long retainedBytes, int size) {
+        System.out.printf("   %-18s | retained %6.1f MB (%3d B/vehicle) | %,10.0f updates/s | GC %3d runs, %5d ms total, max pause ~%d ms%n",
+                name, retainedBytes / 1e6, retainedBytes / Math.max(1, size), updatesPerSecond,
+                gc.count, gc.totalMillis, gc.maxPauseMillis);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    // Collector counters over the measured section. The max pause is approximated from
+    // per-collector deltas sampled on a background thread every 10ms.
+    private static class GcSample {
+        long count, totalMillis, maxPauseMillis;
+        private final long startCount, startMillis;
+        private volatile boolean running = true;
+        private final Thread sampler;
+
+        GcSample() {
+            startCount = gcCount();
+            startMillis = gcMillis();
+            sampler = new Thread(() -> {
+                long lastMillis = gcMillis();
+                while (running) {
+                    try { Thread.sleep(10); } catch (InterruptedException e) { return; }
+                    long now = gcMillis();
+                    maxPauseMillis = Math.max(maxPauseMillis, now - lastMillis);
+                    lastMillis = now;
+                }
+            });
+            sampler.setDaemon(true);
+            sampler.start();
+        }
+
+        /** Stops sampling; returns seconds elapsed since startNanos. */
+        double finish(long startNanos) {
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            running = false;
+            try { sampler.join(); } catch (InterruptedException ignored) { }
+            count = gcCount() - startCount;
+            totalMillis = gcMillis() - startMillis;
+            return seconds;
+        }
+
+        private static long gcCount() {
+            long sum = 0;
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) sum += bean.getCollectionCount();
+            return sum;
+        }
+
+        private static long gcMillis() {
+            long sum = 0;
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) sum += bean.getCollectionTime();
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.traffic.client;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * In-process JDBC stand-in for the telemetry database, to measure the JDBC write
+ * path without PostgreSQL. It stores nothing: it counts rows and round trips and
+ * charges a network round trip for every call that would go to the server
+ * (connect, execute, executeBatch, commit), plus a small per-row server cost.
+ *
+ * URL: jdbc:standin:<roundTripMs>[:<perRowMicros>]   e.g. jdbc:standin:1:5
+ * Load it with -Djdbc.drivers=com.traffic.client.JdbcStandIn (or Class.forName).
+ */
+public class JdbcStandIn implements Driver {
+
+    private static final String PREFIX = "jdbc:standin:";
+    private static final int CONNECT_ROUND_TRIPS = 3; // TCP + startup + auth; more with TLS
+
+    public static final AtomicLong ROWS = new AtomicLong();
+    public static final AtomicLong ROUND_TRIPS = new AtomicLong();
+    public static final AtomicLong CONNECTIONS = new AtomicLong();
+
+    static {
+        try {
+            DriverManager.registerDriver(new JdbcStandIn());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) return null;
+        String[] parts = url.substring(PREFIX.length()).split(":");
+        long roundTripNanos = TimeUnit.MICROSECONDS.toNanos((long) (Double.parseDouble(parts[0]) * 1000));
+        long perRowNanos = parts.length > 1 ? TimeUnit.MICROSECONDS.toNanos(Long.parseLong(parts[1])) : 2_000;
+        CONNECTIONS.incrementAndGet();
+        for (int i = 0; i < CONNECT_ROUND_TRIPS; i++) roundTrip(roundTripNanos, 0, 0);
+        return new Session(roundTripNanos, perRowNanos).connection();
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) { return new DriverPropertyInfo[0]; }
+
+    @Override
+    public int getMajorVersion() { return 1; }
+
+    @Override
+    public int getMinorVersion() { return 0; }
+
+    @Override
+    public boolean jdbcCompliant() { return false; }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    private static void roundTrip(long roundTripNanos, int rows, long perRowNanos) {
+        ROUND_TRIPS.incrementAndGet();
+        long nanos = roundTripNanos + rows * perRowNanos;
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // One connection: JDBC interfaces are implemented with dynamic proxies, only what the repository calls does work
+    private static final class Session {
+        private final long roundTripNanos;
+        private final long perRowNanos;
+        private boolean autoCommit = true;
+        private boolean closed;
+        private long uncommitted;
+
+        Session(long roundTripNanos, long perRowNanos) {
+            this.roundTripNanos = roundTripNanos;
+            this.perRowNanos = perRowNanos;
+        }
+
+        Connection connection() {
+            return proxy(Connection.class, (p, m, a) -> {
+                switch (m.getName()) {
+                    case "prepareStatement": return statement(PreparedStatement.class);
+                    case "createStatement": return statement(Statement.class);
+                    case "setAutoCommit": autoCommit = (Boolean) a[0]; return null;
+                    case "getAutoCommit": return autoCommit;
+                    case "commit": roundTrip(roundTripNanos, 0, 0); ROWS.addAndGet(uncommitted); uncommitted = 0; return null;
+                    case "rollback": roundTrip(roundTripNanos, 0, 0); uncommitted = 0; return null;
+                    case "isValid": roundTrip(roundTripNanos, 0, 0); return !closed;
+                    case "close": closed = true; return null;
+                    case "isClosed": return closed;
+                    default: return defaultValue(m.getReturnType());
+                }
+            });
+        }
+
+        private <T extends Statement> T statement(Class<T> type) {
+            int[] batched = {0};
+            return proxy(type, (p, m, a) -> {
+                switch (m.getName()) {
+                    case "addBatch": batched[0]++; return null;
+                    case "clearBatch": batched[0] = 0; return null;
+                    case "executeBatch": {
+                        int n = batched[0];
+                        batched[0] = 0;
+                        roundTrip(roundTripNanos, n, perRowNanos);
+                        written(n);
+                        int[] counts = new int[n];
+                        Arrays.fill(counts, 1);
+                        return counts;
+                    }
+                    case "executeUpdate": roundTrip(roundTripNanos, 1, perRowNanos); written(1); return 1;
+                    case "execute": roundTrip(roundTripNanos, 0, 0); return false;
+                    case "executeQuery": roundTrip(roundTripNanos, 0, 0); return emptyResultSet();
+                    default: return defaultValue(m.getReturnType());
+                }
+            });
+        }
+
+        private void written(int rows) {
+            if (autoCommit) ROWS.addAndGet(rows);
+            else uncommitted += rows;
+        }
+
+        private static ResultSet emptyResultSet() {
+            return proxy(ResultSet.class, (p, m, a) -> defaultValue(m.getReturnType())); // next() == false
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(JdbcStandIn.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0.0;
+        if (type == float.class) return 0f;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return (char) 0;
+        return 0;
+    }
+}
@@ -0,0 +1,95 @@
+package com.traffic.client;
+
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.data.SupabaseTelemetryRepository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * JDBC telemetry write throughput, rows/sec, three ways:
+ *  - per-row:        connection per row, executeUpdate, auto-commit (the old repository)
+ *  - pooled per-row: one kept connection and statement, executeUpdate + auto-commit per row
+ *  - batched:        SupabaseTelemetryRepository as the server runs it (pool, addBatch/executeBatch,
+ *                    one commit per batch on the writer threads)
+ *
+ * Runs against the in-process JdbcStandIn by default (jdbc:standin:<roundTripMs>:<perRowMicros>);
+ * give a real URL (e.g. a local PostgreSQL with the vehicle_telemetry table) to measure that instead.
+ * Batch sizing: -Dtraffic.jdbc.writers / .batchSize / .lingerMs as on the server.
+ *
+ * Usage: JdbcWriteBenchmark [rows] [perRowRows] [url] [user] [password]
+ */
+public class JdbcWriteBenchmark {
+
+    private static final String INSERT_SQL = "INSERT INTO vehicle_telemetry (vehicle_id, latitude, longitude, speed) VALUES (?, ?, ?, ?)";
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int perRowRows = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        String url = args.length > 2 ? args[2] : "jdbc:standin:1:2";
+        String user = args.length > 3 ? args[3] : "postgres";
+        String password = args.length > 4 ? args[4] : "";
+        Class.forName(JdbcStandIn.class.getName()); // Registers the stand-in driver
+
+        VehicleDetails[] reports = new VehicleDetails[4096];
+        Random rand = new Random(17);
+        for (int i = 0; i < reports.length; i++) {
+            reports[i] = new VehicleDetails("BOT-" + i, 36.7 + rand.nextDouble() * 0.2, 10.1 + rand.nextDouble() * 0.2,
+                    40 + rand.nextDouble() * 90, 1_700_000_000_000L + i);
+        }
+        System.out.println(">>> [BENCH] " + url);
+
+        // 1. Per row, new connection each time
+        long t0 = System.nanoTime();
+        for (int i = 0; i < perRowRows; i++) {
+            try (Connection conn = DriverManager.getConnection(url, user, password);
+                 PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                bind(pstmt, reports[i % reports.length]);
+                pstmt.executeUpdate();
+            }
+        }
+        report("per-row", perRowRows, System.nanoTime() - t0);
+
+        // 2. Per row, one pooled connection and a reused statement
+        t0 = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+            for (int i = 0; i < perRowRows; i++) {
+                bind(pstmt, reports[i % reports.length]);
+                pstmt.executeUpdate();
+            }
+        }
+        report("pooled per-row", perRowRows, System.nanoTime() - t0);
+
+        // 3. Batched, through the repository (ingestion thread only queues)
+        System.setProperty("traffic.jdbc.url", url);
+        System.setProperty("traffic.jdbc.user", user);
+        System.setProperty("traffic.jdbc.password", password);
+        SupabaseTelemetryRepository repo = new SupabaseTelemetryRepository();
+        t0 = System.nanoTime();
+        for (int i = 0; i < rows; i++) repo.saveTelemetry(reports[i % reports.length]);
+        long queued = System.nanoTime() - t0;
+        Map<String, Long> metrics;
+        while ((metrics = repo.getMetrics()).get("jdbc.written") + metrics.get("jdbc.dropped") < rows) Thread.sleep(5);
+        report("batched", rows, System.nanoTime() - t0);
+        System.out.printf(">>> [BENCH] batched: ingestion thread spent %.1f ms queuing, %s%n", queued / 1e6, metrics);
+        if (url.startsWith("jdbc:standin:")) {
+            System.out.printf(">>> [BENCH] stand-in: %,d rows committed, %,d round trips, %,d connections%n",
+                    JdbcStandIn.ROWS.get(), JdbcStandIn.ROUND_TRIPS.get(), JdbcStandIn.CONNECTIONS.get());
+        }
+    }
+
+    private static void bind(PreparedStatement pstmt, VehicleDetails data) throws Exception {
+        pstmt.setString(1, data.getVehicleId());
+        pstmt.setDouble(2, data.getLatitude());
+        pstmt.setDouble(3, data.getLongitude());
+        pstmt.setDouble(4, data.getSpeed());
+    }
+
+    private static void report(String mode, int rows, long nanos) {
+        System.out.printf(">>> [BENCH] %-15s %,9d rows in %,8.1f ms = %,10.0f rows/s%n", mode, rows, nanos / 1e6, rows / (nanos / 1e9));
+    }
+}
@@ -0,0 +1,128 @@
+package com.traffic.client;
+
+import com.traffic.common.models.TrafficAlert;
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.core.server.JmsAlertProducer;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+
+import javax.jms.Connection;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * JmsAlertProducer against an embedded, in-VM ActiveMQ broker (no network, no
+ * persistence), in alerts/s accepted by the broker:
+ *  1. the old way: connection, session and producer per alert;
+ *  2. the long-lived producer, one alert per send and in transacted batches,
+ *     plus what publish() costs the calling (ingestion) thread;
+ *  3. a broker restart while alerts keep coming: the producer reconnects and
+ *     nothing published after the restart is lost.
+ * Every run is drained from the queue and checked for missing alerts.
+ *
+ * Usage: JmsAlertBenchmark [alerts]
+ */
+public class JmsAlertBenchmark {
+
+    private static final String URL = "vm://bench?create=false";
+    private static final String QUEUE = "TRAFFIC_ALERTS_QUEUE";
+
+    public static void main(String[] args) throws Exception {
+        int alerts = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        System.setProperty("traffic.jms.queueCapacity", String.valueOf(alerts)); // Measure the broker side, not drops
+        System.setProperty("traffic.jms.reconnectMs", "200");
+        TrafficAlert[] samples = new TrafficAlert[alerts];
+        for (int i = 0; i < alerts; i++) {
+            samples[i] = new TrafficAlert(i + 1, "SPEEDING", new VehicleDetails("BOT-" + (i % 5000), 36.8, 10.18, 91 + i % 60,
+                    1_700_000_000_000L + i));
+        }
+        BrokerService broker = startBroker();
+
+        // 1. Old way: everything per alert
+        int oldCount = Math.min(alerts, 2_000);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < oldCount; i++) {
+            Connection connection = new ActiveMQConnectionFactory(URL).createConnection();
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageProducer producer = session.createProducer(session.createQueue(QUEUE));
+            producer.send(session.createTextMessage("ALERT: Vehicle " + samples[i].getVehicleId() + " is speeding"));
+            connection.close();
+        }
+        System.out.printf(">>> [BENCH] per-alert connection   %,10.0f alerts/s (%,d alerts)%n", oldCount / ((System.nanoTime() - t0) / 1e9), oldCount);
+        drain(-1);
+
+        // 2. Long-lived producer
+        for (int batch : new int[] {1, 50}) {
+            System.setProperty("traffic.jms.batchSize", String.valueOf(batch));
+            JmsAlertProducer producer = new JmsAlertProducer(URL);
+            t0 = System.nanoTime();
+            for (TrafficAlert alert : samples) producer.publish(alert);
+            long publishNanos = System.nanoTime() - t0;
+            waitForSent(producer, alerts);
+            double seconds = (System.nanoTime() - t0) / 1e9;
+            producer.close(5_000);
+            System.out.printf(">>> [BENCH] %-22s %,10.0f alerts/s | publish() %,.0f ns per alert on the caller | %s | %s%n",
+                    batch == 1 ? "pooled, one per send" : "pooled, batches of " + batch, alerts / seconds,
+                    publishNanos / (double) alerts, producer.getMetrics(), check(drain(alerts), alerts));
+        }
+
+        // 3. Broker restart in the middle of a stream
+        System.setProperty("traffic.jms.batchSize", "50");
+        JmsAlertProducer producer = new JmsAlertProducer(URL);
+        int half = Math.min(alerts, 10_000) / 2;
+        for (int i = 0; i < half; i++) producer.publish(samples[i]);
+        waitForSent(producer, half);
+        System.out.println(">>> [BENCH] before restart: " + check(drain(half), half));
+        broker.stop();
+        broker.waitUntilStopped();
+        for (int i = half; i < 2 * half; i++) producer.publish(samples[i]); // Queued while the broker is down
+        Thread.sleep(1_000);
+        broker = startBroker();
+        waitForSent(producer, 2 * half);
+        producer.close(5_000);
+        System.out.println(">>> [BENCH] after restart:  " + check(drain(half), half) + " | " + producer.getMetrics());
+        broker.stop();
+    }
+
+    private static BrokerService startBroker() throws Exception {
+        BrokerService broker = new BrokerService();
+        broker.setBrokerName("bench");
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.start();
+        broker.waitUntilStarted();
+        return broker;
+    }
+
+    private static void waitForSent(JmsAlertProducer producer, long expected) throws InterruptedException {
+        while (producer.getMetrics().get("jms.sent") < expected) Thread.sleep(1);
+    }
+
+    // Reads the queue until `expected` distinct alerts arrived (or it stays empty for a second). -1: just empty it
+    private static int[] drain(int expected) throws Exception {
+        Connection connection = new ActiveMQConnectionFactory(URL).createConnection();
+        connection.start();
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(session.createQueue(QUEUE));
+        Set<String> unique = new HashSet<>();
+        int received = 0;
+        Message m;
+        while ((expected < 0 || unique.size() < expected) && (m = consumer.receive(1_000)) != null) {
+            received++;
+            String id = m.getStringProperty("alertId");
+            if (id != null) unique.add(id);
+        }
+        connection.close();
+        return new int[] {received, unique.size()};
+    }
+
+    private static String check(int[] drained, int expected) {
+        return String.format("%,d received, %,d distinct: %s", drained[0], drained[1], drained[1] == expected ? "OK" : "MISSING " + (expected - drained[1]));
+    }
+}
@@ -0,0 +1,94 @@
+package com.traffic.client;
+
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.gateway.JsonCodecs;
+import com.traffic.gateway.JsonUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Gateway JSON cost, old vs new, on the two hot paths:
+ *  - telemetry parse: one /api/report body into a VehicleDetails
+ *    (JsonUtils.parseJson + Double.parseDouble vs JsonCodecs.readReport);
+ *  - dashboard serialization: the whole fleet to UTF-8 bytes
+ *    (JsonUtils.toJson + getBytes vs JsonCodecs.writeVehicles).
+ * Also checks that both produce the same dashboard bytes.
+ *
+ * Usage: JsonCodecBenchmark [fleetSize] [reports] [rounds]
+ */
+public class JsonCodecBenchmark {
+
+    private static volatile Object sink; // Keeps results alive so the JIT cannot drop the work
+
+    public static void main(String[] args) throws Exception {
+        int fleet = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int reports = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        // 1. Inputs: report bodies as the swarm simulator sends them, and a fleet to serialize
+        Random rand = new Random(11);
+        byte[][] bodies = new byte[1024][];
+        for (int i = 0; i < bodies.length; i++) {
+            bodies[i] = ("{\"vehicleId\": \"BOT-" + i + "\", \"lat\": " + (36.7 + rand.nextDouble() * 0.2)
+                    + ", \"lon\": " + (10.1 + rand.nextDouble() * 0.2) + ", \"speed\": " + (40 + rand.nextInt(90))
+                    + ", \"timestamp\": " + (1_700_000_000_000L + i) + "}").getBytes(StandardCharsets.UTF_8);
+        }
+        List<VehicleDetails> vehicles = new ArrayList<>(fleet);
+        for (int i = 0; i < fleet; i++) {
+            vehicles.add(new VehicleDetails("BOT-" + i, 36.7 + rand.nextDouble() * 0.2, 10.1 + rand.nextDouble() * 0.2,
+                    i % 3 == 0 ? 40 + rand.nextInt(90) : 40 + rand.nextDouble() * 90, 1_700_000_000_000L + i));
+        }
+
+        // 2. Correctness: same bytes for the dashboard, same values for a report
+        byte[] legacy = JsonUtils.toJson(vehicles).getBytes(StandardCharsets.UTF_8);
+        byte[] codec = JsonCodecs.toBytes(json -> JsonCodecs.writeVehicles(json, vehicles));
+        VehicleDetails a = parseLegacy(bodies[0]);
+        VehicleDetails b = JsonCodecs.readReport(new ByteArrayInputStream(bodies[0]));
+        if (!Arrays.equals(legacy, codec) || a.getLatitude() != b.getLatitude() || a.getLongitude() != b.getLongitude()
+                || a.getSpeed() != b.getSpeed() || a.getTimestampMillis() != b.getTimestampMillis()) {
+            System.out.println(">>> [BENCH] MISMATCH between JsonUtils and JsonCodecs");
+            return;
+        }
+        System.out.println(">>> [BENCH] Output identical (" + String.format("%,d", codec.length) + " bytes for "
+                + String.format("%,d", fleet) + " vehicles)");
+
+        // 3. Rounds (the first ones double as warm-up; the best round is reported)
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int r = 0; r < rounds; r++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < reports; i++) sink = parseLegacy(bodies[i & 1023]);
+            long t1 = System.nanoTime();
+            for (int i = 0; i < reports; i++) sink = JsonCodecs.readReport(new ByteArrayInputStream(bodies[i & 1023]));
+            long t2 = System.nanoTime();
+            for (int i = 0; i < 10; i++) sink = JsonUtils.toJson(vehicles).getBytes(StandardCharsets.UTF_8);
+            long t3 = System.nanoTime();
+            for (int i = 0; i < 10; i++) sink = JsonCodecs.toBytes(json -> JsonCodecs.writeVehicles(json, vehicles));
+            long t4 = System.nanoTime();
+            best[0] = Math.min(best[0], (t1 - t0) / reports);
+            best[1] = Math.min(best[1], (t2 - t1) / reports);
+            best[2] = Math.min(best[2], (t3 - t2) / 10);
+            best[3] = Math.min(best[3], (t4 - t3) / 10);
+        }
+
+        System.out.printf("   %-28s | JsonUtils %9.2f us | JsonCodecs %9.2f us | x%.1f%n", "parse report",
+                best[0] / 1e3, best[1] / 1e3, (double) best[0] / best[1]);
+        System.out.printf("   %-28s | JsonUtils %9.2f ms | JsonCodecs %9.2f ms | x%.1f%n", "serialize " + fleet + " vehicles",
+                best[2] / 1e6, best[3] / 1e6, (double) best[2] / best[3]);
+    }
+
+    // What the telemetry handler used to do
+    private static VehicleDetails parseLegacy(byte[] body) {
+        Map<String, Object> data = JsonUtils.parseJson(new String(body, StandardCharsets.UTF_8));
+        return new VehicleDetails(String.valueOf(data.get("vehicleId")),
+                Double.parseDouble(String.valueOf(data.get("lat"))),
+                Double.parseDouble(String.valueOf(data.get("lon"))),
+                Double.parseDouble(String.valueOf(data.get("speed"))),
+                Long.parseLong(String.valueOf(data.get("timestamp"))));
+    }
+}
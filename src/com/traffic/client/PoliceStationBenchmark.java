@@ -0,0 +1,108 @@
+package com.traffic.client;
+
+import com.traffic.common.models.TrafficAlert;
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.core.server.JmsAlertListener;
+import com.traffic.core.server.JmsAlertProducer;
+import com.traffic.data.FinesStore;
+import org.apache.activemq.broker.BrokerService;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * The police station (JmsAlertListener + FinesStore) against an embedded, in-VM
+ * ActiveMQ broker, in fines/s recorded durably:
+ *  1. a backlog of alerts (one in twenty sent twice, as after a producer resend)
+ *     drained by one consumer committing every message, then by one and several
+ *     consumers committing in batches;
+ *  2. the station is stopped in the middle of a backlog and a new one is started
+ *     on the same fines directory: uncommitted alerts are redelivered and the
+ *     ones already on record are skipped.
+ * Every run checks that each alert became exactly one fine.
+ *
+ * Usage: PoliceStationBenchmark [alerts]
+ */
+public class PoliceStationBenchmark {
+
+    private static final String URL = "vm://police?create=false";
+
+    public static void main(String[] args) throws Exception {
+        int alerts = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        System.setProperty("traffic.jms.queueCapacity", String.valueOf(alerts * 2));
+        System.setProperty("traffic.jms.reconnectMs", "200");
+        BrokerService broker = new BrokerService();
+        broker.setBrokerName("police");
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.start();
+        broker.waitUntilStarted();
+
+        // 1. Backlog, drained with different consumer counts and batch sizes
+        int[][] configs = {{1, 1}, {1, 100}, {4, 100}, {8, 100}}; // consumers, batchSize
+        for (int[] config : configs) {
+            enqueue(alerts);
+            System.setProperty("traffic.police.consumers", String.valueOf(config[0]));
+            System.setProperty("traffic.police.batchSize", String.valueOf(config[1]));
+            System.setProperty("traffic.police.prefetch", String.valueOf(Math.max(10, config[1] * 2)));
+            File dir = Files.createTempDirectory("fines").toFile();
+            FinesStore fines = new FinesStore(dir);
+            JmsAlertListener station = new JmsAlertListener(URL, fines);
+            long t0 = System.nanoTime();
+            station.startListening();
+            waitForFines(fines, alerts, 60_000);
+            double seconds = (System.nanoTime() - t0) / 1e9;
+            station.close(5_000);
+            System.out.printf(">>> [BENCH] %d consumer(s), batches of %-3d %,9.0f fines/s | %s | %s%n", config[0], config[1],
+                    fines.count() / seconds, station.getMetrics(), fines.count() == alerts ? "OK" : "FAILED, " + fines.count() + " fines");
+            fines.close();
+            TelemetryLogBenchmark.deleteRecursively(dir);
+        }
+
+        // 2. Stop half way, restart on the same directory
+        System.setProperty("traffic.police.consumers", "4");
+        System.setProperty("traffic.police.batchSize", "100");
+        enqueue(alerts);
+        File dir = Files.createTempDirectory("fines").toFile();
+        FinesStore fines = new FinesStore(dir);
+        JmsAlertListener station = new JmsAlertListener(URL, fines);
+        station.startListening();
+        waitForFines(fines, alerts / 2, 60_000);
+        station.close(0); // Batches in progress are not committed: the broker redelivers them
+        fines.close();
+        FinesStore reopened = new FinesStore(dir);
+        JmsAlertListener restarted = new JmsAlertListener(URL, reopened);
+        restarted.startListening();
+        waitForFines(reopened, alerts, 60_000);
+        Thread.sleep(500); // Let stragglers arrive, if any: they must all be duplicates
+        restarted.close(5_000);
+        System.out.println(">>> [BENCH] restart: " + restarted.getMetrics() + " | "
+                + (reopened.count() == alerts ? "OK, every alert fined once" : "FAILED, " + reopened.count() + " fines"));
+        reopened.close();
+        TelemetryLogBenchmark.deleteRecursively(dir);
+        broker.stop();
+    }
+
+    // Queues `alerts` distinct alerts on the broker, every twentieth one twice
+    private static void enqueue(int alerts) throws InterruptedException {
+        JmsAlertProducer producer = new JmsAlertProducer(URL);
+        long base = System.currentTimeMillis();
+        int published = 0;
+        for (int i = 0; i < alerts; i++) {
+            TrafficAlert alert = new TrafficAlert(i, "SPEEDING", new VehicleDetails("BOT-" + (i % 5000), 36.8, 10.18, 91 + i % 60, base + i));
+            producer.publish(alert);
+            published++;
+            if (i % 20 == 0) {
+                producer.publish(alert);
+                published++;
+            }
+        }
+        while (producer.getMetrics().get("jms.sent") < published) Thread.sleep(1);
+        producer.close(5_000);
+    }
+
+    private static void waitForFines(FinesStore fines, long expected, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (fines.count() < expected && System.currentTimeMillis() < deadline) Thread.sleep(1);
+    }
+}
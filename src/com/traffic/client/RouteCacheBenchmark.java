@@ -0,0 +1,84 @@
+package com.traffic.client;
+
+import com.traffic.core.services.RouteOptimizer;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * RouteOptimizer's route cache, offline:
+ *  1. 1,000 threads ask for Tunis -> Sousse at the same instant: one Dijkstra run;
+ *  2. random city pairs, uncached (a new optimizer with a one-route cache that
+ *     the pairs keep evicting) versus cached, in routes/s;
+ *  3. a road gets congested: the next answer takes the new costs into account.
+ *
+ * Usage: RouteCacheBenchmark [requests]
+ */
+public class RouteCacheBenchmark {
+
+    private static final String[] CITIES = {"Tunis", "Ben Arous", "Ariana", "Hammamet", "Sousse", "Nabeul",
+            "Sfax", "Monastir", "Gabes", "Zaghouan", "Kairouan"};
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+        // 1. Thundering herd on a cold cache
+        RouteOptimizer router = new RouteOptimizer();
+        int herd = 1_000;
+        CountDownLatch ready = new CountDownLatch(herd);
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] threads = new Thread[herd];
+        List<?>[] answers = new List<?>[herd];
+        for (int i = 0; i < herd; i++) {
+            int n = i;
+            threads[i] = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                answers[n] = router.findShortestPath("Tunis", "Sousse");
+            });
+            threads[i].start();
+        }
+        ready.await();
+        go.countDown();
+        for (Thread t : threads) t.join();
+        boolean same = true;
+        for (List<?> answer : answers) same &= answer == answers[0];
+        long computed = router.getMetrics().get("route.computations");
+        System.out.println(">>> [BENCH] herd     " + herd + " concurrent requests, " + computed + " computation(s), "
+                + (same ? "one shared answer " + answers[0] : "DIFFERENT answers") + " | " + (computed == 1 && same ? "OK" : "FAILED"));
+
+        // 2. Uncached versus cached
+        for (int round = 0; round < 2; round++) { // First round warms up the JIT
+            long uncached = run(new RouteOptimizer(1), requests);
+            RouteOptimizer cached = new RouteOptimizer();
+            long hot = run(cached, requests);
+            if (round == 1) {
+                System.out.printf(">>> [BENCH] uncached %,12.0f routes/s%n", requests / (uncached / 1e9));
+                System.out.printf(">>> [BENCH] cached   %,12.0f routes/s | %s%n", requests / (hot / 1e9), cached.getMetrics());
+            }
+        }
+
+        // 3. Congestion on the coast road
+        List<String> before = router.findShortestPath("Tunis", "Sousse");
+        router.updateRoadCost("Ben Arous", "Hammamet", 400);
+        List<String> after = router.findShortestPath("Tunis", "Sousse");
+        System.out.println(">>> [BENCH] update   " + before + " -> " + after + " | " + router.getMetrics() + " | "
+                + (!before.equals(after) && after.contains("Kairouan") ? "OK" : "FAILED"));
+    }
+
+    private static long run(RouteOptimizer router, int requests) {
+        Random rand = new Random(5);
+        long t0 = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < requests; i++) {
+            sink += router.findShortestPath(CITIES[rand.nextInt(CITIES.length)], CITIES[rand.nextInt(CITIES.length)]).size();
+        }
+        if (sink == 42) System.out.println(); // Keep the results alive
+        return System.nanoTime() - t0;
+    }
+}
@@ -0,0 +1,120 @@
+package com.traffic.client;
+
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.core.services.ViolationRuleEngine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ViolationRuleEngine, offline:
+ *  1. scripted vehicles, each checked for the alerts it must (and must not) raise:
+ *     one-report spikes, sustained speeding (one alert, then suppressed), a braking
+ *     glitch versus a real stop, stopped after highway driving versus in town;
+ *  2. throughput: a noisy fleet reporting every second, split over threads by
+ *     vehicle the way the pipeline partitions it, in reports/s.
+ *
+ * Usage: RuleEngineBenchmark [vehicles] [reportsPerVehicle] [threads]
+ */
+public class RuleEngineBenchmark {
+
+    private static final long T0 = 1_699_999_980_000L; // On a minute, so average windows close at 60 s, 120 s...
+
+    public static void main(String[] args) throws Exception {
+        int vehicles = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int reports = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        // 1. Scenarios: speeds one second apart
+        boolean ok = true;
+        ok &= scenario("spikes only", "", concat(speeds(30, 85), speeds(93, 85, 85, 95, 85, 85, 98, 85)));
+        ok &= scenario("speeding for 2 min", "SPEEDING,AVERAGE_SPEEDING", speeds(120, 105));
+        ok &= scenario("braking glitch", "", concat(speeds(10, 100), speeds(1, 20), speeds(10, 100)));
+        ok &= scenario("hard stop", "HARSH_BRAKING", concat(speeds(10, 100), speeds(1, 60), speeds(10, 55)));
+        ok &= scenario("stopped on highway", "STATIONARY_ON_HIGHWAY",
+                concat(speeds(60, 85), speeds(75, 65, 55, 45, 35, 25, 15, 5), speeds(150, 0)));
+        ok &= scenario("stopped in town", "", concat(speeds(60, 50), speeds(40, 30, 20, 10), speeds(150, 0)));
+        double[] pulse = concat(speeds(9, 120), speeds(1, 80)); // Never 10 s over the limit in a row
+        ok &= scenario("average over limit", "AVERAGE_SPEEDING", concat(pulse, pulse, pulse, pulse, pulse, pulse, pulse, pulse));
+        System.out.println(">>> [BENCH] scenarios " + (ok ? "OK" : "FAILED"));
+
+        // 2. Throughput: GPS speed noise around a per-vehicle cruise speed, with the odd stop
+        Random rand = new Random(11);
+        VehicleDetails[][] feed = new VehicleDetails[threads][];
+        List<List<VehicleDetails>> byThread = new ArrayList<>();
+        for (int t = 0; t < threads; t++) byThread.add(new ArrayList<>());
+        for (int v = 0; v < vehicles; v++) {
+            String id = "BOT-" + v;
+            double cruise = 30 + rand.nextInt(100);
+            for (int r = 0; r < reports; r++) {
+                double speed = rand.nextInt(50) == 0 ? 0 : Math.max(0, cruise + rand.nextGaussian() * 3);
+                byThread.get(v % threads).add(new VehicleDetails(id, 36.8, 10.18, speed, T0 + r * 1000L));
+            }
+        }
+        for (int t = 0; t < threads; t++) feed[t] = byThread.get(t).toArray(new VehicleDetails[0]);
+        byThread.clear();
+
+        for (int round = 0; round < 3; round++) { // First rounds warm up the JIT
+            ViolationRuleEngine engine = new ViolationRuleEngine();
+            AtomicLong alerts = new AtomicLong();
+            Thread[] workers = new Thread[threads];
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                VehicleDetails[] mine = feed[t];
+                workers[t] = new Thread(() -> {
+                    long n = 0;
+                    for (VehicleDetails d : mine) n += Integer.bitCount(engine.evaluate(d));
+                    alerts.addAndGet(n);
+                });
+                workers[t].start();
+            }
+            for (Thread w : workers) w.join();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(">>> [BENCH] round %d: %,d reports on %d thread(s) in %.2f s = %,.0f reports/s, %,d alerts | %s%n",
+                    round + 1, (long) vehicles * reports, threads, seconds, vehicles * (double) reports / seconds,
+                    alerts.get(), engine.getMetrics());
+        }
+    }
+
+    // Feeds one vehicle's speeds and compares the alert types raised with the expected ones
+    private static boolean scenario(String name, String expected, double[] speeds) {
+        ViolationRuleEngine engine = new ViolationRuleEngine();
+        StringBuilder raised = new StringBuilder();
+        for (int i = 0; i < speeds.length; i++) {
+            int bits = engine.evaluate(new VehicleDetails("CAR-1", 36.8, 10.18, speeds[i], T0 + i * 1000L));
+            for (; bits != 0; bits &= bits - 1) {
+                if (raised.length() > 0) raised.append(',');
+                raised.append(engine.ruleType(Integer.numberOfTrailingZeros(bits)));
+            }
+        }
+        boolean ok = expected.contentEquals(raised);
+        System.out.printf(">>> [BENCH] %-20s %-24s %s%n", name, raised.length() == 0 ? "(no alert)" : raised,
+                ok ? "OK" : "FAILED, expected " + (expected.isEmpty() ? "none" : expected));
+        return ok;
+    }
+
+    private static double[] speeds(double... values) {
+        return values;
+    }
+
+    private static double[] speeds(int count, double speed) {
+        double[] values = new double[count];
+        Arrays.fill(values, speed);
+        return values;
+    }
+
+    private static double[] concat(double[]... parts) {
+        int n = 0;
+        for (double[] p : parts) n += p.length;
+        double[] all = new double[n];
+        int at = 0;
+        for (double[] p : parts) {
+            System.arraycopy(p, 0, all, at, p.length);
+            at += p.length;
+        }
+        return all;
+    }
+}
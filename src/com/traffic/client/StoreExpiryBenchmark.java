@@ -0,0 +1,90 @@
+package com.traffic.client;
+
+import com.traffic.common.models.VehicleDelta;
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.data.InMemoryStore;
+
+import java.util.Random;
+
+/**
+ * InMemoryStore idle expiry and the capacity cap, offline:
+ *  1. a fleet keeps reporting while a tenth of it goes silent; expireIdle() runs
+ *     on a fixed interval and each pass is timed against one full slot scan
+ *     (what a pass over the whole fleet would cost at least);
+ *  2. delta readers get the expired vehicles as evicted;
+ *  3. at capacity, new vehicles push out the least recently heard ones.
+ * Uses the wall clock (the store stamps arrival time), so it runs for a few TTLs.
+ *
+ * Usage: StoreExpiryBenchmark [fleet] [ttlMs]
+ */
+public class StoreExpiryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int fleet = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        long ttl = args.length > 1 ? Long.parseLong(args[1]) : 3_000;
+        long interval = ttl / 6;
+        String[] ids = new String[fleet];
+        for (int i = 0; i < fleet; i++) ids[i] = "BOT-" + i;
+        Random rand = new Random(3);
+
+        // 1. Everyone reports, then one vehicle in ten stops
+        InMemoryStore store = new InMemoryStore(fleet, 0.01, ttl);
+        for (String id : ids) store.update(report(id, rand));
+        long version = store.changesSince(0, null).getVersion();
+        long silentSince = System.currentTimeMillis();
+        int expired = 0;
+        long worstNanos = 0, totalNanos = 0;
+        int passes = 0;
+        while (System.currentTimeMillis() - silentSince < ttl * 2) {
+            long roundStart = System.currentTimeMillis();
+            for (int i = 0; i < fleet; i++) {
+                if (i % 10 != 0) store.update(report(ids[i], rand));
+            }
+            Thread.sleep(Math.max(0, interval - (System.currentTimeMillis() - roundStart)));
+            long t0 = System.nanoTime();
+            int n = store.expireIdle(System.currentTimeMillis());
+            long nanos = System.nanoTime() - t0;
+            expired += n;
+            totalNanos += nanos;
+            worstNanos = Math.max(worstNanos, nanos);
+            passes++;
+            System.out.printf(">>> [BENCH] pass %2d: %,7d expired in %,8.2f ms%n", passes, n, nanos / 1e6);
+        }
+        long t0 = System.nanoTime();
+        int scanned = store.snapshot().size();
+        long scanNanos = System.nanoTime() - t0;
+        System.out.printf(">>> [BENCH] expiry   %,d of %,d expected expired in %d passes, avg %,.2f ms, worst %,.2f ms | full scan of %,d vehicles %,.2f ms | %s%n",
+                expired, fleet / 10, passes, totalNanos / 1e6 / passes, worstNanos / 1e6, scanned, scanNanos / 1e6,
+                expired == fleet / 10 && store.size() == fleet - fleet / 10 ? "OK" : "FAILED");
+
+        // 2. Delta readers see them go
+        VehicleDelta delta = store.changesSince(version, null);
+        System.out.println(">>> [BENCH] delta    " + (delta.isFullSnapshot() ? "full snapshot (journal overflowed)"
+                : String.format("%,d evicted", delta.getEvicted().size())));
+
+        // 3. Capacity: a tenth of the fleet is new; the vehicles heard from least recently make room
+        int cap = fleet / 2;
+        InMemoryStore capped = new InMemoryStore(cap, 0.01, ttl);
+        for (int i = 0; i < cap; i++) capped.update(report(ids[i], rand));
+        Thread.sleep(ttl / 100 + 50); // The second half lands in later wheel ticks
+        for (int i = cap / 2; i < cap; i++) capped.update(report(ids[i], rand));
+        t0 = System.nanoTime();
+        int accepted = 0;
+        for (int i = cap; i < cap + cap / 10; i++) {
+            if (capped.update(report(ids[i], rand))) accepted++;
+        }
+        long capNanos = System.nanoTime() - t0;
+        int oldestGone = 0, recentKept = 0;
+        for (int i = 0; i < cap / 2; i++) if (!capped.contains(ids[i])) oldestGone++;
+        for (int i = cap / 2; i < cap; i++) if (capped.contains(ids[i])) recentKept++;
+        System.out.printf(">>> [BENCH] capacity %,d new vehicles accepted at the cap (%,.0f ns each), size %,d / %,d; "
+                        + "%,d evicted from the stale half, %,d of %,d recent kept | %s | %s%n",
+                accepted, capNanos / (double) (cap / 10), capped.size(), cap, oldestGone, recentKept, cap / 2,
+                capped.getMetrics(), accepted == cap / 10 && oldestGone == cap / 10 && recentKept == cap / 2 ? "OK" : "FAILED");
+    }
+
+    private static VehicleDetails report(String id, Random rand) {
+        return new VehicleDetails(id, 36.7 + rand.nextDouble() * 0.2, 10.1 + rand.nextDouble() * 0.2,
+                rand.nextInt(130), System.currentTimeMillis());
+    }
+}
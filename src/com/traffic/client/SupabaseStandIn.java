@@ -0,0 +1,72 @@
+package com.traffic.client;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Supabase REST endpoint, to load- and failure-test the
+ * persistence engine without the cloud. Accepts POST /rest/v1/vehicle_telemetry
+ * with a JSON array body, counts rows, and can be made slow or flaky.
+ *
+ * Usage: SupabaseStandIn [port] [latencyMs] [failurePercent]
+ * Then start the server with -Dtraffic.supabase.url=http://localhost:<port>
+ */
+public class SupabaseStandIn {
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 54321;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        int failurePercent = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+        AtomicLong requests = new AtomicLong();
+        AtomicLong rows = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        Random rand = new Random();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/rest/v1/vehicle_telemetry", exchange -> {
+            // Count the rows (top-level objects) while reading the body
+            long count = 0;
+            int depth = 0;
+            try (InputStream in = exchange.getRequestBody()) {
+                int b;
+                while ((b = in.read()) >= 0) {
+                    if (b == '{' && depth++ == 1) count++;
+                    else if (b == '[' && depth == 0) depth = 1;
+                    else if (b == '}') depth--;
+                }
+            }
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException ignored) { }
+
+            requests.incrementAndGet();
+            if (rand.nextInt(100) < failurePercent) {
+                failed.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+            } else {
+                rows.addAndGet(count);
+                exchange.sendResponseHeaders(201, -1);
+            }
+            exchange.close();
+        });
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.start();
+        System.out.println(">>> [STAND-IN] Supabase REST stand-in on port " + port + " (" + latencyMs + " ms, "
+                + failurePercent + "% failures)");
+
+        long lastRows = 0;
+        while (true) {
+            Thread.sleep(5000);
+            long now = rows.get();
+            System.out.printf(">>> [STAND-IN] %,d rows/s | %,d requests | %,d rows total | %,d failed%n",
+                    (now - lastRows) / 5, requests.get(), now, failed.get());
+            lastRows = now;
+        }
+    }
+}
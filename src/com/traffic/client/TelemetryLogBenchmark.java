@@ -0,0 +1,97 @@
+package com.traffic.client;
+
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.data.MappedTelemetryLog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * MappedTelemetryLog, offline:
+ *  1. append throughput with the default durability window (fsync every traffic.log.syncMs);
+ *  2. restart: reopen the same directory, check every record comes back intact and in order,
+ *     and that history reads work;
+ *  3. group commit: waitForSync with many appenders, records per fsync.
+ * Deletes and recreates `dir`.
+ *
+ * Usage: TelemetryLogBenchmark [records] [threads] [dir]
+ */
+public class TelemetryLogBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        File dir = new File(args.length > 2 ? args[2] : "telemetry-log-bench");
+        if (System.getProperty("traffic.log.segmentMB") == null) System.setProperty("traffic.log.segmentMB", "16"); // Exercise rolling
+        deleteRecursively(dir);
+
+        VehicleDetails[] reports = new VehicleDetails[4096];
+        Random rand = new Random(23);
+        for (int i = 0; i < reports.length; i++) {
+            reports[i] = new VehicleDetails("BOT-" + i, 36.7 + rand.nextDouble() * 0.2, 10.1 + rand.nextDouble() * 0.2,
+                    40 + rand.nextInt(90), 1_700_000_000_000L + i);
+        }
+
+        // 1. Appends, one thread (the pipeline's persistence stage)
+        MappedTelemetryLog log = new MappedTelemetryLog(dir);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < records; i++) log.saveTelemetry(reports[i % reports.length]);
+        long nanos = System.nanoTime() - t0;
+        System.out.printf(">>> [BENCH] append   %,d records in %,.1f ms = %,.0f records/s%n", records, nanos / 1e6, records / (nanos / 1e9));
+        while (log.getMetrics().get("log.unsynced") > 0) Thread.sleep(10);
+        System.out.println(">>> [BENCH] " + log.getMetrics());
+
+        // 2. Restart and read everything back
+        MappedTelemetryLog reopened = new MappedTelemetryLog(dir);
+        List<VehicleDetails> chunk = new ArrayList<>(100_000);
+        long seq = 0;
+        int mismatches = 0;
+        t0 = System.nanoTime();
+        while (seq < reopened.size()) {
+            long from = seq;
+            seq = reopened.replay(seq, 100_000, chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                VehicleDetails a = chunk.get(i), b = reports[(int) ((from + i) % reports.length)];
+                if (!a.getVehicleId().equals(b.getVehicleId()) || a.getLatitude() != b.getLatitude()
+                        || a.getLongitude() != b.getLongitude() || a.getSpeed() != b.getSpeed()
+                        || a.getTimestampMillis() != b.getTimestampMillis()) mismatches++;
+            }
+            chunk.clear();
+        }
+        nanos = System.nanoTime() - t0;
+        System.out.printf(">>> [BENCH] replay   %,d records in %,.1f ms, %d mismatches (%s)%n", reopened.size(), nanos / 1e6,
+                mismatches, reopened.size() == records && mismatches == 0 ? "OK" : "FAILED");
+        t0 = System.nanoTime();
+        List<VehicleDetails> history = reopened.getHistory("BOT-7");
+        System.out.printf(">>> [BENCH] history  %d records for BOT-7 in %,.1f ms%n", history.size(), (System.nanoTime() - t0) / 1e6);
+
+        // 3. Group commit: every append waits for its fsync, appenders share them
+        System.setProperty("traffic.log.waitForSync", "true");
+        File syncDir = new File(dir, "sync");
+        MappedTelemetryLog durable = new MappedTelemetryLog(syncDir);
+        int perThread = Math.max(1, Math.min(records, 200_000) / threads);
+        Thread[] workers = new Thread[threads];
+        t0 = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) durable.saveTelemetry(reports[(offset + i * 7) % reports.length]);
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+        nanos = System.nanoTime() - t0;
+        long syncs = durable.getMetrics().get("log.syncs");
+        System.out.printf(">>> [BENCH] durable  %,d records, %d threads in %,.1f ms = %,.0f records/s, %,d fsyncs (%.0f records each)%n",
+                perThread * threads, threads, nanos / 1e6, perThread * threads / (nanos / 1e9), syncs, perThread * threads / (double) Math.max(1, syncs));
+        deleteRecursively(dir);
+    }
+
+    static void deleteRecursively(File f) {
+        File[] children = f.listFiles();
+        if (children != null) for (File c : children) deleteRecursively(c);
+        f.delete();
+    }
+}
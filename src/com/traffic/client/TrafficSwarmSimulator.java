@@ -1,17 +1,37 @@
 package com.traffic.client;
 
 import com.traffic.common.interfaces.ITrafficService;
+import com.traffic.common.interfaces.ITrafficService.ReportStatus;
+import com.traffic.common.models.TelemetryPacket;
 import com.traffic.common.models.VehicleDetails;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * THE SWARM: Simulates 1,000 autonomous vehicles.
  * STRESS TESTS the RMI Server and Supabase ingestion.
+ *
+ * Usage: TrafficSwarmSimulator [single|batch|udp] [batchSize] [max]
+ *   single  -> one RMI call per report (default)
+ *   batch   -> reports grouped into updateVehiclePositions() calls of batchSize
+ *   udp     -> binary probe datagrams at 10 Hz per car, batchSize records per datagram
+ *              (default 1; target -Dswarm.udp.host / -Dswarm.udp.port, localhost:9099)
+ *   max     -> no think time between sends, to measure peak throughput
+ * Add -Dswarm.dictionary=true to send dictionary keys instead of id strings in batch mode.
  */
 public class TrafficSwarmSimulator {
 
@@ -21,20 +41,57 @@ public class TrafficSwarmSimulator {
     private static final double MIN_LON = 9.00;
     private static final double MAX_LON = 11.50;
 
+    private static final int CAR_COUNT = 1000; // THE LOAD
+    private static final int SENDER_THREADS = 100; // 100 active threads handling 1000 cars
+
+    private static final SwarmStats stats = new SwarmStats();
+
     public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "single";
+        boolean udp = "udp".equalsIgnoreCase(mode);
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : udp ? 1 : 100;
+        boolean flatOut = args.length > 2 && "max".equalsIgnoreCase(args[2]);
+
+        if (udp) {
+            // No RMI: probes talk to the UDP front end directly
+            InetSocketAddress target = new InetSocketAddress(System.getProperty("swarm.udp.host", "localhost"),
+                    Integer.getInteger("swarm.udp.port", 9099));
+            System.out.println(">>> [SWARM] Launching " + CAR_COUNT + " probes over UDP to " + target + " ("
+                    + batchSize + " report(s) per datagram)...");
+            ExecutorService pool = Executors.newFixedThreadPool(SENDER_THREADS);
+            startStatsReporter();
+            int carsPerSender = (CAR_COUNT + SENDER_THREADS - 1) / SENDER_THREADS;
+            for (int first = 0; first < CAR_COUNT; first += carsPerSender) {
+                final int from = first;
+                final int to = Math.min(CAR_COUNT, first + carsPerSender);
+                pool.execute(() -> runProbeSlice(target, from, to, batchSize, flatOut));
+            }
+            return;
+        }
+
         try {
             System.out.println(">>> [SWARM] Connecting to Traffic Control...");
             Registry registry = LocateRegistry.getRegistry("localhost", 1090);
             ITrafficService engine = (ITrafficService) registry.lookup("TrafficService");
 
-            int carCount = 1000; // THE LOAD
-            ExecutorService pool = Executors.newFixedThreadPool(100); // 100 active threads handling 1000 cars
+            ExecutorService pool = Executors.newFixedThreadPool(SENDER_THREADS);
+            startStatsReporter();
 
-            System.out.println(">>> [SWARM] Launching " + carCount + " vehicles...");
-
-            for (int i = 0; i < carCount; i++) {
-                final int id = i;
-                pool.execute(() -> runCar(engine, "BOT-" + id));
+            if ("batch".equalsIgnoreCase(mode)) {
+                System.out.println(">>> [SWARM] Launching " + CAR_COUNT + " vehicles in BATCH mode (size " + batchSize + ")...");
+                // Each sender owns a slice of the fleet (at least one full batch) and ships it in bulk calls
+                int carsPerSender = Math.max(batchSize, (CAR_COUNT + SENDER_THREADS - 1) / SENDER_THREADS);
+                for (int first = 0; first < CAR_COUNT; first += carsPerSender) {
+                    final int from = first;
+                    final int to = Math.min(CAR_COUNT, first + carsPerSender);
+                    pool.execute(() -> runFleetSlice(engine, from, to, batchSize, flatOut));
+                }
+            } else {
+                System.out.println(">>> [SWARM] Launching " + CAR_COUNT + " vehicles in SINGLE mode...");
+                for (int i = 0; i < CAR_COUNT; i++) {
+                    final int id = i;
+                    pool.execute(() -> runCar(engine, "BOT-" + id, flatOut));
+                }
             }
 
         } catch (Exception e) {
@@ -42,40 +99,195 @@ public class TrafficSwarmSimulator {
         }
     }
 
-    private static void runCar(ITrafficService engine, String vehicleId) {
+    private static void runCar(ITrafficService engine, String vehicleId, boolean flatOut) {
         Random rand = new Random();
-
-        // Pick random start location in Tunisia
-        double lat = MIN_LAT + (MAX_LAT - MIN_LAT) * rand.nextDouble();
-        double lon = MIN_LON + (MAX_LON - MIN_LON) * rand.nextDouble();
-
-        // Random drift direction
-        double latDrift = (rand.nextDouble() - 0.5) * 0.001;
-        double lonDrift = (rand.nextDouble() - 0.5) * 0.001;
+        Bot bot = new Bot(vehicleId, rand);
 
         try {
             while (true) {
-                // Move
-                lat += latDrift;
-                lon += lonDrift;
-
-                // Random Speed (Mostly normal, occasional burst)
-                double speed = 60 + rand.nextInt(40); // Base 60-100
-                if (rand.nextInt(100) > 95) speed += 50; // 5% chance of SUPER SPEED (150km/h)
-
-                // Bounce off borders
-                if (lat < MIN_LAT || lat > MAX_LAT) latDrift *= -1;
-                if (lon < MIN_LON || lon > MAX_LON) lonDrift *= -1;
+                bot.move(rand);
 
                 // Send Data
                 // Note: We skip the Gateway and hit RMI directly for maximum performance
-                engine.updateVehiclePosition(new VehicleDetails(vehicleId, lat, lon, speed));
+                long start = System.nanoTime();
+                engine.updateVehiclePosition(bot.report());
+                stats.record(System.nanoTime() - start, 1);
 
                 // Sleep random time (0.5s to 2s) to desynchronize the swarm
-                Thread.sleep(500 + rand.nextInt(1500));
+                if (!flatOut) Thread.sleep(500 + rand.nextInt(1500));
             }
         } catch (Exception e) {
             System.err.println("Bot " + vehicleId + " died: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private static void runFleetSlice(ITrafficService engine, int from, int to, int batchSize, boolean flatOut) {
+        Random rand = new Random();
+        List<Bot> bots = new ArrayList<>();
+        for (int i = from; i < to; i++) bots.add(new Bot("BOT-" + i, rand));
+
+        try {
+            if (Boolean.getBoolean("swarm.dictionary")) {
+                // In chunks: the server caps ids per call. A bot left without a key (-1) sends its id string
+                for (int first = 0; first < bots.size(); first += 10_000) {
+                    List<String> ids = new ArrayList<>();
+                    for (Bot bot : bots.subList(first, Math.min(bots.size(), first + 10_000))) ids.add(bot.vehicleId);
+                    int[] keys = engine.registerVehicleIds(ids);
+                    for (int i = 0; i < keys.length; i++) bots.get(first + i).key = keys[i];
+                }
+            }
+
+            while (true) {
+                List<VehicleDetails> batch = new ArrayList<>(batchSize);
+                for (Bot bot : bots) {
+                    bot.move(rand);
+                    batch.add(bot.report());
+                    if (batch.size() == batchSize) {
+                        sendBatch(engine, batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!batch.isEmpty()) sendBatch(engine, batch);
+
+                // Same average report rate per car as the single mode (~1 report / 1.25s)
+                if (!flatOut) Thread.sleep(500 + rand.nextInt(1500));
+            }
+        } catch (Exception e) {
+            System.err.println("Fleet slice " + from + "-" + to + " died: " + e.getMessage());
+        }
+    }
+
+    private static void runProbeSlice(InetSocketAddress target, int from, int to, int perDatagram, boolean flatOut) {
+        Random rand = new Random();
+        List<Bot> bots = new ArrayList<>();
+        for (int i = from; i < to; i++) bots.add(new Bot("BOT-" + i, rand));
+        long sequence = 0; // One counter for the slice: increasing for every car in it
+        ByteBuffer datagram = ByteBuffer.allocateDirect(perDatagram * TelemetryPacket.MAX_RECORD_BYTES);
+
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.connect(target);
+            while (true) {
+                int records = 0;
+                for (Bot bot : bots) {
+                    bot.move(rand);
+                    TelemetryPacket.write(datagram, bot.report(), ++sequence);
+                    if (++records == perDatagram) {
+                        sendDatagram(channel, datagram, records);
+                        records = 0;
+                    }
+                }
+                if (records > 0) sendDatagram(channel, datagram, records);
+
+                // Probes report at ~10 Hz
+                if (!flatOut) Thread.sleep(100);
+            }
+        } catch (Exception e) {
+            System.err.println("Probe slice " + from + "-" + to + " died: " + e.getMessage());
+        }
+    }
+
+    private static void sendDatagram(DatagramChannel channel, ByteBuffer datagram, int records) throws IOException {
+        datagram.flip();
+        long start = System.nanoTime();
+        channel.write(datagram);
+        stats.record(System.nanoTime() - start, records);
+        datagram.clear();
+    }
+
+    private static void sendBatch(ITrafficService engine, List<VehicleDetails> batch) throws Exception {
+        long start = System.nanoTime();
+        ReportStatus[] status = engine.updateVehiclePositions(batch);
+        stats.record(System.nanoTime() - start, batch.size());
+
+        for (ReportStatus s : status) {
+            if (s == ReportStatus.INVALID) stats.rejected.increment();
+            else if (s == ReportStatus.OVERLOADED) stats.overloaded.increment();
+        }
+    }
+
+    private static void startStatsReporter() {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "swarm-stats");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(() -> stats.printAndReset(5), 5, 5, TimeUnit.SECONDS);
+    }
+
+    // --- A SINGLE SIMULATED CAR ---
+    private static class Bot {
+        final String vehicleId;
+        int key = -1; // Server-issued dictionary key, if registered
+        double lat, lon, latDrift, lonDrift, speed;
+
+        Bot(String vehicleId, Random rand) {
+            this.vehicleId = vehicleId;
+            // Pick random start location in Tunisia
+            this.lat = MIN_LAT + (MAX_LAT - MIN_LAT) * rand.nextDouble();
+            this.lon = MIN_LON + (MAX_LON - MIN_LON) * rand.nextDouble();
+            // Random drift direction
+            this.latDrift = (rand.nextDouble() - 0.5) * 0.001;
+            this.lonDrift = (rand.nextDouble() - 0.5) * 0.001;
+        }
+
+        void move(Random rand) {
+            lat += latDrift;
+            lon += lonDrift;
+
+            // Random Speed (Mostly normal, occasional burst)
+            speed = 60 + rand.nextInt(40); // Base 60-100
+            if (rand.nextInt(100) > 95) speed += 50; // 5% chance of SUPER SPEED (150km/h)
+
+            // Bounce off borders
+            if (lat < MIN_LAT || lat > MAX_LAT) latDrift *= -1;
+            if (lon < MIN_LON || lon > MAX_LON) lonDrift *= -1;
+        }
+
+        VehicleDetails report() {
+            VehicleDetails report = new VehicleDetails(vehicleId, lat, lon, speed);
+            return key >= 0 ? report.withVehicleKey(key) : report;
+        }
+    }
+
+    // --- THROUGHPUT & LATENCY COUNTERS ---
+    private static class SwarmStats {
+        private static final int MAX_SAMPLES = 200_000;
+
+        final LongAdder reports = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder overloaded = new LongAdder();
+        private long[] samples = new long[MAX_SAMPLES];
+        private int sampleCount = 0;
+
+        void record(long callNanos, int reportCount) {
+            reports.add(reportCount);
+            synchronized (this) {
+                if (sampleCount < MAX_SAMPLES) samples[sampleCount++] = callNanos;
+            }
+        }
+
+        void printAndReset(int periodSeconds) {
+            long[] window;
+            synchronized (this) {
+                window = Arrays.copyOf(samples, sampleCount);
+                sampleCount = 0;
+            }
+            long total = reports.sumThenReset();
+            long bad = rejected.sumThenReset();
+            long dropped = overloaded.sumThenReset();
+            if (window.length == 0) {
+                System.out.println(">>> [SWARM] No calls completed in the last " + periodSeconds + "s");
+                return;
+            }
+            Arrays.sort(window);
+            System.out.printf(">>> [SWARM] %,d reports/s | %,d calls | p50 %.2f ms | p99 %.2f ms | rejected %d | overloaded %d%n",
+                    total / periodSeconds, window.length,
+                    percentile(window, 0.50) / 1e6, percentile(window, 0.99) / 1e6, bad, dropped);
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.traffic.client;
+
+import com.traffic.common.models.TrajectoryPage;
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.data.MappedTelemetryLog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * MappedTelemetryLog.findInArea, offline: a fleet driving around three cities
+ * (Tunis, Sousse, Sfax) at 1 Hz is appended in time order, then time + area
+ * queries are paged through and compared with a brute-force replay of the
+ * whole log (same reports, same order). Prints what the zone maps let each
+ * query skip versus what it had to scan.
+ * Deletes and recreates `dir`.
+ *
+ * Usage: TrajectoryQueryBenchmark [vehicles] [hours] [dir]
+ */
+public class TrajectoryQueryBenchmark {
+
+    private static final double[][] CITIES = {{36.80, 10.18}, {35.83, 10.60}, {34.74, 10.76}};
+    private static final int PAGE = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        int vehicles = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int hours = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        File dir = new File(args.length > 2 ? args[2] : "telemetry-log-query-bench");
+        TelemetryLogBenchmark.deleteRecursively(dir);
+        int seconds = hours * 3600;
+        long start = 1_700_000_000_000L;
+
+        // 1. Fill the log, time-major like the pipeline writes it
+        MappedTelemetryLog log = new MappedTelemetryLog(dir);
+        Random rand = new Random(31);
+        double[] lat = new double[vehicles], lon = new double[vehicles], heading = new double[vehicles];
+        String[] ids = new String[vehicles];
+        for (int v = 0; v < vehicles; v++) {
+            double[] city = CITIES[v % CITIES.length];
+            lat[v] = city[0] + rand.nextGaussian() * 0.05;
+            lon[v] = city[1] + rand.nextGaussian() * 0.05;
+            heading[v] = rand.nextDouble() * 2 * Math.PI;
+            ids[v] = "BOT-" + v;
+        }
+        long t0 = System.nanoTime();
+        for (int s = 0; s < seconds; s++) {
+            for (int v = 0; v < vehicles; v++) {
+                heading[v] += rand.nextGaussian() * 0.1;
+                lat[v] += 0.00012 * Math.cos(heading[v]); // ~50 km/h
+                lon[v] += 0.00015 * Math.sin(heading[v]);
+                log.saveTelemetry(new VehicleDetails(ids[v], lat[v], lon[v], 50, start + s * 1000L + v % 1000));
+            }
+        }
+        System.out.printf(">>> [BENCH] fill     %,d records (%,d MB) in %,.0f ms%n", log.size(),
+                log.size() * MappedTelemetryLog.RECORD_BYTES >> 20, (System.nanoTime() - t0) / 1e6);
+
+        // 2. Queries
+        long mid = start + seconds / 2 * 1000L;
+        query(log, "20 min, 2 km box in Tunis", mid, mid + 1_200_000, 36.79, 10.17, 36.81, 10.19);
+        query(log, "20 min, empty area (Kairouan)", mid, mid + 1_200_000, 35.60, 10.00, 35.75, 10.15);
+        query(log, "all time, 2 km box in Sousse", 0, Long.MAX_VALUE, 35.82, 10.59, 35.84, 10.61);
+        query(log, "all time, whole country", 0, Long.MAX_VALUE, 30.0, 7.0, 38.0, 12.0);
+    }
+
+    private static void query(MappedTelemetryLog log, String name, long from, long to,
+                              double minLat, double minLon, double maxLat, double maxLon) {
+        // Paged, the way the gateway streams it
+        long t0 = System.nanoTime();
+        long cursor = 0, found = 0, checksum = 0;
+        long pages = 0, blocksScanned = 0, blocksSkipped = 0, bytesScanned = 0, bytesSkipped = 0;
+        while (cursor >= 0) {
+            TrajectoryPage page = log.findInArea(from, to, minLat, minLon, maxLat, maxLon, cursor, PAGE);
+            for (VehicleDetails v : page.getReports()) checksum = checksum * 31 + v.getTimestampMillis() + v.getVehicleId().hashCode();
+            found += page.getReports().size();
+            pages++;
+            blocksScanned += page.getBlocksScanned();
+            blocksSkipped += page.getBlocksSkipped();
+            bytesScanned += page.getBytesScanned();
+            bytesSkipped += page.getBytesSkipped();
+            cursor = page.getNextCursor();
+        }
+        long nanos = System.nanoTime() - t0;
+
+        // Brute force over a full replay
+        long t1 = System.nanoTime();
+        long expected = 0, expectedChecksum = 0;
+        List<VehicleDetails> chunk = new ArrayList<>(100_000);
+        for (long seq = 0; seq < log.size(); ) {
+            chunk.clear();
+            seq = log.replay(seq, 100_000, chunk);
+            for (VehicleDetails v : chunk) {
+                if (v.getTimestampMillis() < from || v.getTimestampMillis() > to || v.getLatitude() < minLat
+                        || v.getLatitude() > maxLat || v.getLongitude() < minLon || v.getLongitude() > maxLon) continue;
+                expectedChecksum = expectedChecksum * 31 + v.getTimestampMillis() + v.getVehicleId().hashCode();
+                expected++;
+            }
+        }
+        long fullNanos = System.nanoTime() - t1;
+
+        long total = blocksScanned + blocksSkipped;
+        System.out.printf(">>> [BENCH] %-30s %,9d reports in %,8.1f ms (%d page(s)) | blocks %,d scanned / %,d skipped (%.1f%%) | "
+                        + "%,d MB scanned / %,d MB skipped | full replay %,.0f ms | %s%n",
+                name, found, nanos / 1e6, pages, blocksScanned, blocksSkipped, total == 0 ? 0 : 100.0 * blocksSkipped / total,
+                bytesScanned >> 20, bytesSkipped >> 20, fullNanos / 1e6,
+                found == expected && checksum == expectedChecksum ? "OK" : "MISMATCH (expected " + expected + ")");
+    }
+}
@@ -0,0 +1,105 @@
+package com.traffic.client;
+
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.common.models.VehicleIdDictionary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Measures bytes per report and (de)serialization cost of VehicleDetails on the
+ * RMI wire (Java object streams), comparing the old default-serialized layout
+ * (String id + java.util.Date) with the compact Externalizable encoding.
+ *
+ * Usage: WireFormatBenchmark [iterations]
+ */
+public class WireFormatBenchmark {
+
+    private static final int BATCH = 1000;
+
+    // Field-for-field copy of the original VehicleDetails (default serialization)
+    static class LegacyVehicleDetails implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private String vehicleId;
+        private double latitude;
+        private double longitude;
+        private double speed;
+        private Date timestamp;
+
+        LegacyVehicleDetails(String vehicleId, double lat, double lon, double speed) {
+            this.vehicleId = vehicleId;
+            this.latitude = lat;
+            this.longitude = lon;
+            this.speed = speed;
+            this.timestamp = new Date();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        List<LegacyVehicleDetails> legacy = new ArrayList<>();
+        List<VehicleDetails> compact = new ArrayList<>();
+        List<VehicleDetails> keyed = new ArrayList<>();
+        for (int i = 0; i < BATCH; i++) {
+            String id = "BOT-" + i;
+            double lat = 33 + Math.random() * 4, lon = 9 + Math.random() * 2.5, speed = 60 + Math.random() * 90;
+            legacy.add(new LegacyVehicleDetails(id, lat, lon, speed));
+            compact.add(new VehicleDetails(id, lat, lon, speed));
+            keyed.add(new VehicleDetails(id, lat, lon, speed).withVehicleKey(VehicleIdDictionary.global().keyFor(id)));
+        }
+
+        // The nested legacy class has a longer name than com.traffic.common.models.VehicleDetails;
+        // remove that difference so the single-report numbers compare like for like.
+        int nameDelta = LegacyVehicleDetails.class.getName().length() - VehicleDetails.class.getName().length();
+
+        System.out.println(">>> [WIRE] Bytes on the wire (Java object stream, as used by RMI)");
+        System.out.printf("   single report  | legacy %4d B | compact %4d B | compact+key %4d B%n",
+                size(legacy.get(0)) - nameDelta, size(compact.get(0)), size(keyed.get(0)));
+        System.out.printf("   per report in a %d batch | legacy %.1f B | compact %.1f B | compact+key %.1f B%n", BATCH,
+                (size(new ArrayList<>(legacy)) - nameDelta) / (double) BATCH,
+                size(new ArrayList<>(compact)) / (double) BATCH,
+                size(new ArrayList<>(keyed)) / (double) BATCH);
+
+        // Warm up, then measure a full write + read of the batch
+        for (int i = 0; i < iterations; i++) {
+            roundTrip(new ArrayList<>(legacy));
+            roundTrip(new ArrayList<>(compact));
+        }
+        System.out.println(">>> [WIRE] Serialize + deserialize cost (" + iterations + " batches of " + BATCH + ")");
+        System.out.printf("   legacy      %6.0f ns/report%n", measure(new ArrayList<>(legacy), iterations));
+        System.out.printf("   compact     %6.0f ns/report%n", measure(new ArrayList<>(compact), iterations));
+        System.out.printf("   compact+key %6.0f ns/report%n", measure(new ArrayList<>(keyed), iterations));
+    }
+
+    private static double measure(Object batch, int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) roundTrip(batch);
+        return (System.nanoTime() - start) / (double) iterations / BATCH;
+    }
+
+    private static int size(Object o) throws IOException {
+        return serialize(o).length;
+    }
+
+    private static byte[] serialize(Object o) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object roundTrip(Object o) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialize(o)))) {
+            return in.readObject();
+        }
+    }
+}
@@ -1,27 +1,96 @@
 package com.traffic.common.interfaces;
 
+import com.traffic.common.models.FleetSnapshot;
+import com.traffic.common.models.TrafficAlert;
+import com.traffic.common.models.TrajectoryPage;
+import com.traffic.common.models.VehicleDelta;
 import com.traffic.common.models.VehicleDetails;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.List;
+import java.util.Map;
 
 public interface ITrafficService extends Remote {
 
     // --- REAL-TIME INGESTION ---
+    // Throws IngestionOverloaded if the pipeline had no room: the report was valid but not taken, retry later
     void updateVehiclePosition(VehicleDetails details) throws RemoteException;
 
+    // Ingestion is saturated (transient, unlike an invalid report). Arrives wrapped in a java.rmi.ServerException
+    class IngestionOverloaded extends RemoteException {
+        private static final long serialVersionUID = 1L;
+
+        public IngestionOverloaded(String message) { super(message); }
+    }
+
+    // Verdict on one report of a bulk call. OVERLOADED: valid but not taken (no room in the pipeline), retry later
+    enum ReportStatus { ACCEPTED, INVALID, OVERLOADED }
+
+    // Bulk variant: one RMI round-trip for many reports. result[i] is the verdict on batch[i].
+    ReportStatus[] updateVehiclePositions(List<VehicleDetails> batch) throws RemoteException;
+
+    // Dictionary keys for compact reports (see VehicleDetails.withVehicleKey). result[i] is the key of vehicleIds[i].
+    // Throws TooManyIds past traffic.dictionary.maxIdsPerCall: split the list and call again
+    int[] registerVehicleIds(List<String> vehicleIds) throws RemoteException;
+
+    // The request is over a per-call cap (permanent for that request, unlike IngestionOverloaded). Arrives wrapped in a java.rmi.ServerException
+    class TooManyIds extends RemoteException {
+        private static final long serialVersionUID = 1L;
+
+        public TooManyIds(String message) { super(message); }
+    }
+
     // --- ANALYTICS ---
+    // Whether the SPEEDING rule holds at the vehicle's latest report (over the limit for traffic.rules.sustainSeconds)
     boolean isVehicleSpeeding(String vehicleId) throws RemoteException;
 
     // --- LEGACY BRIDGE ---
     String triggerTrafficLight(String junctionId, String command) throws RemoteException;
 
     // --- DASHBOARD ---
+    // Whole fleet as of the last snapshot tick
     List<VehicleDetails> getAllVehicles() throws RemoteException;
 
+    // The published snapshot itself, and its version alone (cheap "did anything change?" check)
+    FleetSnapshot getFleetSnapshot() throws RemoteException;
+
+    long getSnapshotVersion() throws RemoteException;
+
+    // Viewport query: only the vehicles inside the bounding box
+    List<VehicleDetails> getVehiclesInArea(double minLat, double minLon, double maxLat, double maxLon) throws RemoteException;
+
+    // Incremental polling: vehicles changed or evicted since a version returned by an earlier call (0 = first poll)
+    VehicleDelta getVehicleChangesSince(long sinceVersion) throws RemoteException;
+
+    // Same, restricted to a viewport; vehicles that left it are reported as evicted
+    VehicleDelta getVehicleChangesInArea(long sinceVersion, double minLat, double minLon, double maxLat, double maxLon) throws RemoteException;
+
+    // Recent alerts numbered after sinceSequence, oldest first (0 = everything still retained)
+    List<TrafficAlert> getAlertsSince(long sinceSequence) throws RemoteException;
+
+    // --- HISTORY ---
+    // A vehicle's trajectory in [fromMillis, toMillis] (event time), oldest first; stepMillis > 0 keeps one point per step
+    List<VehicleDetails> getVehicleHistory(String vehicleId, long fromMillis, long toMillis, long stepMillis) throws RemoteException;
+
+    // Every persisted report in [fromMillis, toMillis] inside a bounding box, one page at a time (log backend only).
+    // Start with cursor 0 and pass back nextCursor until it is -1
+    TrajectoryPage findTrajectories(long fromMillis, long toMillis, double minLat, double minLon, double maxLat, double maxLon,
+                                    long cursor, int limit) throws RemoteException;
+
+    // --- PROXIMITY (Dispatch) ---
+    // The k vehicles closest to a point, closest first
+    List<VehicleDetails> findNearestVehicles(double lat, double lon, int k) throws RemoteException;
+
+    // Every vehicle within radiusKm of a point, closest first
+    List<VehicleDetails> findVehiclesWithinRadius(double lat, double lon, double radiusKm) throws RemoteException;
+
     // --- MAINTENANCE JOBS ---
+    // Expires vehicles that stopped reporting (traffic.store.ttlSeconds); returns how many are still tracked
     int performMaintenanceCleanup() throws RemoteException;
 
+    // Counters and gauges (queue depth, stage lag...) keyed by name
+    Map<String, Long> getSystemMetrics() throws RemoteException;
+
     // --- ROUTE OPTIMIZATION ---
     List<String> getOptimalRoute(String origin, String destination) throws RemoteException;
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.traffic.common.models;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The whole fleet as published by the server on its snapshot tick.
+ * Immutable: one instance is shared by every reader until the next tick,
+ * and `version` only changes when the fleet did, so it can be used as a
+ * cache key (e.g. an HTTP ETag).
+ */
+public class FleetSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long version;
+    private final long publishedAtMillis;
+    private final List<VehicleDetails> vehicles; // Unmodifiable
+
+    public FleetSnapshot(long version, long publishedAtMillis, List<VehicleDetails> vehicles) {
+        this.version = version;
+        this.publishedAtMillis = publishedAtMillis;
+        this.vehicles = vehicles;
+    }
+
+    public long getVersion() { return version; }
+    public long getPublishedAtMillis() { return publishedAtMillis; }
+    public List<VehicleDetails> getVehicles() { return vehicles; }
+}
@@ -0,0 +1,80 @@
+package com.traffic.common.models;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary UDP report format for roadside probes and on-board units.
+ * A datagram carries one or more records back to back. Big-endian, fixed layout:
+ *
+ *   offset  size  field
+ *   0       1     magic 0x54 ('T')
+ *   1       1     id length n (1..64), UTF-8 bytes
+ *   2       8     sequence number (per vehicle, increasing)
+ *   10      8     event time (epoch millis)
+ *   18      4     latitude  (degrees * 1e7, signed)
+ *   22      4     longitude (degrees * 1e7, signed)
+ *   26      2     speed     (km/h * 10, unsigned)
+ *   28      n     vehicle id
+ *
+ * So a report for "BOT-123" is 35 bytes. Coordinates keep 1 cm, speed 0.1 km/h.
+ */
+public final class TelemetryPacket {
+
+    public static final byte MAGIC = 0x54;
+    public static final int HEADER_BYTES = 28;
+    public static final int MAX_ID_BYTES = 64;
+    public static final int MAX_RECORD_BYTES = HEADER_BYTES + MAX_ID_BYTES;
+
+    private static final double COORD_SCALE = 1e7;
+    private static final double SPEED_SCALE = 10.0;
+
+    private TelemetryPacket() { }
+
+    /**
+     * Appends one record; false (nothing written) if it does not fit in `out`.
+     * The speed field is unsigned: a negative (or NaN) speed is refused here
+     * rather than sent as a wrapped, absurdly high value.
+     */
+    public static boolean write(ByteBuffer out, VehicleDetails report, long sequence) {
+        byte[] id = report.getVehicleId().getBytes(StandardCharsets.UTF_8);
+        if (id.length == 0 || id.length > MAX_ID_BYTES) throw new IllegalArgumentException("Vehicle id must be 1.." + MAX_ID_BYTES + " bytes");
+        if (!(report.getSpeed() >= 0)) throw new IllegalArgumentException("Speed must be >= 0, got " + report.getSpeed());
+        if (out.remaining() < HEADER_BYTES + id.length) return false;
+        out.put(MAGIC)
+                .put((byte) id.length)
+                .putLong(sequence)
+                .putLong(report.getTimestampMillis())
+                .putInt((int) Math.round(report.getLatitude() * COORD_SCALE))
+                .putInt((int) Math.round(report.getLongitude() * COORD_SCALE))
+                .putShort((short) Math.min(0xFFFF, Math.round(report.getSpeed() * SPEED_SCALE)))
+                .put(id);
+        return true;
+    }
+
+    /** True if a complete, well-formed record starts at the buffer's position. */
+    public static boolean hasRecord(ByteBuffer in) {
+        int p = in.position();
+        if (in.remaining() < HEADER_BYTES || in.get(p) != MAGIC) return false;
+        int idLength = in.get(p + 1) & 0xFF;
+        return idLength > 0 && idLength <= MAX_ID_BYTES && in.remaining() >= HEADER_BYTES + idLength;
+    }
+
+    /** Sequence number of the record at the buffer's position (not consumed). */
+    public static long peekSequence(ByteBuffer in) {
+        return in.getLong(in.position() + 2);
+    }
+
+    /** Reads the record at the buffer's position (check hasRecord first) and moves past it. */
+    public static VehicleDetails read(ByteBuffer in) {
+        in.get(); // Magic
+        byte[] id = new byte[in.get() & 0xFF];
+        in.getLong(); // Sequence (see peekSequence)
+        long eventTime = in.getLong();
+        double lat = in.getInt() / COORD_SCALE;
+        double lon = in.getInt() / COORD_SCALE;
+        double speed = (in.getShort() & 0xFFFF) / SPEED_SCALE;
+        in.get(id);
+        return new VehicleDetails(new String(id, StandardCharsets.UTF_8), lat, lon, speed, eventTime);
+    }
+}
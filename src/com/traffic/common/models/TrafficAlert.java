@@ -0,0 +1,46 @@
+package com.traffic.common.models;
+
+import java.io.Serializable;
+
+/**
+ * A violation raised by the server (e.g. speeding), as shown on live dashboards.
+ * Alerts are numbered in the order they were raised, so clients can ask
+ * for the ones after the last sequence number they have seen.
+ */
+public class TrafficAlert implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long sequence;
+    private final String type;
+    private final String vehicleId;
+    private final double latitude;
+    private final double longitude;
+    private final double speed;
+    private final long timestamp; // Event time of the offending report (epoch millis)
+
+    public TrafficAlert(long sequence, String type, VehicleDetails details) {
+        this.sequence = sequence;
+        this.type = type;
+        this.vehicleId = details.getVehicleId();
+        this.latitude = details.getLatitude();
+        this.longitude = details.getLongitude();
+        this.speed = details.getSpeed();
+        this.timestamp = details.getTimestampMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "Alert#" + sequence + "[" + type + "] " + vehicleId + " at " + speed + " km/h";
+    }
+
+    /** Stable across resends and restarts (unlike the sequence): what consumers dedupe on. */
+    public String getAlertId() { return type + ":" + vehicleId + "@" + timestamp; }
+
+    public long getSequence() { return sequence; }
+    public String getType() { return type; }
+    public String getVehicleId() { return vehicleId; }
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    public double getSpeed() { return speed; }
+    public long getTimestampMillis() { return timestamp; }
+}
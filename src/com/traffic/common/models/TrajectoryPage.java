@@ -0,0 +1,43 @@
+package com.traffic.common.models;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One page of a historical time + area query (reports in log order).
+ * Pass `nextCursor` back to get the next page; -1 means the scan is complete.
+ * A page may be empty but not final when its scan budget ran out before a match.
+ *
+ * The counters describe this page's scan: blocks (and bytes) ruled out by
+ * their zone maps without being read, versus blocks read record by record.
+ */
+public class TrajectoryPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<VehicleDetails> reports;
+    private final long nextCursor;
+    private final long blocksScanned;
+    private final long blocksSkipped;
+    private final long recordsScanned;
+    private final long bytesScanned;
+    private final long bytesSkipped;
+
+    public TrajectoryPage(List<VehicleDetails> reports, long nextCursor, long blocksScanned, long blocksSkipped,
+                          long recordsScanned, long bytesScanned, long bytesSkipped) {
+        this.reports = reports;
+        this.nextCursor = nextCursor;
+        this.blocksScanned = blocksScanned;
+        this.blocksSkipped = blocksSkipped;
+        this.recordsScanned = recordsScanned;
+        this.bytesScanned = bytesScanned;
+        this.bytesSkipped = bytesSkipped;
+    }
+
+    public List<VehicleDetails> getReports() { return reports; }
+    public long getNextCursor() { return nextCursor; }
+    public long getBlocksScanned() { return blocksScanned; }
+    public long getBlocksSkipped() { return blocksSkipped; }
+    public long getRecordsScanned() { return recordsScanned; }
+    public long getBytesScanned() { return bytesScanned; }
+    public long getBytesSkipped() { return bytesSkipped; }
+}
@@ -0,0 +1,35 @@
+package com.traffic.common.models;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Changes to the real-time vehicle state since a client's last known version.
+ * The client keeps `version` and passes it back on its next poll.
+ *
+ * When `fullSnapshot` is set (first poll, server restart, or the client fell
+ * too far behind) `vehicles` is the complete state and the client should
+ * replace, not merge. Otherwise `vehicles` holds the changed vehicles and
+ * `evicted` the ids to drop. Drop the evicted ids first, then apply `vehicles`:
+ * a vehicle removed and re-registered in between appears in both.
+ */
+public class VehicleDelta implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long version;
+    private final boolean fullSnapshot;
+    private final List<VehicleDetails> vehicles;
+    private final List<String> evicted;
+
+    public VehicleDelta(long version, boolean fullSnapshot, List<VehicleDetails> vehicles, List<String> evicted) {
+        this.version = version;
+        this.fullSnapshot = fullSnapshot;
+        this.vehicles = vehicles;
+        this.evicted = evicted;
+    }
+
+    public long getVersion() { return version; }
+    public boolean isFullSnapshot() { return fullSnapshot; }
+    public List<VehicleDetails> getVehicles() { return vehicles; }
+    public List<String> getEvicted() { return evicted; }
+}
@@ -1,27 +1,48 @@
 package com.traffic.common.models;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 /**
  * Represents a snapshot of a vehicle's status.
- * Must implement Serializable to be sent via RMI.
+ * Sent via RMI with a hand-written compact encoding (see writeExternal):
+ * epoch-millis event time instead of a java.util.Date, and optionally a
+ * dictionary key instead of the vehicle id string (see VehicleIdDictionary).
  */
-public class VehicleDetails implements Serializable {
-    private static final long serialVersionUID = 1L;
+public class VehicleDetails implements Externalizable {
+    private static final long serialVersionUID = 2L;
+
+    // Wire flags
+    private static final int FLAG_KEYED_ID = 1;
+
+    /** Longest vehicle id accepted anywhere, in UTF-8 bytes (the wire format itself stops at 65,535). */
+    public static final int MAX_ID_BYTES = 128;
 
     private String vehicleId;
     private double latitude;
     private double longitude;
     private double speed;
-    private Date timestamp;
+    private long timestamp; // Event time (epoch millis), set by the reporting client
+    private transient int vehicleKey = -1; // Dictionary key, -1 = send the id string
+
+    /** Required by Externalizable. */
+    public VehicleDetails() {
+    }
 
     public VehicleDetails(String vehicleId, double lat, double lon, double speed) {
+        this(vehicleId, lat, lon, speed, System.currentTimeMillis());
+    }
+
+    public VehicleDetails(String vehicleId, double lat, double lon, double speed, long eventTimeMillis) {
         this.vehicleId = vehicleId;
         this.latitude = lat;
         this.longitude = lon;
         this.speed = speed;
-        this.timestamp = new Date();
+        this.timestamp = eventTimeMillis;
     }
 
     @Override
@@ -29,6 +50,66 @@ public class VehicleDetails implements Serializable {
         return "Vehicle[" + vehicleId + "] @ " + latitude + "," + longitude + " Speed: " + speed + "km/h";
     }
 
+    /**
+     * Whether an id can be ingested: not blank, at most MAX_ID_BYTES in UTF-8, no control characters.
+     * Checked before a report is sent on, so one bad id cannot fail the bulk call carrying it.
+     */
+    public static boolean isValidId(String vehicleId) {
+        if (vehicleId == null || vehicleId.trim().isEmpty() || vehicleId.length() > MAX_ID_BYTES) return false;
+        for (int i = 0; i < vehicleId.length(); i++) {
+            if (Character.isISOControl(vehicleId.charAt(i))) return false;
+        }
+        return vehicleId.length() * 3 <= MAX_ID_BYTES || vehicleId.getBytes(StandardCharsets.UTF_8).length <= MAX_ID_BYTES;
+    }
+
+    // --- COMPACT WIRE FORMAT ---
+    // [flags:1][id: UTF string | key: varint][eventTime:8][lat:8][lon:8][speed:8]
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        boolean keyed = vehicleKey >= 0;
+        out.writeByte(keyed ? FLAG_KEYED_ID : 0);
+        if (keyed) writeVarInt(out, vehicleKey);
+        else out.writeUTF(vehicleId);
+        out.writeLong(timestamp);
+        out.writeDouble(latitude);
+        out.writeDouble(longitude);
+        out.writeDouble(speed);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        int flags = in.readUnsignedByte();
+        if ((flags & FLAG_KEYED_ID) != 0) {
+            // Keys are only meaningful to the JVM that issued them; unknown keys leave the id null (rejected on ingest)
+            vehicleId = VehicleIdDictionary.global().idFor(readVarInt(in));
+        } else {
+            vehicleId = in.readUTF();
+        }
+        timestamp = in.readLong();
+        latitude = in.readDouble();
+        longitude = in.readDouble();
+        speed = in.readDouble();
+    }
+
+    private static void writeVarInt(ObjectOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ObjectInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed vehicle key");
+    }
+
     // --- GETTERS (Required for Database/Supabase Logic) ---
     public String getVehicleId() { return vehicleId; }
 
@@ -38,5 +119,16 @@ public class VehicleDetails implements Serializable {
 
     public double getLongitude() { return longitude; }
 
-    public Date getTimestamp() { return timestamp; }
-}
\ No newline at end of file
+    public Date getTimestamp() { return new Date(timestamp); }
+
+    public long getTimestampMillis() { return timestamp; }
+
+    /**
+     * Send this report with a key obtained from ITrafficService.registerVehicleIds
+     * instead of the id string. Returns this for chaining.
+     */
+    public VehicleDetails withVehicleKey(int key) {
+        this.vehicleKey = key;
+        return this;
+    }
+}
@@ -0,0 +1,64 @@
+package com.traffic.common.models;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps vehicle id strings to small integer keys (and back).
+ * The server owns the dictionary: clients ask it for keys once via
+ * ITrafficService.registerVehicleIds and then send 1-3 byte keys
+ * instead of the id string on every report.
+ *
+ * Keys are never reused, so the dictionary only grows: past maxIds it stops
+ * issuing keys and keyFor answers -1 (send the id string, which always works).
+ *
+ * Config: traffic.dictionary.maxIds (1000000)
+ */
+public class VehicleIdDictionary {
+
+    private static final VehicleIdDictionary GLOBAL = new VehicleIdDictionary();
+
+    private final int maxIds = Math.max(0, Integer.getInteger("traffic.dictionary.maxIds", 1_000_000));
+    private final Map<String, Integer> keys = new ConcurrentHashMap<>();
+    private volatile String[] ids = new String[1024];
+    private int size = 0; // Guarded by this
+
+    public static VehicleIdDictionary global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the key for this id, assigning the next free one on first sight,
+     * or -1 for a null or blank id and once the dictionary is full.
+     */
+    public int keyFor(String vehicleId) {
+        if (vehicleId == null || vehicleId.trim().isEmpty()) return -1;
+        Integer key = keys.get(vehicleId);
+        if (key != null) return key;
+
+        synchronized (this) {
+            key = keys.get(vehicleId);
+            if (key != null) return key;
+            if (size >= maxIds) return -1;
+
+            String[] table = ids;
+            if (size == table.length) table = Arrays.copyOf(table, (int) Math.min((long) table.length * 2, maxIds));
+            table[size] = vehicleId;
+            ids = table; // Volatile write publishes the new entry to lock-free readers
+            keys.put(vehicleId, size);
+            return size++;
+        }
+    }
+
+    /** Returns the id for a key, or null if this JVM never issued it. */
+    public String idFor(int key) {
+        String[] table = ids;
+        return key >= 0 && key < table.length ? table[key] : null;
+    }
+
+    /** Keys issued so far. */
+    public synchronized int size() {
+        return size;
+    }
+}
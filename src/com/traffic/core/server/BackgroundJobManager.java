@@ -1,6 +1,7 @@
 package com.traffic.core.server;
 
 import com.traffic.common.interfaces.ITrafficService;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -25,6 +26,10 @@ public class BackgroundJobManager {
                 System.out.println(">>> [JOB] Running Scheduled Archival & Health Check...");
                 int vehicleCount = trafficService.performMaintenanceCleanup();
                 System.out.println(">>> [JOB] System Health: " + vehicleCount + " active vehicles tracking.");
+
+                Map<String, Long> metrics = trafficService.getSystemMetrics();
+                System.out.println(">>> [JOB] Ingestion Queue: " + metrics.get("pipeline.queueDepth")
+                        + " pending, " + metrics.get("pipeline.rejected") + " rejected (overload).");
             } catch (Exception e) {
                 System.err.println(">>> [JOB] Error during maintenance: " + e.getMessage());
             }
@@ -1,37 +1,329 @@
 package com.traffic.core.server;
 
+import com.traffic.common.models.TrafficAlert;
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.data.FinesStore;
 import org.apache.activemq.ActiveMQConnectionFactory;
 import javax.jms.*;
 
-public class JmsAlertListener implements MessageListener {
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * POLICE STATION (ActiveMQ Consumers -> Fines Store)
+ *
+ * A few consumer threads share one Connection, each with its own transacted
+ * Session on the alerts queue. A consumer takes what has arrived (up to
+ * batchSize, waiting at most lingerMs for more), records the batch in the
+ * FinesStore and only then commits the session, which acknowledges the whole
+ * batch at once. If the store fails the session is rolled back and the broker
+ * redelivers; if the connection fails it is reopened with backoff (outside the
+ * connection lock, as in JmsAlertProducer, whose tcp:// default URL it shares).
+ * Either way an alert may arrive twice, and the store skips it by alertId.
+ *
+ * Prefetch: the broker pushes up to `prefetch` messages ahead to each consumer.
+ * Around two batches keeps every consumer busy without one of them hoarding
+ * the queue while the others idle.
+ *
+ * Metrics: received, fined (new), duplicates, malformed, batches, rollbacks,
+ * throughput over the last second, and lag (enqueue-to-commit time) of the
+ * latest batch and worst over the last minute. Reading them changes nothing.
+ *
+ * Config: traffic.jms.url, traffic.jms.queue, traffic.jms.reconnectMs (shared with the producer),
+ *         traffic.police.consumers (4), traffic.police.prefetch (200), traffic.police.batchSize (100),
+ *         traffic.police.lingerMs (20)
+ */
+public class JmsAlertListener {
+
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final int LAG_WINDOW_SECONDS = 60;
+
+    private final ActiveMQConnectionFactory factory;
+    private final FinesStore fines;
+    private final String subject;
+    private final int consumerCount;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long reconnectMillis;
+    private final List<Thread> consumers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    // Shared connection, guarded by connectionLock; null until opened or after a failure
+    private final Object connectionLock = new Object();
+    private Connection connection;
+    private boolean closed; // Guarded by connectionLock: no new connection is kept after close()
+
+    // Metrics
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong fined = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rollbacks = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final long[] lagSecond = new long[LAG_WINDOW_SECONDS]; // Guarded by this: worst lag per second, ring by second
+    private final long[] maxLagInSecond = new long[LAG_WINDOW_SECONDS];
+    private long rateSecond; // Guarded by this: current second and what was received in it / the one before
+    private long rateCount;
+    private long lastRate;
+
+    public JmsAlertListener(FinesStore fines) {
+        this(System.getProperty("traffic.jms.url", JmsAlertProducer.DEFAULT_URL), fines);
+    }
+
+    public JmsAlertListener(String url, FinesStore fines) {
+        this.factory = new ActiveMQConnectionFactory(url);
+        this.fines = fines;
+        this.subject = System.getProperty("traffic.jms.queue", "TRAFFIC_ALERTS_QUEUE");
+        this.consumerCount = Math.max(1, Integer.getInteger("traffic.police.consumers", 4));
+        this.batchSize = Math.max(1, Integer.getInteger("traffic.police.batchSize", 100));
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("traffic.police.lingerMs", 20));
+        this.reconnectMillis = Math.max(1, Long.getLong("traffic.jms.reconnectMs", 1000));
+        factory.getPrefetchPolicy().setQueuePrefetch(Math.max(1, Integer.getInteger("traffic.police.prefetch", 200)));
+    }
+
+    /** Starts the consumers; they connect in the background and keep retrying while the broker is away. */
     public void startListening() {
-        try {
-            ConnectionFactory connectionFactory = new ActiveMQConnectionFactory(ActiveMQConnectionFactory.DEFAULT_BROKER_URL);
-            Connection connection = connectionFactory.createConnection();
-            connection.start();
+        for (int i = 0; i < consumerCount; i++) {
+            Thread t = new Thread(this::consumeLoop, "police-consumer-" + i);
+            t.setDaemon(true);
+            t.start();
+            consumers.add(t);
+        }
+        System.out.println(">>> [JMS LISTENER] Police Station Listening for Alerts: " + consumerCount
+                + " consumer(s), batches of up to " + batchSize);
+    }
 
-            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            Destination destination = session.createQueue("TRAFFIC_ALERTS_QUEUE");
-            MessageConsumer consumer = session.createConsumer(destination);
+    /** Stops the consumers (waiting at most timeoutMs for batches in progress), then disconnects. */
+    public void close(long timeoutMs) throws InterruptedException {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Thread t : consumers) {
+            t.join(Math.max(1, deadline - System.currentTimeMillis()));
+            t.interrupt();
+        }
+        synchronized (connectionLock) {
+            closed = true;
+            closeQuietly(connection);
+            connection = null;
+        }
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("police.consumers", (long) consumerCount);
+        metrics.put("police.received", received.get());
+        metrics.put("police.fined", fined.get());
+        metrics.put("police.malformed", malformed.get());
+        metrics.put("police.batches", batches.get());
+        metrics.put("police.rollbacks", rollbacks.get());
+        metrics.put("police.connects", connects.get());
+        metrics.put("police.perSecond", rate(0));
+        metrics.put("police.lagMs", lagMillis.get());
+        metrics.put("police.maxLagMs", maxLag());
+        metrics.putAll(fines.getMetrics());
+        return metrics;
+    }
+
+    // --- CONSUMERS ---
+
+    // One consumer thread: its own transacted session, a batch per commit
+    private void consumeLoop() {
+        Connection owner = null;
+        Session session = null;
+        MessageConsumer consumer = null;
+        List<Message> batch = new ArrayList<>(batchSize);
+        List<TrafficAlert> alerts = new ArrayList<>(batchSize);
+        long backoff = reconnectMillis;
+
+        while (running) {
+            try {
+                // 1. (Re)open the session if there is none yet or its connection was dropped meanwhile
+                Connection current = currentConnection();
+                if (session == null || owner != current) {
+                    closeQuietly(session);
+                    owner = current;
+                    session = owner.createSession(true, Session.SESSION_TRANSACTED);
+                    consumer = session.createConsumer(session.createQueue(subject));
+                }
+
+                // 2. Take a batch
+                batch.clear();
+                if (!fillBatch(consumer, batch)) continue;
+                alerts.clear();
+                for (Message m : batch) {
+                    TrafficAlert alert = toAlert(m);
+                    if (alert != null) alerts.add(alert);
+                }
 
-            consumer.setMessageListener(this);
-            System.out.println(">>> [JMS LISTENER] Police Station Listening for Alerts...");
-        } catch (Exception e) {
-            e.printStackTrace();
+                // 3. Durable first, then acknowledge; a failed write goes back to the broker
+                int recorded;
+                try {
+                    recorded = fines.record(alerts, System.currentTimeMillis());
+                } catch (IOException e) {
+                    rollbacks.incrementAndGet();
+                    System.err.println("!!! [POLICE] Cannot record fines, " + batch.size() + " alert(s) returned to the queue: " + e);
+                    session.rollback();
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+                    continue;
+                }
+                session.commit();
+                backoff = reconnectMillis;
+                completed(batch, recorded, alerts.isEmpty() ? null : alerts.get(0));
+            } catch (InterruptedException e) {
+                break; // close() timed out
+            } catch (JMSException | RuntimeException e) {
+                // 4. Uncommitted messages are redelivered to whichever consumer reconnects first
+                rollbacks.incrementAndGet();
+                System.err.println("[JMS ERROR] Police station lost the broker: " + e.getMessage() + " (retrying in " + backoff + " ms)");
+                closeQuietly(session);
+                session = null;
+                connectionFailed(owner);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
         }
+        closeQuietly(session);
     }
 
-    @Override
-    public void onMessage(Message message) {
-        try {
-            if (message instanceof TextMessage) {
-                TextMessage textMessage = (TextMessage) message;
-                System.out.println("!!! [POLICE STATION RECEIVED] " + textMessage.getText());
-                // Here we could save to a different 'fines' database
+    // Waits for the first message, then lingers briefly for more. False if nothing arrived
+    private boolean fillBatch(MessageConsumer consumer, List<Message> batch) throws JMSException {
+        Message first = consumer.receive(100);
+        if (first == null) return false;
+        batch.add(first);
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < batchSize) {
+            long wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (wait <= 0) break;
+            Message next = consumer.receive(wait);
+            if (next == null) break;
+            batch.add(next);
+        }
+        return true;
+    }
+
+    // Properties set by JmsAlertProducer; null for anything else (acknowledged and counted, never a fine)
+    private TrafficAlert toAlert(Message m) throws JMSException {
+        String type = m.getStringProperty("type");
+        String vehicleId = m.getStringProperty("vehicleId");
+        if (m.getStringProperty("alertId") == null || type == null || vehicleId == null) {
+            malformed.incrementAndGet();
+            if (m instanceof TextMessage) System.out.println("!!! [POLICE STATION RECEIVED] " + ((TextMessage) m).getText());
+            return null;
+        }
+        return new TrafficAlert(0, type, new VehicleDetails(vehicleId, m.getDoubleProperty("latitude"),
+                m.getDoubleProperty("longitude"), m.getDoubleProperty("speed"), m.getLongProperty("timestamp")));
+    }
+
+    private void completed(List<Message> batch, int recorded, TrafficAlert sample) throws JMSException {
+        received.addAndGet(batch.size());
+        fined.addAndGet(recorded);
+        batches.incrementAndGet();
+        long lag = Math.max(0, System.currentTimeMillis() - batch.get(0).getJMSTimestamp()); // Oldest in the batch
+        lagMillis.set(lag);
+        lag(lag);
+        rate(batch.size());
+        if (recorded > 0 && sample != null) {
+            System.out.println("!!! [POLICE STATION RECEIVED] " + sample + (recorded > 1 ? " (+" + (recorded - 1) + " more)" : ""));
+        }
+    }
+
+    // Keeps the worst lag of the current second in its ring slot
+    private synchronized void lag(long millis) {
+        long second = System.currentTimeMillis() / 1000;
+        int slot = (int) (second % LAG_WINDOW_SECONDS);
+        if (lagSecond[slot] != second) {
+            lagSecond[slot] = second;
+            maxLagInSecond[slot] = 0;
+        }
+        maxLagInSecond[slot] = Math.max(maxLagInSecond[slot], millis);
+    }
+
+    // Worst lag over the last LAG_WINDOW_SECONDS, from slots not yet overwritten by a later lap
+    private synchronized long maxLag() {
+        long since = System.currentTimeMillis() / 1000 - LAG_WINDOW_SECONDS;
+        long max = 0;
+        for (int i = 0; i < LAG_WINDOW_SECONDS; i++) {
+            if (lagSecond[i] > since) max = Math.max(max, maxLagInSecond[i]);
+        }
+        return max;
+    }
+
+    // Adds to the current second; returns the count of the last complete one
+    private synchronized long rate(int count) {
+        long second = System.currentTimeMillis() / 1000;
+        if (second != rateSecond) {
+            lastRate = second == rateSecond + 1 ? rateCount : 0;
+            rateSecond = second;
+            rateCount = 0;
+        }
+        rateCount += count;
+        return lastRate;
+    }
+
+    // --- CONNECTION ---
+
+    // The shared connection, opened by the first consumer that finds none (see JmsAlertProducer)
+    private Connection currentConnection() throws JMSException {
+        synchronized (connectionLock) {
+            if (connection != null) return connection;
+        }
+        Connection fresh = connect(); // Outside the lock
+        Connection winner;
+        synchronized (connectionLock) {
+            if (connection == null && !closed) {
+                connection = fresh;
+                connects.incrementAndGet();
+                System.out.println(">>> [JMS LISTENER] Connected to the broker (connection #" + connects.get() + ")");
+                return fresh;
             }
+            winner = connection;
+        }
+        closeQuietly(fresh); // Another consumer got there first, or we are closing
+        if (winner == null) throw new JMSException("Police station closed");
+        return winner;
+    }
+
+    private Connection connect() throws JMSException {
+        Connection c = factory.createConnection();
+        try {
+            c.setExceptionListener(e -> {
+                System.err.println("[JMS ERROR] Police station connection lost: " + e.getMessage());
+                connectionFailed(c);
+            });
+            c.start();
         } catch (JMSException e) {
-            e.printStackTrace();
+            closeQuietly(c);
+            throw e;
+        }
+        return c;
+    }
+
+    // Forgets the connection if it is still the current one; the next receive opens a new one
+    private void connectionFailed(Connection failed) {
+        if (failed == null) return;
+        synchronized (connectionLock) {
+            if (connection == failed) connection = null;
+        }
+        closeQuietly(failed);
+    }
+
+    private static void closeQuietly(AutoCloseable resource) {
+        if (resource == null) return;
+        try {
+            resource.close();
+        } catch (Exception ignored) {
+            // Already broken
         }
     }
-}
\ No newline at end of file
+}
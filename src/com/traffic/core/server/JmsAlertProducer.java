@@ -1,35 +1,277 @@
 package com.traffic.core.server;
 
+import com.traffic.common.models.TrafficAlert;
 import org.apache.activemq.ActiveMQConnectionFactory;
 import javax.jms.*;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ALERT PRODUCER (ActiveMQ, Long-Lived and Asynchronous)
+ *
+ * publish() only puts the alert on a bounded outbound queue, so the ingestion
+ * pipeline never waits on the broker. When the queue is full the alert is
+ * dropped and counted (live feeds still get it from AlertHistory).
+ *
+ * A few sender threads drain the queue, each with its own Session and
+ * MessageProducer on one shared Connection, opened on first use. With
+ * batchSize > 1 the sessions are transacted: what queued up (up to batchSize,
+ * waiting at most lingerMs for more) is sent and committed together, one
+ * broker round trip per batch instead of one per alert.
+ *
+ * When a send fails or the connection reports an exception, the connection is
+ * dropped and reopened with backoff (reconnectMs, doubling up to 30 s) and the
+ * batch in flight is sent again. A batch whose commit reached the broker but
+ * whose reply was lost is delivered twice: consumers dedupe on `alertId`.
+ * Reconnecting is ours, so the default URL is a plain tcp:// one. A failover:
+ * URL needs maxReconnectAttempts (and timeout) set, or it retries forever
+ * inside the send and this backoff never runs. Connections are opened outside
+ * the connection lock: a broker that is slow to answer holds up one thread only.
+ *
+ * Message: a text line per alert type (the speeding one is what police stations
+ * have always received), plus the properties alertId (type:vehicleId@timestamp,
+ * as one report can raise several types), type, vehicleId, speed, latitude,
+ * longitude and timestamp.
+ *
+ * Config: traffic.jms.url (tcp://localhost:61616), traffic.jms.queue (TRAFFIC_ALERTS_QUEUE),
+ *         traffic.jms.senders (2), traffic.jms.queueCapacity (10000), traffic.jms.batchSize (50),
+ *         traffic.jms.lingerMs (5), traffic.jms.reconnectMs (1000)
+ */
 public class JmsAlertProducer {
 
-    private static String url = ActiveMQConnectionFactory.DEFAULT_BROKER_URL;
-    private static String subject = "TRAFFIC_ALERTS_QUEUE";
+    /** Plain TCP: reconnection is handled here (and in JmsAlertListener), not by the failover transport. */
+    public static final String DEFAULT_URL = "tcp://localhost:61616";
 
-    public void sendSpeedingAlert(String vehicleId, double speed) {
-        try {
-            // 1. Connect to ActiveMQ
-            ConnectionFactory connectionFactory = new ActiveMQConnectionFactory(url);
-            Connection connection = connectionFactory.createConnection();
-            connection.start();
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final ConnectionFactory factory;
+    private final String subject;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long reconnectMillis;
+    private final BlockingQueue<TrafficAlert> outbound;
+    private final List<Thread> senders = new ArrayList<>();
+    private volatile boolean running = true;
+
+    // Shared connection, guarded by connectionLock; null until opened or after a failure
+    private final Object connectionLock = new Object();
+    private Connection connection;
+    private boolean closed; // Guarded by connectionLock: no new connection is kept after close()
+
+    // Metrics
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+
+    public JmsAlertProducer() {
+        this(System.getProperty("traffic.jms.url", DEFAULT_URL));
+    }
+
+    public JmsAlertProducer(String url) {
+        this.factory = new ActiveMQConnectionFactory(url);
+        this.subject = System.getProperty("traffic.jms.queue", "TRAFFIC_ALERTS_QUEUE");
+        this.batchSize = Math.max(1, Integer.getInteger("traffic.jms.batchSize", 50));
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("traffic.jms.lingerMs", 5));
+        this.reconnectMillis = Math.max(1, Long.getLong("traffic.jms.reconnectMs", 1000));
+        this.outbound = new ArrayBlockingQueue<>(Integer.getInteger("traffic.jms.queueCapacity", 10_000));
+
+        int threads = Math.max(1, Integer.getInteger("traffic.jms.senders", 2));
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(this::sendLoop, "jms-sender-" + i);
+            t.setDaemon(true);
+            t.start();
+            senders.add(t);
+        }
+        System.out.println(">>> [JMS] Alert producer for " + url + ": " + threads + " sender(s), "
+                + (batchSize > 1 ? "transacted batches of up to " + batchSize : "one alert per send"));
+    }
+
+    /** Queues an alert for the broker without waiting. False if the outbound queue is full (alert dropped). */
+    public boolean publish(TrafficAlert alert) {
+        if (outbound.offer(alert)) return true;
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /** Stops the senders after they have sent what is queued (waiting at most timeoutMs), then disconnects. */
+    public void close(long timeoutMs) throws InterruptedException {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Thread t : senders) {
+            t.join(Math.max(1, deadline - System.currentTimeMillis()));
+            t.interrupt();
+        }
+        synchronized (connectionLock) {
+            closed = true;
+            closeQuietly(connection);
+            connection = null;
+        }
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("jms.queued", (long) outbound.size());
+        metrics.put("jms.sent", sent.get());
+        metrics.put("jms.batches", batches.get());
+        metrics.put("jms.dropped", dropped.get());
+        metrics.put("jms.failures", failures.get());
+        metrics.put("jms.connects", connects.get());
+        return metrics;
+    }
+
+    // --- SENDERS ---
+
+    // One sender thread: its own session and producer, a batch at a time
+    private void sendLoop() {
+        Connection owner = null;
+        Session session = null;
+        MessageProducer producer = null;
+        List<TrafficAlert> batch = new ArrayList<>(batchSize);
+        long backoff = reconnectMillis;
+
+        while (running || !batch.isEmpty() || !outbound.isEmpty()) {
+            try {
+                if (batch.isEmpty() && !fillBatch(batch)) continue;
 
-            // 2. Create Session
-            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            Destination destination = session.createQueue(subject);
-            MessageProducer producer = session.createProducer(destination);
+                // 1. (Re)open the session if there is none yet or its connection was dropped meanwhile
+                Connection current = currentConnection();
+                if (session == null || owner != current) {
+                    closeQuietly(session);
+                    owner = current;
+                    session = owner.createSession(batchSize > 1, batchSize > 1 ? Session.SESSION_TRANSACTED : Session.AUTO_ACKNOWLEDGE);
+                    producer = session.createProducer(session.createQueue(subject));
+                }
 
-            // 3. Create Text Message
-            TextMessage message = session.createTextMessage("ALERT: Vehicle " + vehicleId + " is speeding at " + speed + " km/h!");
+                // 2. Send; a transacted batch becomes visible at the commit
+                for (TrafficAlert alert : batch) producer.send(toMessage(session, alert));
+                if (batchSize > 1) session.commit();
+                sent.addAndGet(batch.size());
+                batches.incrementAndGet();
+                batch.clear();
+                backoff = reconnectMillis;
+            } catch (InterruptedException e) {
+                break; // close() timed out
+            } catch (JMSException | RuntimeException e) {
+                // 3. Drop the connection (every sender reopens on the next one) and retry the batch after a pause
+                failures.incrementAndGet();
+                System.err.println("[JMS ERROR] Is ActiveMQ running? " + e.getMessage() + " (" + batch.size()
+                        + " alert(s) will be resent in " + backoff + " ms)");
+                closeQuietly(session);
+                session = null;
+                connectionFailed(owner);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+        closeQuietly(session);
+    }
+
+    // Waits for the first alert, then lingers briefly for more. False if nothing arrived
+    private boolean fillBatch(List<TrafficAlert> batch) throws InterruptedException {
+        TrafficAlert first = outbound.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) return false;
+        batch.add(first);
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < batchSize) {
+            outbound.drainTo(batch, batchSize - batch.size());
+            long wait = deadline - System.nanoTime();
+            if (batch.size() == batchSize || wait <= 0) break;
+            TrafficAlert next = outbound.poll(wait, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+        }
+        return true;
+    }
+
+    private static Message toMessage(Session session, TrafficAlert alert) throws JMSException {
+        TextMessage message = session.createTextMessage(describe(alert));
+        message.setStringProperty("alertId", alert.getAlertId());
+        message.setStringProperty("type", alert.getType());
+        message.setStringProperty("vehicleId", alert.getVehicleId());
+        message.setDoubleProperty("speed", alert.getSpeed());
+        message.setDoubleProperty("latitude", alert.getLatitude());
+        message.setDoubleProperty("longitude", alert.getLongitude());
+        message.setLongProperty("timestamp", alert.getTimestampMillis());
+        return message;
+    }
+
+    private static String describe(TrafficAlert alert) {
+        String vehicle = "ALERT: Vehicle " + alert.getVehicleId();
+        switch (alert.getType()) {
+            case "SPEEDING": return vehicle + " is speeding at " + alert.getSpeed() + " km/h!";
+            case "AVERAGE_SPEEDING": return vehicle + " averaged over the limit, now at " + alert.getSpeed() + " km/h!";
+            case "HARSH_BRAKING": return vehicle + " braked harshly down to " + alert.getSpeed() + " km/h!";
+            case "STATIONARY_ON_HIGHWAY": return vehicle + " is stopped after highway driving!";
+            default: return vehicle + ": " + alert.getType() + " at " + alert.getSpeed() + " km/h!";
+        }
+    }
+
+    // --- CONNECTION ---
 
-            // 4. Send
-            producer.send(message);
-            System.out.println(">>> [JMS] Sent Speeding Alert for " + vehicleId);
+    // The shared connection, opened by the first sender that finds none (the others keep theirs or wait for it)
+    private Connection currentConnection() throws JMSException {
+        synchronized (connectionLock) {
+            if (connection != null) return connection;
+        }
+        Connection fresh = connect(); // Outside the lock: close() and the other senders are not held up
+        Connection winner;
+        synchronized (connectionLock) {
+            if (connection == null && !closed) {
+                connection = fresh;
+                connects.incrementAndGet();
+                System.out.println(">>> [JMS] Connected to the broker (connection #" + connects.get() + ")");
+                return fresh;
+            }
+            winner = connection;
+        }
+        closeQuietly(fresh); // Another sender got there first, or we are closing
+        if (winner == null) throw new JMSException("Producer closed");
+        return winner;
+    }
 
-            connection.close();
-        } catch (Exception e) {
-            System.err.println("[JMS ERROR] Is ActiveMQ running? " + e.getMessage());
+    private Connection connect() throws JMSException {
+        Connection c = factory.createConnection();
+        try {
+            c.setExceptionListener(e -> {
+                System.err.println("[JMS ERROR] Connection lost: " + e.getMessage());
+                connectionFailed(c);
+            });
+            c.start();
+        } catch (JMSException e) {
+            closeQuietly(c);
+            throw e;
+        }
+        return c;
+    }
+
+    // Forgets the connection if it is still the current one; the next send opens a new one
+    private void connectionFailed(Connection failed) {
+        if (failed == null) return;
+        synchronized (connectionLock) {
+            if (connection == failed) connection = null;
+        }
+        closeQuietly(failed);
+    }
+
+    private static void closeQuietly(AutoCloseable resource) {
+        if (resource == null) return;
+        try {
+            resource.close();
+        } catch (Exception ignored) {
+            // Already broken
         }
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,9 @@
 package com.traffic.core.server;
 
-import com.traffic.common.interfaces.ITrafficService;
 import com.traffic.core.services.TrafficServiceImpl;
+import com.traffic.data.FinesStore;
+
+import java.io.File;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 
@@ -10,27 +12,35 @@ public class RmiServer {
         try {
             System.out.println(">>> Starting Traffic Control System...");
 
-            // 1. Start JMS (Safely)
-            new Thread(() -> {
-                try {
-                    System.out.println(">>> [INIT] Connecting to Police JMS...");
-                    JmsAlertListener policeStation = new JmsAlertListener();
-                    policeStation.startListening();
-                } catch (Exception e) {
-                    // SILENT CATCH: Don't crash or spam logs if ActiveMQ is missing
-                    System.out.println("!!! [WARN] ActiveMQ not found. Police Alerts disabled.");
-                }
-            }).start();
+            // 1. Start JMS (Safely): consumers connect in the background, fines go to a local store
+            JmsAlertListener policeStation = null;
+            try {
+                System.out.println(">>> [INIT] Connecting to Police JMS...");
+                policeStation = new JmsAlertListener(new FinesStore(new File(System.getProperty("traffic.police.dir", "fines"))));
+                policeStation.startListening();
+            } catch (Exception | NoClassDefFoundError e) {
+                // Don't crash if ActiveMQ or the fines directory is missing
+                System.out.println("!!! [WARN] Police station unavailable (" + e + "). Police Alerts disabled.");
+            }
 
             // 2. Start RMI Services
-            ITrafficService service = new TrafficServiceImpl();
+            TrafficServiceImpl service = new TrafficServiceImpl();
             Registry registry = LocateRegistry.createRegistry(1090);
             registry.rebind("TrafficService", service);
+            if (policeStation != null) service.addMetricsSource(policeStation::getMetrics);
 
             // 3. Start Jobs
             BackgroundJobManager jobManager = new BackgroundJobManager(service);
             jobManager.startJobs();
 
+            // 4. Start UDP Front End (binary probe reports, fed straight into the service)
+            int udpPort = Integer.getInteger("traffic.udp.port", 9099);
+            if (udpPort > 0) {
+                UdpTelemetryListener probes = new UdpTelemetryListener(service, udpPort);
+                probes.start();
+                service.addMetricsSource(probes::getMetrics);
+            }
+
             System.out.println(">>> SERVER READY. Waiting for vehicles...");
 
         } catch (Exception e) {
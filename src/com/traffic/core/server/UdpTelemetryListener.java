@@ -0,0 +1,178 @@
+package com.traffic.core.server;
+
+import com.traffic.common.interfaces.ITrafficService;
+import com.traffic.common.interfaces.ITrafficService.ReportStatus;
+import com.traffic.common.models.TelemetryPacket;
+import com.traffic.common.models.VehicleDetails;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UDP PROBE LISTENER (Binary Telemetry, see TelemetryPacket)
+ *
+ * Roadside probes and on-board units report at ~10 Hz; a datagram per report
+ * costs a fraction of an HTTP request or an RMI call. One thread drains the
+ * socket into a reused direct buffer and hands everything that arrived meanwhile
+ * to the service in one updateVehiclePositions call (same validation and
+ * pipeline as every other report, in-process, no RMI hop).
+ *
+ * UDP may duplicate and reorder: a report whose sequence number is not above
+ * the last one seen for its vehicle is dropped. A device that restarts its
+ * sequence is accepted again once its event time is clearly newer.
+ *
+ * The last sequence is kept per vehicle, least recently heard from first: a
+ * vehicle silent for as long as the store keeps idle vehicles is forgotten,
+ * and past maxTrackedVehicles the quietest one goes. A forgotten vehicle's next
+ * report is simply accepted, as for a new one.
+ *
+ * Config: traffic.udp.port (9099, 0 = off), traffic.udp.receiveBufferBytes (4 MB),
+ *         traffic.udp.maxBatch (1024), traffic.udp.maxTrackedVehicles (1000000),
+ *         traffic.store.ttlSeconds (300, shared with the store)
+ */
+public class UdpTelemetryListener {
+
+    private static final long RESTART_AFTER_MS = 60_000; // Newer event time than this = device restarted its sequence
+
+    private final ITrafficService service;
+    private final int port;
+    private final int maxBatch;
+    private final long idleMillis;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(65_536); // Reused for every datagram
+    private final Map<String, long[]> lastSeen; // vehicleId -> {sequence, eventTime, receivedAt}; receive thread only
+
+    // Metrics
+    private final AtomicLong datagrams = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong overloaded = new AtomicLong(); // Valid, but the pipeline had no room: lost (no retry over UDP)
+    private final AtomicLong forgotten = new AtomicLong();
+    private volatile int tracked;
+
+    public UdpTelemetryListener(ITrafficService service, int port) {
+        this.service = service;
+        this.port = port;
+        this.maxBatch = Integer.getInteger("traffic.udp.maxBatch", 1024);
+        this.idleMillis = TimeUnit.SECONDS.toMillis(Long.getLong("traffic.store.ttlSeconds", 300));
+        int maxTracked = Math.max(1, Integer.getInteger("traffic.udp.maxTrackedVehicles", 1_000_000));
+        // Access order: the vehicle heard from least recently is first in line to be forgotten
+        this.lastSeen = new LinkedHashMap<String, long[]>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+                if (size() <= maxTracked) return false;
+                forgotten.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    public void start() throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, Integer.getInteger("traffic.udp.receiveBufferBytes", 4 << 20));
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(false);
+        Selector selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+
+        Thread receiver = new Thread(() -> receiveLoop(channel, selector), "udp-telemetry");
+        receiver.setDaemon(true);
+        receiver.start();
+        System.out.println(">>> [UDP] Probe telemetry listening on port " + port);
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("udp.datagrams", datagrams.get());
+        metrics.put("udp.accepted", accepted.get());
+        metrics.put("udp.duplicates", duplicates.get());
+        metrics.put("udp.malformed", malformed.get());
+        metrics.put("udp.rejected", rejected.get());
+        metrics.put("udp.overloaded", overloaded.get());
+        metrics.put("udp.trackedVehicles", (long) tracked);
+        metrics.put("udp.forgotten", forgotten.get());
+        return metrics;
+    }
+
+    private void receiveLoop(DatagramChannel channel, Selector selector) {
+        List<VehicleDetails> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                selector.select();
+                selector.selectedKeys().clear();
+
+                // 1. Drain whatever is queued on the socket (bounded, so a flood still gets forwarded in steps)
+                long now = System.currentTimeMillis();
+                while (batch.size() < maxBatch) {
+                    buffer.clear();
+                    if (channel.receive(buffer) == null) break;
+                    buffer.flip();
+                    datagrams.incrementAndGet();
+                    decode(batch, now);
+                }
+                forgetIdle(now);
+
+                // 2. One call into the ingestion logic for the lot
+                if (!batch.isEmpty()) {
+                    for (ReportStatus status : service.updateVehiclePositions(batch)) {
+                        if (status == ReportStatus.ACCEPTED) accepted.incrementAndGet();
+                        else if (status == ReportStatus.OVERLOADED) overloaded.incrementAndGet();
+                        else rejected.incrementAndGet();
+                    }
+                    batch.clear();
+                }
+            } catch (Exception e) {
+                batch.clear();
+                System.err.println("!!! [UDP] Receive error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void decode(List<VehicleDetails> batch, long now) {
+        while (buffer.hasRemaining()) {
+            if (!TelemetryPacket.hasRecord(buffer)) {
+                malformed.incrementAndGet(); // The rest of this datagram cannot be framed
+                return;
+            }
+            long sequence = TelemetryPacket.peekSequence(buffer);
+            VehicleDetails report = TelemetryPacket.read(buffer);
+
+            long[] last = lastSeen.get(report.getVehicleId());
+            if (last == null) {
+                lastSeen.put(report.getVehicleId(), new long[] {sequence, report.getTimestampMillis(), now});
+            } else if (sequence > last[0] || report.getTimestampMillis() > last[1] + RESTART_AFTER_MS) {
+                last[0] = sequence;
+                last[1] = report.getTimestampMillis();
+                last[2] = now;
+            } else {
+                last[2] = now; // Still heard from: keeps the access order sorted by receivedAt
+                duplicates.incrementAndGet(); // Duplicate or arrived after a newer report
+                continue;
+            }
+            batch.add(report);
+        }
+    }
+
+    // Oldest first in access order: stops at the first vehicle heard from recently enough
+    private void forgetIdle(long now) {
+        Iterator<long[]> it = lastSeen.values().iterator();
+        while (it.hasNext() && it.next()[2] < now - idleMillis) {
+            it.remove();
+            forgotten.incrementAndGet();
+        }
+        tracked = lastSeen.size();
+    }
+}
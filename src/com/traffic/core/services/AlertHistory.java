@@ -0,0 +1,44 @@
+package com.traffic.core.services;
+
+import com.traffic.common.models.TrafficAlert;
+import com.traffic.common.models.VehicleDetails;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The most recent alerts, numbered and kept in a fixed ring so live feeds
+ * can catch up (getAlertsSince) without the server tracking its readers.
+ * Readers that fall further behind than the ring simply miss the oldest alerts.
+ */
+public class AlertHistory {
+
+    private final TrafficAlert[] ring;
+    private long nextSequence = 1; // Guarded by this
+
+    public AlertHistory(int capacity) {
+        this.ring = new TrafficAlert[Math.max(1, capacity)];
+    }
+
+    /** Numbers and records an alert for the offending report. */
+    public synchronized TrafficAlert raise(String type, VehicleDetails details) {
+        TrafficAlert alert = new TrafficAlert(nextSequence, type, details);
+        ring[(int) (nextSequence % ring.length)] = alert;
+        nextSequence++;
+        return alert;
+    }
+
+    /** Alerts numbered after sinceSequence that are still retained, oldest first. */
+    public synchronized List<TrafficAlert> since(long sinceSequence) {
+        long from = Math.max(sinceSequence + 1, nextSequence - ring.length);
+        List<TrafficAlert> result = new ArrayList<>();
+        for (long seq = Math.max(1, from); seq < nextSequence; seq++) {
+            result.add(ring[(int) (seq % ring.length)]);
+        }
+        return result;
+    }
+
+    public synchronized long lastSequence() {
+        return nextSequence - 1;
+    }
+}
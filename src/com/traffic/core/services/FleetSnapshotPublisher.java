@@ -0,0 +1,71 @@
+package com.traffic.core.services;
+
+import com.traffic.common.models.FleetSnapshot;
+import com.traffic.common.models.VehicleDelta;
+import com.traffic.common.models.VehicleDetails;
+import com.traffic.data.InMemoryStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes an immutable FleetSnapshot on a fixed tick.
+ * Dashboard reads then cost a volatile read instead of a copy of the store each,
+ * and the snapshot version tells callers whether anything changed at all.
+ *
+ * The publisher keeps its own copy of the fleet, updated from the store's deltas,
+ * so a tick costs the changed vehicles plus one array copy of references.
+ */
+public class FleetSnapshotPublisher {
+
+    private final InMemoryStore store;
+    private final long tickMillis;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "fleet-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Ticker state
+    private final Map<String, VehicleDetails> fleet = new HashMap<>();
+    private long storeVersion = 0;
+
+    // Versions start at the boot time in millis, so they never repeat across restarts (ticks are far slower than 1/ms)
+    private volatile FleetSnapshot current = new FleetSnapshot(System.currentTimeMillis(), System.currentTimeMillis(),
+            Collections.<VehicleDetails>emptyList());
+
+    public FleetSnapshotPublisher(InMemoryStore store, long tickMillis) {
+        this.store = store;
+        this.tickMillis = tickMillis;
+    }
+
+    public void start() {
+        ticker.scheduleWithFixedDelay(this::tick, 0, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public FleetSnapshot current() {
+        return current;
+    }
+
+    private void tick() {
+        try {
+            VehicleDelta delta = store.changesSince(storeVersion, null);
+            storeVersion = delta.getVersion();
+            if (!delta.isFullSnapshot() && delta.getVehicles().isEmpty() && delta.getEvicted().isEmpty()) return; // Nothing moved
+
+            if (delta.isFullSnapshot()) fleet.clear();
+            for (String id : delta.getEvicted()) fleet.remove(id);
+            for (VehicleDetails v : delta.getVehicles()) fleet.put(v.getVehicleId(), v);
+
+            current = new FleetSnapshot(current.getVersion() + 1, System.currentTimeMillis(),
+                    Collections.unmodifiableList(new ArrayList<>(fleet.values())));
+        } catch (Exception e) {
+            System.err.println("!!! [SNAPSHOT] Tick failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.traffic.core.services;
+
+import com.traffic.common.models.VehicleDetails;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * STAGED INGESTION PIPELINE (Ring Buffers, No Queue Allocation)
+ *
+ * The RMI thread only copies a report into a preallocated slot and returns.
+ * Consumer stages (cache, persistence, violations, alerts...) drain the slots
+ * on their own threads, each with its own parallelism.
+ *
+ * Reports are partitioned by vehicle id, and every partition is drained by exactly
+ * one worker per stage, so the reports of a given vehicle are always handled in order.
+ * A slot is only reused once every stage has passed it: a slow stage fills its
+ * partitions and publishers wait (up to a timeout) instead of piling up work.
+ */
+public class IngestionPipeline {
+
+    /** Work done by one stage on one report. Runs on the stage's worker threads. */
+    public interface StageHandler {
+        void onEvent(IngestionEvent event) throws Exception;
+    }
+
+    /** A preallocated, reused ring slot. Stages may pass results downstream through its fields. */
+    public static final class IngestionEvent {
+        VehicleDetails details;
+        long publishNanos;
+        int violations; // Bit per rule that fired (ViolationRuleEngine)
+
+        public VehicleDetails getDetails() { return details; }
+
+        public boolean isViolation() { return violations != 0; }
+
+        public int getViolations() { return violations; }
+
+        public void setViolations(int violations) { this.violations = violations; }
+    }
+
+    private final int partitionCount;
+    private final int ringSize;
+    private final long publishTimeoutNanos;
+    private final Partition[] partitions;
+    private final List<Stage> stages = new ArrayList<>();
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean started = false;
+
+    public IngestionPipeline(int partitionCount, int ringSize, long publishTimeoutMillis) {
+        this.partitionCount = Math.max(1, partitionCount);
+        this.ringSize = Integer.highestOneBit(Math.max(2, ringSize - 1) << 1); // Round up to a power of two
+        this.publishTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(publishTimeoutMillis);
+        this.partitions = new Partition[this.partitionCount];
+    }
+
+    /**
+     * Registers a consumer stage. Must be called before {@link #start()}.
+     *
+     * @param dependsOn name of a stage that must see each report first, or null to read straight from the publisher
+     */
+    public IngestionPipeline addStage(String name, int parallelism, String dependsOn, StageHandler handler) {
+        if (started) throw new IllegalStateException("Pipeline already started");
+        int upstream = -1;
+        if (dependsOn != null) {
+            upstream = indexOf(dependsOn);
+            if (upstream < 0) throw new IllegalArgumentException("Unknown upstream stage: " + dependsOn);
+        }
+        stages.add(new Stage(stages.size(), name, Math.max(1, Math.min(parallelism, partitionCount)), upstream, handler));
+        return this;
+    }
+
+    public void start() {
+        for (int p = 0; p < partitionCount; p++) {
+            partitions[p] = new Partition(ringSize, stages.size());
+        }
+        started = true;
+
+        for (Stage stage : stages) {
+            for (int worker = 0; worker < stage.parallelism; worker++) {
+                List<Partition> owned = new ArrayList<>();
+                for (int p = worker; p < partitionCount; p += stage.parallelism) owned.add(partitions[p]);
+
+                Thread t = new Thread(new StageWorker(stage, owned), "ingest-" + stage.name + "-" + worker);
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+        System.out.println(">>> [PIPELINE] Started: " + partitionCount + " partitions x " + ringSize + " slots, stages " + stageSummary());
+    }
+
+    /**
+     * Publishes one report. Returns false if its partition stayed full for longer than the publish timeout.
+     */
+    public boolean publish(VehicleDetails details) {
+        if (!started) throw new IllegalStateException("Pipeline not started");
+        Partition partition = partitions[partitionOf(details.getVehicleId())];
+
+        synchronized (partition) {
+            long sequence = partition.nextSequence;
+            if (!partition.awaitCapacity(sequence, publishTimeoutNanos)) {
+                rejected.increment();
+                return false;
+            }
+
+            IngestionEvent event = partition.slots[(int) (sequence & partition.mask)];
+            event.details = details;
+            event.violations = 0;
+            event.publishNanos = System.nanoTime();
+
+            partition.nextSequence = sequence + 1;
+            partition.published.set(sequence);
+        }
+        return true;
+    }
+
+    // --- METRICS ---
+
+    /** Queue depth and per-stage lag (in reports and in milliseconds), for dashboards and health checks. */
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        if (!started) return metrics;
+
+        long depth = 0;
+        long published = 0;
+        for (Partition partition : partitions) {
+            long head = partition.published.get();
+            depth += head - partition.slowestCursor();
+            published += head + 1;
+        }
+        metrics.put("pipeline.published", published);
+        metrics.put("pipeline.queueDepth", depth);
+        metrics.put("pipeline.capacity", (long) partitionCount * ringSize);
+        metrics.put("pipeline.rejected", rejected.sum());
+
+        long now = System.nanoTime();
+        for (Stage stage : stages) {
+            long lag = 0;
+            long oldestNanos = 0;
+            for (Partition partition : partitions) {
+                long head = partition.published.get();
+                long cursor = partition.cursors[stage.index].get();
+                if (head > cursor) {
+                    lag += head - cursor;
+                    IngestionEvent next = partition.slots[(int) ((cursor + 1) & partition.mask)];
+                    oldestNanos = Math.max(oldestNanos, now - next.publishNanos);
+                }
+            }
+            metrics.put("pipeline." + stage.name + ".lag", lag);
+            metrics.put("pipeline." + stage.name + ".lagMs", TimeUnit.NANOSECONDS.toMillis(oldestNanos));
+        }
+        return metrics;
+    }
+
+    // --- INTERNALS ---
+
+    private int partitionOf(String vehicleId) {
+        int h = vehicleId.hashCode();
+        h ^= (h >>> 16); // Spread the bits like HashMap does
+        return (h & 0x7fffffff) % partitionCount;
+    }
+
+    private int indexOf(String stageName) {
+        for (Stage stage : stages) {
+            if (stage.name.equals(stageName)) return stage.index;
+        }
+        return -1;
+    }
+
+    private String stageSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : stages) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(stage.name).append("(").append(stage.parallelism).append(")");
+        }
+        return sb.toString();
+    }
+
+    private static final class Stage {
+        final int index;
+        final String name;
+        final int parallelism;
+        final int upstream; // -1 = the publisher
+        final StageHandler handler;
+
+        Stage(int index, String name, int parallelism, int upstream, StageHandler handler) {
+            this.index = index;
+            this.name = name;
+            this.parallelism = parallelism;
+            this.upstream = upstream;
+            this.handler = handler;
+        }
+    }
+
+    private static final class Partition {
+        final IngestionEvent[] slots;
+        final int mask;
+        final AtomicLong published = new AtomicLong(-1); // Last sequence visible to consumers
+        final AtomicLong[] cursors;                      // Last sequence processed, per stage
+        long nextSequence = 0;                           // Guarded by the partition monitor
+
+        Partition(int size, int stageCount) {
+            this.slots = new IngestionEvent[size];
+            for (int i = 0; i < size; i++) slots[i] = new IngestionEvent();
+            this.mask = size - 1;
+            this.cursors = new AtomicLong[stageCount];
+            for (int s = 0; s < stageCount; s++) cursors[s] = new AtomicLong(-1);
+        }
+
+        long slowestCursor() {
+            long min = published.get();
+            for (AtomicLong cursor : cursors) min = Math.min(min, cursor.get());
+            return min;
+        }
+
+        // Backpressure: wait until every stage has moved past the slot we are about to overwrite
+        boolean awaitCapacity(long sequence, long timeoutNanos) {
+            long wrapPoint = sequence - slots.length;
+            if (slowestCursor() >= wrapPoint) return true;
+
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (slowestCursor() < wrapPoint) {
+                if (System.nanoTime() >= deadline) return false;
+                LockSupport.parkNanos(50_000);
+            }
+            return true;
+        }
+    }
+
+    private static final class StageWorker implements Runnable {
+        private final Stage stage;
+        private final Partition[] owned;
+
+        StageWorker(Stage stage, List<Partition> owned) {
+            this.stage = stage;
+            this.owned = owned.toArray(new Partition[0]);
+        }
+
+        @Override
+        public void run() {
+            int idleRounds = 0;
+            while (true) {
+                boolean didWork = false;
+                for (Partition partition : owned) {
+                    didWork |= drain(partition);
+                }
+
+                // Idle strategy: spin briefly, then yield, then park
+                if (didWork) {
+                    idleRounds = 0;
+                } else if (++idleRounds < 100) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(100_000);
+                }
+            }
+        }
+
+        private boolean drain(Partition partition) {
+            AtomicLong cursor = partition.cursors[stage.index];
+            long processed = cursor.get();
+            long available = stage.upstream < 0
+                    ? partition.published.get()
+                    : partition.cursors[stage.upstream].get();
+            if (available <= processed) return false;
+
+            for (long seq = processed + 1; seq <= available; seq++) {
+                IngestionEvent event = partition.slots[(int) (seq & partition.mask)];
+                try {
+                    stage.handler.onEvent(event);
+                } catch (Exception e) {
+                    System.err.println("!!! [PIPELINE] Stage '" + stage.name + "' failed: " + e.getMessage());
+                }
+                cursor.lazySet(seq);
+            }
+            return true;
+        }
+    }
+}
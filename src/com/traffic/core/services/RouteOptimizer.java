@@ -1,58 +1,211 @@
 package com.traffic.core.services;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Implements Dijkstra's Algorithm to find the optimal route.
  * Weights represent "Traffic Density" (Higher = Slower).
+ *
+ * Results are cached per (origin, destination, graph version), at most
+ * traffic.route.cacheSize routes, least recently used out first. Changing a
+ * road's cost publishes a new graph under a new version, so earlier routes are
+ * never served again (and are dropped from the cache at once). Concurrent
+ * requests for a route that is not cached yet wait for the one computation in
+ * progress instead of each running Dijkstra (single flight).
  */
 public class RouteOptimizer {
 
-    // Graph: City -> (Neighbor -> Cost)
-    private final Map<String, Map<String, Integer>> graph = new HashMap<>();
+    // Graph: City -> (Neighbor -> Cost). Never modified once published: a cost change builds a new one
+    private volatile Graph graph;
+
+    // Route cache, guarded by itself. Access order: the least recently used route is evicted first
+    private final Map<RouteKey, CompletableFuture<List<String>>> cache;
+
+    // Metrics
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong(); // Waited for a computation already in progress
+    private final AtomicLong computations = new AtomicLong();
+    private final AtomicLong computeNanos = new AtomicLong();
+    private final AtomicLong maxComputeNanos = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
 
     public RouteOptimizer() {
+        this(Integer.getInteger("traffic.route.cacheSize", 10_000));
+    }
+
+    public RouteOptimizer(int cacheSize) {
+        int capacity = Math.max(1, cacheSize);
+        this.cache = new LinkedHashMap<RouteKey, CompletableFuture<List<String>>>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RouteKey, CompletableFuture<List<String>>> eldest) {
+                if (size() <= capacity) return false;
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
         // Initialize the Map of Tunisia (Nodes and Edges)
-        buildGraph();
+        Map<String, Map<String, Integer>> edges = new HashMap<>();
+        buildGraph(edges);
+        this.graph = new Graph(edges, 1);
     }
 
-    private void buildGraph() {
+    private void buildGraph(Map<String, Map<String, Integer>> edges) {
         // 1. Define Cities and Connections (Mocking a real map)
-        addRoute("Tunis", "Ben Arous", 10);
-        addRoute("Tunis", "Ariana", 5);
-        addRoute("Ben Arous", "Hammamet", 40);
-        addRoute("Hammamet", "Sousse", 30);
-        addRoute("Hammamet", "Nabeul", 15);
-        addRoute("Sousse", "Sfax", 90);
-        addRoute("Sousse", "Monastir", 20);
-        addRoute("Sfax", "Gabes", 100);
+        addRoute(edges, "Tunis", "Ben Arous", 10);
+        addRoute(edges, "Tunis", "Ariana", 5);
+        addRoute(edges, "Ben Arous", "Hammamet", 40);
+        addRoute(edges, "Hammamet", "Sousse", 30);
+        addRoute(edges, "Hammamet", "Nabeul", 15);
+        addRoute(edges, "Sousse", "Sfax", 90);
+        addRoute(edges, "Sousse", "Monastir", 20);
+        addRoute(edges, "Sfax", "Gabes", 100);
 
         // Alternative inland route
-        addRoute("Tunis", "Zaghouan", 35);
-        addRoute("Zaghouan", "Kairouan", 50);
-        addRoute("Kairouan", "Sfax", 70);
+        addRoute(edges, "Tunis", "Zaghouan", 35);
+        addRoute(edges, "Zaghouan", "Kairouan", 50);
+        addRoute(edges, "Kairouan", "Sfax", 70);
+    }
+
+    private static void addRoute(Map<String, Map<String, Integer>> edges, String from, String to, int cost) {
+        edges.computeIfAbsent(from, k -> new HashMap<>()).put(to, cost);
+        edges.computeIfAbsent(to, k -> new HashMap<>()).put(from, cost); // Bidirectional
     }
 
-    private void addRoute(String from, String to, int cost) {
-        graph.computeIfAbsent(from, k -> new HashMap<>()).put(to, cost);
-        graph.computeIfAbsent(to, k -> new HashMap<>()).put(from, cost); // Bidirectional
+    /**
+     * Sets the cost of an existing road (both directions), e.g. when traffic density changes.
+     * Returns false if there is no such road. Server-side only: not exposed over RMI.
+     */
+    public synchronized boolean updateRoadCost(String from, String to, int cost) {
+        Graph current = graph;
+        Map<String, Integer> fromEdges = current.edges.get(from);
+        if (fromEdges == null || !fromEdges.containsKey(to) || cost < 0) return false;
+        if (fromEdges.get(to) == cost) return true;
+
+        // 1. Copy the two changed adjacency maps, share the rest
+        Map<String, Map<String, Integer>> edges = new HashMap<>(current.edges);
+        Map<String, Integer> forward = new HashMap<>(fromEdges);
+        forward.put(to, cost);
+        edges.put(from, forward);
+        Map<String, Integer> backward = new HashMap<>(current.edges.get(to));
+        backward.put(from, cost);
+        edges.put(to, backward);
+
+        // 2. Publish, then drop the routes of older versions (they would only age out otherwise)
+        graph = new Graph(edges, current.version + 1);
+        synchronized (cache) {
+            int before = cache.size();
+            cache.keySet().removeIf(key -> key.version != current.version + 1);
+            invalidated.addAndGet(before - cache.size());
+        }
+        System.out.println(">>> [ROUTER] " + from + " <-> " + to + " now costs " + cost + " (graph version " + (current.version + 1) + ")");
+        return true;
     }
 
     public List<String> findShortestPath(String start, String end) {
-        if (!graph.containsKey(start) || !graph.containsKey(end)) {
-            return Collections.singletonList("Error: Unknown City");
+        requests.incrementAndGet();
+        Graph g = graph;
+        if (!g.edges.containsKey(start) || !g.edges.containsKey(end)) {
+            return Collections.singletonList("Error: Unknown City"); // Not cached: arbitrary names would flush real routes
+        }
+
+        // 1. Cached, being computed by another request, or ours to compute
+        RouteKey key = new RouteKey(start, end, g.version);
+        CompletableFuture<List<String>> route;
+        boolean owner = false;
+        synchronized (cache) {
+            route = cache.get(key);
+            if (route == null) {
+                // A newer graph was published since we read it: its purge may already have run, so an entry
+                // for our version would never be removed (nor served). Answer from our graph, uncached
+                if (graph.version != key.version) return compute(g, start, end);
+                route = new CompletableFuture<>();
+                cache.put(key, route);
+                owner = true;
+            }
+        }
+        if (!owner) {
+            if (route.isDone()) hits.incrementAndGet();
+            else coalesced.incrementAndGet();
+            return await(route);
+        }
+
+        // 2. Compute outside the lock; waiters are released by complete()
+        try {
+            route.complete(compute(g, start, end));
+        } catch (RuntimeException | Error e) {
+            synchronized (cache) {
+                cache.remove(key, route); // Let the next request try again
+            }
+            route.completeExceptionally(e);
+            throw e;
+        }
+        return route.join();
+    }
+
+    private List<String> compute(Graph g, String start, String end) {
+        long t0 = System.nanoTime();
+        try {
+            return dijkstra(g.edges, start, end);
+        } finally {
+            long nanos = System.nanoTime() - t0;
+            computations.incrementAndGet();
+            computeNanos.addAndGet(nanos);
+            maxComputeNanos.accumulateAndGet(nanos, Math::max);
         }
+    }
 
-        // Dijkstra's Algorithm Structures
+    private static List<String> await(CompletableFuture<List<String>> route) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return route.get();
+                } catch (InterruptedException e) {
+                    interrupted = true; // Routes take microseconds: finish waiting, keep the flag
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        long total = requests.get();
+        long computed = computations.get();
+        metrics.put("route.requests", total);
+        metrics.put("route.hits", hits.get());
+        metrics.put("route.coalesced", coalesced.get());
+        metrics.put("route.computations", computed);
+        metrics.put("route.hitRatePct", total == 0 ? 0 : (hits.get() + coalesced.get()) * 100 / total);
+        metrics.put("route.computeAvgMicros", computed == 0 ? 0 : computeNanos.get() / computed / 1000);
+        metrics.put("route.computeMaxMicros", maxComputeNanos.get() / 1000);
+        synchronized (cache) {
+            metrics.put("route.cached", (long) cache.size());
+        }
+        metrics.put("route.evictions", evictions.get());
+        metrics.put("route.invalidated", invalidated.get());
+        metrics.put("route.graphVersion", graph.version);
+        return metrics;
+    }
+
+    // --- DIJKSTRA ---
+
+    private static List<String> dijkstra(Map<String, Map<String, Integer>> graph, String start, String end) {
+        // Dijkstra's Algorithm Structures (unreached cities have no distance yet: infinite)
         PriorityQueue<Node> pq = new PriorityQueue<>(Comparator.comparingInt(node -> node.cost));
         Map<String, Integer> distances = new HashMap<>();
         Map<String, String> previous = new HashMap<>();
-        Set<String> visited = new HashSet<>();
-
-        // Init
-        for (String city : graph.keySet()) {
-            distances.put(city, Integer.MAX_VALUE);
-        }
         distances.put(start, 0);
         pq.add(new Node(start, 0));
 
@@ -60,18 +213,16 @@ public class RouteOptimizer {
             Node current = pq.poll();
             String currentCity = current.name;
 
-            if (visited.contains(currentCity)) continue;
-            visited.add(currentCity);
-
+            if (current.cost > distances.get(currentCity)) continue; // Stale entry: already settled cheaper
             if (currentCity.equals(end)) break; // Found destination
 
             // Check neighbors
-            Map<String, Integer> neighbors = graph.getOrDefault(currentCity, new HashMap<>());
-            for (Map.Entry<String, Integer> neighbor : neighbors.entrySet()) {
+            for (Map.Entry<String, Integer> neighbor : graph.get(currentCity).entrySet()) {
                 String neighborName = neighbor.getKey();
-                int newDist = distances.get(currentCity) + neighbor.getValue();
+                int newDist = current.cost + neighbor.getValue();
+                Integer known = distances.get(neighborName);
 
-                if (newDist < distances.get(neighborName)) {
+                if (known == null || newDist < known) {
                     distances.put(neighborName, newDist);
                     previous.put(neighborName, currentCity);
                     pq.add(new Node(neighborName, newDist));
@@ -80,15 +231,13 @@ public class RouteOptimizer {
         }
 
         // Reconstruct Path
-        List<String> path = new LinkedList<>();
+        if (!distances.containsKey(end)) return Collections.singletonList("No Route Found");
+        List<String> path = new ArrayList<>();
         for (String at = end; at != null; at = previous.get(at)) {
-            path.add(0, at);
+            path.add(at);
         }
-
-        if (path.isEmpty() || !path.get(0).equals(start)) {
-            return Collections.singletonList("No Route Found");
-        }
-        return path;
+        Collections.reverse(path);
+        return Collections.unmodifiableList(path); // Shared by every request served from the cache
     }
 
     // Helper Class for PriorityQueue
@@ -97,4 +246,38 @@ public class RouteOptimizer {
         int cost;
         Node(String name, int cost) { this.name = name; this.cost = cost; }
     }
-}
\ No newline at end of file
+
+    private static final class Graph {
+        final Map<String, Map<String, Integer>> edges;
+        final long version;
+
+        Graph(Map<String, Map<String, Integer>> edges, long version) {
+            this.edges = edges;
+            this.version = version;
+        }
+    }
+
+    private static final class RouteKey {
+        final String origin;
+        final String destination;
+        final long version;
+
+        RouteKey(String origin, String destination, long version) {
+            this.origin = origin;
+            this.destination = destination;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RouteKey)) return false;
+            RouteKey k = (RouteKey) o;
+            return version == k.version && origin.equals(k.origin) && destination.equals(k.destination);
+        }
+
+        @Override
+        public int hashCode() {
+            return (origin.hashCode() * 31 + destination.hashCode()) * 31 + Long.hashCode(version);
+        }
+    }
+}
@@ -1,66 +1,247 @@
 package com.traffic.core.services;
 
 import com.traffic.common.interfaces.ITrafficService;
+import com.traffic.common.models.FleetSnapshot;
+import com.traffic.common.models.TrafficAlert;
+import com.traffic.common.models.TrajectoryPage;
+import com.traffic.common.models.VehicleDelta;
 import com.traffic.common.models.VehicleDetails;
+import com.traffic.common.models.VehicleIdDictionary;
 import com.traffic.core.bridge.LegacyTrafficLightSystem;
 import com.traffic.core.server.JmsAlertProducer;
+import com.traffic.data.InMemoryStore;
+import com.traffic.data.MappedTelemetryLog;
 import com.traffic.data.SupabaseRestRepository;
+import com.traffic.data.SupabaseTelemetryRepository;
 import com.traffic.data.TelemetryRepository;
+import com.traffic.data.TimeSeriesHistory;
 
+import java.io.File;
+import java.io.IOException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 public class TrafficServiceImpl extends UnicastRemoteObject implements ITrafficService {
 
+    // Proximity search limits (keep dispatch queries cheap)
+    private static final int MAX_NEAREST = 1000;
+    private static final double MAX_RADIUS_KM = 100.0;
+    private static final int MAX_TRAJECTORY_PAGE = 10_000;
+
+    // Dictionary registration: one call may not grow the (never shrinking) dictionary by more than this
+    private final int maxRegisterIds = Math.max(1, Integer.getInteger("traffic.dictionary.maxIdsPerCall", 100_000));
+
+    // Event time is client-supplied: a report stamped further ahead than this is rejected. Every window
+    // (rules, history) only moves forward, so one far-future report would silence that vehicle for good
+    private final long maxClockSkewMillis = TimeUnit.SECONDS.toMillis(Long.getLong("traffic.ingest.maxClockSkewSeconds", 60));
+
     private TelemetryRepository telemetryRepo;
-    private Map<String, VehicleDetails> realTimeCache;
+    private InMemoryStore realTimeStore;
     private LegacyTrafficLightSystem legacyBridge;
     private JmsAlertProducer jmsProducer;
     private RouteOptimizer router; // Added for Dijkstra Algorithm
+    private IngestionPipeline pipeline;
+    private AlertHistory alertHistory; // Recent alerts for live dashboards
+    private final long alertLogIntervalMs = Long.getLong("traffic.alerts.logIntervalMs", 10_000L);
+    private final AtomicLong alertLoggedAt = new AtomicLong(); // Last [VIOLATION] line: one per interval, not one per alert
+    private final AtomicLong alertLoggedSequence = new AtomicLong();
+    private ViolationRuleEngine rules; // Windowed per-vehicle violation rules
+    private FleetSnapshotPublisher snapshots; // Immutable fleet view for dashboards, refreshed on a tick
+    private TimeSeriesHistory history; // Compressed per-vehicle trajectories
+    private MappedTelemetryLog telemetryLog; // Local log, when it is the backend (area queries over everything persisted)
+    private final List<Supplier<Map<String, Long>>> metricsSources = new CopyOnWriteArrayList<>(); // Front ends (UDP, ...)
 
     public TrafficServiceImpl() throws RemoteException {
         super();
-        // 1. Storage: Using Cloud Supabase (Java 8 Compatible REST)
-        this.telemetryRepo = new SupabaseRestRepository();
+        // 1. Storage: Using Cloud Supabase (Java 8 Compatible REST, batched by a bounded writer pool),
+        //    or pooled JDBC, or a local memory-mapped log (-Dtraffic.persistence.backend=rest|jdbc|log)
+        this.telemetryRepo = buildRepository(System.getProperty("traffic.persistence.backend", "rest"));
 
         // 2. Hardware: Legacy CORBA Bridge
         this.legacyBridge = new LegacyTrafficLightSystem();
 
-        // 3. State: In-Memory Real-time Cache
-        this.realTimeCache = new ConcurrentHashMap<>();
+        // 3. State: In-Memory Real-time Store (primitive columns, no per-update allocation).
+        //    Vehicles silent for traffic.store.ttlSeconds expire; at maxVehicles the least recent one makes room
+        this.realTimeStore = new InMemoryStore(
+                Integer.getInteger("traffic.store.maxVehicles", 2_000_000),
+                Double.parseDouble(System.getProperty("traffic.spatial.cellDegrees", "0.01")),
+                TimeUnit.SECONDS.toMillis(Long.getLong("traffic.store.ttlSeconds", 300)));
+        addMetricsSource(realTimeStore::getMetrics);
 
-        // 4. Alerts: ActiveMQ JMS Producer
+        // 4. Alerts: ActiveMQ JMS Producer (long-lived, asynchronous) + recent history for live feeds
         this.jmsProducer = new JmsAlertProducer();
+        addMetricsSource(jmsProducer::getMetrics);
+        this.alertHistory = new AlertHistory(Integer.getInteger("traffic.alerts.history", 1024));
 
-        // 5. Logic: Initialize Route Optimizer (Dijkstra)
+        // 4b. Violations: windowed rules per vehicle; their state goes when the vehicle leaves the store,
+        // which also seals its history for expiry
+        this.rules = new ViolationRuleEngine();
+        realTimeStore.setRemovalListener(vehicleId -> {
+            rules.forget(vehicleId);
+            history.vehicleLeft(vehicleId);
+        });
+        addMetricsSource(rules::getMetrics);
+
+        // 5. Logic: Initialize Route Optimizer (Dijkstra, routes cached per graph version)
         this.router = new RouteOptimizer();
+        addMetricsSource(router::getMetrics);
+
+        // 5b. History: every accepted report, compressed in memory (getVehicleHistory, /api/history)
+        this.history = new TimeSeriesHistory();
+        addMetricsSource(history::getMetrics);
+
+        // 6. Ingestion: Staged pipeline, so RMI threads never wait on the cloud or the broker
+        this.pipeline = buildPipeline();
+        this.pipeline.start();
+
+        // 7. Dashboards: one shared snapshot per tick instead of a store copy per request
+        this.snapshots = new FleetSnapshotPublisher(realTimeStore, Long.getLong("traffic.snapshot.tickMs", 500));
+        this.snapshots.start();
+    }
+
+    /**
+     * The local log can ship to a cloud backend: -Dtraffic.log.shipTo=rest|jdbc (default: none)
+     */
+    private TelemetryRepository buildRepository(String backend) throws RemoteException {
+        switch (backend) {
+            case "jdbc": {
+                SupabaseTelemetryRepository jdbc = new SupabaseTelemetryRepository();
+                addMetricsSource(jdbc::getMetrics);
+                return jdbc;
+            }
+            case "log": {
+                MappedTelemetryLog log;
+                try {
+                    log = new MappedTelemetryLog(new File(System.getProperty("traffic.log.dir", "telemetry-log")));
+                } catch (IOException e) {
+                    throw new RemoteException("Cannot open the telemetry log", e);
+                }
+                addMetricsSource(log::getMetrics);
+                this.telemetryLog = log;
+                String shipTo = System.getProperty("traffic.log.shipTo", "none");
+                if (!"none".equals(shipTo) && !"log".equals(shipTo)) log.shipTo(buildRepository(shipTo));
+                return log;
+            }
+            default: {
+                SupabaseRestRepository cloud = new SupabaseRestRepository();
+                addMetricsSource(cloud::getMetrics);
+                return cloud;
+            }
+        }
+    }
+
+    /**
+     * Sizing comes from system properties, e.g. -Dtraffic.pipeline.persistence.threads=4
+     */
+    private IngestionPipeline buildPipeline() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        IngestionPipeline p = new IngestionPipeline(
+                Integer.getInteger("traffic.pipeline.partitions", cores),
+                Integer.getInteger("traffic.pipeline.ringSize", 4096),
+                Long.getLong("traffic.pipeline.publishTimeoutMs", 50L));
+
+        p.addStage("cache", stageThreads("cache", 1), null,
+                event -> realTimeStore.update(event.getDetails()));
+
+        p.addStage("persistence", stageThreads("persistence", 1), null,
+                event -> telemetryRepo.saveTelemetry(event.getDetails()));
+
+        p.addStage("history", stageThreads("history", 1), null,
+                event -> history.saveTelemetry(event.getDetails()));
+
+        // Same partitioning as every stage: one thread sees all reports of a vehicle, in order
+        p.addStage("violations", stageThreads("violations", 1), null,
+                event -> event.setViolations(rules.evaluate(event.getDetails())));
+
+        // Alerts only look at reports the violation stage has already flagged
+        p.addStage("alerts", stageThreads("alerts", 1), "violations", event -> {
+            if (!event.isViolation()) return;
+            VehicleDetails details = event.getDetails();
+            for (int bits = event.getViolations(); bits != 0; bits &= bits - 1) {
+                String type = rules.ruleType(Integer.numberOfTrailingZeros(bits));
+                jmsProducer.publish(alertHistory.raise(type, details)); // Queued: the broker is never waited on here
+                logAlert(type, details);
+            }
+        });
+        return p;
+    }
+
+    // Counts are in the metrics (alerts.raised, rules.fired.<type>); the log only gets a periodic sample
+    private void logAlert(String type, VehicleDetails details) {
+        long now = System.currentTimeMillis();
+        long last = alertLoggedAt.get();
+        if (now - last < alertLogIntervalMs || !alertLoggedAt.compareAndSet(last, now)) return;
+        long sequence = alertHistory.lastSequence();
+        long since = sequence - alertLoggedSequence.getAndSet(sequence);
+        System.out.println("!!! [VIOLATION] " + since + " alert(s) since last line, latest " + type + ": "
+                + details.getVehicleId() + " at " + details.getSpeed() + " km/h");
+    }
+
+    private static int stageThreads(String stage, int defaultThreads) {
+        return Integer.getInteger("traffic.pipeline." + stage + ".threads", defaultThreads);
     }
 
     @Override
     public void updateVehiclePosition(VehicleDetails details) throws RemoteException {
-        System.out.println("[RMI SERVER] Ingesting Data: " + details.getVehicleId());
+        if (!isValidReport(details)) {
+            throw new RemoteException("Rejected invalid report: " + details);
+        }
+        if (!pipeline.publish(details)) {
+            throw new IngestionOverloaded("Ingestion overloaded, report dropped for " + details.getVehicleId());
+        }
+    }
+
+    @Override
+    public ReportStatus[] updateVehiclePositions(List<VehicleDetails> batch) throws RemoteException {
+        if (batch == null) return new ReportStatus[0];
 
-        // Push to Cloud (Async)
-        telemetryRepo.saveTelemetry(details);
+        ReportStatus[] status = new ReportStatus[batch.size()];
+        for (int i = 0; i < status.length; i++) {
+            VehicleDetails details = batch.get(i);
+            if (!isValidReport(details)) status[i] = ReportStatus.INVALID;
+            else status[i] = pipeline.publish(details) ? ReportStatus.ACCEPTED : ReportStatus.OVERLOADED;
+        }
+        return status;
+    }
 
-        // Update Real-Time Cache
-        realTimeCache.put(details.getVehicleId(), details);
+    @Override
+    public int[] registerVehicleIds(List<String> vehicleIds) throws RemoteException {
+        if (vehicleIds == null) return new int[0];
+        if (vehicleIds.size() > maxRegisterIds) {
+            throw new TooManyIds("At most " + maxRegisterIds + " ids per call, got " + vehicleIds.size());
+        }
 
-        // Check for Speeding Violations
-        if (details.getSpeed() > 90.0) {
-            System.out.println("!!! [VIOLATION] Speeding detected: " + details.getSpeed() + " km/h");
-            jmsProducer.sendSpeedingAlert(details.getVehicleId(), details.getSpeed());
+        // -1 = no key (an id no report could carry, or the dictionary is full): the client sends the id string
+        int[] keys = new int[vehicleIds.size()];
+        for (int i = 0; i < keys.length; i++) {
+            String id = vehicleIds.get(i);
+            boolean storable = VehicleDetails.isValidId(id) && (telemetryLog == null || MappedTelemetryLog.fitsId(id));
+            keys[i] = storable ? VehicleIdDictionary.global().keyFor(id) : -1;
         }
+        return keys;
+    }
+
+    // Rejects reports that would poison the cache or the database
+    private boolean isValidReport(VehicleDetails details) {
+        if (details == null) return false;
+        if (!VehicleDetails.isValidId(details.getVehicleId())) return false;
+        if (telemetryLog != null && !MappedTelemetryLog.fitsId(details.getVehicleId())) return false; // The log would drop it
+        if (Double.isNaN(details.getSpeed()) || details.getSpeed() < 0) return false;
+        if (details.getTimestampMillis() > System.currentTimeMillis() + maxClockSkewMillis) return false;
+        return Math.abs(details.getLatitude()) <= 90.0 && Math.abs(details.getLongitude()) <= 180.0;
     }
 
     @Override
     public boolean isVehicleSpeeding(String vehicleId) throws RemoteException {
-        if (!realTimeCache.containsKey(vehicleId)) return false;
-        return realTimeCache.get(vehicleId).getSpeed() > 90.0;
+        // Same answer as the alerts: over the limit for long enough, not one fast reading
+        return rules.isActive(vehicleId, ViolationRuleEngine.SPEEDING);
     }
 
     @Override
@@ -72,13 +253,105 @@ public class TrafficServiceImpl extends UnicastRemoteObject implements ITrafficS
 
     @Override
     public List<VehicleDetails> getAllVehicles() throws RemoteException {
-        return new ArrayList<>(realTimeCache.values());
+        return snapshots.current().getVehicles(); // As of the last snapshot tick
+    }
+
+    @Override
+    public FleetSnapshot getFleetSnapshot() throws RemoteException {
+        return snapshots.current();
+    }
+
+    @Override
+    public long getSnapshotVersion() throws RemoteException {
+        return snapshots.current().getVersion();
+    }
+
+    @Override
+    public List<VehicleDetails> getVehiclesInArea(double minLat, double minLon, double maxLat, double maxLon) throws RemoteException {
+        if (minLat > maxLat || minLon > maxLon) {
+            throw new RemoteException("Invalid bounding box: min corner must be south-west of max corner");
+        }
+        return realTimeStore.queryBox(minLat, minLon, maxLat, maxLon);
+    }
+
+    @Override
+    public List<TrafficAlert> getAlertsSince(long sinceSequence) throws RemoteException {
+        return alertHistory.since(sinceSequence);
+    }
+
+    @Override
+    public VehicleDelta getVehicleChangesSince(long sinceVersion) throws RemoteException {
+        return realTimeStore.changesSince(sinceVersion, null);
+    }
+
+    @Override
+    public VehicleDelta getVehicleChangesInArea(long sinceVersion, double minLat, double minLon, double maxLat, double maxLon) throws RemoteException {
+        if (minLat > maxLat || minLon > maxLon) {
+            throw new RemoteException("Invalid bounding box: min corner must be south-west of max corner");
+        }
+        return realTimeStore.changesSince(sinceVersion, new double[] {minLat, minLon, maxLat, maxLon});
+    }
+
+    @Override
+    public List<VehicleDetails> getVehicleHistory(String vehicleId, long fromMillis, long toMillis, long stepMillis) throws RemoteException {
+        if (fromMillis > toMillis || stepMillis < 0) {
+            throw new RemoteException("Invalid history range: from must not be after to, step must not be negative");
+        }
+        return history.query(vehicleId, fromMillis, toMillis, stepMillis);
+    }
+
+    @Override
+    public TrajectoryPage findTrajectories(long fromMillis, long toMillis, double minLat, double minLon, double maxLat, double maxLon,
+                                           long cursor, int limit) throws RemoteException {
+        if (telemetryLog == null) throw new RemoteException("Trajectory queries need -Dtraffic.persistence.backend=log");
+        if (fromMillis > toMillis || minLat > maxLat || minLon > maxLon || cursor < 0) {
+            throw new RemoteException("Invalid trajectory query: from must not be after to, min corner must be south-west of max corner");
+        }
+        if (limit <= 0 || limit > MAX_TRAJECTORY_PAGE) throw new RemoteException("limit must be between 1 and " + MAX_TRAJECTORY_PAGE);
+        try {
+            return telemetryLog.findInArea(fromMillis, toMillis, minLat, minLon, maxLat, maxLon, cursor, limit);
+        } catch (IllegalStateException e) {
+            throw new RemoteException("Trajectory query failed", e);
+        }
+    }
+
+    @Override
+    public List<VehicleDetails> findNearestVehicles(double lat, double lon, int k) throws RemoteException {
+        if (k <= 0 || k > MAX_NEAREST) throw new RemoteException("k must be between 1 and " + MAX_NEAREST);
+        return realTimeStore.queryNearest(lat, lon, k);
+    }
+
+    @Override
+    public List<VehicleDetails> findVehiclesWithinRadius(double lat, double lon, double radiusKm) throws RemoteException {
+        if (!(radiusKm > 0) || radiusKm > MAX_RADIUS_KM) throw new RemoteException("radiusKm must be in (0, " + MAX_RADIUS_KM + "]");
+        return realTimeStore.queryRadius(lat, lon, radiusKm);
     }
 
     @Override
     public int performMaintenanceCleanup() throws RemoteException {
-        if (realTimeCache.size() > 100) realTimeCache.clear();
-        return realTimeCache.size();
+        long dropped = history.evictExpired();
+        if (dropped > 0) System.out.println(">>> [HISTORY] Expired " + dropped + " point(s)");
+        int expired = realTimeStore.expireIdle(System.currentTimeMillis());
+        if (expired > 0) System.out.println(">>> [STORE] Expired " + expired + " idle vehicle(s)");
+        return realTimeStore.size();
+    }
+
+    @Override
+    public Map<String, Long> getSystemMetrics() throws RemoteException {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("vehicles.active", (long) realTimeStore.size());
+        metrics.put("vehicles.version", realTimeStore.version());
+        metrics.put("alerts.raised", alertHistory.lastSequence());
+        metrics.put("snapshot.version", snapshots.current().getVersion());
+        metrics.put("snapshot.ageMs", System.currentTimeMillis() - snapshots.current().getPublishedAtMillis());
+        metrics.putAll(pipeline.getMetrics());
+        for (Supplier<Map<String, Long>> source : metricsSources) metrics.putAll(source.get());
+        return metrics;
+    }
+
+    /** Adds the counters of an in-process component (e.g. the UDP listener) to getSystemMetrics. */
+    public void addMetricsSource(Supplier<Map<String, Long>> source) {
+        metricsSources.add(source);
     }
 
     @Override
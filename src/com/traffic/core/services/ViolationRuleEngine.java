@@ -0,0 +1,329 @@
+package com.traffic.core.services;
+
+import com.traffic.common.models.VehicleDetails;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * VIOLATION RULES (Streaming, Per-Vehicle Windows)
+ *
+ * Fed by the pipeline's violations stage, one report at a time. Every vehicle
+ * keeps a fixed amount of state per rule (a few longs and doubles), updated
+ * incrementally in event time; nothing is buffered or rescanned.
+ *
+ * Rules:
+ *   SPEEDING               over speedLimit continuously for sustainSeconds (sliding)
+ *   AVERAGE_SPEEDING       time-weighted mean over a tumbling averageWindowSeconds
+ *                          window above speedLimit (section control)
+ *   HARSH_BRAKING          speed fell by harshBrakingKmhPerSecond or more between two
+ *                          reports, and the next report confirms it (no one-sample glitch)
+ *   STATIONARY_ON_HIGHWAY  below 5 km/h for stationarySeconds, having driven at highwaySpeed
+ *                          or more shortly before stopping (the fleet has no road map)
+ *
+ * Windows break on gaps: reports more than maxGapSeconds apart (lost signal)
+ * restart them, and reports not newer than the last one are ignored.
+ * An alert of a given type is raised at most once per vehicle per
+ * suppressSeconds, however long the condition lasts.
+ *
+ * Threading: the pipeline hands all reports of a vehicle to the same worker,
+ * so a vehicle's state is only ever written by one thread at a time.
+ *
+ * Config: traffic.rules.speedLimit (90), .sustainSeconds (10), .averageWindowSeconds (60),
+ *         .harshBrakingKmhPerSecond (15), .stationarySeconds (120), .highwaySpeed (80),
+ *         .maxGapSeconds (10), .suppressSeconds (300)
+ */
+public class ViolationRuleEngine {
+
+    public static final String SPEEDING = "SPEEDING";
+    public static final String AVERAGE_SPEEDING = "AVERAGE_SPEEDING";
+    public static final String HARSH_BRAKING = "HARSH_BRAKING";
+    public static final String STATIONARY_ON_HIGHWAY = "STATIONARY_ON_HIGHWAY";
+
+    private static final double STOPPED_KMH = 5.0;
+    private static final long HIGHWAY_LOOKBACK_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private final List<Rule<?>> rules = new ArrayList<>();
+    private final Map<String, VehicleState> vehicles = new ConcurrentHashMap<>();
+    private final long maxGapMillis;
+    private final long suppressMillis;
+
+    // Metrics
+    private final LongAdder evaluated = new LongAdder(); // Every report on every violations worker: no shared cache line
+    private final LongAdder suppressed = new LongAdder();
+    private final AtomicLongArray fired;
+
+    public ViolationRuleEngine() {
+        double speedLimit = Double.parseDouble(System.getProperty("traffic.rules.speedLimit", "90"));
+        this.maxGapMillis = TimeUnit.SECONDS.toMillis(Long.getLong("traffic.rules.maxGapSeconds", 10));
+        this.suppressMillis = TimeUnit.SECONDS.toMillis(Long.getLong("traffic.rules.suppressSeconds", 300));
+        rules.add(new SpeedingRule(speedLimit, TimeUnit.SECONDS.toMillis(Long.getLong("traffic.rules.sustainSeconds", 10))));
+        rules.add(new AverageSpeedingRule(speedLimit, TimeUnit.SECONDS.toMillis(Long.getLong("traffic.rules.averageWindowSeconds", 60))));
+        rules.add(new HarshBrakingRule(Double.parseDouble(System.getProperty("traffic.rules.harshBrakingKmhPerSecond", "15"))));
+        rules.add(new StationaryOnHighwayRule(TimeUnit.SECONDS.toMillis(Long.getLong("traffic.rules.stationarySeconds", 120)),
+                Double.parseDouble(System.getProperty("traffic.rules.highwaySpeed", "80"))));
+        this.fired = new AtomicLongArray(rules.size());
+    }
+
+    /**
+     * Feeds one report to every rule. Returns a bit per rule (see ruleType) that raised an alert on it,
+     * after suppression; 0 for nearly every report.
+     */
+    public int evaluate(VehicleDetails report) {
+        evaluated.increment();
+        VehicleState v = vehicles.get(report.getVehicleId());
+        if (v == null) v = vehicles.computeIfAbsent(report.getVehicleId(), id -> new VehicleState(rules));
+
+        long time = report.getTimestampMillis();
+        if (v.lastTime != Long.MIN_VALUE && time <= v.lastTime) return 0; // Duplicate or late: the windows only move forward
+        Sample sample = v.sample;
+        sample.time = time;
+        sample.speed = report.getSpeed();
+        sample.gap = v.lastTime == Long.MIN_VALUE || time - v.lastTime > maxGapMillis;
+        sample.elapsed = sample.gap ? 0 : time - v.lastTime;
+        sample.previousSpeed = v.lastSpeed;
+
+        int alerts = 0, active = 0;
+        for (int r = 0; r < rules.size(); r++) {
+            if (!test(rules.get(r), v.states[r], sample)) continue;
+            active |= 1 << r;
+            if (time - v.lastAlert[r] < suppressMillis) {
+                suppressed.increment();
+            } else {
+                v.lastAlert[r] = time;
+                fired.incrementAndGet(r);
+                alerts |= 1 << r;
+            }
+        }
+        if (active != v.active) v.active = active;
+        v.lastTime = time;
+        v.lastSpeed = sample.speed;
+        return alerts;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S> boolean test(Rule<S> rule, Object state, Sample sample) {
+        return rule.test((S) state, sample);
+    }
+
+    /** Alert type of a bit returned by evaluate(). */
+    public String ruleType(int bit) {
+        return rules.get(bit).type;
+    }
+
+    public int ruleCount() {
+        return rules.size();
+    }
+
+    /** Whether the rule's condition held at the vehicle's latest report (readable from any thread). */
+    public boolean isActive(String vehicleId, String type) {
+        VehicleState v = vehicles.get(vehicleId);
+        if (v == null) return false;
+        for (int r = 0; r < rules.size(); r++) {
+            if (rules.get(r).type.equals(type)) return (v.active & (1 << r)) != 0;
+        }
+        return false;
+    }
+
+    /** Drops a vehicle's windows (it left the real-time store); a later report starts afresh. */
+    public void forget(String vehicleId) {
+        vehicles.remove(vehicleId);
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("rules.vehicles", (long) vehicles.size());
+        metrics.put("rules.evaluated", evaluated.sum());
+        for (int r = 0; r < rules.size(); r++) metrics.put("rules.fired." + rules.get(r).type, fired.get(r));
+        metrics.put("rules.suppressed", suppressed.sum());
+        return metrics;
+    }
+
+    // --- STATE ---
+
+    private static final class VehicleState {
+        final Sample sample = new Sample(); // Scratch, reused for every report of this vehicle
+        final Object[] states;
+        final long[] lastAlert;
+        long lastTime = Long.MIN_VALUE;
+        double lastSpeed;
+        volatile int active; // Bit per rule holding at the last report (isActive, from RMI threads)
+
+        VehicleState(List<Rule<?>> rules) {
+            states = new Object[rules.size()];
+            lastAlert = new long[rules.size()];
+            for (int r = 0; r < states.length; r++) {
+                states[r] = rules.get(r).newState();
+                lastAlert[r] = Long.MIN_VALUE / 2;
+            }
+        }
+    }
+
+    /** The report being evaluated, with what the rules need from the one before. */
+    static final class Sample {
+        long time;
+        double speed;
+        double previousSpeed;
+        long elapsed; // Since the previous report; 0 after a gap
+        boolean gap; // First report, or too long since the previous one
+    }
+
+    /** A rule with O(1) state per vehicle. test() says whether its condition holds at this report. */
+    abstract static class Rule<S> {
+        final String type;
+
+        Rule(String type) {
+            this.type = type;
+        }
+
+        abstract S newState();
+
+        abstract boolean test(S state, Sample sample);
+    }
+
+    // --- WINDOWS ---
+
+    /** Sliding: since when a condition has held without interruption (-1 = it does not hold). */
+    static final class Sustained {
+        long since = -1;
+
+        /** Returns how long the condition has held, or -1. */
+        long update(boolean holds, Sample sample) {
+            if (!holds) {
+                since = -1;
+                return -1;
+            }
+            if (since < 0 || sample.gap) since = sample.time;
+            return sample.time - since;
+        }
+    }
+
+    /** Tumbling: time-weighted mean over fixed, epoch-aligned windows. */
+    static final class TumblingMean {
+        long windowStart = Long.MIN_VALUE;
+        double weighted; // Sum of value x ms
+        long covered; // Ms of the window with data
+
+        /** Adds the interval ending at this report. Returns the mean of a window that just closed, or NaN. */
+        double update(double value, Sample sample, long windowMillis) {
+            long start = sample.time - Math.floorMod(sample.time, windowMillis);
+            long inWindow = Math.min(sample.elapsed, sample.time - start);
+            double closed = Double.NaN;
+            if (start != windowStart) {
+                if (windowStart == start - windowMillis) { // The interval straddles the boundary: its head closes the last window
+                    weighted += value * (sample.elapsed - inWindow);
+                    covered += sample.elapsed - inWindow;
+                }
+                if (windowStart != Long.MIN_VALUE && covered * 5 >= windowMillis * 4) closed = weighted / covered; // 80% covered
+                windowStart = start;
+                weighted = 0;
+                covered = 0;
+            }
+            weighted += value * inWindow;
+            covered += inWindow;
+            return closed;
+        }
+    }
+
+    // --- RULES ---
+
+    static final class SpeedingRule extends Rule<Sustained> {
+        private final double limit;
+        private final long sustainMillis;
+
+        SpeedingRule(double limit, long sustainMillis) {
+            super(SPEEDING);
+            this.limit = limit;
+            this.sustainMillis = sustainMillis;
+        }
+
+        Sustained newState() {
+            return new Sustained();
+        }
+
+        boolean test(Sustained over, Sample s) {
+            return over.update(s.speed > limit, s) >= sustainMillis;
+        }
+    }
+
+    static final class AverageSpeedingRule extends Rule<TumblingMean> {
+        private final double limit;
+        private final long windowMillis;
+
+        AverageSpeedingRule(double limit, long windowMillis) {
+            super(AVERAGE_SPEEDING);
+            this.limit = limit;
+            this.windowMillis = windowMillis;
+        }
+
+        TumblingMean newState() {
+            return new TumblingMean();
+        }
+
+        boolean test(TumblingMean window, Sample s) {
+            // Speed between two reports taken as their average (trapezoid)
+            double mean = window.update(s.gap ? s.speed : (s.speed + s.previousSpeed) / 2, s, windowMillis);
+            return mean > limit;
+        }
+    }
+
+    static final class HarshBrakingRule extends Rule<HarshBrakingRule.State> {
+        private static final double CONFIRM_TOLERANCE_KMH = 5.0;
+
+        static final class State {
+            boolean pending; // A hard drop waiting for the next report to confirm it
+            double speedAfter;
+        }
+
+        private final double kmhPerSecond;
+
+        HarshBrakingRule(double kmhPerSecond) {
+            super(HARSH_BRAKING);
+            this.kmhPerSecond = kmhPerSecond;
+        }
+
+        State newState() {
+            return new State();
+        }
+
+        boolean test(State st, Sample s) {
+            boolean confirmed = st.pending && !s.gap && s.speed <= st.speedAfter + CONFIRM_TOLERANCE_KMH;
+            st.pending = !s.gap && s.elapsed > 0 && (s.previousSpeed - s.speed) * 1000.0 / s.elapsed >= kmhPerSecond;
+            st.speedAfter = s.speed;
+            return confirmed;
+        }
+    }
+
+    static final class StationaryOnHighwayRule extends Rule<StationaryOnHighwayRule.State> {
+        static final class State {
+            final Sustained stopped = new Sustained();
+            long lastFast = Long.MIN_VALUE; // Last report at highway speed
+        }
+
+        private final long stationaryMillis;
+        private final double highwaySpeed;
+
+        StationaryOnHighwayRule(long stationaryMillis, double highwaySpeed) {
+            super(STATIONARY_ON_HIGHWAY);
+            this.stationaryMillis = stationaryMillis;
+            this.highwaySpeed = highwaySpeed;
+        }
+
+        State newState() {
+            return new State();
+        }
+
+        boolean test(State st, Sample s) {
+            if (s.speed >= highwaySpeed) st.lastFast = s.time;
+            long stoppedFor = st.stopped.update(s.speed < STOPPED_KMH, s);
+            return stoppedFor >= stationaryMillis && st.lastFast != Long.MIN_VALUE
+                    && st.stopped.since - st.lastFast <= HIGHWAY_LOOKBACK_MS;
+        }
+    }
+}
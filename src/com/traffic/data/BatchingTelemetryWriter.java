@@ -0,0 +1,277 @@
+package com.traffic.data;
+
+import com.traffic.common.models.VehicleDetails;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BATCHING PERSISTENCE ENGINE (Bounded Queue, Fixed Writers, Retry)
+ *
+ * Reports are queued and written by a fixed pool of writer threads, in batches
+ * that close at `batchSize` rows or after `lingerMs`, whichever comes first.
+ * A failed batch is retried with exponential backoff (with jitter); a batch that
+ * still fails after `maxRetries` goes to the spill file, or is dropped if
+ * spilling is off.
+ *
+ * When the queue is full, the overflow policy decides:
+ *  - BLOCK       : the caller waits (back-pressure into the ingestion pipeline)
+ *  - DROP_OLDEST : the oldest queued report makes room
+ *  - SPILL       : the report is appended to the spill file; spilled reports are
+ *                  replayed into the queue once it has room again (at least once)
+ *
+ * The spill file is CSV: vehicleId,lat,lon,speed,eventTimeMillis. Replay renames
+ * it to .replay and works through it; a line that does not parse is moved to
+ * .bad (and counted) instead of failing the file, so one corrupt line cannot
+ * have the rest replayed over and over.
+ */
+public class BatchingTelemetryWriter {
+
+    /** Writes one batch (e.g. one array-body INSERT); throws to have it retried. */
+    public interface BatchSink {
+        void write(List<VehicleDetails> batch) throws Exception;
+    }
+
+    /** A batch that must not be retried (e.g. rejected as invalid by the server). */
+    public static class PermanentFailure extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public PermanentFailure(String message) { super(message); }
+    }
+
+    public enum OverflowPolicy { BLOCK, DROP_OLDEST, SPILL }
+
+    private final String name;
+    private final BatchSink sink;
+    private final BlockingQueue<VehicleDetails> queue;
+    private final int writers;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final int maxRetries;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final OverflowPolicy overflow;
+    private final File spillFile;
+    private final Object spillLock = new Object();
+    private volatile long lastFailureNanos = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+
+    // Metrics
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong quarantined = new AtomicLong();
+
+    /** Sizing from system properties traffic.<name>.queue, .writers, .batchSize, .lingerMs, .maxRetries, .backoffMs, .overflow, .spillFile */
+    public BatchingTelemetryWriter(String name, BatchSink sink) {
+        String p = "traffic." + name + ".";
+        this.name = name;
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(Integer.getInteger(p + "queue", 50_000));
+        this.writers = Integer.getInteger(p + "writers", 2);
+        this.batchSize = Integer.getInteger(p + "batchSize", 500);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(p + "lingerMs", 200));
+        this.maxRetries = Integer.getInteger(p + "maxRetries", 5);
+        this.backoffMillis = Long.getLong(p + "backoffMs", 100);
+        this.maxBackoffMillis = Long.getLong(p + "maxBackoffMs", 10_000);
+        this.overflow = OverflowPolicy.valueOf(System.getProperty(p + "overflow", "block").toUpperCase());
+        this.spillFile = new File(System.getProperty(p + "spillFile", name + "_spill.csv"));
+    }
+
+    public void start() {
+        for (int i = 0; i < writers; i++) {
+            daemon(this::writeLoop, name + "-writer-" + i).start();
+        }
+        if (overflow == OverflowPolicy.SPILL) daemon(this::replayLoop, name + "-replay").start();
+        System.out.println(">>> [PERSIST] " + writers + " writer(s), batches of " + batchSize + " / "
+                + TimeUnit.NANOSECONDS.toMillis(lingerNanos) + " ms, queue " + (queue.size() + queue.remainingCapacity())
+                + ", overflow " + overflow);
+    }
+
+    /** Queues a report for writing; what happens on a full queue depends on the overflow policy. */
+    public void submit(VehicleDetails report) {
+        if (queue.offer(report)) return;
+        switch (overflow) {
+            case BLOCK:
+                try {
+                    queue.put(report);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(report)) {
+                    if (queue.poll() != null) dropped.incrementAndGet();
+                }
+                break;
+            case SPILL:
+                spill(Collections.singletonList(report));
+                break;
+        }
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put(name + ".queueDepth", (long) queue.size());
+        metrics.put(name + ".written", written.get());
+        metrics.put(name + ".batches", batches.get());
+        metrics.put(name + ".retries", retries.get());
+        metrics.put(name + ".dropped", dropped.get());
+        metrics.put(name + ".spilled", spilled.get());
+        metrics.put(name + ".replayed", replayed.get());
+        metrics.put(name + ".quarantined", quarantined.get());
+        return metrics;
+    }
+
+    // --- WRITERS ---
+
+    private void writeLoop() {
+        List<VehicleDetails> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                // 1. Block for the first row, then fill until the batch is full or has lingered long enough
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) continue;
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    VehicleDetails next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                // 2. Write it, retrying transient failures
+                writeWithRetry(batch);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeWithRetry(List<VehicleDetails> batch) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                sink.write(batch);
+                batches.incrementAndGet();
+                written.addAndGet(batch.size());
+                return;
+            } catch (PermanentFailure e) {
+                System.err.println("!!! [PERSIST] Batch of " + batch.size() + " rejected: " + e.getMessage());
+                dropped.addAndGet(batch.size());
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxRetries) {
+                    lastFailureNanos = System.nanoTime();
+                    System.err.println("!!! [PERSIST] Batch of " + batch.size() + " failed after " + (attempt + 1) + " attempts: " + e.getMessage());
+                    if (overflow == OverflowPolicy.SPILL) spill(batch);
+                    else dropped.addAndGet(batch.size());
+                    return;
+                }
+                retries.incrementAndGet();
+                // Exponential backoff, capped, with jitter so writers do not retry in lockstep
+                long delay = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt, 20));
+                Thread.sleep(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+            }
+        }
+    }
+
+    // --- SPILL FILE ---
+
+    private void spill(List<VehicleDetails> reports) {
+        synchronized (spillLock) {
+            try (BufferedWriter out = new BufferedWriter(new FileWriter(spillFile, true))) {
+                for (VehicleDetails r : reports) {
+                    out.write(r.getVehicleId() + "," + r.getLatitude() + "," + r.getLongitude() + ","
+                            + r.getSpeed() + "," + r.getTimestampMillis());
+                    out.newLine();
+                }
+                spilled.addAndGet(reports.size());
+            } catch (IOException e) {
+                System.err.println("!!! [PERSIST] Spill failed, " + reports.size() + " report(s) lost: " + e.getMessage());
+                dropped.addAndGet(reports.size());
+            }
+        }
+    }
+
+    // Feeds spilled reports back once the queue has room and the sink has stopped failing (checked every second)
+    private void replayLoop() {
+        File replaying = new File(spillFile.getPath() + ".replay");
+        File bad = new File(spillFile.getPath() + ".bad");
+        while (true) {
+            try {
+                Thread.sleep(1000);
+                if (!replaying.exists()) {
+                    if (queue.remainingCapacity() < queue.size() || !spillFile.exists()) continue;
+                    if (System.nanoTime() - lastFailureNanos < TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis)) continue;
+                    synchronized (spillLock) {
+                        if (!spillFile.renameTo(replaying)) continue;
+                    }
+                }
+                try (BufferedReader in = new BufferedReader(new FileReader(replaying))) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        VehicleDetails report = parseSpilled(line);
+                        if (report == null) {
+                            quarantine(bad, line);
+                            continue;
+                        }
+                        queue.put(report);
+                        replayed.incrementAndGet();
+                    }
+                }
+                if (!replaying.delete()) System.err.println("!!! [PERSIST] Could not delete " + replaying);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("!!! [PERSIST] Replay error: " + e.getMessage());
+            }
+        }
+    }
+
+    // One spill line back into a report; null if it is not one (torn write, id with a comma, hand edit)
+    private static VehicleDetails parseSpilled(String line) {
+        String[] f = line.split(",", -1);
+        if (f.length != 5 || f[0].isEmpty()) return null;
+        try {
+            return new VehicleDetails(f[0], Double.parseDouble(f[1]), Double.parseDouble(f[2]),
+                    Double.parseDouble(f[3]), Long.parseLong(f[4]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void quarantine(File bad, String line) {
+        quarantined.incrementAndGet();
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(bad, true))) {
+            out.write(line);
+            out.newLine();
+        } catch (IOException e) {
+            System.err.println("!!! [PERSIST] Cannot quarantine a bad spill line, dropped: " + e.getMessage());
+        }
+    }
+
+    private static Thread daemon(Runnable task, String threadName) {
+        Thread t = new Thread(task, threadName);
+        t.setDaemon(true);
+        return t;
+    }
+}
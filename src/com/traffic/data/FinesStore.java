@@ -0,0 +1,303 @@
+package com.traffic.data;
+
+import com.traffic.common.models.TrafficAlert;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FINES STORE (Local, Append-Only, Idempotent)
+ *
+ * Where the police station keeps the fines it received. One line per fine in
+ * fines.log, tab-separated:
+ *   alertId  type  vehicleId  speed  latitude  longitude  timestamp  receivedAt
+ * Text fields are escaped (backslash, tab, CR and LF as \\ \t \r \n), so an
+ * id can never split a line or shift the columns.
+ *
+ * record() appends a whole batch with one write, and only returns once an
+ * fsync has covered it: the consumer acknowledges the batch to the broker
+ * afterwards, so a crash in between means redelivery, never loss. Concurrent
+ * batches share fsyncs (group commit): the first one to need a sync runs it
+ * outside the lock while the others append behind it, and the next sync then
+ * covers all of them at once. Redelivered alerts (and the producer's occasional
+ * resend) are recognised by alertId and skipped; the ids of the last
+ * dedupEntries fines are kept in memory and rebuilt from the file on startup.
+ * A failed write or fsync is cut back off the file (every batch the sync was to
+ * cover fails and is redelivered) so a retry starts clean; a torn last line
+ * left by a crash is dropped on startup.
+ *
+ * Config: traffic.fines.dedupEntries (1000000)
+ */
+public class FinesStore {
+
+    private static final String FILE_NAME = "fines.log";
+
+    private final FileChannel channel;
+    private final Map<String, Boolean> recentIds; // Guarded by this, insertion order: oldest ids go first
+    private long size; // Bytes written, guarded by this
+    private long durable; // Bytes covered by an fsync, guarded by this
+
+    // Group commit, guarded by this: batches written but not synced yet, and whether a sync is running
+    private final List<Pending> unsynced = new ArrayList<>();
+    private boolean syncing;
+
+    // Metrics
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+
+    public FinesStore(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        int dedupEntries = Math.max(1, Integer.getInteger("traffic.fines.dedupEntries", 1_000_000));
+        this.recentIds = new LinkedHashMap<String, Boolean>(1024, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > dedupEntries;
+            }
+        };
+        File file = new File(dir, FILE_NAME);
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+        recover();
+        System.out.println(">>> [FINES] " + file + ": " + String.format("%,d", recovered.get()) + " fine(s) on record");
+    }
+
+    /**
+     * Appends the alerts not already on record, durably. Returns how many were new.
+     * Throws if the write or the fsync failed; nothing of the batch is then on record.
+     */
+    public int record(List<TrafficAlert> alerts, long receivedAt) throws IOException {
+        Pending batch = append(alerts, receivedAt);
+        if (batch == null) return 0;
+
+        // Until a sync covers our batch: wait for the one running, or run the next one for everyone queued
+        boolean interrupted = false;
+        try {
+            while (true) {
+                long target;
+                synchronized (this) {
+                    if (batch.done) break;
+                    if (syncing) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true; // An fsync takes milliseconds: finish waiting, keep the flag
+                        }
+                        continue;
+                    }
+                    syncing = true;
+                    target = size;
+                }
+                IOException failure = null;
+                try {
+                    channel.force(false); // Outside the lock: the other consumers append meanwhile
+                } catch (IOException e) {
+                    failure = e;
+                }
+                synchronized (this) {
+                    syncing = false;
+                    if (failure == null) synced(target);
+                    else syncFailed(failure);
+                    notifyAll();
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        if (batch.failure != null) throw new IOException("Fines not synced to disk", batch.failure);
+        stored.addAndGet(batch.ids.length);
+        batches.incrementAndGet();
+        return batch.ids.length;
+    }
+
+    // Writes the alerts not on record (nor in a batch still waiting for its sync) at the end of the file
+    private synchronized Pending append(List<TrafficAlert> alerts, long receivedAt) throws IOException {
+        StringBuilder lines = new StringBuilder(alerts.size() * 96);
+        String[] fresh = new String[alerts.size()];
+        int n = 0;
+        for (TrafficAlert alert : alerts) {
+            String id = alert.getAlertId();
+            if (recentIds.containsKey(id) || contains(fresh, n, id)) {
+                duplicates.incrementAndGet();
+                continue;
+            }
+            fresh[n++] = id;
+            escape(lines, id).append('\t');
+            escape(lines, alert.getType()).append('\t');
+            escape(lines, alert.getVehicleId()).append('\t').append(alert.getSpeed()).append('\t').append(alert.getLatitude())
+                    .append('\t').append(alert.getLongitude()).append('\t').append(alert.getTimestampMillis())
+                    .append('\t').append(receivedAt).append('\n');
+        }
+        if (n == 0) return null;
+
+        ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            while (bytes.hasRemaining()) channel.write(bytes, size + bytes.position());
+        } catch (IOException e) {
+            try {
+                channel.truncate(size); // Leave no half batch behind for the retry to duplicate
+            } catch (IOException ignored) {
+                // Startup drops a torn tail anyway
+            }
+            throw e;
+        }
+        size += bytes.limit();
+        Pending batch = new Pending(size, Arrays.copyOf(fresh, n));
+        for (String id : batch.ids) recentIds.put(id, Boolean.TRUE); // A concurrent batch skips them; undone if the sync fails
+        unsynced.add(batch);
+        return batch;
+    }
+
+    // Called with the lock held: every batch written before the sync started is on disk
+    private void synced(long target) {
+        durable = target;
+        syncs.incrementAndGet();
+        unsynced.removeIf(batch -> {
+            if (batch.end > target) return false;
+            batch.done = true;
+            return true;
+        });
+    }
+
+    // Called with the lock held: nothing past the last good sync can be trusted, so it all goes
+    private void syncFailed(IOException failure) {
+        try {
+            channel.truncate(durable);
+        } catch (IOException ignored) {
+            // Startup drops a torn tail anyway
+        }
+        size = durable;
+        for (Pending batch : unsynced) {
+            for (String id : batch.ids) recentIds.remove(id); // Redelivered, so they must not count as recorded
+            batch.failure = failure;
+            batch.done = true;
+        }
+        unsynced.clear();
+    }
+
+    // Text fields: a value with a tab or newline in it must stay inside its column and line
+    private static StringBuilder escape(StringBuilder out, String text) {
+        if (text == null) return out.append("null");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\': out.append("\\\\"); break;
+                case '\t': out.append("\\t"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                default: out.append(c);
+            }
+        }
+        return out;
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('\\') < 0) return text;
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\\' || i + 1 == text.length()) {
+                out.append(c);
+                continue;
+            }
+            char next = text.charAt(++i);
+            out.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+        }
+        return out.toString();
+    }
+
+    // Duplicates within one batch: batches are small, a scan is enough
+    private static boolean contains(String[] ids, int n, String id) {
+        for (int i = 0; i < n; i++) if (ids[i].equals(id)) return true;
+        return false;
+    }
+
+    public synchronized boolean isRecorded(String alertId) {
+        return recentIds.containsKey(alertId);
+    }
+
+    /** Fines on record, including those from before this run. */
+    public long count() {
+        return recovered.get() + stored.get();
+    }
+
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("fines.total", count());
+        metrics.put("fines.stored", stored.get());
+        metrics.put("fines.duplicates", duplicates.get());
+        metrics.put("fines.batches", batches.get());
+        metrics.put("fines.syncs", syncs.get());
+        return metrics;
+    }
+
+    // --- RECOVERY ---
+
+    // Reads the ids back in and cuts a torn last line (no newline) off the end
+    private void recover() throws IOException {
+        long complete = 0; // Bytes up to the last newline
+        long lines = 0;
+        channel.position(0);
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel), 1 << 16);
+        ByteArrayOutputStream id = new ByteArrayOutputStream(64);
+        boolean inId = true;
+        long offset = 0;
+        int b;
+        while ((b = in.read()) >= 0) {
+            offset++;
+            if (b == '\n') {
+                if (id.size() > 0 && !inId) {
+                    recentIds.put(unescape(new String(id.toByteArray(), StandardCharsets.UTF_8)), Boolean.TRUE);
+                    lines++;
+                }
+                complete = offset;
+                id.reset();
+                inId = true;
+            } else if (b == '\t') {
+                inId = false;
+            } else if (inId) {
+                id.write(b);
+            }
+        }
+        if (complete < channel.size()) {
+            System.err.println("!!! [FINES] Discarding a torn last line (" + (channel.size() - complete) + " bytes)");
+            channel.truncate(complete);
+            channel.force(false);
+        }
+        size = complete;
+        durable = complete;
+        recovered.set(lines);
+    }
+
+    // A batch on the file, waiting for an fsync to cover it (guarded by the store's lock)
+    private static final class Pending {
+        final long end; // File size just after the batch
+        final String[] ids;
+        boolean done;
+        IOException failure;
+
+        Pending(long end, String[] ids) {
+            this.end = end;
+            this.ids = ids;
+        }
+    }
+}
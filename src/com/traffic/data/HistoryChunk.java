@@ -0,0 +1,202 @@
+package com.traffic.data;
+
+import java.util.Arrays;
+
+/**
+ * One compressed run of a vehicle's trajectory (Gorilla-style bit packing).
+ * Points must be appended in increasing time order.
+ *
+ *  - time:      delta-of-delta, in a variable-width bucket ('0' when the report
+ *               interval is steady, '10'+7 bits for a few ms of jitter, ...)
+ *  - lat / lon: fixed point (1e-7 degree, ~1 cm, as on the UDP wire), then
+ *               delta-of-delta, same buckets (steady heading and speed = '0')
+ *  - speed:     XOR with the previous value's IEEE bits, leading/trailing zero
+ *               window reused when it fits (unchanged speed = '0')
+ *
+ * The first point is stored raw. Not thread-safe: the owning series locks.
+ */
+final class HistoryChunk {
+
+    private static final double COORD_SCALE = 1e7;
+    private static final int[] TIME_BUCKETS = {7, 12, 20};
+    private static final int[] COORD_BUCKETS = {6, 12, 20};
+
+    private long[] words;
+    private int bits;
+    private int count;
+    private long firstTime;
+    private long lastTime;
+
+    // Encoder state
+    private long prevDelta;
+    private int prevLat, prevLon, prevLatDelta, prevLonDelta;
+    private long prevSpeedBits;
+    private int prevLeading = -1, prevTrailing;
+
+    HistoryChunk(int expectedPoints) {
+        this.words = new long[Math.max(4, expectedPoints / 4)]; // ~16 bits per point to start with
+    }
+
+    int count() { return count; }
+    long firstTime() { return firstTime; }
+    long lastTime() { return lastTime; }
+    long sizeBytes() { return (long) words.length * 8; }
+
+    void append(long time, double lat, double lon, double speed) {
+        int qLat = (int) Math.round(lat * COORD_SCALE);
+        int qLon = (int) Math.round(lon * COORD_SCALE);
+        long speedBits = Double.doubleToRawLongBits(speed);
+        if (count == 0) {
+            writeBits(time, 64);
+            writeBits(qLat, 32);
+            writeBits(qLon, 32);
+            writeBits(speedBits, 64);
+            firstTime = time;
+        } else {
+            long delta = time - lastTime;
+            writeBucketed(delta - prevDelta, TIME_BUCKETS);
+            prevDelta = delta;
+            int latDelta = qLat - prevLat;
+            int lonDelta = qLon - prevLon;
+            writeBucketed((long) latDelta - prevLatDelta, COORD_BUCKETS);
+            writeBucketed((long) lonDelta - prevLonDelta, COORD_BUCKETS);
+            prevLatDelta = latDelta;
+            prevLonDelta = lonDelta;
+            writeXor(speedBits ^ prevSpeedBits);
+        }
+        lastTime = time;
+        prevLat = qLat;
+        prevLon = qLon;
+        prevSpeedBits = speedBits;
+        count++;
+    }
+
+    /** No more appends: give back the unused tail of the buffer. */
+    void seal() {
+        words = Arrays.copyOf(words, (bits + 63) >>> 6);
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /** Decodes the chunk front to back: while (c.next()) { c.time, c.lat, ... } */
+    final class Cursor {
+        long time;
+        double lat, lon, speed;
+        private int read;
+        private int pos;
+        private long delta;
+        private int qLat, qLon, latDelta, lonDelta;
+        private long speedBits;
+        private int leading, trailing;
+
+        boolean next() {
+            if (read == count) return false;
+            if (read == 0) {
+                time = readBits(64);
+                qLat = (int) readBits(32);
+                qLon = (int) readBits(32);
+                speedBits = readBits(64);
+            } else {
+                delta += readBucketed(TIME_BUCKETS);
+                time += delta;
+                latDelta += (int) readBucketed(COORD_BUCKETS);
+                lonDelta += (int) readBucketed(COORD_BUCKETS);
+                qLat += latDelta;
+                qLon += lonDelta;
+                speedBits ^= readXor();
+            }
+            lat = qLat / COORD_SCALE;
+            lon = qLon / COORD_SCALE;
+            speed = Double.longBitsToDouble(speedBits);
+            read++;
+            return true;
+        }
+
+        private long readXor() {
+            if (readBits(1) == 0) return 0;
+            if (readBits(1) == 1) {
+                leading = (int) readBits(5);
+                int significant = (int) readBits(6) + 1;
+                trailing = 64 - leading - significant;
+            }
+            return readBits(64 - leading - trailing) << trailing;
+        }
+
+        private long readBucketed(int[] widths) {
+            int ones = 0;
+            while (ones <= widths.length && readBits(1) == 1) ones++;
+            if (ones == 0) return 0;
+            long zigzag = readBits(ones <= widths.length ? widths[ones - 1] : 64);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        private long readBits(int n) {
+            int index = pos >>> 6;
+            int offset = pos & 63;
+            int free = 64 - offset;
+            long value = (words[index] << offset) >>> (64 - n);
+            if (n > free) value |= words[index + 1] >>> (64 - (n - free));
+            pos += n;
+            return value;
+        }
+    }
+
+    // --- BIT WRITING ---
+
+    // '0' for zero, else '10' / '110' / '1110' + zigzag value in the first bucket wide enough, '1111' + 64 bits
+    private void writeBucketed(long value, int[] widths) {
+        if (value == 0) {
+            writeBits(0, 1);
+            return;
+        }
+        long zigzag = (value << 1) ^ (value >> 63);
+        for (int i = 0; i < widths.length; i++) {
+            if (zigzag >>> widths[i] == 0) {
+                writeBits(((1L << (i + 1)) - 1) << 1, i + 2);
+                writeBits(zigzag, widths[i]);
+                return;
+            }
+        }
+        writeBits((1L << (widths.length + 1)) - 1, widths.length + 1);
+        writeBits(zigzag, 64);
+    }
+
+    // '0' same value; '10' + bits inside the previous window; '11' + 5 bits leading zeros + 6 bits length + bits
+    private void writeXor(long xor) {
+        if (xor == 0) {
+            writeBits(0, 1);
+            return;
+        }
+        int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+            writeBits(0b10, 2);
+            writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+        } else {
+            int significant = 64 - leading - trailing;
+            writeBits(0b11, 2);
+            writeBits(leading, 5);
+            writeBits(significant - 1, 6);
+            writeBits(xor >>> trailing, significant);
+            prevLeading = leading;
+            prevTrailing = trailing;
+        }
+    }
+
+    // Low n bits of value (1..64), most significant first
+    private void writeBits(long value, int n) {
+        if (bits + n > (long) words.length * 64) words = Arrays.copyOf(words, words.length * 2);
+        if (n < 64) value &= (1L << n) - 1;
+        int index = bits >>> 6;
+        int free = 64 - (bits & 63);
+        if (n <= free) {
+            words[index] |= value << (free - n);
+        } else {
+            words[index] |= value >>> (n - free);
+            words[index + 1] |= value << (64 - (n - free));
+        }
+        bits += n;
+    }
+}
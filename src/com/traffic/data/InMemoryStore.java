@@ -1,4 +1,721 @@
 package com.traffic.data;
 
+import com.traffic.common.models.VehicleDelta;
+import com.traffic.common.models.VehicleDetails;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * REAL-TIME VEHICLE STATE (Struct-of-Arrays)
+ *
+ * Live positions are kept in primitive columns (lat, lon, speed, event time)
+ * instead of one VehicleDetails + map entry per vehicle.
+ * Each vehicle id is interned to a slot once (open-addressing index, no boxing);
+ * after that an update only writes longs into existing arrays and allocates nothing.
+ *
+ * Columns are split into fixed pages so the store can grow to millions of
+ * vehicles without ever copying. Every slot carries a sequence number used
+ * as a seqlock: odd while a write is in progress, so readers retry and
+ * always see the four values of one report together.
+ *
+ * A SpatialGridIndex is maintained alongside, so viewport (bounding-box)
+ * queries only visit the grid cells they overlap. Spatial queries test the
+ * lat/lon columns of each candidate first and only build a VehicleDetails for
+ * the ones they return.
+ *
+ * Versioning: every write stamps its slot with the current version, and each
+ * changesSince() call closes a version. Writers only read the version counter,
+ * so it is never contended on the ingestion path. Removals are journaled in a
+ * ring so delta readers learn about them; a reader older than the ring gets
+ * a full snapshot instead.
+ *
+ * Expiry: a vehicle not heard from for `ttlMillis` (arrival time of its last
+ * report) is removed by expireIdle(), journaled like any removal, so delta and
+ * push readers see it as evicted. Slots are filed in a hashed timer wheel by
+ * deadline. A report only stamps its arrival time; when a bucket comes due, the
+ * slots that reported since are re-filed (at most once per TTL each) and the
+ * rest are removed, so a pass costs what came due, not the fleet. At capacity,
+ * the vehicle heard from least recently (to a wheel tick) makes room for a new
+ * one. With ttlMillis <= 0 nothing expires and a full store rejects newcomers.
+ */
 public class InMemoryStore {
+
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS; // 65,536 vehicles per page
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int JOURNAL_SIZE = 1 << 16; // Removals remembered for delta readers
+    private static final int WHEEL_BUCKETS = 512; // The wheel spans about twice the TTL
+
+    private final int maxVehicles; // Slots (whole pages)
+    private final int capacity; // Vehicles held at most
+    private final AtomicReferenceArray<Page> pages;
+    private final SpatialGridIndex spatial;
+    private volatile SlotIndex index = new SlotIndex(1024);
+    private volatile int size = 0;
+
+    // Slot allocation (rare: first report of a vehicle, or removal), guarded by this
+    private int nextSlot = 0;
+    private int[] freeSlots = new int[1024];
+    private int freeCount = 0;
+    private volatile int highWaterMark = 0; // Slots below this may be in use
+
+    // Change tracking. Slots carry the version of their last write; removals go to the journal.
+    private final AtomicLong version = new AtomicLong(1);
+    private final long[] journalVersions = new long[JOURNAL_SIZE]; // Guarded by this
+    private final String[] journalIds = new String[JOURNAL_SIZE];
+    private long journalWrites = 0;
+
+    // Idle expiry, guarded by this: occupied slots linked per bucket of their deadline (last arrival + ttl)
+    private final long ttlMillis;
+    private final long tickMillis;
+    private final int[] wheelHeads = new int[WHEEL_BUCKETS];
+    private long wheelTick; // Buckets up to this tick have been processed
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong lruEvicted = new AtomicLong();
+    private volatile Consumer<String> removalListener; // Told about every vehicle that leaves the store
+
+    public InMemoryStore(int maxVehicles) {
+        this(maxVehicles, 0.01);
+    }
+
+    public InMemoryStore(int maxVehicles, double cellDegrees) {
+        this(maxVehicles, cellDegrees, 0);
+    }
+
+    public InMemoryStore(int maxVehicles, double cellDegrees, long ttlMillis) {
+        int pageCount = (maxVehicles + PAGE_SIZE - 1) >>> PAGE_BITS;
+        this.maxVehicles = pageCount * PAGE_SIZE;
+        this.capacity = maxVehicles;
+        this.pages = new AtomicReferenceArray<>(pageCount);
+        this.spatial = new SpatialGridIndex(cellDegrees, this.maxVehicles);
+        this.ttlMillis = ttlMillis;
+        this.tickMillis = Math.max(1, ttlMillis / (WHEEL_BUCKETS / 2));
+        this.wheelTick = System.currentTimeMillis() / tickMillis;
+        Arrays.fill(wheelHeads, -1);
+    }
+
+    /** Called with the id of every vehicle removed, expired or evicted, while the store is locked: keep it short. */
+    public void setRemovalListener(Consumer<String> listener) {
+        this.removalListener = listener;
+    }
+
+    // --- WRITES ---
+
+    /**
+     * Stores the latest report of a vehicle. Returns false only if the store is full.
+     * Intended for one writer per vehicle (the ingestion pipeline partitions by id);
+     * concurrent writers to the same vehicle are still safe, they just spin.
+     */
+    public boolean update(VehicleDetails details) {
+        String vehicleId = details.getVehicleId();
+        while (true) {
+            int slot = index.get(vehicleId);
+            if (slot < 0) {
+                slot = allocateSlot(details);
+                if (slot < 0) return false;
+            }
+
+            Page page = pages.get(slot >>> PAGE_BITS);
+            int i = slot & PAGE_MASK;
+            long seq = page.seq.get(i);
+            if ((seq & 1) != 0 || !page.seq.compareAndSet(i, seq, seq + 1)) {
+                Thread.yield(); // Another writer or a removal holds the slot
+                continue;
+            }
+
+            if (!vehicleId.equals(page.ids.get(i))) {
+                // Slot was removed (and maybe reused) since we looked it up: release and retry
+                page.seq.set(i, seq + 2);
+                Thread.yield();
+                continue;
+            }
+
+            writeRow(page, i, details);
+            page.version.lazySet(i, version.get());
+            moveInGrid(page, i, slot, spatial.cellOf(details.getLatitude(), details.getLongitude()));
+            page.seq.set(i, seq + 2);
+            return true;
+        }
+    }
+
+    /** Removes a vehicle and recycles its slot. Returns false if it was not present. */
+    public boolean remove(String vehicleId) {
+        return remove(vehicleId, Long.MAX_VALUE);
+    }
+
+    // Removes the vehicle only if its last report arrived before `idleSince`
+    private boolean remove(String vehicleId, long idleSince) {
+        int slot = index.get(vehicleId);
+        if (slot < 0) return false;
+
+        Page page = pages.get(slot >>> PAGE_BITS);
+        int i = slot & PAGE_MASK;
+        long seq = lockSlot(page, i);
+        boolean owned = vehicleId.equals(page.ids.get(i)) && page.lastSeen.get(i) < idleSince;
+        if (owned) {
+            page.ids.set(i, null);
+            moveInGrid(page, i, slot, SpatialGridIndex.NO_CELL);
+        }
+        page.seq.set(i, seq + 2);
+        if (!owned) return false;
+
+        synchronized (this) {
+            forget(slot, vehicleId);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the vehicles whose last report arrived more than the TTL before `now`. Returns how many.
+     * Only the wheel buckets that came due since the last call are visited.
+     */
+    public int expireIdle(long now) {
+        if (ttlMillis <= 0) return 0;
+        List<String> due = new ArrayList<>();
+        synchronized (this) {
+            long target = now / tickMillis;
+            for (long tick = Math.max(wheelTick + 1, target - WHEEL_BUCKETS + 1); tick <= target; tick++) {
+                int bucket = (int) (tick % WHEEL_BUCKETS);
+                for (int slot = wheelHeads[bucket]; slot >= 0; ) {
+                    Page page = pages.get(slot >>> PAGE_BITS);
+                    int i = slot & PAGE_MASK;
+                    int next = page.wheelNext[i];
+                    long deadline = page.lastSeen.get(i) + ttlMillis;
+                    // Reported since it was filed: re-file by its new deadline. Due: stays filed for the next
+                    // pass until removed below, in case it reports in between
+                    relink(slot, deadline <= now ? target + 1 : Math.max(deadline / tickMillis, target + 1));
+                    if (deadline <= now) {
+                        String vehicleId = page.ids.get(i);
+                        if (vehicleId != null) due.add(vehicleId);
+                    }
+                    slot = next;
+                }
+            }
+            wheelTick = Math.max(wheelTick, target);
+        }
+        int removed = 0;
+        for (String vehicleId : due) {
+            if (remove(vehicleId, now - ttlMillis + 1)) removed++;
+        }
+        expired.addAndGet(removed);
+        return removed;
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("vehicles.capacity", (long) capacity);
+        metrics.put("vehicles.expired", expired.get());
+        metrics.put("vehicles.lruEvicted", lruEvicted.get());
+        metrics.put("vehicles.gridCells", (long) spatial.populatedCells());
+        return metrics;
+    }
+
+    public void clear() {
+        int limit = highWaterMark;
+        for (int slot = 0; slot < limit; slot++) {
+            String vehicleId = pages.get(slot >>> PAGE_BITS).ids.get(slot & PAGE_MASK);
+            if (vehicleId != null) remove(vehicleId);
+        }
+    }
+
+    // --- READS ---
+
+    public int size() {
+        return size;
+    }
+
+    /** Current (still open) version: writes happening now are stamped with it. */
+    public long version() {
+        return version.get();
+    }
+
+    public boolean contains(String vehicleId) {
+        return index.get(vehicleId) >= 0;
+    }
+
+    /** Latest report of a vehicle, or null if unknown. */
+    public VehicleDetails get(String vehicleId) {
+        int slot = index.get(vehicleId);
+        if (slot < 0) return null;
+        VehicleDetails details = read(slot);
+        return details != null && vehicleId.equals(details.getVehicleId()) ? details : null;
+    }
+
+    /** Latest report of every vehicle; each entry is internally consistent. */
+    public List<VehicleDetails> snapshot() {
+        List<VehicleDetails> result = new ArrayList<>(size);
+        int limit = highWaterMark;
+        for (int slot = 0; slot < limit; slot++) {
+            VehicleDetails details = read(slot);
+            if (details != null) result.add(details);
+        }
+        return result;
+    }
+
+    /**
+     * Vehicles written or removed since a version returned by an earlier call (0 = none yet).
+     * Closes the current version, so the next call with the returned version only sees later changes.
+     *
+     * With a bounding box (may be null) only vehicles inside it are returned; changed vehicles
+     * now outside it are listed as evicted, since the client may still show them.
+     */
+    public VehicleDelta changesSince(long sinceVersion, double[] box) {
+        // 1. Close the current version: later writes are stamped newer and belong to the next delta.
+        //    Writes stamped `closed` are all seen below (finished, or in progress and waited for).
+        long closed = version.getAndIncrement();
+
+        // 2. Removals since then, unless the journal has already forgotten some of them
+        List<String> evicted = new ArrayList<>();
+        boolean full = sinceVersion <= 0 || sinceVersion > closed;
+        if (!full) {
+            synchronized (this) {
+                long oldest = Math.max(0, journalWrites - JOURNAL_SIZE);
+                if (journalWrites > JOURNAL_SIZE && journalVersions[(int) (oldest & (JOURNAL_SIZE - 1))] >= sinceVersion) {
+                    full = true; // Entries older than the ring may have been relevant
+                } else {
+                    for (long w = oldest; w < journalWrites; w++) {
+                        int entry = (int) (w & (JOURNAL_SIZE - 1));
+                        if (journalVersions[entry] >= sinceVersion) evicted.add(journalIds[entry]);
+                    }
+                }
+            }
+        }
+
+        // 3. Full state, or a scan of the slot versions (one long per slot) for changed rows
+        if (full) {
+            List<VehicleDetails> all = box == null ? snapshot() : queryBox(box[0], box[1], box[2], box[3]);
+            return new VehicleDelta(closed + 1, true, all, new ArrayList<String>());
+        }
+        List<VehicleDetails> changed = new ArrayList<>();
+        int limit = highWaterMark;
+        for (int slot = 0; slot < limit; slot++) {
+            Page page = pages.get(slot >>> PAGE_BITS);
+            int i = slot & PAGE_MASK;
+            // A write in progress may carry a version read before step 1: wait for it and include it
+            if ((page.seq.get(i) & 1) == 0 && page.version.get(i) < sinceVersion) continue;
+            VehicleDetails details = read(slot);
+            if (details == null) continue;
+            if (box == null || (details.getLatitude() >= box[0] && details.getLatitude() <= box[2]
+                    && details.getLongitude() >= box[1] && details.getLongitude() <= box[3])) {
+                changed.add(details);
+            } else {
+                evicted.add(details.getVehicleId());
+            }
+        }
+        return new VehicleDelta(closed + 1, false, changed, evicted);
+    }
+
+    /** Vehicles inside a bounding box. Cost follows the number of overlapped cells and their occupants. */
+    public List<VehicleDetails> queryBox(double minLat, double minLon, double maxLat, double maxLon) {
+        List<SpatialGridIndex.Cell> cells = new ArrayList<>();
+        spatial.collectCells(minLat, minLon, maxLat, maxLon, cells);
+
+        List<VehicleDetails> result = new ArrayList<>();
+        double[] at = new double[2];
+        for (SpatialGridIndex.Cell cell : cells) {
+            for (int slot : cell.members()) {
+                // A vehicle caught mid-move sits in two cells for an instant: only count it in its current one
+                if (!readPosition(slot, at) || spatial.cellOf(at[0], at[1]) != cell.key) continue;
+                if (at[0] < minLat || at[0] > maxLat || at[1] < minLon || at[1] > maxLon) continue;
+                VehicleDetails details = read(slot);
+                if (details != null && inBox(details, minLat, minLon, maxLat, maxLon)) result.add(details); // May have moved since
+            }
+        }
+        return result;
+    }
+
+    /** Vehicles within radiusKm (great-circle) of a point, closest first. */
+    public List<VehicleDetails> queryRadius(double lat, double lon, double radiusKm) {
+        double dLat = radiusKm / SpatialGridIndex.KM_PER_DEGREE_LAT;
+        double cosLat = Math.max(0.01, Math.cos(Math.toRadians(Math.min(89.9, Math.abs(lat) + dLat))));
+        double dLon = Math.min(180.0, dLat / cosLat);
+
+        List<SpatialGridIndex.Cell> cells = new ArrayList<>();
+        spatial.collectCells(lat - dLat, lon - dLon, lat + dLat, lon + dLon, cells);
+
+        SpatialGridIndex.DistanceFrom from = new SpatialGridIndex.DistanceFrom(lat, lon);
+        double maxHaversine = SpatialGridIndex.DistanceFrom.haversineAt(radiusKm);
+        List<Neighbour> hits = new ArrayList<>();
+        double[] at = new double[2];
+        for (SpatialGridIndex.Cell cell : cells) {
+            for (int slot : cell.members()) {
+                if (!readPosition(slot, at) || spatial.cellOf(at[0], at[1]) != cell.key) continue;
+                // No great circle is shorter than the latitude difference: skip the trigonometry for most misses
+                if (Math.abs(at[0] - lat) * SpatialGridIndex.KM_PER_DEGREE_LAT > radiusKm) continue;
+                double haversine = from.haversine(at[0], at[1]);
+                if (haversine > maxHaversine) continue; // Clear miss, without the asin
+                VehicleDetails details = read(slot);
+                if (details == null) continue;
+                // Measured again only if the vehicle moved between the two reads
+                double km = details.getLatitude() == at[0] && details.getLongitude() == at[1]
+                        ? SpatialGridIndex.DistanceFrom.toKm(haversine) : from.km(details.getLatitude(), details.getLongitude());
+                if (km <= radiusKm) hits.add(new Neighbour(details, km));
+            }
+        }
+        Collections.sort(hits, Neighbour.BY_DISTANCE);
+        return Neighbour.unwrap(hits);
+    }
+
+    /**
+     * The k vehicles closest to a point, closest first. Visits grid rings outwards from
+     * the point's cell and stops as soon as no unvisited cell can hold anything closer.
+     */
+    public List<VehicleDetails> queryNearest(double lat, double lon, int k) {
+        if (k <= 0) return new ArrayList<>();
+        SpatialGridIndex.DistanceFrom from = new SpatialGridIndex.DistanceFrom(lat, lon);
+        PriorityQueue<Neighbour> best = new PriorityQueue<>(k, Collections.reverseOrder(Neighbour.BY_DISTANCE));
+        int centerLat = spatial.latCell(lat), centerLon = spatial.lonCell(lon);
+        // Once the rings cover more cells than are populated, one pass over the populated cells is cheaper
+        int maxRings = (int) Math.sqrt(spatial.populatedCells()) / 2 + 1;
+
+        for (int ring = 0; ; ring++) {
+            if (ring > maxRings) {
+                best.clear();
+                for (SpatialGridIndex.Cell cell : spatial.allCells()) offerCell(cell, lat, from, k, best);
+                break;
+            }
+            for (int la = centerLat - ring; la <= centerLat + ring; la++) {
+                boolean edgeRow = la == centerLat - ring || la == centerLat + ring;
+                for (int lo = centerLon - ring; lo <= centerLon + ring; lo += edgeRow ? 1 : 2 * ring) {
+                    SpatialGridIndex.Cell cell = spatial.cellAt(la, lo);
+                    if (cell != null) offerCell(cell, lat, from, k, best);
+                }
+            }
+            // Anything unvisited lies beyond the edge of the square covered so far
+            if (best.size() == k && best.peek().km <= spatial.visitedReachKm(lat, lon, ring)) break;
+            if (best.size() == size) break; // Already holding every vehicle
+        }
+
+        List<Neighbour> ordered = new ArrayList<>(best);
+        Collections.sort(ordered, Neighbour.BY_DISTANCE);
+        return Neighbour.unwrap(ordered);
+    }
+
+    private void offerCell(SpatialGridIndex.Cell cell, double lat, SpatialGridIndex.DistanceFrom from, int k,
+                           PriorityQueue<Neighbour> best) {
+        double[] at = new double[2];
+        for (int slot : cell.members()) {
+            if (!readPosition(slot, at) || spatial.cellOf(at[0], at[1]) != cell.key) continue;
+            boolean full = best.size() == k;
+            if (full && Math.abs(at[0] - lat) * SpatialGridIndex.KM_PER_DEGREE_LAT >= best.peek().km) continue;
+            double km = from.km(at[0], at[1]);
+            if (full && km >= best.peek().km) continue;
+            VehicleDetails details = read(slot); // Only for vehicles that make the list (for now)
+            if (details == null) continue;
+            if (details.getLatitude() != at[0] || details.getLongitude() != at[1]) {
+                km = from.km(details.getLatitude(), details.getLongitude()); // Moved between the two reads
+            }
+            if (!full) {
+                best.add(new Neighbour(details, km));
+            } else if (km < best.peek().km) {
+                best.poll();
+                best.add(new Neighbour(details, km));
+            }
+        }
+    }
+
+    private static boolean inBox(VehicleDetails d, double minLat, double minLon, double maxLat, double maxLon) {
+        return d.getLatitude() >= minLat && d.getLatitude() <= maxLat && d.getLongitude() >= minLon && d.getLongitude() <= maxLon;
+    }
+
+    // Consistent read of one slot's position into at[0] (lat) and at[1] (lon); false if the slot is free
+    private boolean readPosition(int slot, double[] at) {
+        Page page = pages.get(slot >>> PAGE_BITS);
+        if (page == null) return false;
+        int i = slot & PAGE_MASK;
+
+        while (true) {
+            long before = page.seq.get(i);
+            if ((before & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+            boolean occupied = page.ids.get(i) != null;
+            at[0] = Double.longBitsToDouble(page.lat.get(i));
+            at[1] = Double.longBitsToDouble(page.lon.get(i));
+            if (page.seq.get(i) == before) return occupied;
+        }
+    }
+
+    /** Consistent read of one slot, or null if it is free. */
+    private VehicleDetails read(int slot) {
+        Page page = pages.get(slot >>> PAGE_BITS);
+        if (page == null) return null;
+        int i = slot & PAGE_MASK;
+
+        while (true) {
+            long before = page.seq.get(i);
+            if ((before & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+            String id = page.ids.get(i);
+            double lat = Double.longBitsToDouble(page.lat.get(i));
+            double lon = Double.longBitsToDouble(page.lon.get(i));
+            double speed = Double.longBitsToDouble(page.speed.get(i));
+            long timestamp = page.timestamp.get(i);
+            if (page.seq.get(i) == before) {
+                return id == null ? null : new VehicleDetails(id, lat, lon, speed, timestamp);
+            }
+        }
+    }
+
+    // --- SLOT MANAGEMENT ---
+
+    // First report of a vehicle: pick a slot, fill its row, then make it findable. Returns -1 when full.
+    private synchronized int allocateSlot(VehicleDetails details) {
+        int existing = index.get(details.getVehicleId());
+        if (existing >= 0) return existing; // Lost the race to another writer
+
+        if (size >= capacity && !evictLeastRecent()) return -1;
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else if (nextSlot < maxVehicles) {
+            slot = nextSlot++;
+            if (pages.get(slot >>> PAGE_BITS) == null) pages.set(slot >>> PAGE_BITS, new Page());
+            highWaterMark = nextSlot;
+        } else {
+            return -1;
+        }
+
+        Page page = pages.get(slot >>> PAGE_BITS);
+        int i = slot & PAGE_MASK;
+        long seq = lockSlot(page, i);
+        writeRow(page, i, details);
+        page.version.lazySet(i, version.get());
+        page.ids.set(i, details.getVehicleId());
+        page.cell.set(i, SpatialGridIndex.NO_CELL);
+        moveInGrid(page, i, slot, spatial.cellOf(details.getLatitude(), details.getLongitude()));
+        page.seq.set(i, seq + 2);
+        if (ttlMillis > 0) link(slot, Math.max((page.lastSeen.get(i) + ttlMillis) / tickMillis, wheelTick + 1));
+
+        index = index.put(details.getVehicleId(), slot);
+        size++;
+        return slot;
+    }
+
+    // Caller holds this; the slot's row is already cleared
+    private void forget(int slot, String vehicleId) {
+        index.remove(vehicleId);
+        if (ttlMillis > 0) unlink(slot);
+        if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+        size--;
+        int entry = (int) (journalWrites++ & (JOURNAL_SIZE - 1));
+        journalVersions[entry] = version.get();
+        journalIds[entry] = vehicleId;
+        Consumer<String> listener = removalListener;
+        if (listener != null) listener.accept(vehicleId);
+    }
+
+    // Store full, caller holds this: removes the vehicle heard from least recently. Walks the wheel from
+    // the next bucket on, re-filing slots that reported since. Slots being written right now are passed
+    // over (their writer is active, and waiting for it here could deadlock with remove()).
+    private boolean evictLeastRecent() {
+        if (ttlMillis <= 0) return false;
+        for (long tick = wheelTick + 1; tick <= wheelTick + WHEEL_BUCKETS; tick++) {
+            for (int slot = wheelHeads[(int) (tick % WHEEL_BUCKETS)]; slot >= 0; ) {
+                Page page = pages.get(slot >>> PAGE_BITS);
+                int i = slot & PAGE_MASK;
+                int next = page.wheelNext[i];
+                long deadlineTick = (page.lastSeen.get(i) + ttlMillis) / tickMillis;
+                if (deadlineTick > tick) {
+                    relink(slot, deadlineTick);
+                } else {
+                    long seq = page.seq.get(i);
+                    String vehicleId = page.ids.get(i);
+                    if ((seq & 1) == 0 && vehicleId != null && page.seq.compareAndSet(i, seq, seq + 1)) {
+                        page.ids.set(i, null);
+                        moveInGrid(page, i, slot, SpatialGridIndex.NO_CELL);
+                        page.seq.set(i, seq + 2);
+                        forget(slot, vehicleId);
+                        lruEvicted.incrementAndGet();
+                        return true;
+                    }
+                }
+                slot = next;
+            }
+        }
+        return false;
+    }
+
+    // --- TIMER WHEEL (caller holds this) ---
+
+    private void link(int slot, long tick) {
+        int bucket = (int) (tick % WHEEL_BUCKETS);
+        Page page = pages.get(slot >>> PAGE_BITS);
+        int i = slot & PAGE_MASK;
+        int head = wheelHeads[bucket];
+        page.wheelBucket[i] = bucket;
+        page.wheelPrev[i] = -1;
+        page.wheelNext[i] = head;
+        if (head >= 0) pages.get(head >>> PAGE_BITS).wheelPrev[head & PAGE_MASK] = slot;
+        wheelHeads[bucket] = slot;
+    }
+
+    private void unlink(int slot) {
+        Page page = pages.get(slot >>> PAGE_BITS);
+        int i = slot & PAGE_MASK;
+        int prev = page.wheelPrev[i], next = page.wheelNext[i];
+        if (prev >= 0) {
+            pages.get(prev >>> PAGE_BITS).wheelNext[prev & PAGE_MASK] = next;
+        } else {
+            wheelHeads[page.wheelBucket[i]] = next;
+        }
+        if (next >= 0) pages.get(next >>> PAGE_BITS).wheelPrev[next & PAGE_MASK] = prev;
+    }
+
+    private void relink(int slot, long tick) {
+        unlink(slot);
+        link(slot, tick);
+    }
+
+    private static void writeRow(Page page, int i, VehicleDetails details) {
+        page.lastSeen.lazySet(i, System.currentTimeMillis());
+        page.lat.lazySet(i, Double.doubleToRawLongBits(details.getLatitude()));
+        page.lon.lazySet(i, Double.doubleToRawLongBits(details.getLongitude()));
+        page.speed.lazySet(i, Double.doubleToRawLongBits(details.getSpeed()));
+        page.timestamp.lazySet(i, details.getTimestampMillis());
+    }
+
+    // Caller holds the slot lock
+    private void moveInGrid(Page page, int i, int slot, long newCell) {
+        long oldCell = page.cell.get(i);
+        if (oldCell == newCell) return;
+        spatial.move(slot, oldCell, newCell);
+        page.cell.set(i, newCell);
+    }
+
+    private static long lockSlot(Page page, int i) {
+        while (true) {
+            long seq = page.seq.get(i);
+            if ((seq & 1) == 0 && page.seq.compareAndSet(i, seq, seq + 1)) return seq;
+            Thread.yield();
+        }
+    }
+
+    // Search hit with its distance from the query point
+    private static final class Neighbour {
+        static final Comparator<Neighbour> BY_DISTANCE = Comparator.comparingDouble(n -> n.km);
+
+        final VehicleDetails details;
+        final double km;
+
+        Neighbour(VehicleDetails details, double km) {
+            this.details = details;
+            this.km = km;
+        }
+
+        static List<VehicleDetails> unwrap(List<Neighbour> hits) {
+            List<VehicleDetails> result = new ArrayList<>(hits.size());
+            for (Neighbour hit : hits) result.add(hit.details);
+            return result;
+        }
+    }
+
+    // One page of columns. Doubles are stored as raw long bits.
+    private static final class Page {
+        final AtomicLongArray seq = new AtomicLongArray(PAGE_SIZE);
+        final AtomicLongArray lat = new AtomicLongArray(PAGE_SIZE);
+        final AtomicLongArray lon = new AtomicLongArray(PAGE_SIZE);
+        final AtomicLongArray speed = new AtomicLongArray(PAGE_SIZE);
+        final AtomicLongArray timestamp = new AtomicLongArray(PAGE_SIZE);
+        final AtomicLongArray cell = new AtomicLongArray(PAGE_SIZE); // Current SpatialGridIndex cell
+        final AtomicLongArray version = new AtomicLongArray(PAGE_SIZE); // Store version of the last write
+        final AtomicReferenceArray<String> ids = new AtomicReferenceArray<>(PAGE_SIZE);
+        final AtomicLongArray lastSeen = new AtomicLongArray(PAGE_SIZE); // Arrival time of the last report (expiry)
+        final int[] wheelNext = new int[PAGE_SIZE]; // Timer wheel links, guarded by the store
+        final int[] wheelPrev = new int[PAGE_SIZE];
+        final int[] wheelBucket = new int[PAGE_SIZE];
+    }
+
+    /**
+     * Vehicle id -> slot, open addressing with linear probing (about 16 bytes per vehicle).
+     * Lookups are lock-free; put/remove are called under the store lock.
+     * A lookup racing with a removal may return a stale slot, which is why
+     * callers re-check the id stored in the slot.
+     */
+    private static final class SlotIndex {
+        private static final String TOMBSTONE = new String("<removed>");
+
+        private final AtomicReferenceArray<String> keys;
+        private final int[] slots;
+        private final int mask;
+        private int used = 0; // Live keys + tombstones
+
+        SlotIndex(int capacity) {
+            this.keys = new AtomicReferenceArray<>(capacity);
+            this.slots = new int[capacity];
+            this.mask = capacity - 1;
+        }
+
+        int get(String vehicleId) {
+            for (int i = hash(vehicleId) & mask; ; i = (i + 1) & mask) {
+                String key = keys.get(i);
+                if (key == null) return -1;
+                if (key != TOMBSTONE && key.equals(vehicleId)) return slots[i];
+            }
+        }
+
+        /** Inserts an absent key. Returns the index to use from now on (this one, or a bigger copy). */
+        SlotIndex put(String vehicleId, int slot) {
+            if ((used + 1) * 2 > keys.length()) return rehash().put(vehicleId, slot);
+
+            for (int i = hash(vehicleId) & mask; ; i = (i + 1) & mask) {
+                String key = keys.get(i);
+                if (key == null || key == TOMBSTONE) {
+                    if (key == null) used++;
+                    slots[i] = slot;
+                    keys.set(i, vehicleId); // Volatile write publishes the slot number
+                    return this;
+                }
+            }
+        }
+
+        void remove(String vehicleId) {
+            for (int i = hash(vehicleId) & mask; ; i = (i + 1) & mask) {
+                String key = keys.get(i);
+                if (key == null) return;
+                if (key != TOMBSTONE && key.equals(vehicleId)) {
+                    keys.set(i, TOMBSTONE);
+                    return;
+                }
+            }
+        }
+
+        // Grows (or just drops tombstones) into a fresh table; readers keep using the old one until they re-read
+        private SlotIndex rehash() {
+            int live = 0;
+            for (int i = 0; i < keys.length(); i++) {
+                String key = keys.get(i);
+                if (key != null && key != TOMBSTONE) live++;
+            }
+            int capacity = keys.length();
+            while ((live + 1) * 4 > capacity) capacity <<= 1;
+
+            SlotIndex bigger = new SlotIndex(capacity);
+            for (int i = 0; i < keys.length(); i++) {
+                String key = keys.get(i);
+                if (key != null && key != TOMBSTONE) bigger.put(key, slots[i]);
+            }
+            return bigger;
+        }
+
+        private static int hash(String vehicleId) {
+            int h = vehicleId.hashCode();
+            return h ^ (h >>> 16);
+        }
+    }
 }
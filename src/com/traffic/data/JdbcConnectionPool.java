@@ -0,0 +1,146 @@
+package com.traffic.data;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size JDBC connection pool. Connections are opened lazily up to `size`,
+ * run the given init statements once (session settings), are handed out with
+ * auto-commit off (callers commit or roll back), and keep their
+ * prepared statements between borrows, so a hot INSERT is parsed once per
+ * connection, not once per batch. A connection idle for a while is validated
+ * before it is handed out; one that failed is closed and replaced.
+ */
+public class JdbcConnectionPool implements AutoCloseable {
+
+    private static final long VALIDATE_AFTER_IDLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    /** A borrowed connection with its statement cache. Give it back with release(). */
+    public static final class Pooled {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private long releasedAt = System.nanoTime();
+
+        Pooled(Connection connection) {
+            this.connection = connection;
+        }
+
+        public Connection connection() { return connection; }
+
+        /** Prepared once per connection, then reused. */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+
+        void closeQuietly() {
+            try {
+                connection.close(); // Closes its statements too
+            } catch (SQLException ignored) { }
+        }
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int size;
+    private final List<String> initSql;
+    private final BlockingQueue<Pooled> idle;
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong borrowWaits = new AtomicLong();
+
+    public JdbcConnectionPool(String url, String user, String password, int size, List<String> initSql) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.size = size;
+        this.initSql = initSql;
+        this.idle = new ArrayBlockingQueue<>(size);
+    }
+
+    /** An idle connection, a new one while under `size`, or the next one released (up to the timeout). */
+    public Pooled borrow(long timeoutMillis) throws SQLException {
+        while (true) {
+            Pooled pooled = idle.poll();
+            if (pooled == null) pooled = openIfUnderLimit();
+            if (pooled == null) {
+                borrowWaits.incrementAndGet();
+                try {
+                    pooled = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted waiting for a connection");
+                }
+                if (pooled == null) throw new SQLException("No connection available within " + timeoutMillis + " ms");
+            }
+            if (System.nanoTime() - pooled.releasedAt < VALIDATE_AFTER_IDLE_NANOS || pooled.connection.isValid(2)) {
+                return pooled;
+            }
+            discard(pooled); // Went stale while idle: try the next one
+        }
+    }
+
+    /** Returns a connection; pass broken=true after an error that may have left it unusable. */
+    public void release(Pooled pooled, boolean broken) {
+        if (broken) {
+            discard(pooled);
+            return;
+        }
+        pooled.releasedAt = System.nanoTime();
+        if (!idle.offer(pooled)) discard(pooled);
+    }
+
+    public Map<String, Long> getMetrics(String prefix) {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put(prefix + ".open", (long) open.get());
+        metrics.put(prefix + ".idle", (long) idle.size());
+        metrics.put(prefix + ".borrowWaits", borrowWaits.get());
+        return metrics;
+    }
+
+    @Override
+    public void close() {
+        Pooled pooled;
+        while ((pooled = idle.poll()) != null) discard(pooled);
+    }
+
+    private Pooled openIfUnderLimit() throws SQLException {
+        while (true) {
+            int n = open.get();
+            if (n >= size) return null;
+            if (open.compareAndSet(n, n + 1)) break;
+        }
+        try {
+            Connection connection = DriverManager.getConnection(url, user, password);
+            try (Statement init = connection.createStatement()) {
+                for (String sql : initSql) init.execute(sql);
+            }
+            connection.setAutoCommit(false);
+            return new Pooled(connection);
+        } catch (SQLException | RuntimeException e) {
+            open.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void discard(Pooled pooled) {
+        open.decrementAndGet();
+        pooled.closeQuietly();
+    }
+}
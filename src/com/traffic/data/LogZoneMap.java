@@ -0,0 +1,202 @@
+package com.traffic.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * ZONE MAP for MappedTelemetryLog: per block of BLOCK_RECORDS records, the
+ * min/max event time, latitude and longitude, plus the set of coarse grid
+ * cells (cellDegrees, ~11 km at 0.1) the block's points fall in. A time + area
+ * query skips every block whose ranges miss the query, or that has no point in
+ * any cell the query box touches, without reading it.
+ *
+ * The log is in time order, so every block holds the whole fleet for a few
+ * seconds: min/max lat/lon span all of it, and it is the cell set that rules
+ * out an area the fleet is not in. A block with points in more than MAX_CELLS
+ * cells is treated as covering everything.
+ *
+ * Blocks are written by the appender only; a block is read once the log's
+ * published end has moved past it (the volatile end gives the ordering), by
+ * then its cells are sealed into a sorted array.
+ * Sealed segments keep their zones in a sidecar file (<segment>.zones).
+ */
+final class LogZoneMap {
+
+    static final int BLOCK_RECORDS = 4096; // 256 KB of records
+    private static final int MAX_CELLS = 1024;
+    private static final int LON_CELLS = 1 << 16; // Cell key = latCell * LON_CELLS + lonCell
+
+    static final class Zone {
+        long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        private int[] table = new int[32]; // Open addressing (key + 1, 0 = free) while the block fills up
+        private int size;
+        private volatile int[] cells; // Sorted keys once sealed; null = not sealed yet or too many to list (matches any area)
+
+        boolean overlaps(long from, long to, double qMinLat, double qMinLon, double qMaxLat, double qMaxLon, int[] cellRange) {
+            return minTime <= to && maxTime >= from
+                    && minLat <= qMaxLat && maxLat >= qMinLat
+                    && minLon <= qMaxLon && maxLon >= qMinLon
+                    && hasCellIn(cellRange);
+        }
+
+        private boolean hasCellIn(int[] cellRange) {
+            int[] cells = this.cells;
+            if (cells == null) return true;
+            for (int la = cellRange[0]; la <= cellRange[1]; la++) {
+                int i = Arrays.binarySearch(cells, la * LON_CELLS + cellRange[2]);
+                if (i >= 0) return true;
+                i = -i - 1; // First cell past the row's start
+                if (i < cells.length && cells[i] <= la * LON_CELLS + cellRange[3]) return true;
+            }
+            return false;
+        }
+
+        private void addCell(int key) {
+            if (table == null) return; // Already past MAX_CELLS
+            int mask = table.length - 1;
+            int i = (key * 0x9E3779B9) >>> 16 & mask;
+            while (table[i] != 0) {
+                if (table[i] == key + 1) return;
+                i = (i + 1) & mask;
+            }
+            table[i] = key + 1;
+            if (++size > MAX_CELLS) {
+                table = null;
+            } else if (size * 2 > table.length) {
+                int[] old = table;
+                table = new int[old.length * 2];
+                size = 0;
+                for (int k : old) if (k != 0) addCell(k - 1);
+            }
+        }
+
+        void seal() {
+            if (table == null) {
+                cells = null;
+            } else {
+                int[] sorted = new int[size];
+                int n = 0;
+                for (int k : table) if (k != 0) sorted[n++] = k - 1;
+                Arrays.sort(sorted);
+                cells = sorted;
+            }
+            table = null;
+        }
+    }
+
+    private final double cellDegrees;
+    private final ConcurrentSkipListMap<Long, Zone> zones = new ConcurrentSkipListMap<>(); // Block's first sequence -> zone
+    private Zone open; // Appender only
+    private long openBlock = -1;
+
+    LogZoneMap(double cellDegrees) {
+        this.cellDegrees = Math.max(cellDegrees, 0.01); // Keeps lon cells below LON_CELLS
+    }
+
+    /** Appender only: widens the zone of the block holding `seq` (sealing the previous one when a block starts). */
+    void add(long seq, long time, double lat, double lon) {
+        long block = seq - seq % BLOCK_RECORDS;
+        if (block != openBlock) {
+            if (open != null) open.seal();
+            open = new Zone();
+            openBlock = block;
+            zones.put(block, open);
+        }
+        Zone z = open;
+        if (time < z.minTime) z.minTime = time;
+        if (time > z.maxTime) z.maxTime = time;
+        if (lat < z.minLat) z.minLat = lat;
+        if (lat > z.maxLat) z.maxLat = lat;
+        if (lon < z.minLon) z.minLon = lon;
+        if (lon > z.maxLon) z.maxLon = lon;
+        z.addCell(latCell(lat) * LON_CELLS + lonCell(lon));
+    }
+
+    Zone get(long blockStart) {
+        return zones.get(blockStart);
+    }
+
+    /** Cells the box touches: {firstLatCell, lastLatCell, firstLonCell, lastLonCell}. */
+    int[] cellRange(double minLat, double minLon, double maxLat, double maxLon) {
+        return new int[] {latCell(minLat), latCell(maxLat), lonCell(minLon), lonCell(maxLon)};
+    }
+
+    void dropBefore(long seq) {
+        zones.headMap(seq).clear();
+    }
+
+    // --- SIDECAR FILES ---
+
+    /** Appender only; the zones in [fromSeq, toSeq) must be complete. */
+    void save(File file, long fromSeq, long toSeq) throws IOException {
+        Map<Long, Zone> range = zones.subMap(fromSeq, toSeq);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(range.size());
+            for (Map.Entry<Long, Zone> e : range.entrySet()) {
+                Zone z = e.getValue();
+                if (z == open) {
+                    z.seal();
+                    open = null;
+                    openBlock = -1;
+                }
+                out.writeLong(e.getKey());
+                out.writeLong(z.minTime);
+                out.writeLong(z.maxTime);
+                out.writeDouble(z.minLat);
+                out.writeDouble(z.maxLat);
+                out.writeDouble(z.minLon);
+                out.writeDouble(z.maxLon);
+                out.writeInt(z.cells == null ? -1 : z.cells.length);
+                if (z.cells != null) for (int c : z.cells) out.writeInt(c);
+            }
+        }
+    }
+
+    /** False if the file is missing or damaged (the caller rebuilds from the records). */
+    boolean load(File file) {
+        if (!file.isFile()) return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                long block = in.readLong();
+                Zone z = new Zone();
+                z.minTime = in.readLong();
+                z.maxTime = in.readLong();
+                z.minLat = in.readDouble();
+                z.maxLat = in.readDouble();
+                z.minLon = in.readDouble();
+                z.maxLon = in.readDouble();
+                int cells = in.readInt();
+                if (cells > MAX_CELLS) return false;
+                z.table = null;
+                if (cells >= 0) {
+                    z.cells = new int[cells];
+                    for (int c = 0; c < cells; c++) z.cells[c] = in.readInt();
+                }
+                zones.put(block, z);
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private int latCell(double lat) {
+        return (int) Math.floor((Math.max(-90.0, Math.min(90.0, lat)) + 90.0) / cellDegrees);
+    }
+
+    private int lonCell(double lon) {
+        return (int) Math.floor((Math.max(-180.0, Math.min(180.0, lon)) + 180.0) / cellDegrees);
+    }
+}
@@ -0,0 +1,613 @@
+package com.traffic.data;
+
+import com.traffic.common.models.TrajectoryPage;
+import com.traffic.common.models.VehicleDetails;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * LOCAL TELEMETRY LOG (Append-Only, Memory-Mapped Segments)
+ *
+ * Durable storage that needs no network. Every report becomes one fixed-size
+ * 64-byte record, appended to a pre-sized, memory-mapped segment file; the
+ * sequence number of a record is its position in the log, so no index is kept.
+ * Segments are named after the sequence number of their first record
+ * (00000000000001048576.log) and roll when full; the oldest are deleted past
+ * the retention limits.
+ *
+ * Durability: a flusher thread fsyncs the active segment every `syncMs`
+ * (group commit: one force for everything appended in the window). With
+ * waitForSync, saveTelemetry returns only once its record is on disk, and
+ * waiting appenders make the flusher sync back to back instead of on the
+ * window, each force covering everything that queued up during the previous
+ * one (pays off with many persistence threads). With syncMs=0 every append is
+ * forced on the spot.
+ *
+ * Recovery: on startup the last segment is scanned up to the first record that
+ * fails its checksum (torn write); whatever lies beyond is zeroed and appends
+ * continue from there.
+ *
+ * Shipping: given a cloud repository, a shipper thread replays the log into it
+ * from a checkpoint file (ship.offset, saved every second), so the cloud catches
+ * up after an outage or a restart. After a restart the last second is shipped
+ * again; what the cloud writer still had queued at a crash is not (the local log
+ * keeps it).
+ *
+ * Area queries: a LogZoneMap keeps min/max time, lat, lon and the coarse cells
+ * occupied per block of 4096 records; findInArea skips the blocks it rules
+ * out and scans the rest in parallel, a page at a time (cursor = sequence).
+ *
+ * Record layout (big-endian):
+ *   0  int    CRC32 of bytes 4..63
+ *   4  long   event time (epoch millis)
+ *   12 double latitude
+ *   20 double longitude
+ *   28 float  speed (km/h)
+ *   32 byte   id length n (1..31)
+ *   33 n      vehicle id, UTF-8 (rest zero)
+ *
+ * Config: traffic.log.segmentMB (64), traffic.log.syncMs (50), traffic.log.waitForSync (false),
+ *         traffic.log.retainSegments (32), traffic.log.retentionHours (72),
+ *         traffic.log.historyScanRecords (1M), traffic.log.zoneCellDegrees (0.1),
+ *         traffic.log.scanThreads (cores), traffic.log.scanBlocksPerPage (1024)
+ */
+public class MappedTelemetryLog implements TelemetryRepository {
+
+    public static final int RECORD_BYTES = 64;
+    public static final int MAX_ID_BYTES = 31;
+    private static final int HISTORY_LIMIT = 50;
+    private static final int SHIP_CHUNK = 1000;
+
+    private final File dir;
+    private final long segmentRecords;
+    private final long syncMillis;
+    private final boolean waitForSync;
+    private final int retainSegments;
+    private final long retentionMillis;
+    private final long historyScanRecords;
+    private final ConcurrentSkipListMap<Long, File> segments = new ConcurrentSkipListMap<>(); // First sequence -> file
+    private final Map<Long, MappedByteBuffer> readMaps = new ConcurrentHashMap<>(); // Shared read-only mappings, per segment
+    private final LogZoneMap zones;
+    private final int scanThreads;
+    private final int scanBlocksPerPage;
+    private final ExecutorService scanPool;
+
+    // Append side, guarded by appendLock
+    private final Object appendLock = new Object();
+    private final byte[] record = new byte[RECORD_BYTES];
+    private final ByteBuffer recordView = ByteBuffer.wrap(record);
+    private final CRC32 crc = new CRC32();
+    private MappedByteBuffer active;
+    private long activeBase;
+    private volatile long nextSeq; // Records [0, nextSeq) are in the log
+
+    // Sync side
+    private final Object syncLock = new Object();
+    private volatile long syncedSeq; // Records [0, syncedSeq) are on disk
+    private boolean syncRequested; // An appender is waiting: sync now instead of at the end of the window
+
+    // Metrics
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong shipped = new AtomicLong();
+    private final AtomicLong shipLost = new AtomicLong();
+    private long recovered;
+    private long torn;
+
+    public MappedTelemetryLog(File dir) throws IOException {
+        this.dir = dir;
+        this.segmentRecords = Long.getLong("traffic.log.segmentMB", 64) * 1024 * 1024 / RECORD_BYTES;
+        this.syncMillis = Long.getLong("traffic.log.syncMs", 50);
+        this.waitForSync = Boolean.getBoolean("traffic.log.waitForSync");
+        this.retainSegments = Integer.getInteger("traffic.log.retainSegments", 32);
+        this.retentionMillis = TimeUnit.HOURS.toMillis(Long.getLong("traffic.log.retentionHours", 72));
+        this.historyScanRecords = Long.getLong("traffic.log.historyScanRecords", 1 << 20);
+        this.zones = new LogZoneMap(Double.parseDouble(System.getProperty("traffic.log.zoneCellDegrees", "0.1")));
+        this.scanThreads = Integer.getInteger("traffic.log.scanThreads", Runtime.getRuntime().availableProcessors());
+        this.scanBlocksPerPage = Integer.getInteger("traffic.log.scanBlocksPerPage", 1024);
+        this.scanPool = Executors.newFixedThreadPool(scanThreads, task -> daemon(task, "log-scan"));
+
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        recover();
+        if (syncMillis > 0) daemon(this::syncLoop, "log-sync").start();
+        System.out.println(">>> [LOG] " + dir + ": " + segments.size() + " segment(s), " + String.format("%,d", recovered)
+                + " record(s) recovered" + (torn > 0 ? ", " + torn + " torn record(s) discarded" : "")
+                + ", fsync every " + (syncMillis > 0 ? syncMillis + " ms" : "append"));
+    }
+
+    /** Replays the log into `cloud` from the last checkpoint, then follows new appends. */
+    public void shipTo(TelemetryRepository cloud) {
+        daemon(() -> shipLoop(cloud), "log-ship").start();
+        System.out.println(">>> [LOG] Shipping to " + cloud.getClass().getSimpleName());
+    }
+
+    /** Whether the id fits a record: 1 to MAX_ID_BYTES bytes in UTF-8. Longer ids are not stored. */
+    public static boolean fitsId(String vehicleId) {
+        int chars = vehicleId.length();
+        if (chars == 0 || chars > MAX_ID_BYTES) return false;
+        if (chars * 3 <= MAX_ID_BYTES) return true; // No char takes more than 3 bytes (a surrogate pair takes 4 for 2)
+        return vehicleId.getBytes(StandardCharsets.UTF_8).length <= MAX_ID_BYTES;
+    }
+
+    @Override
+    public void saveTelemetry(VehicleDetails data) {
+        byte[] id = data.getVehicleId().getBytes(StandardCharsets.UTF_8);
+        if (id.length == 0 || id.length > MAX_ID_BYTES) {
+            rejected.incrementAndGet();
+            return;
+        }
+        long seq;
+        synchronized (appendLock) {
+            try {
+                if (nextSeq - activeBase == active.capacity() / RECORD_BYTES) roll(nextSeq);
+            } catch (IOException e) {
+                rejected.incrementAndGet();
+                System.err.println("!!! [LOG] Cannot roll segment: " + e.getMessage());
+                return;
+            }
+            // 1. Encode into the scratch record, checksum last
+            recordView.clear();
+            recordView.putInt(0)
+                    .putLong(data.getTimestampMillis())
+                    .putDouble(data.getLatitude())
+                    .putDouble(data.getLongitude())
+                    .putFloat((float) data.getSpeed())
+                    .put((byte) id.length)
+                    .put(id);
+            while (recordView.hasRemaining()) recordView.put((byte) 0);
+            crc.reset();
+            crc.update(record, 4, RECORD_BYTES - 4);
+            recordView.putInt(0, (int) crc.getValue());
+
+            // 2. Copy into the mapped segment and publish
+            seq = nextSeq;
+            active.position((int) ((seq - activeBase) * RECORD_BYTES));
+            active.put(record);
+            zones.add(seq, data.getTimestampMillis(), data.getLatitude(), data.getLongitude());
+            nextSeq = seq + 1;
+            if (syncMillis == 0) {
+                active.force();
+                syncs.incrementAndGet();
+                syncedSeq = seq + 1;
+            }
+        }
+        appended.incrementAndGet();
+
+        if (waitForSync && syncMillis > 0) {
+            synchronized (syncLock) {
+                while (syncedSeq <= seq) {
+                    syncRequested = true;
+                    syncLock.notifyAll();
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /** The latest records for the vehicle, newest first (scans back at most historyScanRecords). */
+    @Override
+    public List<VehicleDetails> getHistory(String vehicleId) {
+        List<VehicleDetails> history = new ArrayList<>();
+        byte[] id = vehicleId.getBytes(StandardCharsets.UTF_8);
+        Reader reader = new Reader();
+        long end = nextSeq;
+        long stop = Math.max(end - historyScanRecords, segments.isEmpty() ? 0 : segments.firstKey());
+        for (long seq = end - 1; seq >= stop && history.size() < HISTORY_LIMIT; seq--) {
+            if (reader.load(seq) && reader.idEquals(id)) history.add(reader.decode());
+        }
+        return history;
+    }
+
+    /** Records from `fromSeq` on, up to `max`, into `out`; returns the sequence number to continue from. */
+    public long replay(long fromSeq, int max, List<VehicleDetails> out) {
+        Reader reader = new Reader();
+        long seq = Math.max(fromSeq, segments.isEmpty() ? 0 : segments.firstKey());
+        long end = Math.min(nextSeq, seq + max);
+        for (; seq < end; seq++) {
+            if (reader.load(seq)) out.add(reader.decode());
+        }
+        return seq;
+    }
+
+    public long size() {
+        return nextSeq;
+    }
+
+    // --- AREA QUERIES ---
+
+    /**
+     * Reports with event time in [fromMillis, toMillis] inside the box, in log order, from `cursor` (0 = start)
+     * on. Stops at `limit` reports or after scanBlocksPerPage blocks; the page's nextCursor continues from there.
+     */
+    public TrajectoryPage findInArea(long fromMillis, long toMillis, double minLat, double minLon, double maxLat, double maxLon,
+                                     long cursor, int limit) {
+        long end = nextSeq;
+        int[] cellRange = zones.cellRange(minLat, minLon, maxLat, maxLon);
+        long pos = Math.max(cursor, segments.isEmpty() ? 0 : segments.firstKey());
+        List<VehicleDetails> found = new ArrayList<>();
+        long blocksScanned = 0, blocksSkipped = 0, recordsScanned = 0, bytesSkipped = 0;
+        List<long[]> plan = new ArrayList<>(); // {from, to} per block of the wave, in log order
+        List<Future<BlockScan>> scans = new ArrayList<>(); // Same positions; null = ruled out by the zone map
+
+        scan:
+        while (pos < end && found.size() < limit && blocksScanned < scanBlocksPerPage) {
+            // 1. Plan the next wave: the zone map rules out what it can, the rest is scanned in parallel
+            long next = pos;
+            int submitted = 0;
+            while (submitted < scanThreads * 2 && next < end && blocksScanned + submitted < scanBlocksPerPage) {
+                long blockStart = next - next % LogZoneMap.BLOCK_RECORDS;
+                long blockEnd = Math.min(blockStart + LogZoneMap.BLOCK_RECORDS, end);
+                LogZoneMap.Zone zone = zones.get(blockStart);
+                boolean complete = blockStart + LogZoneMap.BLOCK_RECORDS <= end; // The open block's zone is still moving
+                long from = next;
+                plan.add(new long[] {from, blockEnd});
+                if (complete && (zone == null || !zone.overlaps(fromMillis, toMillis, minLat, minLon, maxLat, maxLon, cellRange))) {
+                    scans.add(null);
+                } else {
+                    scans.add(scanPool.submit(() -> scanBlock(from, blockEnd, fromMillis, toMillis, minLat, minLon, maxLat, maxLon)));
+                    submitted++;
+                }
+                next = blockEnd;
+            }
+
+            // 2. Consume it in log order; a full page stops at the first report that did not fit
+            try {
+                for (int i = 0; i < plan.size(); i++) {
+                    long[] block = plan.get(i);
+                    Future<BlockScan> pending = scans.get(i);
+                    if (pending == null) {
+                        blocksSkipped++;
+                        bytesSkipped += (block[1] - block[0]) * RECORD_BYTES;
+                    } else {
+                        BlockScan result = pending.get();
+                        blocksScanned++;
+                        recordsScanned += result.scanned;
+                        for (int j = 0; j < result.reports.size(); j++) {
+                            if (found.size() == limit) {
+                                pos = result.sequences[j];
+                                break scan;
+                            }
+                            found.add(result.reports.get(j));
+                        }
+                    }
+                    pos = block[1];
+                    if (found.size() == limit) break scan;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while scanning the telemetry log");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Telemetry log scan failed", e.getCause());
+            } finally {
+                for (Future<BlockScan> f : scans) {
+                    if (f != null) f.cancel(false); // Only the ones past a full page are still running
+                }
+                plan.clear();
+                scans.clear();
+            }
+        }
+        return new TrajectoryPage(found, pos < end ? pos : -1, blocksScanned, blocksSkipped,
+                recordsScanned, recordsScanned * RECORD_BYTES, bytesSkipped);
+    }
+
+    private static final class BlockScan {
+        final List<VehicleDetails> reports = new ArrayList<>();
+        long[] sequences = new long[16];
+        long scanned;
+
+        void add(long seq, VehicleDetails report) {
+            if (reports.size() == sequences.length) sequences = Arrays.copyOf(sequences, sequences.length * 2);
+            sequences[reports.size()] = seq;
+            reports.add(report);
+        }
+    }
+
+    // Records [from, to) of one block; filters on the raw fields, checksums and decodes only the matches
+    private BlockScan scanBlock(long from, long to, long fromMillis, long toMillis,
+                                double minLat, double minLon, double maxLat, double maxLon) throws IOException {
+        BlockScan result = new BlockScan();
+        Map.Entry<Long, File> segment = segments.floorEntry(from);
+        if (segment == null) return result;
+        ByteBuffer records = readMap(segment).duplicate();
+        Reader reader = new Reader();
+        for (long seq = from; seq < to; seq++) {
+            int offset = (int) ((seq - segment.getKey()) * RECORD_BYTES);
+            if (offset + RECORD_BYTES > records.capacity()) break;
+            result.scanned++;
+            long time = records.getLong(offset + 4);
+            if (time < fromMillis || time > toMillis) continue;
+            double lat = records.getDouble(offset + 12);
+            double lon = records.getDouble(offset + 20);
+            if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) continue;
+            if (reader.valid(records, offset)) result.add(seq, reader.decode());
+        }
+        return result;
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("log.appended", appended.get());
+        metrics.put("log.unsynced", nextSeq - syncedSeq);
+        metrics.put("log.syncs", syncs.get());
+        metrics.put("log.segments", (long) segments.size());
+        metrics.put("log.rejected", rejected.get());
+        metrics.put("log.recovered", recovered);
+        metrics.put("log.shipped", shipped.get());
+        metrics.put("log.shipLost", shipLost.get());
+        return metrics;
+    }
+
+    // --- SEGMENTS ---
+
+    // Finds the end of the log: the last segment is valid up to its first bad record
+    private void recover() throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".log"));
+        if (files != null) {
+            for (File f : files) {
+                try {
+                    segments.put(Long.parseLong(f.getName().substring(0, f.getName().length() - 4)), f);
+                } catch (NumberFormatException ignored) { }
+            }
+        }
+        synchronized (appendLock) {
+            if (segments.isEmpty()) {
+                roll(0);
+                return;
+            }
+            Reader reader = new Reader();
+            for (Map.Entry<Long, File> sealed : segments.headMap(segments.lastKey()).entrySet()) {
+                if (zones.load(zoneFile(sealed.getValue()))) continue;
+                // No sidecar (or damaged): rebuild the segment's zones from its records
+                ByteBuffer scan = map(sealed.getValue(), FileChannel.MapMode.READ_ONLY);
+                for (long i = 0; i < scan.capacity() / RECORD_BYTES; i++) {
+                    if (reader.valid(scan, (int) (i * RECORD_BYTES))) reader.addToZones(sealed.getKey() + i);
+                }
+                zones.save(zoneFile(sealed.getValue()), sealed.getKey(), segments.higherKey(sealed.getKey()));
+            }
+            long base = segments.lastKey();
+            active = map(segments.lastEntry().getValue(), FileChannel.MapMode.READ_WRITE);
+            activeBase = base;
+            ByteBuffer scan = active.duplicate();
+            long capacity = active.capacity() / RECORD_BYTES;
+            long count = 0;
+            while (count < capacity && reader.valid(scan, (int) (count * RECORD_BYTES))) reader.addToZones(base + count++);
+            for (long i = count; i < capacity; i++) { // Zero leftovers so they are never mistaken for records
+                int p = (int) (i * RECORD_BYTES);
+                if (active.getLong(p) != 0 || active.getLong(p + 32) != 0) {
+                    torn++;
+                    for (int b = 0; b < RECORD_BYTES; b += 8) active.putLong(p + b, 0);
+                }
+            }
+            if (torn > 0) active.force();
+            nextSeq = syncedSeq = base + count;
+            recovered = nextSeq - segments.firstKey();
+        }
+    }
+
+    // Called with appendLock held: seals the active segment and maps a fresh one
+    private void roll(long base) throws IOException {
+        if (active != null) {
+            File sealed = segments.get(activeBase);
+            try {
+                zones.save(zoneFile(sealed), activeBase, base);
+            } catch (IOException e) {
+                System.err.println("!!! [LOG] Zone map not saved for " + sealed + " (rebuilt on restart): " + e.getMessage());
+            }
+            active.force();
+            syncs.incrementAndGet();
+            synchronized (syncLock) {
+                syncedSeq = nextSeq;
+                syncLock.notifyAll();
+            }
+        }
+        File f = new File(dir, String.format("%020d.log", base));
+        active = map(f, FileChannel.MapMode.READ_WRITE);
+        activeBase = base;
+        segments.put(base, f);
+        applyRetention();
+    }
+
+    private void applyRetention() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        while (segments.size() > 1) {
+            Map.Entry<Long, File> oldest = segments.firstEntry();
+            if (segments.size() <= retainSegments && oldest.getValue().lastModified() >= cutoff) break;
+            segments.remove(oldest.getKey());
+            readMaps.remove(oldest.getKey());
+            zones.dropBefore(segments.firstKey());
+            if (!oldest.getValue().delete()) System.err.println("!!! [LOG] Could not delete " + oldest.getValue());
+            zoneFile(oldest.getValue()).delete();
+        }
+    }
+
+    private static File zoneFile(File segment) {
+        return new File(segment.getPath() + ".zones");
+    }
+
+    // Read-only view of a segment, mapped once and shared (callers duplicate it)
+    private MappedByteBuffer readMap(Map.Entry<Long, File> segment) throws IOException {
+        MappedByteBuffer buffer = readMaps.get(segment.getKey());
+        if (buffer == null) {
+            buffer = map(segment.getValue(), FileChannel.MapMode.READ_ONLY);
+            readMaps.put(segment.getKey(), buffer);
+        }
+        return buffer;
+    }
+
+    private MappedByteBuffer map(File f, FileChannel.MapMode mode) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, mode == FileChannel.MapMode.READ_WRITE ? "rw" : "r")) {
+            if (raf.length() == 0) raf.setLength(segmentRecords * RECORD_BYTES); // New segment; existing ones keep their size
+            return raf.getChannel().map(mode, 0, raf.length()); // The mapping outlives the channel
+        }
+    }
+
+    // --- GROUP COMMIT ---
+
+    private void syncLoop() {
+        while (true) {
+            try {
+                synchronized (syncLock) {
+                    if (!syncRequested) syncLock.wait(syncMillis);
+                    syncRequested = false;
+                }
+                MappedByteBuffer segment;
+                long upTo;
+                synchronized (appendLock) { // Only to read a consistent pair; the force runs outside
+                    segment = active;
+                    upTo = nextSeq;
+                }
+                if (upTo == syncedSeq) continue;
+                segment.force(); // A segment rolled meanwhile was forced by roll()
+                syncs.incrementAndGet();
+                synchronized (syncLock) {
+                    if (upTo > syncedSeq) syncedSeq = upTo;
+                    syncLock.notifyAll();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("!!! [LOG] Sync failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // --- SHIPPING ---
+
+    private void shipLoop(TelemetryRepository cloud) {
+        File checkpoint = new File(dir, "ship.offset");
+        long position = readCheckpoint(checkpoint);
+        long savedAt = System.nanoTime();
+        List<VehicleDetails> chunk = new ArrayList<>(SHIP_CHUNK);
+        while (true) {
+            try {
+                if (position >= nextSeq) {
+                    Thread.sleep(50);
+                    continue;
+                }
+                long oldest = segments.firstKey();
+                if (position < oldest) { // Retention deleted records before they were shipped
+                    shipLost.addAndGet(oldest - position);
+                    position = oldest;
+                }
+                position = replay(position, SHIP_CHUNK, chunk);
+                for (VehicleDetails report : chunk) cloud.saveTelemetry(report); // Blocks while the cloud writer is full
+                shipped.addAndGet(chunk.size());
+                chunk.clear();
+                if (System.nanoTime() - savedAt > TimeUnit.SECONDS.toNanos(1)) {
+                    writeCheckpoint(checkpoint, position);
+                    savedAt = System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                chunk.clear();
+                System.err.println("!!! [LOG] Shipping error: " + e.getMessage());
+            }
+        }
+    }
+
+    private static long readCheckpoint(File f) {
+        try {
+            return f.exists() ? Long.parseLong(new String(Files.readAllBytes(f.toPath()), StandardCharsets.US_ASCII).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("!!! [LOG] Bad checkpoint " + f + ", shipping from the start: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private static void writeCheckpoint(File f, long position) throws IOException {
+        File tmp = new File(f.getPath() + ".tmp");
+        Files.write(tmp.toPath(), Long.toString(position).getBytes(StandardCharsets.US_ASCII));
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // --- READING ---
+
+    // Reads records through read-only mappings (same page cache as the writer); one per thread
+    private final class Reader {
+        private final byte[] bytes = new byte[RECORD_BYTES];
+        private final ByteBuffer view = ByteBuffer.wrap(bytes);
+        private final CRC32 check = new CRC32();
+        private long base = -1;
+        private ByteBuffer segment;
+
+        /** Loads record `seq` into this reader; false if its segment is gone or the record fails its checksum. */
+        boolean load(long seq) {
+            Map.Entry<Long, File> entry = segments.floorEntry(seq);
+            if (entry == null) return false;
+            if (entry.getKey() != base) {
+                try {
+                    segment = readMap(entry).duplicate();
+                    segment.limit(segment.capacity() - segment.capacity() % RECORD_BYTES);
+                    base = entry.getKey();
+                } catch (IOException e) {
+                    return false; // Deleted by retention meanwhile
+                }
+            }
+            long offset = (seq - base) * RECORD_BYTES;
+            return offset + RECORD_BYTES <= segment.limit() && valid(segment, (int) offset);
+        }
+
+        // `source` must not be shared with other threads (its position moves)
+        boolean valid(ByteBuffer source, int offset) {
+            source.position(offset);
+            source.get(bytes);
+            int length = bytes[32];
+            if (length < 1 || length > MAX_ID_BYTES) return false;
+            check.reset();
+            check.update(bytes, 4, RECORD_BYTES - 4);
+            return view.getInt(0) == (int) check.getValue();
+        }
+
+        boolean idEquals(byte[] id) {
+            if (bytes[32] != id.length) return false;
+            for (int i = 0; i < id.length; i++) {
+                if (bytes[33 + i] != id[i]) return false;
+            }
+            return true;
+        }
+
+        void addToZones(long seq) {
+            zones.add(seq, view.getLong(4), view.getDouble(12), view.getDouble(20));
+        }
+
+        VehicleDetails decode() {
+            return new VehicleDetails(new String(bytes, 33, bytes[32], StandardCharsets.UTF_8),
+                    view.getDouble(12), view.getDouble(20), view.getFloat(28), view.getLong(4));
+        }
+    }
+
+    private static Thread daemon(Runnable task, String threadName) {
+        Thread t = new Thread(task, threadName);
+        t.setDaemon(true);
+        return t;
+    }
+}
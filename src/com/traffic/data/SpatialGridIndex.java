@@ -0,0 +1,243 @@
+package com.traffic.data;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * UNIFORM GRID SPATIAL INDEX
+ *
+ * Splits the globe into square cells of cellDegrees x cellDegrees (0.01 deg ~ 1.1 km)
+ * and keeps, per cell, the store slots of the vehicles currently inside it.
+ * A vehicle only touches the index when it crosses into another cell, so
+ * most position updates cost nothing here.
+ *
+ * A cell that empties is dropped from the map, so the index only holds cells
+ * with vehicles in them; each slot remembers its position inside its cell, so
+ * leaving a crowded cell costs the same as leaving an empty one. Longitudes
+ * wrap: a box past +-180 degrees continues on the other side.
+ *
+ * Lock order: callers hold the vehicle's slot lock while moving it between cells;
+ * queries only lock one cell at a time to copy its members.
+ */
+public class SpatialGridIndex {
+
+    public static final long NO_CELL = Long.MIN_VALUE;
+    public static final double EARTH_RADIUS_KM = 6371.0;
+    public static final double KM_PER_DEGREE_LAT = Math.PI * EARTH_RADIUS_KM / 180.0; // ~111.2 km
+
+    private final double cellDegrees;
+    private final int lonCells;
+    private final int latCells;
+    private static final int POSITION_PAGE_BITS = 16;
+
+    private final Map<Long, Cell> cells = new ConcurrentHashMap<>();
+    // Index of each slot in its cell's member array, paged like the store; written under that cell's lock
+    private final AtomicReferenceArray<int[]> positions;
+
+    public SpatialGridIndex(double cellDegrees, int maxSlots) {
+        this.cellDegrees = cellDegrees;
+        this.lonCells = (int) Math.ceil(360.0 / cellDegrees);
+        this.latCells = (int) Math.ceil(180.0 / cellDegrees);
+        this.positions = new AtomicReferenceArray<>((maxSlots >>> POSITION_PAGE_BITS) + 1);
+    }
+
+    public double getCellDegrees() { return cellDegrees; }
+
+    public int latCell(double lat) {
+        return clamp((int) Math.floor((lat + 90.0) / cellDegrees), latCells);
+    }
+
+    public int lonCell(double lon) {
+        return clamp((int) Math.floor((lon + 180.0) / cellDegrees), lonCells);
+    }
+
+    public long cellOf(double lat, double lon) {
+        return key(latCell(lat), lonCell(lon));
+    }
+
+    /** Moves a slot between cells. Either cell may be NO_CELL (insert / delete). */
+    public void move(int slot, long fromCell, long toCell) {
+        if (fromCell == toCell) return;
+        if (fromCell != NO_CELL) {
+            Cell from = cells.get(fromCell);
+            if (from != null) from.remove(slot);
+        }
+        if (toCell != NO_CELL) {
+            while (!cells.computeIfAbsent(toCell, k -> new Cell(k)).add(slot)) {
+                // Emptied and dropped just now: the next lookup creates a fresh one
+            }
+        }
+    }
+
+    /** The cell at grid coordinates, or null if no vehicle has ever been there. */
+    public Cell cellAt(int latCell, int lonCell) {
+        if (latCell < 0 || latCell >= latCells) return null;
+        return cells.get(key(latCell, ((lonCell % lonCells) + lonCells) % lonCells));
+    }
+
+    /**
+     * Collects the non-empty cells overlapping a box. Walks the box cell by cell, or the
+     * populated cells instead when the box covers more cells than are populated. Longitudes
+     * outside [-180, 180] continue on the other side of the antimeridian.
+     */
+    public void collectCells(double minLat, double minLon, double maxLat, double maxLon, List<Cell> out) {
+        int lat0 = latCell(minLat), lat1 = latCell(maxLat);
+        int lon0 = (int) Math.floor((minLon + 180.0) / cellDegrees); // Unwrapped: may run past either end
+        int lonSpan = maxLon - minLon >= 360.0 ? lonCells
+                : Math.min(lonCells, (int) Math.floor((maxLon + 180.0) / cellDegrees) - lon0 + 1);
+        long boxCells = (long) (lat1 - lat0 + 1) * lonSpan;
+
+        if (boxCells > cells.size()) {
+            for (Cell cell : cells.values()) {
+                if (cell.latCell >= lat0 && cell.latCell <= lat1 && Math.floorMod(cell.lonCell - lon0, lonCells) < lonSpan
+                        && cell.size() > 0) out.add(cell);
+            }
+            return;
+        }
+        for (int la = lat0; la <= lat1; la++) {
+            for (int lo = lon0; lo < lon0 + lonSpan; lo++) {
+                Cell cell = cells.get(key(la, Math.floorMod(lo, lonCells)));
+                if (cell != null && cell.size() > 0) out.add(cell);
+            }
+        }
+    }
+
+    /** Number of populated cells (empty ones are dropped). */
+    public int populatedCells() {
+        return cells.size();
+    }
+
+    public Iterable<Cell> allCells() {
+        return cells.values();
+    }
+
+    /**
+     * Lower bound (km) on the distance from a point to any cell outside the given number
+     * of rings around its own cell: how far the point sits from the nearest edge of the
+     * square already visited. East-west degrees shrink as cos(latitude) towards the poles,
+     * so they are counted at the worst latitude one ring further out.
+     */
+    public double visitedReachKm(double lat, double lon, int rings) {
+        int la = latCell(lat), lo = lonCell(lon);
+        double south = lat - ((la - rings) * cellDegrees - 90.0);
+        double north = (la + rings + 1) * cellDegrees - 90.0 - lat;
+        double west = lon - ((lo - rings) * cellDegrees - 180.0);
+        double east = (lo + rings + 1) * cellDegrees - 180.0 - lon;
+        double worstLat = Math.min(89.9, Math.abs(lat) + (rings + 1) * cellDegrees);
+        return Math.min(Math.min(south, north) * KM_PER_DEGREE_LAT,
+                Math.min(west, east) * KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(worstLat)));
+    }
+
+    /** Great-circle distance in km. */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        return new DistanceFrom(lat1, lon1).km(lat2, lon2);
+    }
+
+    /**
+     * Great-circle distances from one fixed point, for queries that measure many candidates:
+     * the origin's cosine is taken once, and haversine() skips the asin so a candidate can be
+     * rejected on the haversine term alone. km(lat, lon) is exactly haversineKm.
+     */
+    public static final class DistanceFrom {
+        private final double lat;
+        private final double lon;
+        private final double cosLat;
+
+        public DistanceFrom(double lat, double lon) {
+            this.lat = lat;
+            this.lon = lon;
+            this.cosLat = Math.cos(Math.toRadians(lat));
+        }
+
+        /** The haversine term: grows with the distance, see toKm. */
+        public double haversine(double lat2, double lon2) {
+            double sinLat = Math.sin(Math.toRadians(lat2 - lat) / 2);
+            double sinLon = Math.sin(Math.toRadians(lon2 - lon) / 2);
+            return sinLat * sinLat + cosLat * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        }
+
+        public double km(double lat2, double lon2) {
+            return toKm(haversine(lat2, lon2));
+        }
+
+        public static double toKm(double haversine) {
+            return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(haversine)));
+        }
+
+        /** The haversine term at a distance, slightly generous: confirm a pass with toKm. */
+        public static double haversineAt(double km) {
+            double half = Math.sin(Math.min(Math.PI / 2, km / (2 * EARTH_RADIUS_KM)));
+            return half * half * (1 + 1e-9);
+        }
+    }
+
+    private long key(int latCell, int lonCell) {
+        return (long) latCell * lonCells + lonCell;
+    }
+
+    private static int clamp(int cell, int cellCount) {
+        return Math.max(0, Math.min(cell, cellCount - 1));
+    }
+
+    // Position bookkeeping, called with the slot's cell locked
+    private int positionOf(int slot) {
+        return positions.get(slot >>> POSITION_PAGE_BITS)[slot & ((1 << POSITION_PAGE_BITS) - 1)];
+    }
+
+    private void setPosition(int slot, int position) {
+        int[] page = positions.get(slot >>> POSITION_PAGE_BITS);
+        if (page == null) {
+            positions.compareAndSet(slot >>> POSITION_PAGE_BITS, null, new int[1 << POSITION_PAGE_BITS]);
+            page = positions.get(slot >>> POSITION_PAGE_BITS);
+        }
+        page[slot & ((1 << POSITION_PAGE_BITS) - 1)] = position;
+    }
+
+    /** Members of one grid cell (store slots). */
+    public final class Cell {
+        public final long key;
+        public final int latCell;
+        public final int lonCell;
+        private int[] slots = new int[8];
+        private int count = 0;
+        private boolean dropped; // Emptied and taken out of the map: adds must go to a new cell
+
+        Cell(long key) {
+            this.key = key;
+            this.latCell = (int) (key / lonCells);
+            this.lonCell = (int) (key % lonCells);
+        }
+
+        synchronized boolean add(int slot) {
+            if (dropped) return false;
+            if (count == slots.length) slots = Arrays.copyOf(slots, count * 2);
+            setPosition(slot, count);
+            slots[count++] = slot;
+            return true;
+        }
+
+        synchronized void remove(int slot) {
+            int at = positionOf(slot);
+            if (at >= count || slots[at] != slot) return; // Not a member
+            int last = slots[--count];
+            slots[at] = last;
+            setPosition(last, at);
+            if (count == 0) {
+                dropped = true;
+                cells.remove(key, this);
+            }
+        }
+
+        public synchronized int size() {
+            return count;
+        }
+
+        /** Copy of the member slots, taken under the cell lock. */
+        public synchronized int[] members() {
+            return Arrays.copyOf(slots, count);
+        }
+    }
+}
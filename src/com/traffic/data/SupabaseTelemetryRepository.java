@@ -3,12 +3,26 @@ package com.traffic.data;
 import com.traffic.common.models.VehicleDetails;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Properties;
+import java.util.Map;
 
 /**
  * SUPABASE IMPLEMENTATION
  * Connects to the Cloud PostgreSQL instance via JDBC over SSL.
+ *
+ * Writes never touch the caller's thread: reports go to a BatchingTelemetryWriter
+ * ("jdbc") whose writer threads borrow a pooled connection, run the reused INSERT
+ * statement through addBatch/executeBatch and commit once per batch. The driver
+ * rewrites the batch into multi-row INSERTs (reWriteBatchedInserts), and the
+ * session runs with synchronous_commit off, so a commit does not wait for the WAL
+ * flush (a crash may lose the last few hundred ms of telemetry, never corrupt it).
+ * Reads share the pool and stream with a bounded fetch size.
+ *
+ * Config: traffic.jdbc.url / .user / .password (default: the constants below),
+ *         traffic.jdbc.poolSize (writers + 2), traffic.jdbc.fetchSize (50),
+ *         traffic.jdbc.asyncCommit (true, PostgreSQL only), traffic.jdbc.borrowTimeoutMs (5000),
+ *         writer sizing traffic.jdbc.writers / .batchSize / .lingerMs / ... (see BatchingTelemetryWriter)
  */
 public class SupabaseTelemetryRepository implements TelemetryRepository {
 
@@ -24,65 +38,124 @@ public class SupabaseTelemetryRepository implements TelemetryRepository {
     private static final String DB_PASS = "Your_Strong_Database_Password";
     // --------------------------------------------
 
-    private String connectionUrl;
+    private static final String INSERT_SQL = "INSERT INTO vehicle_telemetry (vehicle_id, latitude, longitude, speed) VALUES (?, ?, ?, ?)";
+    private static final String HISTORY_SQL = "SELECT vehicle_id, latitude, longitude, speed FROM vehicle_telemetry WHERE vehicle_id = ? ORDER BY recorded_at DESC LIMIT 50";
 
-    public SupabaseTelemetryRepository() {
-        // Construct the JDBC URL with SSL enabled (Required for Supabase)
-        this.connectionUrl = String.format("jdbc:postgresql://%s:5432/%s?sslmode=require", DB_HOST, DB_NAME);
+    private final JdbcConnectionPool pool;
+    private final BatchingTelemetryWriter writer;
+    private final int fetchSize;
+    private final long borrowTimeoutMillis;
 
-        try {
-            Class.forName("org.postgresql.Driver");
-            System.out.println(">>> [SUPABASE] PostgreSQL Driver Loaded.");
-        } catch (ClassNotFoundException e) {
-            System.err.println("!!! [FATAL] PostgreSQL Driver missing. Did you add the Maven dependency?");
+    public SupabaseTelemetryRepository() {
+        // Construct the JDBC URL with SSL enabled (Required for Supabase); batches go out as multi-row INSERTs
+        String connectionUrl = System.getProperty("traffic.jdbc.url",
+                String.format("jdbc:postgresql://%s:5432/%s?sslmode=require&reWriteBatchedInserts=true", DB_HOST, DB_NAME));
+        boolean postgres = connectionUrl.startsWith("jdbc:postgresql:");
+
+        if (postgres) {
+            try {
+                Class.forName("org.postgresql.Driver");
+                System.out.println(">>> [SUPABASE] PostgreSQL Driver Loaded.");
+            } catch (ClassNotFoundException e) {
+                System.err.println("!!! [FATAL] PostgreSQL Driver missing. Did you add the Maven dependency?");
+            }
         }
+
+        this.fetchSize = Integer.getInteger("traffic.jdbc.fetchSize", 50);
+        this.borrowTimeoutMillis = Long.getLong("traffic.jdbc.borrowTimeoutMs", 5_000);
+        List<String> sessionSql = postgres && Boolean.parseBoolean(System.getProperty("traffic.jdbc.asyncCommit", "true"))
+                ? Collections.singletonList("SET synchronous_commit TO OFF")
+                : Collections.<String>emptyList();
+        this.pool = new JdbcConnectionPool(connectionUrl,
+                System.getProperty("traffic.jdbc.user", DB_USER),
+                System.getProperty("traffic.jdbc.password", DB_PASS),
+                Integer.getInteger("traffic.jdbc.poolSize", Integer.getInteger("traffic.jdbc.writers", 2) + 2),
+                sessionSql);
+        this.writer = new BatchingTelemetryWriter("jdbc", this::insertBatch);
+        this.writer.start();
+        System.out.println(">>> [SUPABASE] JDBC Connector Ready (pooled, batched inserts).");
     }
 
     @Override
     public void saveTelemetry(VehicleDetails data) {
-        String sql = "INSERT INTO vehicle_telemetry (vehicle_id, latitude, longitude, speed) VALUES (?, ?, ?, ?)";
-
-        try (Connection conn = DriverManager.getConnection(connectionUrl, DB_USER, DB_PASS);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        writer.submit(data);
+    }
 
-            pstmt.setString(1, data.getVehicleId());
-            // Ensure you updated VehicleDetails.java to include these getters (See Step 4 of previous response)
-            pstmt.setDouble(2, data.getLatitude());
-            pstmt.setDouble(3, data.getLongitude());
-            pstmt.setDouble(4, data.getSpeed());
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = writer.getMetrics();
+        metrics.putAll(pool.getMetrics("jdbc.pool"));
+        return metrics;
+    }
 
-            pstmt.executeUpdate();
-            System.out.println(">>> [SUPABASE] Saved telemetry for " + data.getVehicleId());
+    // One executeBatch + one commit per batch, on a writer thread
+    private void insertBatch(List<VehicleDetails> batch) throws Exception {
+        JdbcConnectionPool.Pooled conn = pool.borrow(borrowTimeoutMillis);
+        boolean broken = true;
+        try {
+            PreparedStatement pstmt = conn.prepare(INSERT_SQL);
+            for (VehicleDetails data : batch) {
+                pstmt.setString(1, data.getVehicleId());
+                pstmt.setDouble(2, data.getLatitude());
+                pstmt.setDouble(3, data.getLongitude());
+                pstmt.setDouble(4, data.getSpeed());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            conn.connection().commit();
+            broken = false;
+        } catch (SQLException e) {
+            // Class 22 (bad data) / 23 (constraint): the same rows would fail again
+            String state = e.getSQLState();
+            if (state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                broken = !resetQuietly(conn);
+                throw new BatchingTelemetryWriter.PermanentFailure(state + " " + e.getMessage());
+            }
+            throw e; // Transient (network, failover, ...): the writer retries on a fresh connection
+        } finally {
+            pool.release(conn, broken);
+        }
+    }
 
+    // Clears what is left of the batch and ends the failed transaction, so the connection can be reused
+    private static boolean resetQuietly(JdbcConnectionPool.Pooled conn) {
+        try {
+            conn.prepare(INSERT_SQL).clearBatch();
+            conn.connection().rollback();
+            return true;
         } catch (SQLException e) {
-            System.err.println("!!! [SUPABASE ERROR] Write Failed: " + e.getMessage());
-            e.printStackTrace();
+            return false;
         }
     }
 
     @Override
     public List<VehicleDetails> getHistory(String vehicleId) {
         List<VehicleDetails> history = new ArrayList<>();
-        String sql = "SELECT * FROM vehicle_telemetry WHERE vehicle_id = ? ORDER BY recorded_at DESC LIMIT 50";
-
-        try (Connection conn = DriverManager.getConnection(connectionUrl, DB_USER, DB_PASS);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
+        JdbcConnectionPool.Pooled conn = null;
+        boolean broken = true;
+        try {
+            conn = pool.borrow(borrowTimeoutMillis);
+            PreparedStatement pstmt = conn.prepare(HISTORY_SQL);
             pstmt.setString(1, vehicleId);
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                VehicleDetails v = new VehicleDetails(
-                        rs.getString("vehicle_id"),
-                        rs.getDouble("latitude"),
-                        rs.getDouble("longitude"),
-                        rs.getDouble("speed")
-                );
-                history.add(v);
+            pstmt.setFetchSize(fetchSize); // Streams in pages (auto-commit is off) instead of buffering the result
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    VehicleDetails v = new VehicleDetails(
+                            rs.getString(1),
+                            rs.getDouble(2),
+                            rs.getDouble(3),
+                            rs.getDouble(4)
+                    );
+                    history.add(v);
+                }
             }
+            conn.connection().commit(); // Ends the read transaction
+            broken = false;
         } catch (SQLException e) {
             System.err.println("!!! [SUPABASE ERROR] Read Failed: " + e.getMessage());
+        } finally {
+            if (conn != null) pool.release(conn, broken);
         }
         return history;
     }
-}
\ No newline at end of file
+}
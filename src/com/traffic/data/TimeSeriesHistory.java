@@ -0,0 +1,270 @@
+package com.traffic.data;
+
+import com.traffic.common.models.VehicleDetails;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TRAJECTORY HISTORY (In-Process, Compressed Time Series)
+ *
+ * Every vehicle's reports are kept as a series of compressed chunks
+ * (HistoryChunk: delta-of-delta time and coordinates, XOR speed), sealed every
+ * `chunkPoints` points. Sealed chunks carry their time range, so a range query
+ * only decodes the chunks it overlaps.
+ *
+ * Reports arrive per vehicle in order from the ingestion pipeline (one thread per
+ * partition); a report not newer than the vehicle's last one is skipped.
+ *
+ * Expiry: sealed chunks are queued fleet-wide in the order they were sealed,
+ * which follows report time (reports come in order, and ingestion rejects
+ * future timestamps), so evictExpired() (maintenance) only pops chunks that
+ * ended before the retention window off the head of that queue: it costs what
+ * it drops, not the fleet. A vehicle that leaves the real-time store
+ * (vehicleLeft) has its partly filled chunk sealed and queued too; its series
+ * goes once its last chunk has. Such a chunk may wait behind newer ones, at
+ * most for the store's idle timeout, before it is dropped.
+ *
+ * Memory: everything held (sealed chunks, open chunk buffers, per-vehicle
+ * overhead) is counted against maxMB. Past the budget the oldest sealed chunks
+ * are taken off the same queue first, whatever the retention says.
+ *
+ * Config: traffic.history.chunkPoints (512), traffic.history.retentionHours (24),
+ *         traffic.history.maxMB (an eighth of the heap), traffic.history.maxPoints (10000, per query)
+ */
+public class TimeSeriesHistory implements TelemetryRepository {
+
+    private static final int RECENT_LIMIT = 50;
+    private static final long SERIES_OVERHEAD_BYTES = 256; // Series, map entry, id string, open chunk header
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private final Queue<SealedChunk> sealOrder = new ConcurrentLinkedQueue<>(); // Oldest sealed chunk first
+    private final int chunkPoints;
+    private final long retentionMillis;
+    private final long budgetBytes;
+    private final int maxPoints;
+
+    // Metrics
+    private final AtomicLong points = new AtomicLong(); // Currently held
+    private final AtomicLong sealedBytes = new AtomicLong();
+    private final AtomicLong sealedChunks = new AtomicLong();
+    private final AtomicLong openBytes = new AtomicLong(); // Buffers of the chunks still being appended to
+    private final AtomicLong overBudget = new AtomicLong(); // Points dropped to stay within maxMB
+    private final AtomicLong outOfOrder = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    public TimeSeriesHistory() {
+        this.chunkPoints = Integer.getInteger("traffic.history.chunkPoints", 512);
+        this.retentionMillis = TimeUnit.HOURS.toMillis(Long.getLong("traffic.history.retentionHours", 24));
+        this.budgetBytes = Long.getLong("traffic.history.maxMB", Runtime.getRuntime().maxMemory() / 8 >> 20) << 20;
+        this.maxPoints = Integer.getInteger("traffic.history.maxPoints", 10_000);
+    }
+
+    private final class Series {
+        final String vehicleId;
+        final ArrayDeque<HistoryChunk> sealed = new ArrayDeque<>();
+        HistoryChunk open = new HistoryChunk(chunkPoints);
+        boolean removed; // Evicted from the map: appenders must look it up again
+
+        Series(String vehicleId) {
+            this.vehicleId = vehicleId;
+            openBytes.addAndGet(open.sizeBytes() + SERIES_OVERHEAD_BYTES);
+        }
+
+        // Called with the series locked
+        void append(VehicleDetails report) {
+            long time = report.getTimestampMillis();
+            if (open.count() > 0 ? time <= open.lastTime() : !sealed.isEmpty() && time <= sealed.peekLast().lastTime()) {
+                outOfOrder.incrementAndGet();
+                return;
+            }
+            if (open.count() == chunkPoints) seal(chunkPoints);
+            long buffer = open.sizeBytes();
+            open.append(time, report.getLatitude(), report.getLongitude(), report.getSpeed());
+            if (open.sizeBytes() != buffer) openBytes.addAndGet(open.sizeBytes() - buffer); // Grew
+            points.incrementAndGet();
+        }
+
+        // Called with the series locked: queues the open chunk and starts a new one sized for `expectedPoints`
+        void seal(int expectedPoints) {
+            openBytes.addAndGet(-open.sizeBytes());
+            open.seal();
+            sealed.addLast(open);
+            sealOrder.add(new SealedChunk(this, open));
+            sealedChunks.incrementAndGet();
+            sealedBytes.addAndGet(open.sizeBytes());
+            open = new HistoryChunk(expectedPoints);
+            openBytes.addAndGet(open.sizeBytes());
+        }
+
+        // Called with the series locked: drops its oldest chunk if that is still `chunk`
+        boolean dropOldest(HistoryChunk chunk) {
+            if (sealed.peekFirst() != chunk) return false; // The series was removed and started over
+            sealed.pollFirst();
+            sealedChunks.decrementAndGet();
+            sealedBytes.addAndGet(-chunk.sizeBytes());
+            points.addAndGet(-chunk.count());
+            return true;
+        }
+
+        boolean isEmpty() {
+            return sealed.isEmpty() && open.count() == 0;
+        }
+
+        // Called with the series locked, once it is empty
+        void remove() {
+            removed = true;
+            series.remove(vehicleId, this);
+            openBytes.addAndGet(-open.sizeBytes() - SERIES_OVERHEAD_BYTES);
+        }
+    }
+
+    private static final class SealedChunk {
+        final Series series;
+        final HistoryChunk chunk;
+
+        SealedChunk(Series series, HistoryChunk chunk) {
+            this.series = series;
+            this.chunk = chunk;
+        }
+    }
+
+    @Override
+    public void saveTelemetry(VehicleDetails report) {
+        while (true) {
+            Series s = series.computeIfAbsent(report.getVehicleId(), Series::new);
+            synchronized (s) {
+                if (s.removed) continue;
+                s.append(report);
+            }
+            if (heldBytes() > budgetBytes) evictOverBudget(); // Outside the series lock: it locks others
+            return;
+        }
+    }
+
+    // Drops the oldest sealed chunks, fleet-wide, until back within the budget
+    private void evictOverBudget() {
+        SealedChunk oldest;
+        while (heldBytes() > budgetBytes && (oldest = sealOrder.poll()) != null) {
+            overBudget.addAndGet(drop(oldest));
+        }
+    }
+
+    // Takes a chunk polled off the seal-order queue out of its series. Returns the points dropped
+    private long drop(SealedChunk queued) {
+        Series s = queued.series;
+        synchronized (s) {
+            if (s.removed || !s.dropOldest(queued.chunk)) return 0;
+            if (s.isEmpty()) s.remove();
+        }
+        return queued.chunk.count();
+    }
+
+    private long heldBytes() {
+        return sealedBytes.get() + openBytes.get();
+    }
+
+    /**
+     * The vehicle's points in [fromMillis, toMillis], oldest first. With stepMillis > 0, one point per
+     * step (the last one in it). At most maxPoints: the newest are kept.
+     */
+    public List<VehicleDetails> query(String vehicleId, long fromMillis, long toMillis, long stepMillis) {
+        Series s = series.get(vehicleId);
+        if (s == null || fromMillis > toMillis) return Collections.emptyList();
+        ArrayDeque<VehicleDetails> out = new ArrayDeque<>();
+        long lastBucket = Long.MIN_VALUE;
+        synchronized (s) {
+            List<HistoryChunk> chunks = new ArrayList<>(s.sealed.size() + 1);
+            chunks.addAll(s.sealed);
+            chunks.add(s.open);
+            for (HistoryChunk chunk : chunks) {
+                if (chunk.count() == 0 || chunk.lastTime() < fromMillis) continue;
+                if (chunk.firstTime() > toMillis) break;
+                HistoryChunk.Cursor c = chunk.cursor();
+                while (c.next()) {
+                    if (c.time < fromMillis) continue;
+                    if (c.time > toMillis) break;
+                    if (stepMillis > 0) {
+                        long bucket = Math.floorDiv(c.time, stepMillis);
+                        if (bucket == lastBucket) out.pollLast(); // Keep the last point of the step
+                        lastBucket = bucket;
+                    }
+                    out.addLast(new VehicleDetails(s.vehicleId, c.lat, c.lon, c.speed, c.time));
+                    if (out.size() > maxPoints) out.pollFirst();
+                }
+            }
+        }
+        return new ArrayList<>(out);
+    }
+
+    /** The latest 50 points, newest first. */
+    @Override
+    public List<VehicleDetails> getHistory(String vehicleId) {
+        Series s = series.get(vehicleId);
+        if (s == null) return new ArrayList<>();
+        List<VehicleDetails> recent = new ArrayList<>(RECENT_LIMIT);
+        synchronized (s) {
+            // Walk chunks newest to oldest; each one is decoded front to back, then taken in reverse
+            Iterator<HistoryChunk> older = s.sealed.descendingIterator();
+            HistoryChunk chunk = s.open;
+            List<VehicleDetails> decoded = new ArrayList<>();
+            while (chunk != null && recent.size() < RECENT_LIMIT) {
+                decoded.clear();
+                HistoryChunk.Cursor c = chunk.cursor();
+                while (c.next()) decoded.add(new VehicleDetails(s.vehicleId, c.lat, c.lon, c.speed, c.time));
+                for (int i = decoded.size() - 1; i >= 0 && recent.size() < RECENT_LIMIT; i--) recent.add(decoded.get(i));
+                chunk = older.hasNext() ? older.next() : null;
+            }
+        }
+        return recent;
+    }
+
+    /** Drops history older than the retention window, and vehicles with nothing left. Returns the points dropped. */
+    public long evictExpired() {
+        long dropped = 0;
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        for (SealedChunk head; (head = sealOrder.peek()) != null && head.chunk.lastTime() < cutoff; ) {
+            if (sealOrder.remove(head)) dropped += drop(head); // Else budget eviction took it meanwhile
+        }
+        expired.addAndGet(dropped);
+        return dropped;
+    }
+
+    /**
+     * The vehicle left the real-time store (it went quiet): seals what it has in its open chunk so that
+     * expiry finds it, and keeps only a small buffer in case it comes back.
+     */
+    public void vehicleLeft(String vehicleId) {
+        Series s = series.get(vehicleId);
+        if (s == null) return;
+        synchronized (s) {
+            if (s.removed) return;
+            if (s.open.count() > 0) s.seal(0);
+            else if (s.sealed.isEmpty()) s.remove();
+        }
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("history.vehicles", (long) series.size());
+        metrics.put("history.points", points.get());
+        metrics.put("history.chunks", sealedChunks.get());
+        metrics.put("history.sealedBytes", sealedBytes.get());
+        metrics.put("history.bytes", heldBytes());
+        metrics.put("history.budgetBytes", budgetBytes);
+        metrics.put("history.evictedOverBudget", overBudget.get());
+        metrics.put("history.outOfOrder", outOfOrder.get());
+        metrics.put("history.expired", expired.get());
+        return metrics;
+    }
+}
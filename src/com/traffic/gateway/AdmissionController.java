@@ -0,0 +1,282 @@
+package com.traffic.gateway;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ADMISSION CONTROL (Prioritized, Bounded Concurrency for Backend Calls)
+ *
+ * Every guarded endpoint belongs to a request class, and each class has its own
+ * pool of in-flight permits, so a telemetry flood can never use up the permits
+ * that traffic-light control needs. A request that cannot get a permit within its
+ * class's queue timeout is turned away at once with 503 + Retry-After, instead of
+ * parking yet another thread on the RMI backend.
+ *
+ * Priority: CONTROL > QUERY > TELEMETRY. While a higher class is saturated, lower
+ * classes stop waiting for permits altogether (shed on the first miss), which
+ * hands the backend over to the important work until the pressure is gone.
+ *
+ * Also chooses the request executor: virtual threads when the JVM has them
+ * (JDK 21+). Otherwise the server's own pool only reads request headers and
+ * hands each guarded request to its class's executor: as many threads as the
+ * class has permits, and a queue just as long. A full queue is answered 503 at
+ * once and a request that waited there past the class timeout is turned away,
+ * so control requests never queue behind a telemetry flood (one FIFO for all
+ * would put them there).
+ *
+ * Per endpoint: requests, rejections and latency (avg / p99 / max, microseconds).
+ *
+ * Config: traffic.gateway.<class>.maxInFlight     control 8, query 32, telemetry 128
+ *         traffic.gateway.<class>.queueTimeoutMs  control 2000, query 100, telemetry 10
+ *         traffic.gateway.retryAfterSeconds (1), traffic.gateway.virtualThreads (true),
+ *         traffic.gateway.threads (256, platform pool only: reads headers, runs unguarded endpoints)
+ */
+public class AdmissionController {
+
+    /** Request classes, highest priority first. */
+    public enum Priority {
+        CONTROL(8, 2000), QUERY(32, 100), TELEMETRY(128, 10); // Telemetry mostly waits on a shared bulk call
+
+        final int defaultMaxInFlight;
+        final long defaultQueueTimeoutMs;
+
+        Priority(int defaultMaxInFlight, long defaultQueueTimeoutMs) {
+            this.defaultMaxInFlight = defaultMaxInFlight;
+            this.defaultQueueTimeoutMs = defaultQueueTimeoutMs;
+        }
+
+        String key() { return name().toLowerCase(); }
+    }
+
+    private static final byte[] OVERLOADED = "{\"error\": \"Overloaded, retry later\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final Lane[] lanes = new Lane[Priority.values().length]; // Indexed by priority ordinal
+    private final String retryAfter;
+    private final Map<String, EndpointStats> endpoints = new LinkedHashMap<>(); // Filled at startup, read-only afterwards
+    private boolean virtualThreads = false;
+
+    public AdmissionController() {
+        for (Priority priority : Priority.values()) {
+            String prefix = "traffic.gateway." + priority.key() + ".";
+            lanes[priority.ordinal()] = new Lane(
+                    Integer.getInteger(prefix + "maxInFlight", priority.defaultMaxInFlight),
+                    Long.getLong(prefix + "queueTimeoutMs", priority.defaultQueueTimeoutMs));
+        }
+        this.retryAfter = String.valueOf(Integer.getInteger("traffic.gateway.retryAfterSeconds", 1));
+    }
+
+    /** Request executor: one virtual thread per request if available, else a bounded platform pool. */
+    public ExecutorService newRequestExecutor() {
+        if (Boolean.parseBoolean(System.getProperty("traffic.gateway.virtualThreads", "true"))) {
+            try {
+                // Reflective: the pom targets Java 17, whose API has no virtual threads (final in 21)
+                ExecutorService executor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                virtualThreads = true;
+                System.out.println(">>> [GATEWAY] Handlers run on virtual threads (" + describeLimits() + ")");
+                return executor;
+            } catch (ReflectiveOperationException e) {
+                // Older JVM: fall through to platform threads
+            }
+        }
+        int threads = Integer.getInteger("traffic.gateway.threads", 256);
+        for (Priority priority : Priority.values()) lanes[priority.ordinal()].startExecutor(priority.key());
+        System.out.println(">>> [GATEWAY] Handlers run on platform threads: " + threads + " to read requests, one pool per class ("
+                + describeLimits() + ")");
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    /** Wraps a handler that calls the backend: admitted within its class's limit, measured under `endpoint`. */
+    public HttpHandler guard(String endpoint, Priority priority, HttpHandler handler) {
+        EndpointStats stats = endpoints.computeIfAbsent(endpoint, k -> new EndpointStats());
+        Lane lane = lanes[priority.ordinal()];
+        return exchange -> {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) { // CORS preflight: no backend call
+                handler.handle(exchange);
+                return;
+            }
+            long start = System.nanoTime();
+            ThreadPoolExecutor executor = lane.executor;
+            if (executor == null) { // Virtual threads: this one is ours to block
+                handle(exchange, handler, priority, lane, stats, start);
+                return;
+            }
+            // Only a request queued behind a full pool waits for others; its place is known as it is queued. A
+            // free pool thread can still be slow to start (cold JVM, JIT threads on a small box), which is no
+            // reason to turn the request away
+            boolean behindOthers = lane.submitted.getAndIncrement() >= lane.maxInFlight;
+            long queuedAt = System.nanoTime();
+            Runnable task = () -> {
+                try {
+                    if (behindOthers && System.nanoTime() - queuedAt > TimeUnit.MILLISECONDS.toNanos(lane.queueTimeoutMs)) {
+                        stats.rejected.incrementAndGet(); // Waited its turn too long: the client has likely given up
+                        reject(exchange);
+                        return;
+                    }
+                    handle(exchange, handler, priority, lane, stats, start);
+                } catch (IOException | RuntimeException e) {
+                    exchange.close(); // What the server would do had the handler thrown on its own thread
+                } finally {
+                    lane.submitted.decrementAndGet();
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                lane.submitted.decrementAndGet();
+                lane.shed.incrementAndGet();
+                stats.rejected.incrementAndGet();
+                reject(exchange);
+            }
+        };
+    }
+
+    private void handle(HttpExchange exchange, HttpHandler handler, Priority priority, Lane lane, EndpointStats stats,
+                        long start) throws IOException {
+        if (!admit(priority, lane)) {
+            stats.rejected.incrementAndGet();
+            reject(exchange);
+            return;
+        }
+        try {
+            handler.handle(exchange);
+        } finally {
+            lane.permits.release();
+            stats.record(System.nanoTime() - start);
+        }
+    }
+
+    private boolean admit(Priority priority, Lane lane) {
+        if (lane.permits.tryAcquire()) return true;
+        // 1. No free permit: shed right away if a more important class is under pressure
+        for (int i = 0; i < priority.ordinal(); i++) {
+            if (lanes[i].saturated()) {
+                lane.shed.incrementAndGet();
+                return false;
+            }
+        }
+        // 2. Otherwise wait (bounded) for one of our own permits
+        try {
+            if (lane.permits.tryAcquire(lane.queueTimeoutMs, TimeUnit.MILLISECONDS)) return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private void reject(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+        exchange.getResponseHeaders().add("Retry-After", retryAfter);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(503, OVERLOADED.length);
+        exchange.getResponseBody().write(OVERLOADED);
+        exchange.close();
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("gateway.virtualThreads", virtualThreads ? 1L : 0L);
+        for (Priority priority : Priority.values()) {
+            Lane lane = lanes[priority.ordinal()];
+            metrics.put("gateway." + priority.key() + ".inFlight", (long) (lane.maxInFlight - lane.permits.availablePermits()));
+            metrics.put("gateway." + priority.key() + ".maxInFlight", (long) lane.maxInFlight);
+            metrics.put("gateway." + priority.key() + ".shed", lane.shed.get());
+        }
+        for (Map.Entry<String, EndpointStats> e : endpoints.entrySet()) {
+            String prefix = "gateway." + e.getKey() + ".";
+            EndpointStats stats = e.getValue();
+            long count = stats.count.get();
+            metrics.put(prefix + "requests", count);
+            metrics.put(prefix + "rejected", stats.rejected.get());
+            metrics.put(prefix + "avgUs", count == 0 ? 0 : stats.totalNanos.get() / count / 1000);
+            metrics.put(prefix + "p99Us", stats.percentileMicros(0.99));
+            metrics.put(prefix + "maxUs", stats.maxNanos.get() / 1000);
+        }
+        return metrics;
+    }
+
+    private String describeLimits() {
+        StringBuilder sb = new StringBuilder("max in flight:");
+        for (Priority priority : Priority.values()) {
+            sb.append(' ').append(priority.key()).append('=').append(lanes[priority.ordinal()].maxInFlight);
+        }
+        return sb.toString();
+    }
+
+    // One request class: its permits, how long its requests may wait for one, and how many were shed
+    private static final class Lane {
+        private final int maxInFlight;
+        private final long queueTimeoutMs;
+        private final Semaphore permits;
+        private final AtomicLong shed = new AtomicLong();
+        private volatile ThreadPoolExecutor executor; // Platform threads only; null with virtual threads
+        private final AtomicInteger submitted = new AtomicInteger(); // Handed to the executor: running or queued
+
+        Lane(int maxInFlight, long queueTimeoutMs) {
+            this.maxInFlight = maxInFlight;
+            this.queueTimeoutMs = queueTimeoutMs;
+            this.permits = new Semaphore(maxInFlight);
+        }
+
+        // One thread per permit, a queue as long, idle threads let go
+        void startExecutor(String name) {
+            AtomicLong created = new AtomicLong();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(maxInFlight), task -> {
+                        Thread t = new Thread(task, "gateway-" + name + "-" + created.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+
+        boolean saturated() {
+            return permits.availablePermits() == 0 || permits.hasQueuedThreads();
+        }
+    }
+
+    // Lock-free latency counters; percentiles from power-of-two buckets (upper bound of the bucket)
+    private static final class EndpointStats {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(40); // Bucket i: < 2^i microseconds
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) { }
+            long micros = Math.max(1, nanos / 1000);
+            buckets.incrementAndGet(Math.min(buckets.length() - 1, 64 - Long.numberOfLeadingZeros(micros)));
+        }
+
+        long percentileMicros(double p) {
+            long total = count.get();
+            if (total == 0) return 0;
+            long target = (long) Math.ceil(total * p), seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= target) return Math.min(1L << i, maxNanos.get() / 1000);
+            }
+            return maxNanos.get() / 1000;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.traffic.gateway;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-client token bucket (client = remote IP address).
+ * Each client may send `ratePerSec` requests per second on average, with bursts of
+ * up to `burst`; anything beyond is answered 429 + Retry-After before it costs a
+ * backend permit. Buckets of clients that went quiet are dropped periodically.
+ * Bulk endpoints use a limiter of their own and take one token per chunk of
+ * reports (take), so an aggregator is not throttled like a single vehicle.
+ */
+public class ClientRateLimiter {
+
+    private static final byte[] TOO_MANY = "{\"error\": \"Rate limit exceeded\"}".getBytes(StandardCharsets.UTF_8);
+    private static final int SWEEP_EVERY = 4096; // Requests between sweeps of idle buckets
+
+    private final String name;
+    private final double ratePerNano;
+    private final double burst;
+    private final long idleNanos; // A bucket idle this long is full again: forgetting it changes nothing
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong limited = new AtomicLong();
+
+    public ClientRateLimiter(String name, double ratePerSec, double burst) {
+        this.name = name;
+        this.ratePerNano = ratePerSec / 1e9;
+        this.burst = burst;
+        this.idleNanos = (long) (burst / ratePerNano);
+    }
+
+    public HttpHandler guard(HttpHandler handler) {
+        return exchange -> {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handler.handle(exchange);
+                return;
+            }
+            long now = System.nanoTime();
+            if (requests.incrementAndGet() % SWEEP_EVERY == 0) sweep(now);
+
+            long waitNanos = bucket(exchange, now).take(now);
+            if (waitNanos == 0) {
+                handler.handle(exchange);
+            } else {
+                limited.incrementAndGet();
+                reject(exchange, waitNanos);
+            }
+        };
+    }
+
+    /**
+     * Takes one token from the client's bucket, for handlers that charge per unit of work rather than
+     * per request. False if there is none; the Retry-After header is then already set on the exchange.
+     */
+    public boolean take(HttpExchange exchange) {
+        long now = System.nanoTime();
+        if (requests.incrementAndGet() % SWEEP_EVERY == 0) sweep(now);
+        long waitNanos = bucket(exchange, now).take(now);
+        if (waitNanos == 0) return true;
+        limited.incrementAndGet();
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds(waitNanos)));
+        return false;
+    }
+
+    private Bucket bucket(HttpExchange exchange, long now) {
+        String client = exchange.getRemoteAddress().getAddress().getHostAddress();
+        return buckets.computeIfAbsent(client, k -> new Bucket(burst, now));
+    }
+
+    private static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    private void reject(HttpExchange exchange, long waitNanos) throws IOException {
+        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+        exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfterSeconds(waitNanos)));
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(429, TOO_MANY.length);
+        exchange.getResponseBody().write(TOO_MANY);
+        exchange.close();
+    }
+
+    private void sweep(long now) {
+        buckets.values().removeIf(bucket -> bucket.idleSince(now) > idleNanos);
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("gateway." + name + ".rateLimited", limited.get());
+        metrics.put("gateway." + name + ".clients", (long) buckets.size());
+        return metrics;
+    }
+
+    private final class Bucket {
+        private double tokens;
+        private long updated;
+
+        Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.updated = now;
+        }
+
+        // 0 if a token was taken, else how long until one is available
+        synchronized long take(long now) {
+            tokens = Math.min(burst, tokens + (now - updated) * ratePerNano);
+            updated = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) ((1 - tokens) / ratePerNano);
+        }
+
+        synchronized long idleSince(long now) {
+            return now - updated;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.traffic.gateway;
+
+import com.traffic.common.models.TrafficAlert;
+import com.traffic.common.models.VehicleDelta;
+import com.traffic.common.models.VehicleDetails;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written JSON codecs for the gateway's payload types, on top of JsonWriter/JsonReader.
+ * Property names are encoded once; the output matches what JsonUtils produced by reflection
+ * (same names, order and number formatting), so clients see no difference.
+ */
+public final class JsonCodecs {
+
+    private JsonCodecs() { }
+
+    private static final byte[] VEHICLE_ID = JsonWriter.encodeName("vehicleId");
+    private static final byte[] LATITUDE = JsonWriter.encodeName("latitude");
+    private static final byte[] LONGITUDE = JsonWriter.encodeName("longitude");
+    private static final byte[] SPEED = JsonWriter.encodeName("speed");
+    private static final byte[] TIMESTAMP = JsonWriter.encodeName("timestamp");
+    private static final byte[] SEQUENCE = JsonWriter.encodeName("sequence");
+    private static final byte[] TYPE = JsonWriter.encodeName("type");
+    private static final byte[] VERSION = JsonWriter.encodeName("version");
+    private static final byte[] FULL = JsonWriter.encodeName("full");
+    private static final byte[] VEHICLES = JsonWriter.encodeName("vehicles");
+    private static final byte[] EVICTED = JsonWriter.encodeName("evicted");
+
+    // --- WRITERS ---
+
+    public static void writeVehicle(JsonWriter json, VehicleDetails v) throws IOException {
+        json.beginObject()
+                .name(VEHICLE_ID).value(v.getVehicleId())
+                .name(LATITUDE).value(v.getLatitude())
+                .name(LONGITUDE).value(v.getLongitude())
+                .name(SPEED).value(v.getSpeed())
+                .name(TIMESTAMP).value(v.getTimestampMillis())
+                .endObject();
+    }
+
+    public static void writeVehicles(JsonWriter json, List<VehicleDetails> vehicles) throws IOException {
+        json.beginArray();
+        for (VehicleDetails v : vehicles) writeVehicle(json, v);
+        json.endArray();
+    }
+
+    /** {"version":N,"full":bool,"vehicles":[...],"evicted":["id",...]} */
+    public static void writeDelta(JsonWriter json, VehicleDelta delta) throws IOException {
+        json.beginObject()
+                .name(VERSION).value(delta.getVersion())
+                .name(FULL).value(delta.isFullSnapshot())
+                .name(VEHICLES);
+        writeVehicles(json, delta.getVehicles());
+        json.name(EVICTED);
+        writeStrings(json, delta.getEvicted());
+        json.endObject();
+    }
+
+    public static void writeAlerts(JsonWriter json, List<TrafficAlert> alerts) throws IOException {
+        json.beginArray();
+        for (TrafficAlert a : alerts) {
+            json.beginObject()
+                    .name(SEQUENCE).value(a.getSequence())
+                    .name(TYPE).value(a.getType())
+                    .name(VEHICLE_ID).value(a.getVehicleId())
+                    .name(LATITUDE).value(a.getLatitude())
+                    .name(LONGITUDE).value(a.getLongitude())
+                    .name(SPEED).value(a.getSpeed())
+                    .name(TIMESTAMP).value(a.getTimestampMillis())
+                    .endObject();
+        }
+        json.endArray();
+    }
+
+    public static void writeStrings(JsonWriter json, List<String> values) throws IOException {
+        json.beginArray();
+        for (String s : values) json.value(s);
+        json.endArray();
+    }
+
+    /** Values as strings, as the metrics endpoint has always returned them. */
+    public static void writeStringMap(JsonWriter json, Map<String, ?> map) throws IOException {
+        json.beginObject();
+        for (Map.Entry<String, ?> e : map.entrySet()) json.name(e.getKey()).value(String.valueOf(e.getValue()));
+        json.endObject();
+    }
+
+    /** Encodes a whole payload into a byte array (for cached or shared responses). */
+    public static byte[] toBytes(Encoder encoder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        JsonWriter json = new JsonWriter(bytes);
+        encoder.write(json);
+        json.flush();
+        return bytes.toByteArray();
+    }
+
+    public interface Encoder {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    // --- READERS ---
+
+    /**
+     * A telemetry report: {"vehicleId":"CAB-1","lat":36.8,"lon":10.1,"speed":85[,"timestamp":epochMillis]}.
+     * Numbers may also be quoted. Unknown properties are skipped; a missing timestamp means "now".
+     */
+    public static VehicleDetails readReport(JsonReader json) throws IOException {
+        VehicleDetails report = readReportOrNull(json);
+        if (report == null) throw new IOException("Report needs vehicleId, lat, lon and speed");
+        return report;
+    }
+
+    /** Like readReport, but an incomplete report yields null (the reader stays in step for the next one). */
+    public static VehicleDetails readReportOrNull(JsonReader json) throws IOException {
+        String vehicleId = null;
+        double lat = Double.NaN, lon = Double.NaN, speed = Double.NaN;
+        long timestamp = -1;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "vehicleId": vehicleId = json.nextString(); break;
+                case "lat": lat = json.nextDouble(); break;
+                case "lon": lon = json.nextDouble(); break;
+                case "speed": speed = json.nextDouble(); break;
+                case "timestamp": timestamp = json.nextLong(); break;
+                default: json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (vehicleId == null || Double.isNaN(lat) || Double.isNaN(lon) || Double.isNaN(speed)) return null;
+        return new VehicleDetails(vehicleId, lat, lon, speed, timestamp >= 0 ? timestamp : System.currentTimeMillis());
+    }
+
+    public static VehicleDetails readReport(InputStream in) throws IOException {
+        JsonReader json = new JsonReader(in);
+        VehicleDetails report = readReport(json);
+        json.endDocument();
+        return report;
+    }
+}
@@ -0,0 +1,370 @@
+package com.traffic.gateway;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * STREAMING JSON READER (Pull Parser)
+ *
+ * Reads tokens straight from the request InputStream through a small reusable
+ * buffer; no copy of the whole body is ever made. Callers walk the document
+ * (beginObject / hasNext / nextName / nextDouble ...), so a known message such
+ * as a telemetry report is decoded into fields without building a Map.
+ * readValue() is there for free-form documents.
+ *
+ * Malformed input raises IOException; in NDJSON (one value per line) skipLine()
+ * picks up again at the next line. Not thread-safe: one reader per request.
+ */
+public class JsonReader {
+
+    private static final int MAX_DEPTH = 64;
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    private final InputStream in;
+    private final byte[] buf;
+    private int pos = 0;
+    private int limit = 0;
+    private final StringBuilder text = new StringBuilder(32); // Reused for strings and numbers
+    private final boolean[] inObject = new boolean[MAX_DEPTH];
+    private final boolean[] hasElements = new boolean[MAX_DEPTH];
+    private int depth = 0;
+    private boolean afterName = false; // Next value needs no comma (follows a name, or peek() consumed it)
+    private long lineBreaks = 0; // Newlines passed between tokens
+    private long valueLine = 0; // lineBreaks where the current top-level value started
+
+    public JsonReader(InputStream in) {
+        this.in = in;
+        this.buf = BUFFERS.get();
+    }
+
+    /** Kind of the next value, without consuming it. */
+    public enum Token { BEGIN_OBJECT, BEGIN_ARRAY, STRING, NUMBER, BOOLEAN, NULL, END_OBJECT, END_ARRAY, END }
+
+    public Token peek() throws IOException {
+        int c = peekNonWhitespace();
+        if (depth == 0) valueLine = lineBreaks;
+        if (c == ',' && !afterName && depth > 0 && hasElements[depth - 1]) {
+            // Look past the comma before the next member; the value read that follows must not expect it again
+            pos++;
+            afterName = true;
+            c = peekNonWhitespace();
+        }
+        switch (c) {
+            case '{': return Token.BEGIN_OBJECT;
+            case '[': return Token.BEGIN_ARRAY;
+            case '"': return Token.STRING;
+            case 't': case 'f': return Token.BOOLEAN;
+            case 'n': return Token.NULL;
+            case '}': return Token.END_OBJECT;
+            case ']': return Token.END_ARRAY;
+            case -1: return Token.END;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return Token.NUMBER;
+                throw syntax("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    // --- STRUCTURE ---
+
+    public void beginObject() throws IOException {
+        open('{', true);
+    }
+
+    public void endObject() throws IOException {
+        close('}');
+    }
+
+    public void beginArray() throws IOException {
+        open('[', false);
+    }
+
+    public void endArray() throws IOException {
+        close(']');
+    }
+
+    /** True if the current object/array has another member. */
+    public boolean hasNext() throws IOException {
+        int c = peekNonWhitespace();
+        return c != '}' && c != ']' && c != -1;
+    }
+
+    public String nextName() throws IOException {
+        if (depth == 0 || !inObject[depth - 1]) throw syntax("Name outside an object");
+        separator();
+        if (peekNonWhitespace() != '"') throw syntax("Expected a property name");
+        pos++;
+        String name = readString();
+        if (peekNonWhitespace() != ':') throw syntax("Expected ':'");
+        pos++;
+        afterName = true;
+        return name;
+    }
+
+    // --- VALUES ---
+
+    public String nextString() throws IOException {
+        separator();
+        if (peekNonWhitespace() != '"') throw syntax("Expected a string");
+        pos++;
+        return readString();
+    }
+
+    /** A number, also accepted in quotes ("36.8") as older clients send. */
+    public double nextDouble() throws IOException {
+        separator();
+        int c = peekNonWhitespace();
+        if (c == '"') {
+            pos++;
+            try {
+                return Double.parseDouble(readString().trim());
+            } catch (NumberFormatException e) {
+                throw syntax("Expected a number");
+            }
+        }
+        return readNumber();
+    }
+
+    public long nextLong() throws IOException {
+        double value = nextDouble();
+        if (value != Math.rint(value) || Math.abs(value) > 9.007199254740992E15) throw syntax("Expected an integer");
+        return (long) value;
+    }
+
+    public boolean nextBoolean() throws IOException {
+        separator();
+        int c = peekNonWhitespace();
+        if (c == 't') {
+            expectLiteral("true");
+            return true;
+        }
+        expectLiteral("false");
+        return false;
+    }
+
+    public void nextNull() throws IOException {
+        separator();
+        peekNonWhitespace();
+        expectLiteral("null");
+    }
+
+    /** Skips the next value, whatever its type (e.g. an unknown property). */
+    public void skipValue() throws IOException {
+        readValue();
+    }
+
+    /** The next value as Map (objects), List, String, Double, Boolean or null. */
+    public Object readValue() throws IOException {
+        switch (peek()) {
+            case BEGIN_OBJECT: {
+                Map<String, Object> map = new LinkedHashMap<>();
+                beginObject();
+                while (hasNext()) {
+                    String name = nextName();
+                    map.put(name, readValue());
+                }
+                endObject();
+                return map;
+            }
+            case BEGIN_ARRAY: {
+                List<Object> list = new ArrayList<>();
+                beginArray();
+                while (hasNext()) list.add(readValue());
+                endArray();
+                return list;
+            }
+            case STRING: return nextString();
+            case NUMBER: return nextDouble();
+            case BOOLEAN: return nextBoolean();
+            case NULL: nextNull(); return null;
+            default: throw syntax("Expected a value");
+        }
+    }
+
+    /**
+     * NDJSON recovery after a syntax error: back to the top level, past the rest of the broken line. If the
+     * error only showed on a later line (a value left open), resumes right there. False at the end of input.
+     */
+    public boolean skipLine() throws IOException {
+        depth = 0;
+        afterName = false;
+        if (lineBreaks == valueLine) {
+            int c;
+            do {
+                c = read();
+            } while (c != '\n' && c != -1);
+            if (c == -1) return false;
+            lineBreaks++;
+        }
+        return peekNonWhitespace() != -1;
+    }
+
+    /** Fails unless only whitespace is left (call after the top-level value). */
+    public void endDocument() throws IOException {
+        if (peekNonWhitespace() != -1) throw syntax("Trailing data");
+    }
+
+    // --- INTERNALS ---
+
+    private void open(char c, boolean object) throws IOException {
+        separator();
+        if (peekNonWhitespace() != c) throw syntax("Expected '" + c + "'");
+        if (depth == MAX_DEPTH) throw syntax("Nested too deeply");
+        pos++;
+        inObject[depth] = object;
+        hasElements[depth++] = false;
+    }
+
+    private void close(char c) throws IOException {
+        if (peekNonWhitespace() != c || depth == 0) throw syntax("Expected '" + c + "'");
+        pos++;
+        depth--;
+    }
+
+    // Consumes the comma before every member but the first
+    private void separator() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth == 0) return;
+        if (hasElements[depth - 1]) {
+            if (peekNonWhitespace() != ',') throw syntax("Expected ','");
+            pos++;
+        } else {
+            hasElements[depth - 1] = true;
+        }
+    }
+
+    // After the opening quote; decodes UTF-8 and escapes up to the closing quote
+    private String readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int b = read();
+            if (b == '"') return text.toString();
+            if (b == -1) throw syntax("Unterminated string");
+            if (b == '\\') {
+                int e = read();
+                switch (e) {
+                    case '"': case '\\': case '/': text.append((char) e); break;
+                    case 'n': text.append('\n'); break;
+                    case 'r': text.append('\r'); break;
+                    case 't': text.append('\t'); break;
+                    case 'b': text.append('\b'); break;
+                    case 'f': text.append('\f'); break;
+                    case 'u': text.append((char) readHex4()); break;
+                    default: throw syntax("Bad escape");
+                }
+            } else if (b < 0x80) {
+                text.append((char) b);
+            } else if ((b & 0xE0) == 0xC0) {
+                text.append((char) (((b & 0x1F) << 6) | continuation()));
+            } else if ((b & 0xF0) == 0xE0) {
+                text.append((char) (((b & 0x0F) << 12) | (continuation() << 6) | continuation()));
+            } else if ((b & 0xF8) == 0xF0) {
+                text.appendCodePoint(((b & 0x07) << 18) | (continuation() << 12) | (continuation() << 6) | continuation());
+            } else {
+                throw syntax("Invalid UTF-8");
+            }
+        }
+    }
+
+    private int continuation() throws IOException {
+        int b = read();
+        if ((b & 0xC0) != 0x80) throw syntax("Invalid UTF-8");
+        return b & 0x3F;
+    }
+
+    private int readHex4() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) throw syntax("Bad \\u escape");
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private double readNumber() throws IOException {
+        // Fast path: plain integers and decimals with up to 15 significant digits are exact in a double
+        long mantissa = 0;
+        int digits = 0, fractionDigits = 0;
+        boolean negative = false, fraction = false, simple = true;
+        text.setLength(0);
+        int c = peekByte();
+        if (c == '-') {
+            negative = true;
+            text.append('-');
+            pos++;
+        }
+        while (true) {
+            c = peekByte();
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (++digits > 15) simple = false;
+                if (fraction) fractionDigits++;
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c == 'e' || c == 'E' || c == '+' || (c == '-' && text.length() > 1)) {
+                simple = false;
+            } else {
+                break;
+            }
+            text.append((char) c);
+            pos++;
+        }
+        if (digits == 0) throw syntax("Expected a number");
+        if (simple && fractionDigits <= 15) {
+            double value = fractionDigits == 0 ? mantissa : mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(text.toString());
+        } catch (NumberFormatException e) {
+            throw syntax("Malformed number");
+        }
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    private void expectLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) throw syntax("Expected " + literal);
+        }
+    }
+
+    private int peekNonWhitespace() throws IOException {
+        while (true) {
+            int c = peekByte();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+            if (c == '\n') lineBreaks++;
+            pos++;
+        }
+    }
+
+    private int peekByte() throws IOException {
+        if (pos == limit && !fill()) return -1;
+        return buf[pos] & 0xFF;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) return -1;
+        return buf[pos++] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) return false;
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    private IOException syntax(String message) {
+        return new IOException("Malformed JSON: " + message);
+    }
+}
@@ -1,6 +1,7 @@
 package com.traffic.gateway;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -60,8 +61,9 @@ public class JsonUtils {
             Field[] fields = obj.getClass().getDeclaredFields();
             int count = 0;
             for (Field field : fields) {
+                // Constants and transient wire-only fields are not part of the JSON view
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())) continue;
                 field.setAccessible(true);
-                if (field.getName().equals("serialVersionUID")) continue;
                 if (count++ > 0) json.append(",");
                 json.append("\"").append(field.getName()).append("\":");
                 Object val = field.get(obj);
@@ -0,0 +1,258 @@
+package com.traffic.gateway;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * STREAMING JSON WRITER (No Reflection, No Intermediate Strings)
+ *
+ * Encodes straight into a byte buffer that is flushed to the target stream
+ * (usually the HTTP response body) whenever it fills up. Commas are placed
+ * automatically; property names that are known up front can be pre-encoded
+ * once (see name(byte[])) so writing them is a plain array copy.
+ *
+ * Not thread-safe: one writer per response, and one live writer per thread
+ * at a time (the buffer is recycled per thread).
+ */
+public class JsonWriter {
+
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_DEPTH = 64;
+
+    // Buffers are recycled per thread: a handler thread writes many responses in a row
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    private final OutputStream out;
+    private final byte[] buf;
+    private int pos = 0;
+    private final boolean[] hasElements = new boolean[MAX_DEPTH]; // Per open object/array: comma needed?
+    private int depth = 0;
+    private boolean afterName = false;
+
+    public JsonWriter(OutputStream out) {
+        this.out = out;
+        this.buf = BUFFERS.get();
+    }
+
+    /** Pre-encodes a property name ("name":) for name(byte[]). */
+    public static byte[] encodeName(String name) {
+        return ("\"" + name + "\":").getBytes(StandardCharsets.UTF_8);
+    }
+
+    // --- STRUCTURE ---
+
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        separator();
+        string(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    /** A name from encodeName(). */
+    public JsonWriter name(byte[] encodedName) throws IOException {
+        separator();
+        writeBytes(encodedName, encodedName.length);
+        afterName = true;
+        return this;
+    }
+
+    // --- VALUES ---
+
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) return nullValue();
+        separator();
+        string(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separator();
+        if (value == Long.MIN_VALUE) {
+            ascii(Long.toString(value));
+            return this;
+        }
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        ensure(20);
+        int start = pos;
+        do {
+            buf[pos++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        reverse(start, pos - 1);
+        return this;
+    }
+
+    /** Same text as Double.toString (e.g. 86.0), which is what dashboards have always received. */
+    public JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return nullValue(); // Not representable in JSON
+        if (value == (long) value && Math.abs(value) < 1e7) { // Double.toString switches to E notation at 1e7
+            value((long) value); // Whole numbers (most speeds) skip Double.toString; the fraction follows directly
+            ascii(".0");
+            return this;
+        }
+        separator();
+        ascii(Double.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separator();
+        writeBytes(value ? TRUE : FALSE, value ? 4 : 5);
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        separator();
+        writeBytes(NULL, 4);
+        return this;
+    }
+
+    /** Writes the buffered bytes to the stream (does not close it). */
+    public void flush() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+        out.flush();
+    }
+
+    // --- INTERNALS ---
+
+    private JsonWriter open(char c) throws IOException {
+        separator();
+        if (depth == MAX_DEPTH) throw new IOException("JSON nested too deeply");
+        hasElements[depth++] = false;
+        writeByte(c);
+        return this;
+    }
+
+    private JsonWriter close(char c) throws IOException {
+        depth--;
+        writeByte(c);
+        return this;
+    }
+
+    // Comma before any value or name that is not the first in its container
+    private void separator() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasElements[depth - 1]) writeByte(',');
+            else hasElements[depth - 1] = true;
+        }
+    }
+
+    private void string(String s) throws IOException {
+        writeByte('"');
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                if (pos == buf.length) drain();
+                buf[pos++] = (byte) c;
+            } else if (c == '"' || c == '\\') {
+                writeByte('\\');
+                writeByte(c);
+            } else if (c < 0x20) {
+                escapeControl(c);
+            } else if (c < 0x800) {
+                ensure(2);
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                ensure(4);
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                ensure(3);
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void escapeControl(char c) throws IOException {
+        writeByte('\\');
+        switch (c) {
+            case '\n': writeByte('n'); break;
+            case '\r': writeByte('r'); break;
+            case '\t': writeByte('t'); break;
+            case '\b': writeByte('b'); break;
+            case '\f': writeByte('f'); break;
+            default:
+                ensure(5);
+                buf[pos++] = 'u';
+                buf[pos++] = '0';
+                buf[pos++] = '0';
+                buf[pos++] = HEX[c >> 4];
+                buf[pos++] = HEX[c & 0xF];
+        }
+    }
+
+    private void ascii(String s) throws IOException {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) buf[pos++] = (byte) s.charAt(i);
+    }
+
+    private void reverse(int from, int to) {
+        while (from < to) {
+            byte t = buf[from];
+            buf[from++] = buf[to];
+            buf[to--] = t;
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (pos == buf.length) drain();
+        buf[pos++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes, int length) throws IOException {
+        if (length > buf.length - pos) drain();
+        if (length > buf.length) {
+            out.write(bytes, 0, length);
+            return;
+        }
+        System.arraycopy(bytes, 0, buf, pos, length);
+        pos += length;
+    }
+
+    private void ensure(int n) throws IOException {
+        if (buf.length - pos < n) drain();
+    }
+
+    private void drain() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+}
@@ -0,0 +1,356 @@
+package com.traffic.gateway;
+
+import com.traffic.common.interfaces.ITrafficService;
+import com.traffic.common.models.TrafficAlert;
+import com.traffic.common.models.VehicleDelta;
+import com.traffic.common.models.VehicleDetails;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LIVE FEED (Server-Sent Events over NIO)
+ *
+ * One poller asks the backend for vehicle changes and new alerts on a fixed tick,
+ * for all subscribers together. Each tick is serialized once into SSE frames and
+ * the same bytes are queued to every subscriber.
+ *
+ * Subscribers are plain non-blocking sockets served by a single selector thread,
+ * which only writes to a socket when it can take more bytes: thousands of open
+ * dashboards cost no thread each, and a stalled one never delays the others.
+ * (com.sun.net.httpserver only offers blocking response streams, hence the
+ * separate port; the gateway's /api/stream redirects here.)
+ *
+ * When a subscriber's bounded queue is full:
+ *  - vehicle deltas are coalesced: its queued deltas are dropped and it gets a
+ *    full snapshot (from the feed's own copy of the fleet) on the next tick;
+ *  - alerts are dropped and counted.
+ *
+ * Events:  vehicles -> {"version","full","vehicles","evicted"} (same shape as /api/dashboard?since=)
+ *          alerts   -> [TrafficAlert, ...]
+ */
+public class LiveFeed {
+
+    private static final byte[] RESPONSE_HEADERS = ("HTTP/1.1 200 OK\r\n"
+            + "Content-Type: text/event-stream\r\n"
+            + "Cache-Control: no-cache\r\n"
+            + "Access-Control-Allow-Origin: *\r\n"
+            + "Connection: close\r\n\r\n"
+            + "retry: 2000\n\n").getBytes(StandardCharsets.UTF_8); // Browser reconnect delay
+    private static final byte[] NOT_FOUND = "HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_REQUEST_BYTES = 8192;
+
+    private final ITrafficService service;
+    private final int port;
+    private final long tickMillis;
+    private final int bufferFrames;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "live-feed-poller"));
+    private final AtomicBoolean framesQueued = new AtomicBoolean();
+    private Selector selector;
+
+    // Poller state (only touched by the poller thread)
+    private final Map<String, VehicleDetails> fleet = new HashMap<>();
+    private long version = 0;
+    private long lastAlert = -1;
+    private long lastHeartbeat = System.currentTimeMillis();
+
+    // Metrics
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final AtomicLong alertsDropped = new AtomicLong();
+
+    public LiveFeed(ITrafficService service, int port) {
+        this.service = service;
+        this.port = port;
+        this.tickMillis = Long.getLong("traffic.gateway.feed.tickMs", 500);
+        this.bufferFrames = Integer.getInteger("traffic.gateway.feed.bufferFrames", 32);
+    }
+
+    public int getPort() { return port; }
+
+    public void start() throws IOException {
+        selector = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        daemon(this::ioLoop, "live-feed-io").start();
+
+        poller.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        System.out.println(">>> [FEED] Live feed (SSE) listening on port " + port);
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("feed.subscribers", (long) subscribers.size());
+        metrics.put("feed.framesSent", framesSent.get());
+        metrics.put("feed.resyncs", resyncs.get());
+        metrics.put("feed.alertsDropped", alertsDropped.get());
+        return metrics;
+    }
+
+    // --- POLLER ---
+
+    private void tick() {
+        try {
+            if (subscribers.isEmpty()) {
+                // Nobody listening: forget the fleet, the next subscriber starts from a full snapshot
+                fleet.clear();
+                version = 0;
+                return;
+            }
+
+            // 1. Vehicle changes, applied to our copy of the fleet
+            VehicleDelta delta = service.getVehicleChangesSince(version);
+            if (delta.isFullSnapshot()) fleet.clear();
+            for (String id : delta.getEvicted()) fleet.remove(id);
+            for (VehicleDetails v : delta.getVehicles()) fleet.put(v.getVehicleId(), v);
+            version = delta.getVersion();
+
+            // 2. New alerts (the first tick only learns where the sequence is)
+            List<TrafficAlert> alerts = service.getAlertsSince(Math.max(0, lastAlert));
+            boolean replay = lastAlert >= 0;
+            if (!alerts.isEmpty()) lastAlert = alerts.get(alerts.size() - 1).getSequence();
+            else if (lastAlert < 0) lastAlert = 0;
+
+            // 3. Serialize once, lazily: the snapshot frame only if someone needs it
+            byte[] deltaFrame = delta.getVehicles().isEmpty() && delta.getEvicted().isEmpty() && !delta.isFullSnapshot()
+                    ? null : frame("vehicles", json -> JsonCodecs.writeDelta(json, delta));
+            byte[] snapshotFrame = null;
+            byte[] alertFrame = replay && !alerts.isEmpty() ? frame("alerts", json -> JsonCodecs.writeAlerts(json, alerts)) : null;
+            boolean heartbeat = System.currentTimeMillis() - lastHeartbeat > 15_000;
+            if (heartbeat) lastHeartbeat = System.currentTimeMillis();
+
+            // 4. Fan out (queues only; the selector thread does the writing)
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.needsSnapshot) {
+                    if (snapshotFrame == null) {
+                        VehicleDelta full = new VehicleDelta(version, true, new ArrayList<>(fleet.values()), new ArrayList<String>());
+                        snapshotFrame = frame("vehicles", json -> JsonCodecs.writeDelta(json, full));
+                    }
+                    subscriber.needsSnapshot = !subscriber.offer(snapshotFrame, true);
+                } else if (deltaFrame != null) {
+                    subscriber.offer(deltaFrame, true);
+                }
+                if (alertFrame != null && !subscriber.offer(alertFrame, false)) alertsDropped.addAndGet(alerts.size());
+                if (heartbeat) subscriber.offer(HEARTBEAT, false);
+            }
+            framesQueued.set(true);
+            selector.wakeup();
+        } catch (Exception e) {
+            System.err.println("!!! [FEED] Poll failed: " + e.getMessage());
+        }
+    }
+
+    // "event: <name>\ndata: <json>\n\n" (our JSON never contains raw newlines)
+    private static byte[] frame(String event, JsonCodecs.Encoder data) throws IOException {
+        byte[] json = JsonCodecs.toBytes(data);
+        byte[] head = ("event: " + event + "\ndata: ").getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[head.length + json.length + 2];
+        System.arraycopy(head, 0, frame, 0, head.length);
+        System.arraycopy(json, 0, frame, head.length, json.length);
+        frame[frame.length - 2] = '\n';
+        frame[frame.length - 1] = '\n';
+        return frame;
+    }
+
+    // --- SELECTOR LOOP ---
+
+    private void ioLoop() {
+        while (true) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept((ServerSocketChannel) key.channel());
+                        else if (key.isReadable()) ((Connection) key.attachment()).onReadable();
+                        if (key.isValid() && key.isWritable()) ((Subscriber) key.attachment()).onWritable();
+                    } catch (IOException e) {
+                        if (key.attachment() != null) ((Connection) key.attachment()).close();
+                    }
+                }
+                // A tick queued new frames: subscribers that were idle start writing
+                if (framesQueued.getAndSet(false)) {
+                    for (Subscriber subscriber : subscribers) subscriber.updateInterest();
+                }
+            } catch (Exception e) {
+                System.err.println("!!! [FEED] Selector error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    // --- CONNECTIONS (selector thread only, except Subscriber.offer) ---
+
+    // A client socket until its HTTP request has been read; then it is replaced by a Subscriber
+    private class Connection {
+        final SocketChannel channel;
+        SelectionKey key;
+        private ByteBuffer request = ByteBuffer.allocate(1024);
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void onReadable() throws IOException {
+            if (!request.hasRemaining()) {
+                if (request.capacity() >= MAX_REQUEST_BYTES) throw new IOException("Request too large");
+                ByteBuffer bigger = ByteBuffer.allocate(request.capacity() * 2);
+                request.flip();
+                request = bigger.put(request);
+            }
+            if (channel.read(request) < 0) throw new IOException("Closed before request");
+
+            String head = new String(request.array(), 0, request.position(), StandardCharsets.ISO_8859_1);
+            if (!head.contains("\r\n\r\n")) return;
+
+            // "GET /api/stream HTTP/1.1" -> anything under /api/stream subscribes, the rest gets a 404
+            String[] requestLine = head.substring(0, head.indexOf("\r\n")).split(" ");
+            Subscriber subscriber = new Subscriber(channel, key,
+                    requestLine.length > 1 && "GET".equals(requestLine[0]) && requestLine[1].startsWith("/api/stream"));
+            key.attach(subscriber);
+            if (subscriber.accepted) {
+                subscribers.add(subscriber);
+                System.out.println(">>> [FEED] Subscriber connected: " + channel.getRemoteAddress() + " (" + subscribers.size() + " total)");
+            }
+            subscriber.updateInterest();
+        }
+
+        void close() {
+            key.cancel();
+            try { channel.close(); } catch (IOException ignored) { }
+        }
+    }
+
+    private final class Subscriber extends Connection {
+        final boolean accepted;
+        private final ArrayDeque<byte[]> queue = new ArrayDeque<>(); // Guarded by this
+        private final ArrayDeque<Boolean> isVehicleFrame = new ArrayDeque<>();
+        private final ByteBuffer sink = ByteBuffer.allocate(256);
+        private ByteBuffer current; // Frame being written; a partial frame is never dropped
+        private final boolean closeAfterCurrent;
+        volatile boolean needsSnapshot = true; // Set when deltas were dropped, cleared by the poller
+
+        Subscriber(SocketChannel channel, SelectionKey key, boolean accepted) {
+            super(channel);
+            this.key = key;
+            this.accepted = accepted;
+            this.current = ByteBuffer.wrap(accepted ? RESPONSE_HEADERS : NOT_FOUND);
+            this.closeAfterCurrent = !accepted;
+        }
+
+        /** Queues a frame. Returns false if it was dropped because the queue is full. */
+        synchronized boolean offer(byte[] frame, boolean vehicleFrame) {
+            if (queue.size() >= bufferFrames) {
+                if (!vehicleFrame) return false;
+                // Coalesce: queued deltas are now useless, replace them with a snapshot next tick
+                dropVehicleFrames();
+                needsSnapshot = true;
+                resyncs.incrementAndGet();
+                return false;
+            }
+            queue.add(frame);
+            isVehicleFrame.add(vehicleFrame);
+            return true;
+        }
+
+        private void dropVehicleFrames() {
+            int n = queue.size();
+            for (int i = 0; i < n; i++) {
+                byte[] frame = queue.poll();
+                if (!isVehicleFrame.poll()) {
+                    queue.add(frame);
+                    isVehicleFrame.add(false);
+                }
+            }
+        }
+
+        private synchronized ByteBuffer nextFrame() {
+            byte[] frame = queue.poll();
+            isVehicleFrame.poll();
+            return frame == null ? null : ByteBuffer.wrap(frame); // Shared bytes, own position
+        }
+
+        private synchronized boolean hasQueued() {
+            return !queue.isEmpty();
+        }
+
+        // Anything the browser sends now is noise; -1 means it went away
+        @Override
+        void onReadable() throws IOException {
+            sink.clear();
+            if (channel.read(sink) < 0) close();
+        }
+
+        // Write as much as the socket takes right now
+        void onWritable() throws IOException {
+            while (true) {
+                if (current == null) current = nextFrame();
+                if (current == null) break;
+                channel.write(current);
+                if (current.hasRemaining()) return; // Socket full: wait for the next OP_WRITE
+                current = null;
+                framesSent.incrementAndGet();
+                if (closeAfterCurrent) {
+                    close();
+                    return;
+                }
+            }
+            updateInterest();
+        }
+
+        void updateInterest() {
+            if (!key.isValid()) return;
+            boolean pending = current != null || hasQueued();
+            key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        @Override
+        void close() {
+            super.close();
+            if (subscribers.remove(this)) {
+                System.out.println(">>> [FEED] Subscriber disconnected (" + subscribers.size() + " left)");
+            }
+        }
+    }
+}
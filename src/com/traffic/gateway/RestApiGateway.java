@@ -5,22 +5,41 @@ import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 import com.traffic.common.interfaces.ITrafficService;
+import com.traffic.common.interfaces.ITrafficService.ReportStatus;
+import com.traffic.gateway.AdmissionController.Priority;
+import com.traffic.common.models.TrajectoryPage;
+import com.traffic.common.models.VehicleDelta;
 import com.traffic.common.models.VehicleDetails;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Scanner;
-import java.util.concurrent.Executors; // Import for Multi-threading
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class RestApiGateway {
 
     private static ITrafficService rmiService;
+    private static LiveFeed liveFeed;
+    private static SnapshotCache snapshotCache;
+    private static AdmissionController admission;
+    private static ClientRateLimiter reportLimiter;
+    private static ClientRateLimiter bulkLimiter;
+    private static TelemetryBatcher batcher;
 
     public static void main(String[] args) throws IOException {
         try {
@@ -37,15 +56,39 @@ public class RestApiGateway {
         HttpServer server = HttpServer.create(new InetSocketAddress(8080), 0);
 
         // 3. Register Endpoints
+        // Backend calls go through admission control, by priority: control > queries > telemetry.
+        // Telemetry is also rate limited per client. Metrics stay reachable when saturated.
+        admission = new AdmissionController();
+        reportLimiter = new ClientRateLimiter("report",
+                Integer.getInteger("traffic.gateway.report.ratePerSec", 50),
+                Integer.getInteger("traffic.gateway.report.burst", 100));
+        bulkLimiter = new ClientRateLimiter("reportBulk", // Per chunk of reports, not per report
+                Integer.getInteger("traffic.gateway.bulk.ratePerSec", 20),
+                Integer.getInteger("traffic.gateway.bulk.burst", 50));
         server.createContext("/status", new StatusHandler());
-        server.createContext("/api/report", new TelemetryHandler());
-        server.createContext("/api/dashboard", new DashboardHandler());
-        server.createContext("/api/route", new RouteHandler());
-        server.createContext("/api/control", new ControlHandler()); // Traffic Light Control
+        server.createContext("/api/report", reportLimiter.guard(
+                admission.guard("report", Priority.TELEMETRY, new TelemetryHandler())));
+        server.createContext("/api/report/bulk", admission.guard("reportBulk", Priority.TELEMETRY, new BulkReportHandler())); // Aggregators: NDJSON / array
+        server.createContext("/api/dashboard", admission.guard("dashboard", Priority.QUERY, new DashboardHandler()));
+        server.createContext("/api/route", admission.guard("route", Priority.QUERY, new RouteHandler()));
+        server.createContext("/api/nearby", admission.guard("nearby", Priority.QUERY, new NearbyHandler())); // Dispatch: kNN & radius search
+        server.createContext("/api/history/", admission.guard("history", Priority.QUERY, new HistoryHandler())); // Trajectory: /api/history/{vehicleId}
+        server.createContext("/api/trajectories", admission.guard("trajectories", Priority.QUERY, new TrajectoriesHandler())); // Time + area, streamed
+        server.createContext("/api/control", admission.guard("control", Priority.CONTROL, new ControlHandler())); // Traffic Light Control
+        server.createContext("/api/metrics", new MetricsHandler()); // Backend queue depth & lag
+        server.createContext("/api/stream", new StreamHandler()); // Live feed (Server-Sent Events, own port)
 
         // 4. ENABLE MULTI-THREADING (Crucial for 1000+ Cars)
-        // Uses a cached thread pool to handle concurrent requests automatically
-        server.setExecutor(Executors.newCachedThreadPool());
+        // Virtual threads where available, else a bounded pool: never one new platform thread per blocked request
+        server.setExecutor(admission.newRequestExecutor());
+
+        snapshotCache = new SnapshotCache(rmiService);
+        batcher = new TelemetryBatcher(rmiService);
+        batcher.start();
+
+        // 5. Live feed: pushes changes to open dashboards from one selector thread
+        liveFeed = new LiveFeed(rmiService, Integer.getInteger("traffic.gateway.feed.port", 8081));
+        liveFeed.start();
 
         server.start();
         System.out.println(">>> [GATEWAY] HTTP REST API started on port 8080 (Multi-Threaded)");
@@ -56,7 +99,8 @@ public class RestApiGateway {
         Headers headers = exchange.getResponseHeaders();
         headers.add("Access-Control-Allow-Origin", "*");
         headers.add("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
-        headers.add("Access-Control-Allow-Headers", "Content-Type,Authorization");
+        headers.add("Access-Control-Allow-Headers", "Content-Type,Authorization,If-None-Match");
+        headers.add("Access-Control-Expose-Headers", "ETag");
         if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
             exchange.sendResponseHeaders(204, -1);
             return true;
@@ -64,6 +108,30 @@ public class RestApiGateway {
         return false;
     }
 
+    // --- HELPER: Query String (?a=1&b=2) ---
+    private static Map<String, String> parseQuery(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            try {
+                params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            } catch (UnsupportedEncodingException ignored) { }
+        }
+        return params;
+    }
+
+    // --- HELPER: JSON Responses (streamed straight into the response body, UTF-8) ---
+    private static void sendJson(HttpExchange exchange, int code, JsonCodecs.Encoder encoder) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, 0); // Chunked: encoded while it is sent
+        JsonWriter json = new JsonWriter(exchange.getResponseBody());
+        encoder.write(json);
+        json.flush();
+    }
+
     // --- HANDLERS ---
 
     static class StatusHandler implements HttpHandler {
@@ -85,16 +153,64 @@ public class RestApiGateway {
                 String response = "{}";
                 int code = 200;
                 try {
-                    String body = new Scanner(exchange.getRequestBody()).useDelimiter("\\A").next();
-                    Map<String, Object> data = JsonUtils.parseJson(body);
-
-                    String vId = String.valueOf(data.get("vehicleId"));
-                    double lat = Double.parseDouble(String.valueOf(data.get("lat")));
-                    double lon = Double.parseDouble(String.valueOf(data.get("lon")));
-                    double speed = Double.parseDouble(String.valueOf(data.get("speed")));
-
-                    rmiService.updateVehiclePosition(new VehicleDetails(vId, lat, lon, speed));
-                    response = "{\"status\": \"ok\"}";
+                    // Decoded straight from the body; optional "timestamp" is the device event time
+                    VehicleDetails report = JsonCodecs.readReport(exchange.getRequestBody());
+                    if (!VehicleDetails.isValidId(report.getVehicleId())) {
+                        code = 400; // Checked here: an id that cannot be marshalled would fail a whole bulk call
+                        response = "{\"error\": \"Invalid vehicleId\"}";
+                    } else if (batcher.getMode() == TelemetryBatcher.Mode.OFF) {
+                        rmiService.updateVehiclePosition(report);
+                        response = "{\"status\": \"ok\"}";
+                    } else {
+                        // Forwarded with other reports in one bulk call
+                        CompletableFuture<ReportStatus> result = batcher.submit(report);
+                        if (result == null) {
+                            code = 503;
+                            exchange.getResponseHeaders().add("Retry-After", "1");
+                            response = "{\"error\": \"Ingestion queue full\"}";
+                        } else if (batcher.getMode() == TelemetryBatcher.Mode.FIRE) {
+                            code = 202;
+                            response = "{\"status\": \"queued\"}";
+                        } else {
+                            switch (result.get(batcher.ackTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                                case ACCEPTED:
+                                    response = "{\"status\": \"ok\"}";
+                                    break;
+                                case OVERLOADED:
+                                    code = 503; // Valid but not taken: come back shortly
+                                    exchange.getResponseHeaders().add("Retry-After", "1");
+                                    response = "{\"error\": \"Ingestion overloaded\"}";
+                                    break;
+                                default:
+                                    code = 400;
+                                    response = "{\"error\": \"Invalid Data\"}";
+                            }
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    code = 503; // The bulk call carrying this report failed
+                    response = "{\"error\": \"Backend unavailable\"}";
+                } catch (RemoteException e) {
+                    // Only reached with batching off: one call per report
+                    if (isOverloaded(e)) {
+                        code = 503; // Valid but not taken: come back shortly
+                        exchange.getResponseHeaders().add("Retry-After", "1");
+                        response = "{\"error\": \"Ingestion overloaded\"}";
+                    } else if (e instanceof ServerException) {
+                        code = 400; // Rejected by the service
+                        response = "{\"error\": \"Invalid Data\"}";
+                    } else {
+                        code = 503; // Never reached it
+                        response = "{\"error\": \"Backend unavailable\"}";
+                    }
+                } catch (TimeoutException e) {
+                    code = 503; // Its batch is still on the wire (or stuck): the report may yet be taken
+                    exchange.getResponseHeaders().add("Retry-After", "1");
+                    response = "{\"error\": \"Backend did not answer in time\"}";
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    code = 503;
+                    response = "{\"error\": \"Backend unavailable\"}";
                 } catch (Exception e) {
                     code = 400;
                     response = "{\"error\": \"Invalid Data\"}";
@@ -106,19 +222,374 @@ public class RestApiGateway {
         }
     }
 
+    // Exceptions thrown by the service arrive wrapped in a ServerException
+    private static boolean isOverloaded(RemoteException e) {
+        return e instanceof ServerException ? e.getCause() instanceof ITrafficService.IngestionOverloaded
+                : e instanceof ITrafficService.IngestionOverloaded;
+    }
+
+    // --- BULK INGEST: NDJSON or a JSON array of reports, streamed through in chunks ---
+    // Response: {"received":N,"accepted":A,"rejected":R,"overloaded":O,"rejectedLines":[...],"errors":[{"line":L,
+    //            "error":"..."}...][,"error":"..."]}, lines and errors listed for the first 1000 rejections. Overloaded
+    //            reports (counted in R too) were valid but found no room: resend those lines after Retry-After.
+    // Lines count reports (1-based), whatever the layout of the body. A malformed NDJSON line is rejected on its
+    // own; a malformed array ends the body (400). Each chunk sent to the backend costs one token of the client's
+    // bulk rate limit (not the per-vehicle /api/report one): past it the rest of the body is left unread (429,
+    // Retry-After).
+    static class BulkReportHandler implements HttpHandler {
+        private static final int CHUNK = Integer.getInteger("traffic.gateway.bulk.chunkSize", 1000);
+        private static final int MAX_LISTED = 1000;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (handleCors(exchange)) return;
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            Bulk bulk = new Bulk(exchange);
+            String error = null;
+            int code = 200;
+            try {
+                // 1. One report at a time off the request stream; a full chunk goes to the backend
+                JsonReader json = new JsonReader(exchange.getRequestBody());
+                boolean array = json.peek() == JsonReader.Token.BEGIN_ARRAY;
+                if (array) json.beginArray();
+                while (!bulk.limited) {
+                    VehicleDetails report;
+                    int next = bulk.line + 1;
+                    try {
+                        if (array ? !json.hasNext() : json.peek() == JsonReader.Token.END) break;
+                        bulk.line = next;
+                        bulk.received++;
+                        report = JsonCodecs.readReportOrNull(json);
+                    } catch (IOException e) {
+                        if (array) throw e; // No telling where the next element starts
+                        if (bulk.line != next) { // Broken before the report began
+                            bulk.line = next;
+                            bulk.received++;
+                        }
+                        bulk.reject(bulk.line, e.getMessage());
+                        if (!json.skipLine()) break;
+                        continue;
+                    }
+                    if (report == null) {
+                        bulk.reject(bulk.line, "Report needs vehicleId, lat, lon and speed");
+                        continue;
+                    }
+                    if (!VehicleDetails.isValidId(report.getVehicleId())) { // Would fail the chunk's RMI call
+                        bulk.reject(bulk.line, "Invalid vehicleId (blank, control characters, or over "
+                                + VehicleDetails.MAX_ID_BYTES + " UTF-8 bytes)");
+                        continue;
+                    }
+                    bulk.add(report);
+                    if (bulk.chunk.size() == CHUNK) bulk.forward();
+                }
+                if (array && !bulk.limited) json.endArray();
+                if (!bulk.limited) json.endDocument();
+                // 2. The remainder
+                bulk.forward();
+            } catch (RemoteException e) {
+                code = 503; // Earlier chunks were delivered; the summary says how far we got
+                error = "Backend unavailable at line " + bulk.line;
+            } catch (IOException e) {
+                code = 400;
+                error = e.getMessage() + " at line " + bulk.line;
+                try {
+                    bulk.forward(); // Keep what was readable
+                } catch (RemoteException re) {
+                    code = 503;
+                }
+            }
+            if (bulk.limited && code == 200) {
+                code = 429; // Retry-After already set by the limiter
+                error = "Rate limit exceeded from line " + bulk.limitedAt;
+            }
+            if (bulk.overloaded > 0 && !exchange.getResponseHeaders().containsKey("Retry-After")) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            }
+
+            String failure = error;
+            sendJson(exchange, code, out -> {
+                out.beginObject()
+                        .name("received").value(bulk.received)
+                        .name("accepted").value(bulk.accepted)
+                        .name("rejected").value(bulk.rejected)
+                        .name("overloaded").value(bulk.overloaded)
+                        .name("rejectedLines").beginArray();
+                for (int l : bulk.rejectedLines) out.value(l);
+                out.endArray().name("errors").beginArray();
+                for (int i = 0; i < bulk.rejectedLines.size(); i++) {
+                    out.beginObject().name("line").value(bulk.rejectedLines.get(i)).name("error").value(bulk.reasons.get(i)).endObject();
+                }
+                out.endArray();
+                if (failure != null) out.name("error").value(failure);
+                out.endObject();
+            });
+            exchange.close();
+        }
+
+        // One request's progress: the chunk being filled and what became of every line so far
+        private static final class Bulk {
+            final HttpExchange exchange;
+            final List<VehicleDetails> chunk = new ArrayList<>(CHUNK);
+            final int[] chunkLines = new int[CHUNK];
+            final List<Integer> rejectedLines = new ArrayList<>();
+            final List<String> reasons = new ArrayList<>();
+            long received, accepted, rejected, overloaded;
+            int line;
+            boolean limited; // Out of rate-limit tokens: stop reading
+            int limitedAt;
+
+            Bulk(HttpExchange exchange) {
+                this.exchange = exchange;
+            }
+
+            void add(VehicleDetails report) {
+                chunkLines[chunk.size()] = line;
+                chunk.add(report);
+            }
+
+            // Charges the chunk to the client's bulk rate limit, then sends it
+            void forward() throws RemoteException {
+                if (chunk.isEmpty()) return;
+                if (!bulkLimiter.take(exchange)) {
+                    limited = true;
+                    limitedAt = chunkLines[0];
+                    for (int i = 0; i < chunk.size(); i++) reject(chunkLines[i], "Rate limit exceeded");
+                } else {
+                    ReportStatus[] status = rmiService.updateVehiclePositions(chunk);
+                    for (int i = 0; i < status.length; i++) {
+                        if (status[i] == ReportStatus.ACCEPTED) {
+                            accepted++;
+                        } else if (status[i] == ReportStatus.OVERLOADED) {
+                            overloaded++;
+                            reject(chunkLines[i], "Ingestion overloaded, retry later");
+                        } else {
+                            reject(chunkLines[i], "Rejected by the backend as invalid");
+                        }
+                    }
+                }
+                chunk.clear();
+            }
+
+            void reject(int at, String reason) {
+                rejected++;
+                if (rejectedLines.size() < MAX_LISTED) {
+                    rejectedLines.add(at);
+                    reasons.add(reason);
+                }
+            }
+        }
+    }
+
     static class DashboardHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if (handleCors(exchange)) return;
             if ("GET".equals(exchange.getRequestMethod())) {
+                // Optional viewport: ?bbox=minLat,minLon,maxLat,maxLon
+                // Optional delta mode: ?since=<version from the previous response> (0 = first poll)
+                Map<String, String> params = parseQuery(exchange);
+                String bbox = params.get("bbox");
+                double[] box = null;
+                long since = -1;
                 try {
-                    List<VehicleDetails> vehicles = rmiService.getAllVehicles();
-                    String json = JsonUtils.toJson(vehicles);
-                    exchange.getResponseHeaders().add("Content-Type", "application/json");
-                    exchange.sendResponseHeaders(200, json.length());
-                    exchange.getResponseBody().write(json.getBytes());
-                } catch (Exception e) { exchange.sendResponseHeaders(500, -1); }
+                    if (bbox != null) {
+                        String[] parts = bbox.split(",");
+                        box = new double[4];
+                        for (int i = 0; i < 4; i++) box[i] = Double.parseDouble(parts[i].trim());
+                        if (box[0] > box[2] || box[1] > box[3]) throw new IllegalArgumentException("Inverted bbox");
+                    }
+                    if (params.containsKey("since")) since = Long.parseLong(params.get("since"));
+                } catch (Exception e) {
+                    exchange.sendResponseHeaders(400, -1);
+                    exchange.close();
+                    return;
+                }
+
+                try {
+                    if (since < 0 && box == null) {
+                        sendFleetSnapshot(exchange);
+                        exchange.close();
+                        return;
+                    }
+                    if (since >= 0) {
+                        VehicleDelta delta = box == null
+                                ? rmiService.getVehicleChangesSince(since)
+                                : rmiService.getVehicleChangesInArea(since, box[0], box[1], box[2], box[3]);
+                        sendJson(exchange, 200, json -> JsonCodecs.writeDelta(json, delta));
+                    } else {
+                        List<VehicleDetails> vehicles = rmiService.getVehiclesInArea(box[0], box[1], box[2], box[3]);
+                        sendJson(exchange, 200, json -> JsonCodecs.writeVehicles(json, vehicles));
+                    }
+                } catch (RemoteException e) { exchange.sendResponseHeaders(500, -1); }
+            }
+            exchange.close();
+        }
+    }
+
+    // Whole fleet: the shared pre-serialized snapshot, 304 if the client already has this version
+    private static void sendFleetSnapshot(HttpExchange exchange) throws IOException {
+        long version = rmiService.getSnapshotVersion();
+        Headers headers = exchange.getResponseHeaders();
+        if (("\"" + version + "\"").equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            snapshotCache.recordNotModified();
+            headers.add("ETag", "\"" + version + "\"");
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        SnapshotCache.Payload payload = snapshotCache.get(version);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        byte[] body = gzip ? payload.getGzip() : payload.getJson();
+        headers.add("Content-Type", "application/json");
+        headers.add("ETag", payload.getETag());
+        headers.add("Vary", "Accept-Encoding");
+        if (gzip) headers.add("Content-Encoding", "gzip");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    static class NearbyHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (handleCors(exchange)) return;
+            // ?lat=36.8&lon=10.18&k=20  or  ?lat=36.8&lon=10.18&radiusKm=2
+            Map<String, String> params = parseQuery(exchange);
+            List<VehicleDetails> vehicles;
+            try {
+                double lat = Double.parseDouble(params.get("lat"));
+                double lon = Double.parseDouble(params.get("lon"));
+                if (params.containsKey("radiusKm")) {
+                    vehicles = rmiService.findVehiclesWithinRadius(lat, lon, Double.parseDouble(params.get("radiusKm")));
+                } else {
+                    int k = params.containsKey("k") ? Integer.parseInt(params.get("k")) : 20;
+                    vehicles = rmiService.findNearestVehicles(lat, lon, k);
+                }
+            } catch (Exception e) {
+                String response = "{\"error\": \"Expected lat, lon and k or radiusKm\"}";
+                exchange.sendResponseHeaders(400, response.length());
+                exchange.getResponseBody().write(response.getBytes());
+                exchange.close();
+                return;
+            }
+
+            List<VehicleDetails> found = vehicles;
+            sendJson(exchange, 200, json -> JsonCodecs.writeVehicles(json, found));
+            exchange.close();
+        }
+    }
+
+    static class HistoryHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (handleCors(exchange)) return;
+            // /api/history/BOT-7?from=1700000000000&to=1700003600000&step=60000  (epoch millis; all optional)
+            Map<String, String> params = parseQuery(exchange);
+            List<VehicleDetails> points;
+            try {
+                String vehicleId = URLDecoder.decode(exchange.getRequestURI().getRawPath().substring("/api/history/".length()), "UTF-8");
+                if (vehicleId.isEmpty()) throw new IllegalArgumentException("vehicleId");
+                long from = params.containsKey("from") ? Long.parseLong(params.get("from")) : 0;
+                long to = params.containsKey("to") ? Long.parseLong(params.get("to")) : Long.MAX_VALUE;
+                long step = params.containsKey("step") ? Long.parseLong(params.get("step")) : 0;
+                if (from > to || step < 0) throw new IllegalArgumentException("range");
+                points = rmiService.getVehicleHistory(vehicleId, from, to, step);
+            } catch (RemoteException e) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            } catch (Exception e) {
+                String response = "{\"error\": \"Expected /api/history/{vehicleId}?from=&to=&step= (epoch millis, from <= to)\"}";
+                exchange.sendResponseHeaders(400, response.length());
+                exchange.getResponseBody().write(response.getBytes());
+                exchange.close();
+                return;
+            }
+
+            List<VehicleDetails> found = points;
+            sendJson(exchange, 200, json -> JsonCodecs.writeVehicles(json, found));
+            exchange.close();
+        }
+    }
+
+    static class TrajectoriesHandler implements HttpHandler {
+        private static final int PAGE_SIZE = 10_000;
+        // Server-side ceiling on what one request may stream, whatever its limit says (larger limits are clamped)
+        private static final int MAX_LIMIT = Math.max(1, Integer.getInteger("traffic.log.maxTrajectoryResults", 1_000_000));
+        private static final int DEFAULT_LIMIT = Math.min(100_000, MAX_LIMIT);
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (handleCors(exchange)) return;
+            // ?from=1700000000000&to=1700003600000&bbox=36.7,10.1,36.9,10.3[&limit=100000]  (log backend)
+            Map<String, String> params = parseQuery(exchange);
+            long from, to;
+            double[] box = new double[4];
+            int limit;
+            TrajectoryPage page;
+            try {
+                from = Long.parseLong(params.get("from"));
+                to = Long.parseLong(params.get("to"));
+                String[] corners = params.get("bbox").split(",");
+                if (corners.length != 4) throw new IllegalArgumentException("bbox");
+                for (int i = 0; i < 4; i++) box[i] = Double.parseDouble(corners[i]);
+                limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : DEFAULT_LIMIT;
+                if (from > to || box[0] > box[2] || box[1] > box[3] || limit <= 0) throw new IllegalArgumentException("range");
+                limit = Math.min(limit, MAX_LIMIT);
+                page = rmiService.findTrajectories(from, to, box[0], box[1], box[2], box[3], 0, Math.min(PAGE_SIZE, limit));
+            } catch (RemoteException e) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            } catch (Exception e) {
+                String response = "{\"error\": \"Expected from, to (epoch millis, from <= to) and bbox=minLat,minLon,maxLat,maxLon\"}";
+                exchange.sendResponseHeaders(400, response.length());
+                exchange.getResponseBody().write(response.getBytes());
+                exchange.close();
+                return;
+            }
+
+            // {"reports":[...],"scan":{...}}: each page is written and flushed as soon as it arrives,
+            // so the client starts reading while the log is still being scanned
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            JsonWriter json = new JsonWriter(exchange.getResponseBody());
+            json.beginObject().name("reports").beginArray();
+            int sent = 0, pages = 0;
+            long blocksScanned = 0, blocksSkipped = 0, recordsScanned = 0, bytesScanned = 0, bytesSkipped = 0;
+            try {
+                while (true) {
+                    pages++;
+                    blocksScanned += page.getBlocksScanned();
+                    blocksSkipped += page.getBlocksSkipped();
+                    recordsScanned += page.getRecordsScanned();
+                    bytesScanned += page.getBytesScanned();
+                    bytesSkipped += page.getBytesSkipped();
+                    for (VehicleDetails v : page.getReports()) JsonCodecs.writeVehicle(json, v);
+                    sent += page.getReports().size();
+                    json.flush();
+                    if (page.getNextCursor() < 0 || sent >= limit) break;
+                    page = rmiService.findTrajectories(from, to, box[0], box[1], box[2], box[3], page.getNextCursor(),
+                            Math.min(PAGE_SIZE, limit - sent));
+                }
+            } catch (RemoteException e) {
+                System.err.println("!!! [GATEWAY] Trajectory stream cut short: " + e.getMessage()); // Too late for a status code
             }
+            json.endArray().name("scan").beginObject()
+                    .name("complete").value(page.getNextCursor() < 0)
+                    .name("limit").value(limit)
+                    .name("pages").value(pages)
+                    .name("blocksScanned").value(blocksScanned)
+                    .name("blocksSkipped").value(blocksSkipped)
+                    .name("recordsScanned").value(recordsScanned)
+                    .name("bytesScanned").value(bytesScanned)
+                    .name("bytesSkipped").value(bytesSkipped)
+                    .endObject().endObject();
+            json.flush();
             exchange.close();
         }
     }
@@ -140,11 +611,39 @@ public class RestApiGateway {
 
             try {
                 List<String> route = rmiService.getOptimalRoute(from, to);
-                String json = JsonUtils.toJson(route);
-                exchange.getResponseHeaders().add("Content-Type", "application/json");
-                exchange.sendResponseHeaders(200, json.length());
-                exchange.getResponseBody().write(json.getBytes());
-            } catch (Exception e) { exchange.sendResponseHeaders(500, -1); }
+                sendJson(exchange, 200, json -> JsonCodecs.writeStrings(json, route));
+            } catch (RemoteException e) { exchange.sendResponseHeaders(500, -1); }
+            exchange.close();
+        }
+    }
+
+    static class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (handleCors(exchange)) return;
+            try {
+                Map<String, Long> metrics = rmiService.getSystemMetrics();
+                metrics.putAll(liveFeed.getMetrics());
+                metrics.putAll(snapshotCache.getMetrics());
+                metrics.putAll(admission.getMetrics());
+                metrics.putAll(reportLimiter.getMetrics());
+                metrics.putAll(bulkLimiter.getMetrics());
+                metrics.putAll(batcher.getMetrics());
+                sendJson(exchange, 200, json -> JsonCodecs.writeStringMap(json, metrics));
+            } catch (RemoteException e) { exchange.sendResponseHeaders(500, -1); }
+            exchange.close();
+        }
+    }
+
+    // --- LIVE FEED: served by LiveFeed on its own non-blocking port; send the browser there ---
+    static class StreamHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (handleCors(exchange)) return;
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            host = host == null ? "localhost" : host.replaceFirst(":\\d+$", "");
+            exchange.getResponseHeaders().add("Location", "http://" + host + ":" + liveFeed.getPort() + "/api/stream");
+            exchange.sendResponseHeaders(307, -1);
             exchange.close();
         }
     }
@@ -156,11 +655,11 @@ public class RestApiGateway {
             if (handleCors(exchange)) return;
 
             if ("POST".equals(exchange.getRequestMethod())) {
-                String response = "{}";
+                Map<String, String> response = new LinkedHashMap<>();
                 int code = 200;
                 try {
-                    String body = new Scanner(exchange.getRequestBody()).useDelimiter("\\A").next();
-                    Map<String, Object> data = JsonUtils.parseJson(body);
+                    Object body = new JsonReader(exchange.getRequestBody()).readValue();
+                    Map<?, ?> data = body instanceof Map ? (Map<?, ?>) body : new HashMap<>();
 
                     String junctionId = String.valueOf(data.get("junctionId"));
                     String command = String.valueOf(data.get("command")); // "RED" or "GREEN"
@@ -170,13 +669,13 @@ public class RestApiGateway {
                     // Call RMI -> which calls CORBA
                     String result = rmiService.triggerTrafficLight(junctionId, command);
 
-                    response = "{\"status\": \"executed\", \"hardware_response\": \"" + result + "\"}";
+                    response.put("status", "executed");
+                    response.put("hardware_response", result);
                 } catch (Exception e) {
                     code = 500;
-                    response = "{\"error\": \"" + e.getMessage() + "\"}";
+                    response.put("error", e.getMessage());
                 }
-                exchange.sendResponseHeaders(code, response.length());
-                exchange.getResponseBody().write(response.getBytes());
+                sendJson(exchange, code, json -> JsonCodecs.writeStringMap(json, response));
             }
             exchange.close();
         }
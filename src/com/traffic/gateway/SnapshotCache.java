@@ -0,0 +1,100 @@
+package com.traffic.gateway;
+
+import com.traffic.common.interfaces.ITrafficService;
+import com.traffic.common.models.FleetSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized fleet snapshot, shared by every dashboard request for the same version.
+ * Only the first request after a new snapshot pays for the RMI fetch and the JSON
+ * encoding; requests arriving meanwhile wait for that one build (single flight)
+ * instead of starting their own. The gzip variant is built once, on first demand.
+ */
+public class SnapshotCache {
+
+    /** Encoded payload of one snapshot version. */
+    public static final class Payload {
+        private final long version;
+        private final byte[] json;
+        private byte[] gzip; // Guarded by this
+
+        Payload(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+
+        public long getVersion() { return version; }
+        public byte[] getJson() { return json; }
+        public String getETag() { return "\"" + version + "\""; }
+
+        public synchronized byte[] getGzip() throws IOException {
+            if (gzip == null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 4);
+                try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+                    out.write(json);
+                }
+                gzip = bytes.toByteArray();
+            }
+            return gzip;
+        }
+    }
+
+    private final ITrafficService service;
+    private final Object buildLock = new Object();
+    private volatile Payload latest;
+
+    // Metrics
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    public SnapshotCache(ITrafficService service) {
+        this.service = service;
+    }
+
+    /** Payload of the given snapshot version, or a newer one. */
+    public Payload get(long version) throws RemoteException {
+        Payload payload = latest;
+        if (payload != null && payload.version >= version) {
+            hits.incrementAndGet();
+            return payload;
+        }
+        synchronized (buildLock) {
+            payload = latest;
+            if (payload != null && payload.version >= version) {
+                hits.incrementAndGet(); // Built by the request we waited for
+                return payload;
+            }
+            FleetSnapshot snapshot = service.getFleetSnapshot();
+            byte[] json;
+            try {
+                json = JsonCodecs.toBytes(writer -> JsonCodecs.writeVehicles(writer, snapshot.getVehicles()));
+            } catch (IOException e) {
+                throw new RemoteException("Could not encode snapshot", e); // In-memory encoding: not expected
+            }
+            payload = new Payload(snapshot.getVersion(), json);
+            latest = payload;
+            builds.incrementAndGet();
+            return payload;
+        }
+    }
+
+    public void recordNotModified() {
+        notModified.incrementAndGet();
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("dashboardCache.builds", builds.get());
+        metrics.put("dashboardCache.hits", hits.get());
+        metrics.put("dashboardCache.notModified", notModified.get());
+        return metrics;
+    }
+}
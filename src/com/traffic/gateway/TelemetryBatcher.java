@@ -0,0 +1,212 @@
+package com.traffic.gateway;
+
+import com.traffic.common.interfaces.ITrafficService;
+import com.traffic.common.interfaces.ITrafficService.ReportStatus;
+import com.traffic.common.models.VehicleDetails;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TELEMETRY MICRO-BATCHING (Gateway -> Backend)
+ *
+ * HTTP reports are queued and forwarded by a single flusher thread in bulk
+ * calls (updateVehiclePositions): a batch closes after `windowMs` or at `maxSize`
+ * reports, whichever comes first. While one bulk call is on the wire the next
+ * batch keeps filling, so batches grow by themselves when the backend slows down.
+ *
+ * Modes (traffic.gateway.batch.mode):
+ *  - ack  : the caller's future completes with the backend's verdict on its report (default)
+ *  - fire : the caller is answered at enqueue time; failures are only counted
+ *  - off  : no batching, one RMI call per report (the handler calls the backend itself)
+ *
+ * With coalescing on, a vehicle reported twice in one window is forwarded once,
+ * with its latest position (newest event time, then latest arrival); the
+ * superseded caller gets the same answer as the report that replaced it. Only
+ * plausible reports (the backend's own checks: id, speed, coordinates, event
+ * time at most maxClockSkewSeconds ahead) take part: anything else is forwarded
+ * on its own, so a bad report cannot push out a good one and take its caller's
+ * answer down with it.
+ *
+ * In ACK mode a caller waits at most ackTimeoutMs for its batch, then gets a 503.
+ *
+ * Config: traffic.gateway.batch.windowMs (5), .maxSize (256), .queue (10000), .coalesce (true),
+ *         .ackTimeoutMs (5000), traffic.ingest.maxClockSkewSeconds (60, as on the backend)
+ */
+public class TelemetryBatcher {
+
+    public enum Mode { ACK, FIRE, OFF }
+
+    private final ITrafficService service;
+    private final Mode mode;
+    private final long windowNanos;
+    private final int maxSize;
+    private final boolean coalesce;
+    private final long ackTimeoutMillis;
+    private final long maxClockSkewMillis;
+    private final BlockingQueue<Pending> queue;
+
+    // Metrics
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong(); // Queue full
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong overloaded = new AtomicLong(); // Valid, but the backend pipeline had no room
+    private final AtomicLong failed = new AtomicLong(); // In a bulk call that failed
+
+    public TelemetryBatcher(ITrafficService service) {
+        this.service = service;
+        this.mode = Mode.valueOf(System.getProperty("traffic.gateway.batch.mode", "ack").toUpperCase());
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("traffic.gateway.batch.windowMs", 5));
+        this.maxSize = Integer.getInteger("traffic.gateway.batch.maxSize", 256);
+        this.coalesce = Boolean.parseBoolean(System.getProperty("traffic.gateway.batch.coalesce", "true"));
+        this.ackTimeoutMillis = Long.getLong("traffic.gateway.batch.ackTimeoutMs", 5_000);
+        this.maxClockSkewMillis = TimeUnit.SECONDS.toMillis(Long.getLong("traffic.ingest.maxClockSkewSeconds", 60));
+        this.queue = new ArrayBlockingQueue<>(Integer.getInteger("traffic.gateway.batch.queue", 10_000));
+    }
+
+    public Mode getMode() { return mode; }
+
+    /** How long an ACK-mode caller should wait for its future before giving up (and answering 503). */
+    public long ackTimeoutMillis() { return ackTimeoutMillis; }
+
+    public void start() {
+        if (mode == Mode.OFF) return;
+        Thread flusher = new Thread(this::flushLoop, "telemetry-batcher");
+        flusher.setDaemon(true);
+        flusher.start();
+        System.out.println(">>> [GATEWAY] Telemetry batching: " + mode + " (window " + TimeUnit.NANOSECONDS.toMillis(windowNanos)
+                + " ms or " + maxSize + " reports" + (coalesce ? ", latest valid position wins" : "") + ")");
+    }
+
+    /**
+     * Queues a report. In ACK mode the future completes with the backend's verdict
+     * (or exceptionally if the bulk call failed); in FIRE mode it is already complete.
+     * Returns null if the queue is full.
+     */
+    public CompletableFuture<ReportStatus> submit(VehicleDetails report) {
+        if (!VehicleDetails.isValidId(report.getVehicleId())) {
+            // Never queued: an id that cannot be marshalled would fail the whole bulk call, and every caller in it
+            invalid.incrementAndGet();
+            return CompletableFuture.completedFuture(ReportStatus.INVALID);
+        }
+        Pending pending = new Pending(report, mode == Mode.ACK ? new CompletableFuture<>() : null);
+        if (!queue.offer(pending)) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        return mode == Mode.ACK ? pending.result : CompletableFuture.completedFuture(ReportStatus.ACCEPTED);
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("gateway.batch.batches", batches.get());
+        metrics.put("gateway.batch.forwarded", forwarded.get());
+        metrics.put("gateway.batch.coalesced", coalesced.get());
+        metrics.put("gateway.batch.queueDepth", (long) queue.size());
+        metrics.put("gateway.batch.rejected", rejected.get());
+        metrics.put("gateway.batch.invalid", invalid.get());
+        metrics.put("gateway.batch.overloaded", overloaded.get());
+        metrics.put("gateway.batch.failed", failed.get());
+        return metrics;
+    }
+
+    // --- FLUSHER ---
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>(maxSize);
+        while (true) {
+            try {
+                // 1. Block for the first report, then fill until the window closes or the batch is full
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxSize) {
+                    if (queue.drainTo(batch, maxSize - batch.size()) > 0) continue;
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    Pending next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                // 2. One bulk call for the lot
+                forward(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("!!! [GATEWAY] Telemetry batch error: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void forward(List<Pending> batch) {
+        // Latest position wins: one slot per vehicle, superseded callers follow the surviving report
+        List<VehicleDetails> reports = new ArrayList<>(batch.size());
+        int[] slotOf = new int[batch.size()];
+        Map<String, Integer> slots = coalesce ? new HashMap<>() : null;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < batch.size(); i++) {
+            VehicleDetails report = batch.get(i).report;
+            boolean plausible = coalesce && isPlausible(report, now);
+            Integer slot = plausible ? slots.get(report.getVehicleId()) : null;
+            if (slot == null) {
+                slotOf[i] = reports.size();
+                if (plausible) slots.put(report.getVehicleId(), reports.size());
+                reports.add(report);
+            } else {
+                slotOf[i] = slot;
+                coalesced.incrementAndGet();
+                if (report.getTimestampMillis() >= reports.get(slot).getTimestampMillis()) reports.set(slot, report);
+            }
+        }
+
+        ReportStatus[] status;
+        try {
+            status = service.updateVehiclePositions(reports);
+        } catch (Exception e) {
+            failed.addAndGet(batch.size());
+            for (Pending p : batch) {
+                if (p.result != null) p.result.completeExceptionally(e);
+            }
+            return;
+        }
+        batches.incrementAndGet();
+        forwarded.addAndGet(reports.size());
+        for (int i = 0; i < batch.size(); i++) {
+            ReportStatus verdict = status[slotOf[i]];
+            if (verdict == ReportStatus.INVALID) invalid.incrementAndGet();
+            else if (verdict == ReportStatus.OVERLOADED) overloaded.incrementAndGet();
+            if (batch.get(i).result != null) batch.get(i).result.complete(verdict);
+        }
+    }
+
+    // Mirrors TrafficServiceImpl.isValidReport (less its backend-specific checks): a report that would be
+    // rejected must not supersede one that would not
+    private boolean isPlausible(VehicleDetails report, long now) {
+        if (!VehicleDetails.isValidId(report.getVehicleId())) return false;
+        if (Double.isNaN(report.getSpeed()) || report.getSpeed() < 0) return false;
+        if (report.getTimestampMillis() > now + maxClockSkewMillis) return false;
+        return Math.abs(report.getLatitude()) <= 90.0 && Math.abs(report.getLongitude()) <= 180.0;
+    }
+
+    private static final class Pending {
+        final VehicleDetails report;
+        final CompletableFuture<ReportStatus> result; // Null in FIRE mode
+
+        Pending(VehicleDetails report, CompletableFuture<ReportStatus> result) {
+            this.report = report;
+            this.result = result;
+        }
+    }
+}
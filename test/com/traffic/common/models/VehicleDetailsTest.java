@@ -0,0 +1,56 @@
+package com.traffic.common.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VehicleDetailsTest {
+
+    @Test
+    void validIds() {
+        assertTrue(VehicleDetails.isValidId("TN-1234"));
+        assertTrue(VehicleDetails.isValidId("Zoé 🚗"));
+        assertTrue(VehicleDetails.isValidId("x".repeat(VehicleDetails.MAX_ID_BYTES)));
+        assertTrue(VehicleDetails.isValidId("é".repeat(VehicleDetails.MAX_ID_BYTES / 2))); // 2 bytes each
+    }
+
+    @Test
+    void invalidIds() {
+        assertFalse(VehicleDetails.isValidId(null));
+        assertFalse(VehicleDetails.isValidId(""));
+        assertFalse(VehicleDetails.isValidId("   "));
+        assertFalse(VehicleDetails.isValidId("TN\t1"));
+        assertFalse(VehicleDetails.isValidId("TN\n1"));
+        assertFalse(VehicleDetails.isValidId("TN\u00001"));
+        assertFalse(VehicleDetails.isValidId("x".repeat(VehicleDetails.MAX_ID_BYTES + 1)));
+        assertFalse(VehicleDetails.isValidId("é".repeat(VehicleDetails.MAX_ID_BYTES / 2 + 1)));
+        assertFalse(VehicleDetails.isValidId("x".repeat(70_000))); // Would break writeUTF, and the call carrying it
+    }
+
+    @Test
+    void validIdsSurviveTheWireFormat() throws Exception {
+        String id = "é".repeat(VehicleDetails.MAX_ID_BYTES / 2);
+        VehicleDetails copy = roundTrip(new VehicleDetails(id, 36.8, 10.18, 50.0, 1_700_000_000_000L));
+        assertEquals(id, copy.getVehicleId());
+        assertEquals(36.8, copy.getLatitude());
+        assertEquals(10.18, copy.getLongitude());
+        assertEquals(50.0, copy.getSpeed());
+        assertEquals(1_700_000_000_000L, copy.getTimestampMillis());
+    }
+
+    private static VehicleDetails roundTrip(VehicleDetails details) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(details);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (VehicleDetails) in.readObject();
+        }
+    }
+}
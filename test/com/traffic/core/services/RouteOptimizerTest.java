@@ -0,0 +1,134 @@
+package com.traffic.core.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteOptimizerTest {
+
+    private static final List<String> COAST = List.of("Tunis", "Ben Arous", "Hammamet", "Sousse");
+    private static final List<String> INLAND = List.of("Tunis", "Zaghouan", "Kairouan", "Sfax", "Sousse");
+
+    @Test
+    void repeatedRequestsAreServedFromTheCache() {
+        RouteOptimizer router = new RouteOptimizer(100);
+        assertEquals(COAST, router.findShortestPath("Tunis", "Sousse"));
+        assertEquals(COAST, router.findShortestPath("Tunis", "Sousse"));
+        assertEquals(1L, router.getMetrics().get("route.computations"));
+        assertEquals(1L, router.getMetrics().get("route.hits"));
+    }
+
+    @Test
+    void concurrentRequestsForOneRouteComputeItOnce() throws Exception {
+        RouteOptimizer router = new RouteOptimizer(100);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<String>>> results = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return router.findShortestPath("Tunis", "Gabes");
+            }));
+        }
+        start.countDown();
+        for (Future<List<String>> result : results) assertEquals("Gabes", last(result.get()));
+        pool.shutdown();
+
+        assertEquals(1L, router.getMetrics().get("route.computations"));
+        assertEquals(999L, router.getMetrics().get("route.hits") + router.getMetrics().get("route.coalesced"));
+    }
+
+    @Test
+    void roadCostChangeInvalidatesCachedRoutes() {
+        RouteOptimizer router = new RouteOptimizer(100);
+        assertEquals(COAST, router.findShortestPath("Tunis", "Sousse"));
+        router.findShortestPath("Tunis", "Ariana");
+
+        assertTrue(router.updateRoadCost("Ben Arous", "Hammamet", 400));
+        assertEquals(0L, router.getMetrics().get("route.cached"));
+        assertEquals(2L, router.getMetrics().get("route.invalidated"));
+        assertEquals(2L, router.getMetrics().get("route.graphVersion"));
+        assertEquals(INLAND, router.findShortestPath("Tunis", "Sousse"));
+        assertEquals(reversed(INLAND), router.findShortestPath("Sousse", "Tunis")); // Both directions changed
+    }
+
+    @Test
+    void invalidRoadCostChangesAreRefused() {
+        RouteOptimizer router = new RouteOptimizer(100);
+        router.findShortestPath("Tunis", "Sousse");
+        assertFalse(router.updateRoadCost("Tunis", "Gabes", 5)); // No such road
+        assertFalse(router.updateRoadCost("Tunis", "Ariana", -1));
+        assertTrue(router.updateRoadCost("Tunis", "Ariana", 5)); // Unchanged: no new version
+        assertEquals(1L, router.getMetrics().get("route.graphVersion"));
+        assertEquals(1L, router.getMetrics().get("route.cached"));
+    }
+
+    @Test
+    void unknownCitiesAreNotCached() {
+        RouteOptimizer router = new RouteOptimizer(100);
+        assertEquals(List.of("Error: Unknown City"), router.findShortestPath("Tunis", "Atlantis"));
+        assertEquals(0L, router.getMetrics().get("route.cached"));
+    }
+
+    @Test
+    void leastRecentlyUsedRouteIsEvicted() {
+        RouteOptimizer router = new RouteOptimizer(2);
+        router.findShortestPath("Tunis", "Sousse");
+        router.findShortestPath("Tunis", "Sfax");
+        router.findShortestPath("Tunis", "Sousse"); // Sfax is now the least recently used
+        router.findShortestPath("Tunis", "Gabes");
+        assertEquals(1L, router.getMetrics().get("route.evictions"));
+
+        router.findShortestPath("Tunis", "Sousse");
+        assertEquals(3L, router.getMetrics().get("route.computations"));
+        router.findShortestPath("Tunis", "Sfax");
+        assertEquals(4L, router.getMetrics().get("route.computations"));
+    }
+
+    @Test
+    void routesOfSupersededGraphsDoNotStayCached() throws Exception {
+        RouteOptimizer router = new RouteOptimizer(10_000);
+        String[][] pairs = {{"Tunis", "Sousse"}, {"Tunis", "Gabes"}, {"Nabeul", "Sfax"}};
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            Thread reader = new Thread(() -> {
+                for (int i = offset; !done.get(); i++) {
+                    String[] pair = pairs[i % pairs.length];
+                    router.findShortestPath(pair[0], pair[1]);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (int cost = 1; cost <= 500; cost++) {
+            router.updateRoadCost("Ben Arous", "Hammamet", 40 + cost % 2);
+            Thread.yield();
+        }
+        done.set(true);
+        for (Thread reader : readers) reader.join();
+
+        // Only routes of the current graph may remain: at most one per pair
+        assertTrue(router.getMetrics().get("route.cached") <= pairs.length, router.getMetrics().toString());
+    }
+
+    private static String last(List<String> route) {
+        return route.get(route.size() - 1);
+    }
+
+    private static List<String> reversed(List<String> route) {
+        List<String> copy = new ArrayList<>(route);
+        Collections.reverse(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,138 @@
+package com.traffic.data;
+
+import com.traffic.common.models.TrafficAlert;
+import com.traffic.common.models.VehicleDetails;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FinesStoreTest {
+
+    @TempDir
+    File dir;
+
+    private static TrafficAlert alert(String vehicleId, long timestamp) {
+        return new TrafficAlert(0, "SPEEDING", new VehicleDetails(vehicleId, 48.85, 2.35, 142.0, timestamp));
+    }
+
+    @Test
+    void recordedFinesSurviveARestart() throws IOException {
+        FinesStore store = new FinesStore(dir);
+        assertEquals(2, store.record(List.of(alert("V1", 1000), alert("V2", 1000)), 5000));
+        store.close();
+
+        FinesStore reopened = new FinesStore(dir);
+        assertEquals(2, reopened.count());
+        assertTrue(reopened.isRecorded(alert("V1", 1000).getAlertId()));
+        assertTrue(reopened.isRecorded(alert("V2", 1000).getAlertId()));
+        assertFalse(reopened.isRecorded(alert("V3", 1000).getAlertId()));
+        reopened.close();
+    }
+
+    @Test
+    void redeliveredAlertsAreSkipped() throws IOException {
+        FinesStore store = new FinesStore(dir);
+        assertEquals(1, store.record(List.of(alert("V1", 1000), alert("V1", 1000)), 5000)); // Resent within a batch
+        assertEquals(1, store.record(List.of(alert("V1", 1000), alert("V2", 1000)), 5000)); // Redelivered batch
+        assertEquals(0, store.record(List.of(alert("V2", 1000)), 5000));
+        assertEquals(3L, store.getMetrics().get("fines.duplicates"));
+        store.close();
+
+        FinesStore reopened = new FinesStore(dir);
+        assertEquals(0, reopened.record(List.of(alert("V1", 1000)), 5000)); // Still known after a restart
+        assertEquals(1, reopened.record(List.of(alert("V1", 2000)), 5000)); // Same car, new offence
+        assertEquals(3, reopened.count());
+        reopened.close();
+        assertEquals(3, lines().size());
+    }
+
+    @Test
+    void tornLastLineIsDroppedOnStartup() throws IOException {
+        FinesStore store = new FinesStore(dir);
+        store.record(List.of(alert("V1", 1000), alert("V2", 1000)), 5000);
+        store.close();
+        // A crash in the middle of the next write
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "fines.log"), true)) {
+            out.write("SPEEDING:V3@1000\tSPEEDING\tV3\t14".getBytes(StandardCharsets.UTF_8));
+        }
+
+        FinesStore reopened = new FinesStore(dir);
+        assertEquals(2, reopened.count());
+        assertFalse(reopened.isRecorded(alert("V3", 1000).getAlertId()));
+        assertEquals(1, reopened.record(List.of(alert("V3", 1000)), 6000)); // The redelivery is recorded in full
+        reopened.close();
+
+        List<String> lines = lines();
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(2).startsWith("SPEEDING:V3@1000\tSPEEDING\tV3\t142.0\t"), lines.get(2));
+        assertRecordedOnDisk(3);
+    }
+
+    @Test
+    void idsWithSeparatorsStayOnOneLineAndAreRecognisedAfterARestart() throws IOException {
+        String[] vehicleIds = {"V\t1", "V\n2", "V\r\n3", "V\\t4", "V\\"};
+        List<TrafficAlert> alerts = new ArrayList<>();
+        for (String vehicleId : vehicleIds) alerts.add(alert(vehicleId, 1000));
+        FinesStore store = new FinesStore(dir);
+        assertEquals(5, store.record(alerts, 5000));
+        store.close();
+
+        List<String> lines = lines();
+        assertEquals(5, lines.size());
+        for (String line : lines) assertEquals(8, line.split("\t", -1).length, line);
+
+        FinesStore reopened = new FinesStore(dir);
+        assertEquals(5, reopened.count());
+        for (TrafficAlert alert : alerts) assertTrue(reopened.isRecorded(alert.getAlertId()), alert.getAlertId());
+        assertFalse(reopened.isRecorded(alert("V\\t1", 1000).getAlertId())); // Not confused with "V\t1"
+        assertEquals(0, reopened.record(alerts, 6000));
+        reopened.close();
+    }
+
+    @Test
+    void concurrentBatchesAreAllDurableAndShareSyncs() throws Exception {
+        FinesStore store = new FinesStore(dir);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int b = 0; b < 80; b++) {
+            int batch = b;
+            results.add(pool.submit(() -> {
+                List<TrafficAlert> alerts = new ArrayList<>();
+                for (int i = 0; i < 10; i++) alerts.add(alert("V" + batch + "-" + i, 1000));
+                return store.record(alerts, 5000);
+            }));
+        }
+        int recorded = 0;
+        for (Future<Integer> result : results) recorded += result.get();
+        pool.shutdown();
+
+        assertEquals(800, recorded);
+        assertEquals(80L, store.getMetrics().get("fines.batches"));
+        assertTrue(store.getMetrics().get("fines.syncs") <= 80);
+        store.close();
+        assertEquals(800, lines().size());
+        assertRecordedOnDisk(800);
+    }
+
+    private void assertRecordedOnDisk(long expected) throws IOException {
+        FinesStore store = new FinesStore(dir);
+        assertEquals(expected, store.count());
+        store.close();
+    }
+
+    private List<String> lines() throws IOException {
+        return Files.readAllLines(new File(dir, "fines.log").toPath(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,119 @@
+package com.traffic.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryChunkTest {
+
+    private static final double CM = 1e-7; // Coordinates are kept to 1e-7 degree
+
+    @Test
+    void emptyChunkDecodesToNothing() {
+        HistoryChunk chunk = new HistoryChunk(16);
+        assertEquals(0, chunk.count());
+        assertFalse(chunk.cursor().next());
+    }
+
+    @Test
+    void steadyTrajectoryRoundTripsAndPacksTightly() {
+        HistoryChunk chunk = new HistoryChunk(1000);
+        long t0 = 1_700_000_000_000L;
+        for (int i = 0; i < 1000; i++) {
+            chunk.append(t0 + i * 1000L, 48.8566 + i * 0.0001, 2.3522 - i * 0.0002, 50.0);
+        }
+        chunk.seal();
+
+        HistoryChunk.Cursor c = chunk.cursor();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(c.next());
+            assertEquals(t0 + i * 1000L, c.time);
+            assertEquals(48.8566 + i * 0.0001, c.lat, CM);
+            assertEquals(2.3522 - i * 0.0002, c.lon, CM);
+            assertEquals(50.0, c.speed);
+        }
+        assertFalse(c.next());
+        assertEquals(t0, chunk.firstTime());
+        assertEquals(t0 + 999_000L, chunk.lastTime());
+        // Steady interval, heading and speed: a handful of bits per point after the first
+        assertTrue(chunk.sizeBytes() < 1000, "size " + chunk.sizeBytes());
+    }
+
+    @Test
+    void irregularTrajectoryRoundTripsExactly() {
+        Random random = new Random(42);
+        int n = 5000;
+        long[] times = new long[n];
+        double[] lats = new double[n], lons = new double[n], speeds = new double[n];
+        long t = 1_700_000_000_000L;
+        double lat = 45.0, lon = 7.0;
+        for (int i = 0; i < n; i++) {
+            // Mostly jitter, sometimes long gaps and jumps that need the widest buckets
+            t += random.nextInt(10) == 0 ? random.nextInt(100_000_000) : 900 + random.nextInt(200);
+            lat += random.nextInt(50) == 0 ? random.nextGaussian() * 10 : random.nextGaussian() * 0.001;
+            lon += random.nextInt(50) == 0 ? random.nextGaussian() * 10 : random.nextGaussian() * 0.001;
+            lat = Math.max(-90, Math.min(90, lat));
+            lon = Math.max(-180, Math.min(180, lon));
+            times[i] = t;
+            lats[i] = lat;
+            lons[i] = lon;
+            speeds[i] = random.nextInt(5) == 0 ? speeds[Math.max(0, i - 1)] : random.nextDouble() * 200;
+        }
+
+        HistoryChunk chunk = new HistoryChunk(16); // Starts small: exercises buffer growth
+        for (int i = 0; i < n; i++) chunk.append(times[i], lats[i], lons[i], speeds[i]);
+
+        HistoryChunk.Cursor c = chunk.cursor();
+        for (int i = 0; i < n; i++) {
+            assertTrue(c.next(), "point " + i);
+            assertEquals(times[i], c.time, "time " + i);
+            assertEquals(lats[i], c.lat, CM, "lat " + i);
+            assertEquals(lons[i], c.lon, CM, "lon " + i);
+            assertEquals(Double.doubleToRawLongBits(speeds[i]), Double.doubleToRawLongBits(c.speed), "speed " + i);
+        }
+        assertFalse(c.next());
+    }
+
+    @Test
+    void extremeValuesRoundTrip() {
+        HistoryChunk chunk = new HistoryChunk(4);
+        chunk.append(0L, -90.0, 179.9999999, 0.0);
+        chunk.append(1L, 90.0, -180.0, Double.NaN);          // Crosses the antimeridian and both poles
+        chunk.append(Long.MAX_VALUE / 2, -90.0, 180.0, -0.0); // Huge time gap
+        chunk.append(Long.MAX_VALUE / 2, 0.0, 0.0, Double.MAX_VALUE);
+        chunk.seal();
+
+        HistoryChunk.Cursor c = chunk.cursor();
+        assertTrue(c.next());
+        assertEquals(179.9999999, c.lon, CM);
+        assertTrue(c.next());
+        assertEquals(1L, c.time);
+        assertEquals(90.0, c.lat, CM);
+        assertEquals(-180.0, c.lon, CM);
+        assertTrue(Double.isNaN(c.speed));
+        assertTrue(c.next());
+        assertEquals(Long.MAX_VALUE / 2, c.time);
+        assertEquals(-90.0, c.lat, CM);
+        assertEquals(180.0, c.lon, CM);
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(c.speed));
+        assertTrue(c.next());
+        assertEquals(Long.MAX_VALUE / 2, c.time);
+        assertEquals(Double.MAX_VALUE, c.speed);
+        assertFalse(c.next());
+    }
+
+    @Test
+    void cursorsAreIndependent() {
+        HistoryChunk chunk = new HistoryChunk(8);
+        for (int i = 0; i < 10; i++) chunk.append(i * 1000L, 10.0 + i * 0.001, 20.0, i);
+        HistoryChunk.Cursor a = chunk.cursor();
+        HistoryChunk.Cursor b = chunk.cursor();
+        assertTrue(a.next());
+        assertTrue(a.next());
+        assertTrue(b.next());
+        assertEquals(1000L, a.time);
+        assertEquals(0L, b.time);
+    }
+}
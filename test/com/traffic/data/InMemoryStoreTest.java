@@ -0,0 +1,253 @@
+package com.traffic.data;
+
+import com.traffic.common.models.VehicleDelta;
+import com.traffic.common.models.VehicleDetails;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryStoreTest {
+
+    @Test
+    void updateThenGetReturnsLatestReport() {
+        InMemoryStore store = new InMemoryStore(100);
+        assertTrue(store.update(new VehicleDetails("V1", 10.0, 20.0, 50.0, 1000L)));
+        assertTrue(store.update(new VehicleDetails("V1", 11.0, 21.0, 60.0, 2000L)));
+
+        VehicleDetails v = store.get("V1");
+        assertEquals(1, store.size());
+        assertEquals(11.0, v.getLatitude());
+        assertEquals(21.0, v.getLongitude());
+        assertEquals(60.0, v.getSpeed());
+        assertEquals(2000L, v.getTimestampMillis());
+        assertNull(store.get("V2"));
+    }
+
+    @Test
+    void removeRecyclesSlotAndForgetsVehicle() {
+        InMemoryStore store = new InMemoryStore(100);
+        store.update(new VehicleDetails("V1", 10.0, 20.0, 50.0));
+        assertTrue(store.remove("V1"));
+        assertFalse(store.remove("V1"));
+        assertFalse(store.contains("V1"));
+        assertNull(store.get("V1"));
+        assertEquals(0, store.size());
+        assertTrue(store.queryBox(9, 19, 11, 21).isEmpty());
+
+        store.update(new VehicleDetails("V2", 10.0, 20.0, 50.0));
+        assertEquals("V2", store.get("V2").getVehicleId());
+        assertNull(store.get("V1"));
+    }
+
+    @Test
+    void fullStoreWithoutTtlRejectsNewVehicles() {
+        InMemoryStore store = new InMemoryStore(2);
+        store.update(new VehicleDetails("V1", 10.0, 20.0, 50.0));
+        store.update(new VehicleDetails("V2", 10.0, 20.0, 50.0));
+        assertFalse(store.update(new VehicleDetails("V3", 10.0, 20.0, 50.0)));
+        assertTrue(store.update(new VehicleDetails("V1", 11.0, 20.0, 50.0))); // Known vehicles still update
+
+        assertEquals(2, store.size());
+        assertFalse(store.contains("V3"));
+    }
+
+    @Test
+    void readersNeverSeeTornRows() throws Exception {
+        // Every report carries the same value in all four fields: a row mixing two reports shows up as a mismatch
+        InMemoryStore store = new InMemoryStore(100);
+        store.update(new VehicleDetails("V1", 0, 0, 0, 0));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> torn = new AtomicReference<>();
+
+        Thread writer = new Thread(() -> {
+            for (int k = 1; k <= 200_000; k++) {
+                double v = k % 80;
+                store.update(new VehicleDetails("V1", v, v, v, k % 80));
+            }
+            done.set(true);
+        });
+        Thread reader = new Thread(() -> {
+            while (!done.get() && torn.get() == null) {
+                VehicleDetails v = store.get("V1");
+                if (v.getLatitude() != v.getLongitude() || v.getLatitude() != v.getSpeed()
+                        || v.getLatitude() != v.getTimestampMillis()) {
+                    torn.set(v.toString() + " t=" + v.getTimestampMillis());
+                }
+            }
+        });
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+        assertNull(torn.get(), "torn read");
+    }
+
+    @Test
+    void changesSinceReturnsOnlyLaterWritesAndRemovals() {
+        InMemoryStore store = new InMemoryStore(100);
+        store.update(new VehicleDetails("V1", 10.0, 20.0, 50.0));
+        store.update(new VehicleDetails("V2", 10.0, 20.0, 50.0));
+
+        VehicleDelta first = store.changesSince(0, null);
+        assertTrue(first.isFullSnapshot());
+        assertEquals(2, first.getVehicles().size());
+
+        store.update(new VehicleDetails("V1", 10.5, 20.0, 55.0));
+        store.remove("V2");
+        VehicleDelta second = store.changesSince(first.getVersion(), null);
+        assertFalse(second.isFullSnapshot());
+        assertEquals(List.of("V1"), second.getVehicles().stream().map(VehicleDetails::getVehicleId).toList());
+        assertEquals(List.of("V2"), second.getEvicted());
+
+        VehicleDelta third = store.changesSince(second.getVersion(), null);
+        assertTrue(third.getVehicles().isEmpty());
+        assertTrue(third.getEvicted().isEmpty());
+    }
+
+    @Test
+    void changesSinceWithBoxEvictsVehiclesThatLeftIt() {
+        InMemoryStore store = new InMemoryStore(100);
+        store.update(new VehicleDetails("V1", 10.0, 20.0, 50.0));
+        double[] box = {9.0, 19.0, 11.0, 21.0};
+        VehicleDelta first = store.changesSince(0, box);
+        assertEquals(1, first.getVehicles().size());
+
+        store.update(new VehicleDetails("V1", 30.0, 40.0, 50.0));
+        VehicleDelta second = store.changesSince(first.getVersion(), box);
+        assertTrue(second.getVehicles().isEmpty());
+        assertEquals(List.of("V1"), second.getEvicted());
+    }
+
+    @Test
+    void spatialQueriesFollowMovingVehicles() {
+        InMemoryStore store = new InMemoryStore(100);
+        store.update(new VehicleDetails("NEAR", 48.8566, 2.3522, 30.0));
+        store.update(new VehicleDetails("FAR", 48.9566, 2.3522, 30.0)); // ~11 km north
+        assertEquals(List.of("NEAR"), ids(store.queryRadius(48.8566, 2.3522, 2.0)));
+        assertEquals(List.of("NEAR", "FAR"), ids(store.queryNearest(48.8566, 2.3522, 2)));
+
+        store.update(new VehicleDetails("FAR", 48.8570, 2.3522, 30.0));
+        assertEquals(List.of("NEAR", "FAR"), ids(store.queryRadius(48.8566, 2.3522, 2.0)));
+    }
+
+    @Test
+    void spatialQueriesMatchBruteForce() {
+        // Dense city plus a sparse spread, like the JMH fleet (benchmarks/), at a test-sized scale
+        InMemoryStore store = new InMemoryStore(20_000);
+        Random rand = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            boolean city = i % 2 == 0;
+            double lat = city ? 36.7 + rand.nextDouble() * 0.2 : 33 + rand.nextDouble() * 4;
+            double lon = city ? 10.1 + rand.nextDouble() * 0.2 : 9 + rand.nextDouble() * 2.5;
+            store.update(new VehicleDetails("BOT-" + i, lat, lon, 50.0));
+        }
+        List<VehicleDetails> all = store.snapshot();
+
+        for (int q = 0; q < 50; q++) {
+            boolean city = q % 2 == 0;
+            double lat = city ? 36.7 + rand.nextDouble() * 0.2 : 33 + rand.nextDouble() * 4;
+            double lon = city ? 10.1 + rand.nextDouble() * 0.2 : 9 + rand.nextDouble() * 2.5;
+            double[] km = new double[all.size()];
+            for (int i = 0; i < km.length; i++) {
+                km[i] = SpatialGridIndex.haversineKm(lat, lon, all.get(i).getLatitude(), all.get(i).getLongitude());
+            }
+            Arrays.sort(km);
+
+            List<VehicleDetails> nearest = store.queryNearest(lat, lon, 20);
+            assertArrayEquals(Arrays.copyOf(km, 20), distances(nearest, lat, lon), "kNN at " + lat + "," + lon);
+
+            for (double radius : new double[] {0.5, 2.0}) {
+                int inside = 0;
+                while (inside < km.length && km[inside] <= radius) inside++;
+                List<VehicleDetails> within = store.queryRadius(lat, lon, radius);
+                assertArrayEquals(Arrays.copyOf(km, inside), distances(within, lat, lon), radius + " km at " + lat + "," + lon);
+            }
+        }
+    }
+
+    // --- IDLE EXPIRY (timer wheel) ---
+
+    private static final long TTL = 10_000; // Wheel ticks of ~39 ms: reports 100 ms apart land in different buckets
+
+    @Test
+    void expireIdleRemovesOnlyVehiclesPastTheirDeadline() throws Exception {
+        InMemoryStore store = new InMemoryStore(100, 0.01, TTL);
+        List<String> removed = new ArrayList<>();
+        store.setRemovalListener(removed::add);
+
+        store.update(new VehicleDetails("OLD", 10.0, 20.0, 50.0));
+        long oldWritten = System.currentTimeMillis();
+        Thread.sleep(100);
+        store.update(new VehicleDetails("NEW", 10.0, 20.0, 50.0));
+
+        assertEquals(0, store.expireIdle(oldWritten + TTL / 2));
+        assertEquals(1, store.expireIdle(oldWritten + TTL + 1));
+        assertEquals(List.of("OLD"), removed);
+        assertFalse(store.contains("OLD"));
+        assertTrue(store.contains("NEW"));
+        assertEquals(1L, store.getMetrics().get("vehicles.expired"));
+    }
+
+    @Test
+    void vehicleThatReportedAgainIsRefiledNotExpired() throws Exception {
+        InMemoryStore store = new InMemoryStore(100, 0.01, TTL);
+        store.update(new VehicleDetails("V1", 10.0, 20.0, 50.0));
+        long firstWritten = System.currentTimeMillis();
+        Thread.sleep(100);
+        store.update(new VehicleDetails("V1", 10.1, 20.0, 50.0));
+        long secondWritten = System.currentTimeMillis();
+
+        assertEquals(0, store.expireIdle(firstWritten + TTL + 1));
+        assertTrue(store.contains("V1"));
+        assertEquals(1, store.expireIdle(secondWritten + TTL + 1));
+        assertFalse(store.contains("V1"));
+    }
+
+    @Test
+    void expireIdleCatchesUpAfterALongPause() {
+        InMemoryStore store = new InMemoryStore(100, 0.01, TTL);
+        for (int v = 0; v < 10; v++) store.update(new VehicleDetails("V" + v, 10.0, 20.0, 50.0));
+        // Far more than a full wheel turn later: every bucket is due, each vehicle is removed once
+        assertEquals(10, store.expireIdle(System.currentTimeMillis() + 100 * TTL));
+        assertEquals(0, store.size());
+        assertEquals(0, store.expireIdle(System.currentTimeMillis() + 200 * TTL));
+    }
+
+    @Test
+    void fullStoreWithTtlEvictsLeastRecentVehicle() throws Exception {
+        InMemoryStore store = new InMemoryStore(2, 0.01, TTL);
+        List<String> removed = new ArrayList<>();
+        store.setRemovalListener(removed::add);
+        store.update(new VehicleDetails("V1", 10.0, 20.0, 50.0));
+        Thread.sleep(100);
+        store.update(new VehicleDetails("V2", 10.0, 20.0, 50.0));
+
+        assertTrue(store.update(new VehicleDetails("V3", 10.0, 20.0, 50.0)));
+        assertEquals(List.of("V1"), removed);
+        assertEquals(2, store.size());
+        assertEquals(1L, store.getMetrics().get("vehicles.lruEvicted"));
+    }
+
+    @Test
+    void expireIdleIsANoOpWithoutTtl() {
+        InMemoryStore store = new InMemoryStore(100);
+        store.update(new VehicleDetails("V1", 10.0, 20.0, 50.0));
+        assertEquals(0, store.expireIdle(Long.MAX_VALUE / 2));
+        assertTrue(store.contains("V1"));
+    }
+
+    private static double[] distances(List<VehicleDetails> vehicles, double lat, double lon) {
+        return vehicles.stream().mapToDouble(v -> SpatialGridIndex.haversineKm(lat, lon, v.getLatitude(), v.getLongitude())).toArray();
+    }
+
+    private static List<String> ids(List<VehicleDetails> vehicles) {
+        return vehicles.stream().map(VehicleDetails::getVehicleId).toList();
+    }
+}
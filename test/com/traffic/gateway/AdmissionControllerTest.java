@@ -0,0 +1,155 @@
+package com.traffic.gateway;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.traffic.gateway.AdmissionController.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControllerTest {
+
+    private static final String[] PROPERTIES = {
+            "traffic.gateway.control.maxInFlight", "traffic.gateway.control.queueTimeoutMs",
+            "traffic.gateway.telemetry.maxInFlight", "traffic.gateway.telemetry.queueTimeoutMs",
+            "traffic.gateway.virtualThreads"};
+
+    private HttpServer server;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    }
+
+    @AfterEach
+    void stopServer() {
+        release.countDown();
+        server.stop(0);
+        for (String property : PROPERTIES) System.clearProperty(property);
+    }
+
+    // Holds its permit until the test releases it
+    private HttpHandler blocking(CountDownLatch entered) {
+        return exchange -> {
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ok(exchange);
+        };
+    }
+
+    private static void ok(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(String path) {
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+        HttpRequest request = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.noBody()).build();
+        return HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString()); // No shared keep-alive
+    }
+
+    @Test
+    void requestOverTheLimitIsRejectedAfterItsQueueTimeout() throws Exception {
+        System.setProperty("traffic.gateway.telemetry.maxInFlight", "1");
+        System.setProperty("traffic.gateway.telemetry.queueTimeoutMs", "50");
+        AdmissionController admission = new AdmissionController();
+        CountDownLatch entered = new CountDownLatch(1);
+        server.createContext("/report", admission.guard("report", Priority.TELEMETRY, blocking(entered)));
+        server.setExecutor(Executors.newCachedThreadPool()); // Inline admission, as with virtual threads
+        server.start();
+
+        CompletableFuture<HttpResponse<String>> first = send("/report");
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        HttpResponse<String> second = send("/report").get(5, TimeUnit.SECONDS);
+        assertEquals(503, second.statusCode());
+        assertEquals("1", second.headers().firstValue("Retry-After").orElse(null));
+
+        release.countDown();
+        assertEquals(200, first.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(200, send("/report").get(5, TimeUnit.SECONDS).statusCode()); // Permit given back
+        assertEquals(1L, admission.getMetrics().get("gateway.report.rejected"));
+        assertEquals(0L, admission.getMetrics().get("gateway.telemetry.inFlight"));
+    }
+
+    @Test
+    void lowerClassIsShedAtOnceWhileAHigherOneIsSaturated() throws Exception {
+        System.setProperty("traffic.gateway.control.maxInFlight", "1");
+        System.setProperty("traffic.gateway.telemetry.maxInFlight", "1");
+        System.setProperty("traffic.gateway.telemetry.queueTimeoutMs", "10000");
+        AdmissionController admission = new AdmissionController();
+        CountDownLatch entered = new CountDownLatch(2);
+        server.createContext("/control", admission.guard("control", Priority.CONTROL, blocking(entered)));
+        server.createContext("/report", admission.guard("report", Priority.TELEMETRY, blocking(entered)));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        send("/control");
+        send("/report");
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        long t0 = System.nanoTime();
+        HttpResponse<String> shed = send("/report").get(5, TimeUnit.SECONDS);
+        assertEquals(503, shed.statusCode());
+        // Not the 10 s queue timeout: control is saturated, so telemetry does not wait at all
+        assertTrue(System.nanoTime() - t0 < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1L, admission.getMetrics().get("gateway.telemetry.shed"));
+    }
+
+    @Test
+    void platformLanesRejectQueueOverflowAndStaleQueuedRequests() throws Exception {
+        System.setProperty("traffic.gateway.virtualThreads", "false");
+        System.setProperty("traffic.gateway.telemetry.maxInFlight", "1"); // One thread, a queue of one
+        System.setProperty("traffic.gateway.telemetry.queueTimeoutMs", "50");
+        AdmissionController admission = new AdmissionController();
+        CountDownLatch entered = new CountDownLatch(1);
+        server.createContext("/report", admission.guard("report", Priority.TELEMETRY, blocking(entered)));
+        server.setExecutor(admission.newRequestExecutor());
+        server.start();
+
+        CompletableFuture<HttpResponse<String>> running = send("/report");
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<HttpResponse<String>> queued = send("/report");
+        Thread.sleep(200); // Queued behind the running one
+        HttpResponse<String> overflow = send("/report").get(5, TimeUnit.SECONDS);
+        assertEquals(503, overflow.statusCode()); // Queue full: answered at once
+        assertEquals(1L, admission.getMetrics().get("gateway.telemetry.shed"));
+
+        release.countDown();
+        assertEquals(200, running.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(503, queued.get(5, TimeUnit.SECONDS).statusCode()); // Waited past its 50 ms
+        assertEquals(2L, admission.getMetrics().get("gateway.report.rejected"));
+    }
+
+    @Test
+    void requestReachingAnIdleLaneIsNeverTimedOut() throws Exception {
+        System.setProperty("traffic.gateway.virtualThreads", "false");
+        System.setProperty("traffic.gateway.telemetry.maxInFlight", "2");
+        System.setProperty("traffic.gateway.telemetry.queueTimeoutMs", "0"); // Any wait behind others is too long
+        AdmissionController admission = new AdmissionController();
+        server.createContext("/report", admission.guard("report", Priority.TELEMETRY, AdmissionControllerTest::ok));
+        server.setExecutor(admission.newRequestExecutor());
+        server.start();
+
+        for (int i = 0; i < 20; i++) assertEquals(200, send("/report").get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(0L, admission.getMetrics().get("gateway.report.rejected"));
+    }
+}
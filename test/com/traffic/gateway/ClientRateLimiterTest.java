@@ -0,0 +1,99 @@
+package com.traffic.gateway;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientRateLimiterTest {
+
+    private static HttpServer server;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop(0);
+    }
+
+    private static void ok(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+    }
+
+    private HttpResponse<String> send(String path, String method) throws Exception {
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+        HttpRequest request = HttpRequest.newBuilder(uri).method(method, HttpRequest.BodyPublishers.noBody()).build();
+        // A client per request: a pooled keep-alive connection may be closed by the server under it
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void burstIsServedThenRejectedWithRetryAfter() throws Exception {
+        ClientRateLimiter limiter = new ClientRateLimiter("report", 1, 3);
+        server.createContext("/burst", limiter.guard(ClientRateLimiterTest::ok));
+
+        for (int i = 0; i < 3; i++) assertEquals(200, send("/burst", "POST").statusCode());
+        HttpResponse<String> limited = send("/burst", "POST");
+        assertEquals(429, limited.statusCode());
+        assertEquals("1", limited.headers().firstValue("Retry-After").orElse(null));
+        assertTrue(limited.body().contains("Rate limit exceeded"), limited.body());
+        assertEquals(1L, limiter.getMetrics().get("gateway.report.rateLimited"));
+        assertEquals(1L, limiter.getMetrics().get("gateway.report.clients"));
+    }
+
+    @Test
+    void bucketRefillsAtTheConfiguredRate() throws Exception {
+        ClientRateLimiter limiter = new ClientRateLimiter("report", 20, 1); // A token every 50 ms
+        server.createContext("/refill", limiter.guard(ClientRateLimiterTest::ok));
+
+        assertEquals(200, send("/refill", "POST").statusCode());
+        assertEquals(429, send("/refill", "POST").statusCode());
+        Thread.sleep(120);
+        assertEquals(200, send("/refill", "POST").statusCode());
+    }
+
+    @Test
+    void preflightRequestsAreNotCharged() throws Exception {
+        ClientRateLimiter limiter = new ClientRateLimiter("report", 1, 1);
+        server.createContext("/preflight", limiter.guard(ClientRateLimiterTest::ok));
+
+        for (int i = 0; i < 5; i++) assertEquals(200, send("/preflight", "OPTIONS").statusCode());
+        assertEquals(200, send("/preflight", "POST").statusCode());
+        assertEquals(429, send("/preflight", "POST").statusCode());
+    }
+
+    @Test
+    void bulkChargesOneTokenPerChunk() throws Exception {
+        ClientRateLimiter limiter = new ClientRateLimiter("bulk", 0.5, 3);
+        server.createContext("/bulk", exchange -> {
+            // A body of five chunks: stops at the first chunk the client cannot pay for
+            int sent = 0;
+            while (sent < 5 && limiter.take(exchange)) sent++;
+            exchange.getResponseHeaders().set("X-Chunks", String.valueOf(sent));
+            exchange.sendResponseHeaders(sent == 5 ? 200 : 429, -1);
+            exchange.close();
+        });
+
+        HttpResponse<String> response = send("/bulk", "POST");
+        assertEquals(429, response.statusCode());
+        assertEquals("3", response.headers().firstValue("X-Chunks").orElse(null));
+        assertEquals("2", response.headers().firstValue("Retry-After").orElse(null)); // One token every 2 s
+        assertEquals(1L, limiter.getMetrics().get("gateway.bulk.rateLimited"));
+    }
+}
@@ -0,0 +1,166 @@
+package com.traffic.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonReaderTest {
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Hands the bytes out one at a time: every token straddles a buffer refill
+    private static JsonReader trickling(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return new JsonReader(new InputStream() {
+            int next = 0;
+
+            @Override
+            public int read() {
+                return next < bytes.length ? bytes[next++] & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (next == bytes.length) return -1;
+                b[off] = bytes[next++];
+                return 1;
+            }
+        });
+    }
+
+    private static Object parse(String json) throws IOException {
+        JsonReader reader = reader(json);
+        Object value = reader.readValue();
+        reader.endDocument();
+        return value;
+    }
+
+    @Test
+    void readsATelemetryReportFieldByField() throws IOException {
+        JsonReader reader = trickling("{ \"vehicleId\": \"CAR-1\", \"lat\": 36.8065, \"lon\": \"10.1815\",\n"
+                + "  \"speed\": -0.5, \"timestamp\": 1700000000123, \"extra\": {\"a\": [1, {\"b\": null}]} }");
+        reader.beginObject();
+        Map<String, Object> fields = new LinkedHashMap<>();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "vehicleId": fields.put(name, reader.nextString()); break;
+                case "timestamp": fields.put(name, reader.nextLong()); break;
+                case "extra": reader.skipValue(); break;
+                default: fields.put(name, reader.nextDouble());
+            }
+        }
+        reader.endObject();
+        reader.endDocument();
+
+        assertEquals("CAR-1", fields.get("vehicleId"));
+        assertEquals(36.8065, fields.get("lat"));
+        assertEquals(10.1815, fields.get("lon")); // Quoted numbers are accepted
+        assertEquals(-0.5, fields.get("speed"));
+        assertEquals(1700000000123L, fields.get("timestamp"));
+    }
+
+    @Test
+    void readsFreeFormDocuments() throws IOException {
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("a", Arrays.asList(1.0, true, false, null, "x"));
+        expected.put("b", new LinkedHashMap<>());
+        expected.put("c", new ArrayList<>());
+        assertEquals(expected, parse("{\"a\":[1,true,false,null,\"x\"],\"b\":{},\"c\":[]}"));
+    }
+
+    @Test
+    void numbersMatchTheJdkParser() throws IOException {
+        String[] numbers = {"0", "-0", "7", "36.8065", "-122.4194", "0.1", "123456789012345", "1234567890123456789",
+                "0.000000000000000001", "1e3", "-2.5E-3", "1.7976931348623157e308", "4.9e-324", "3.141592653589793238"};
+        for (String n : numbers) {
+            assertEquals(Double.parseDouble(n), reader(n).nextDouble(), n);
+        }
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(reader("-0").nextDouble()));
+    }
+
+    @Test
+    void malformedNumbersAreRejected() {
+        for (String n : new String[] {"-", "-x", "1e", "1e+", "--1", "-1-2", "\"abc\"", "\"\""}) {
+            assertThrows(IOException.class, () -> reader(n).nextDouble(), n);
+        }
+        assertThrows(IOException.class, () -> reader("1.5").nextLong());
+        assertThrows(IOException.class, () -> reader("1e300").nextLong());
+    }
+
+    @Test
+    void stringsDecodeEscapesAndUtf8() throws IOException {
+        assertEquals("a\"b\\c/d\n\r\t\b\f", reader("\"a\\\"b\\\\c\\/d\\n\\r\\t\\b\\f\"").nextString());
+        assertEquals("é€", reader("\"\\u00e9\\u20AC\"").nextString());
+        assertEquals("😀", reader("\"\\ud83d\\ude00\"").nextString()); // Surrogate pair
+        assertEquals("Zoé → 🚗", trickling("\"Zoé → 🚗\"").nextString()); // 2, 3 and 4 byte UTF-8 across refills
+    }
+
+    @Test
+    void malformedStringsAreRejected() {
+        assertThrows(IOException.class, () -> reader("\"open").nextString());
+        assertThrows(IOException.class, () -> reader("\"bad \\x escape\"").nextString());
+        assertThrows(IOException.class, () -> reader("\"\\u12G4\"").nextString());
+        assertThrows(IOException.class, () -> new JsonReader(new ByteArrayInputStream(
+                new byte[] {'"', (byte) 0xC3, 'x', '"'})).nextString()); // Broken continuation byte
+        assertThrows(IOException.class, () -> new JsonReader(new ByteArrayInputStream(
+                new byte[] {'"', (byte) 0xFF, '"'})).nextString());
+    }
+
+    @Test
+    void malformedStructureIsRejected() {
+        String[] documents = {"[1,]", "[,1]", "[1 2]", "{\"a\" 1}", "{\"a\":1,}", "{1:2}", "[1}", "{\"a\":1]",
+                "[tru]", "[nul]", "@", "[1] 2", "{\"a\":1"};
+        for (String json : documents) {
+            assertThrows(IOException.class, () -> parse(json), json);
+        }
+    }
+
+    @Test
+    void nestingIsBounded() throws IOException {
+        String ok = "[".repeat(64) + "]".repeat(64);
+        assertNotNull(parse(ok));
+        String deep = "[".repeat(65) + "]".repeat(65);
+        IOException e = assertThrows(IOException.class, () -> parse(deep));
+        assertTrue(e.getMessage().contains("Nested too deeply"), e.getMessage());
+    }
+
+    @Test
+    void emptyInputEndsAtOnce() throws IOException {
+        assertEquals(JsonReader.Token.END, reader("  \n ").peek());
+        reader("").endDocument();
+    }
+
+    @Test
+    void skipLineResumesNdjsonAfterBrokenLines() throws IOException {
+        // Line 2 is garbage. Line 3 leaves an object open and takes line 4 as its value: the error only shows
+        // on line 6, and reading must resume right there rather than skip that line too
+        JsonReader reader = reader("{\"v\":1}\n{\"v\": oops}\n{\"v\":\n{\"v\":4}\n\n{\"v\":5}\n");
+        List<Object> values = new ArrayList<>();
+        List<Integer> errors = new ArrayList<>();
+        int line = 0;
+        while (reader.peek() != JsonReader.Token.END) {
+            line++;
+            try {
+                values.add(reader.readValue());
+            } catch (IOException e) {
+                errors.add(line);
+                if (!reader.skipLine()) break;
+            }
+        }
+        assertEquals(2, errors.size(), errors.toString());
+        assertEquals(List.of(Map.of("v", 1.0), Map.of("v", 5.0)), values);
+    }
+}